@@ -15,8 +15,6 @@
  */
 package com.google.idea.blaze.aspect;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -26,12 +24,11 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
-import java.io.BufferedReader;
+import com.google.idea.blaze.common.java.JavaPackageStatementReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
@@ -46,8 +43,6 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -87,9 +82,6 @@ public final class JarFilter {
 
   private static final Logger logger = Logger.getLogger(JarFilter.class.getName());
 
-  private static final Pattern JAVA_PACKAGE_PATTERN =
-      Pattern.compile("^\\s*package\\s+([\\w\\.]+);");
-
   public static void main(String[] args) throws Exception {
     JarFilterOptions options = parseArgs(args);
     try {
@@ -188,10 +180,8 @@ public final class JarFilter {
           if (!entry.getName().endsWith(".java")) {
             continue;
           }
-          try (BufferedReader reader =
-              new BufferedReader(
-                  new InputStreamReader(sourceZipFile.getInputStream(entry), UTF_8))) {
-            String packageString = parseDeclaredPackage(reader);
+          try (InputStream in = sourceZipFile.getInputStream(entry)) {
+            String packageString = JavaPackageStatementReader.readPackage(in);
             if (packageString != null) {
               String archiveFileNamePrefix =
                   getArchiveFileNamePrefix(entry.getName(), packageString);
@@ -206,28 +196,14 @@ public final class JarFilter {
 
   @Nullable
   private static String getDeclaredPackageOfJavaFile(Path javaFile) {
-    try (BufferedReader reader =
-        java.nio.file.Files.newBufferedReader(javaFile, StandardCharsets.UTF_8)) {
-      return parseDeclaredPackage(reader);
-
+    try {
+      return JavaPackageStatementReader.readPackage(javaFile);
     } catch (IOException e) {
       logger.log(Level.WARNING, "Error parsing package string from java source: " + javaFile, e);
       return null;
     }
   }
 
-  @Nullable
-  private static String parseDeclaredPackage(BufferedReader reader) throws IOException {
-    String line;
-    while ((line = reader.readLine()) != null) {
-      Matcher packageMatch = JAVA_PACKAGE_PATTERN.matcher(line);
-      if (packageMatch.find()) {
-        return packageMatch.group(1);
-      }
-    }
-    return null;
-  }
-
   /**
    * Computes the expected archive file name prefix of a java class.
    *
@@ -244,9 +220,25 @@ public final class JarFilter {
     return packageString.replace('.', '/') + '/' + className;
   }
 
-  /** Filters a list of jars, keeping anything matching the passed predicate. */
+  /**
+   * Filters a list of jars, keeping anything matching the passed predicate.
+   *
+   * <p>Kept entries are copied without recompression where possible, falling back to re-writing
+   * each entry for archives {@link RawJarFilter} does not support.
+   */
   private static void filterJars(List<Path> jars, Path output, Predicate<String> shouldKeep)
       throws IOException {
+    try {
+      RawJarFilter.filterJars(jars, output, shouldKeep);
+    } catch (RawJarFilter.UnsupportedZipException e) {
+      logger.log(Level.INFO, "Falling back to recompressing jar entries", e);
+      recompressJars(jars, output, shouldKeep);
+    }
+  }
+
+  /** Filters a list of jars by inflating and re-deflating each kept entry. */
+  private static void recompressJars(List<Path> jars, Path output, Predicate<String> shouldKeep)
+      throws IOException {
     final int bufferSize = 8 * 1024;
     byte[] buffer = new byte[bufferSize];
     Set<String> names = new HashSet<>();
@@ -17,31 +17,37 @@ package com.google.idea.blaze.aspect;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.io.Files;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.devtools.build.lib.worker.WorkerProtocol.Input;
 import com.google.devtools.build.lib.worker.WorkerProtocol.WorkResponse;
 import com.google.devtools.build.lib.worker.WorkerProtocol.WorkRequest;
 import com.google.devtools.intellij.aspect.Common.ArtifactLocation;
 import com.google.devtools.intellij.ideinfo.IntellijIdeInfo.JavaSourcePackage;
 import com.google.devtools.intellij.ideinfo.IntellijIdeInfo.PackageManifest;
-import java.io.BufferedReader;
+import com.google.idea.blaze.common.java.JavaPackageStatementReader;
+import com.google.protobuf.ByteString;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 /** Parses the package string from each of the source .java files. */
@@ -68,8 +74,6 @@ public class PackageParser {
 
   private static final Logger logger = Logger.getLogger(PackageParser.class.getName());
 
-  private static final Pattern PACKAGE_PATTERN = Pattern.compile("^\\s*package\\s+([\\w\\.]+)");
-
   private static boolean isWorkerMode(String [] args) {
     return args.length == 1 && args[0].equals("--persistent_worker");
   }
@@ -78,11 +82,24 @@ public class PackageParser {
     return workRequest.getArgumentsList().toArray(new String[0]);
   }
 
+  /** Returns the digests bazel provided for the inputs of a work request, keyed by path. */
+  private static Map<Path, ByteString> getInputDigests(WorkRequest workRequest) {
+    Map<Path, ByteString> digests = new HashMap<>();
+    for (Input input : workRequest.getInputsList()) {
+      if (!input.getDigest().isEmpty()) {
+        digests.put(Paths.get(input.getPath()), input.getDigest());
+      }
+    }
+    return digests;
+  }
+
   private static void parsePackagesAndWriteManifest(
-      PackageParser parser, PackageParserOptions options) throws Exception {
+      PackageParser parser, PackageParserOptions options, Map<Path, ByteString> inputDigests)
+      throws Exception {
     Preconditions.checkNotNull(options.outputManifest);
 
-    Map<ArtifactLocation, String> outputMap = parser.parsePackageStrings(options.sources);
+    Map<ArtifactLocation, String> outputMap =
+        parser.parsePackageStrings(options.sources, inputDigests);
     parser.writeManifest(outputMap, options.outputManifest);
   }
 
@@ -101,7 +118,8 @@ public class PackageParser {
       try {
         PackageParserOptions workRequestOptions = parseArgs(getWorkRequestArgs(workRequest));
 
-        parsePackagesAndWriteManifest(parser, workRequestOptions);
+        parsePackagesAndWriteManifest(
+            parser, workRequestOptions, getInputDigests(workRequest));
 
         builder.build().writeDelimitedTo(System.out);
       } catch (Exception e) {
@@ -123,7 +141,7 @@ public class PackageParser {
         // redirect log output away from stdout.
         runPersistentWorker(parser);
       } else {
-        parsePackagesAndWriteManifest(parser, options);
+        parsePackagesAndWriteManifest(parser, options, ImmutableMap.of());
       }
     } catch (Throwable e) {
       logger.log(Level.SEVERE, "Error parsing package strings", e);
@@ -148,8 +166,41 @@ public class PackageParser {
     }
   }
 
+  /**
+   * The maximum number of source digests whose package string is remembered between work requests
+   * of a persistent worker.
+   */
+  private static final int MAX_CACHED_DIGESTS = 100_000;
+
   private final PackageParserIoProvider ioProvider;
 
+  /**
+   * Reused across all work requests handled by this process. The threads are daemons so that an
+   * idle pool never keeps the JVM alive.
+   */
+  private final ListeningExecutorService executorService =
+      MoreExecutors.listeningDecorator(
+          Executors.newFixedThreadPool(
+              Runtime.getRuntime().availableProcessors(),
+              new ThreadFactoryBuilder()
+                  .setNameFormat("PackageParser-%d")
+                  .setDaemon(true)
+                  .build()));
+
+  /**
+   * Package strings of previously parsed sources, keyed by the content digest bazel supplied for
+   * them. The package is a function of the file content only, so a source whose digest is unchanged
+   * since an earlier work request need not be read again. Least recently used entries are evicted.
+   */
+  private final Map<ByteString, String> packageByDigest =
+      Collections.synchronizedMap(
+          new LinkedHashMap<ByteString, String>(16, 0.75f, /* accessOrder= */ true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteString, String> eldest) {
+              return size() > MAX_CACHED_DIGESTS;
+            }
+          });
+
   @VisibleForTesting
   PackageParser(PackageParserIoProvider ioProvider) {
     this.ioProvider = ioProvider;
@@ -178,16 +229,36 @@ public class PackageParser {
   @VisibleForTesting
   Map<ArtifactLocation, String> parsePackageStrings(List<ArtifactLocation> sources)
       throws Exception {
+    return parsePackageStrings(sources, ImmutableMap.of());
+  }
 
-    ListeningExecutorService executorService =
-        MoreExecutors.listeningDecorator(
-            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
-
+  /**
+   * Parses the package strings of the given sources. Sources with an entry in {@code inputDigests}
+   * are looked up in, and added to, the digest cache.
+   */
+  @VisibleForTesting
+  Map<ArtifactLocation, String> parsePackageStrings(
+      List<ArtifactLocation> sources, Map<Path, ByteString> inputDigests) throws Exception {
+    Map<ArtifactLocation, String> map = Maps.newHashMap();
     Map<ArtifactLocation, ListenableFuture<String>> futures = Maps.newHashMap();
     for (final ArtifactLocation source : sources) {
-      futures.put(source, executorService.submit(() -> getDeclaredPackageOfJavaFile(source)));
+      final ByteString digest = inputDigests.get(getExecutionPath(source));
+      String cached = digest != null ? packageByDigest.get(digest) : null;
+      if (cached != null) {
+        map.put(source, cached);
+        continue;
+      }
+      futures.put(
+          source,
+          executorService.submit(
+              () -> {
+                String packageString = getDeclaredPackageOfJavaFile(source);
+                if (digest != null && packageString != null) {
+                  packageByDigest.put(digest, packageString);
+                }
+                return packageString;
+              }));
     }
-    Map<ArtifactLocation, String> map = Maps.newHashMap();
     for (Entry<ArtifactLocation, ListenableFuture<String>> entry : futures.entrySet()) {
       String value = entry.getValue().get();
       if (value != null) {
@@ -199,24 +270,12 @@ public class PackageParser {
 
   @Nullable
   private String getDeclaredPackageOfJavaFile(ArtifactLocation source) {
-    try (BufferedReader reader = ioProvider.getReader(getExecutionPath(source))) {
-      return parseDeclaredPackage(reader);
+    try (InputStream in = ioProvider.getInputStream(getExecutionPath(source))) {
+      return JavaPackageStatementReader.readPackage(in);
 
     } catch (IOException e) {
       logger.log(Level.WARNING, "Error parsing package string from java source: " + source, e);
       return null;
     }
   }
-
-  @Nullable
-  private static String parseDeclaredPackage(BufferedReader reader) throws IOException {
-    String line;
-    while ((line = reader.readLine()) != null) {
-      Matcher packageMatch = PACKAGE_PATTERN.matcher(line);
-      if (packageMatch.find()) {
-        return packageMatch.group(1);
-      }
-    }
-    return null;
-  }
 }
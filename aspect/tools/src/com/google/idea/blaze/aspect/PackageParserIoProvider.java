@@ -17,14 +17,13 @@ package com.google.idea.blaze.aspect;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.protobuf.MessageLite;
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
-/** Provides a BufferedReader for the source java files, and a writer for the output proto */
+/** Provides an InputStream for the source java files, and a writer for the output proto */
 @VisibleForTesting
 public class PackageParserIoProvider {
 
@@ -36,7 +35,7 @@ public class PackageParserIoProvider {
     }
   }
 
-  BufferedReader getReader(Path file) throws IOException {
-    return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+  InputStream getInputStream(Path file) throws IOException {
+    return Files.newInputStream(file);
   }
 }
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.aspect;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Filters jars at the zip record level.
+ *
+ * <p>The compressed bytes of every kept entry are transferred verbatim from the input to the
+ * output, so no entry is inflated or deflated. Only the local and central directory headers are
+ * rewritten: timestamps are zeroed and data descriptors are dropped, so the output only depends on
+ * the kept entries. When an entry name occurs more than once, the first occurrence (in jar order,
+ * then central directory order) wins.
+ *
+ * <p>Zip64, encrypted and otherwise unusual archives are rejected with an {@link
+ * UnsupportedZipException}, and should be filtered by re-compressing each entry instead.
+ */
+final class RawJarFilter {
+
+  /** Thrown for archives this class does not handle; no usable output has been written. */
+  static final class UnsupportedZipException extends IOException {
+    UnsupportedZipException(Path jar, String reason) {
+      super(jar + ": " + reason);
+    }
+  }
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+  private static final int FLAG_ENCRYPTED = 1;
+  private static final int FLAG_UTF8 = 1 << 11;
+
+  private static final int VERSION_NEEDED = 20;
+  /** The MS-DOS encoding of 1980-01-01, the earliest representable date. */
+  private static final int DOS_EPOCH_DATE = (1 << 5) | 1;
+
+  private static final long MAX_32_BIT = 0xFFFFFFFFL;
+  private static final int MAX_16_BIT = 0xFFFF;
+
+  /** A kept entry, as needed to write its central directory record. */
+  private static final class Entry {
+    final byte[] name;
+    final int flags;
+    final int method;
+    final int crc;
+    final long compressedSize;
+    final long uncompressedSize;
+    final long localHeaderOffset;
+
+    Entry(
+        byte[] name,
+        int flags,
+        int method,
+        int crc,
+        long compressedSize,
+        long uncompressedSize,
+        long localHeaderOffset) {
+      this.name = name;
+      this.flags = flags;
+      this.method = method;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.uncompressedSize = uncompressedSize;
+      this.localHeaderOffset = localHeaderOffset;
+    }
+  }
+
+  private RawJarFilter() {}
+
+  /** Writes the entries of {@code jars} whose name matches {@code shouldKeep} to {@code output}. */
+  static void filterJars(List<Path> jars, Path output, Predicate<String> shouldKeep)
+      throws IOException {
+    Set<String> names = new HashSet<>();
+    List<Entry> written = new ArrayList<>();
+    try (FileChannel out =
+        FileChannel.open(
+            output,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (Path jar : jars) {
+        try (FileChannel in = FileChannel.open(jar, StandardOpenOption.READ)) {
+          copyEntries(jar, in, out, shouldKeep, names, written);
+        }
+      }
+      writeCentralDirectory(output, out, written);
+    }
+  }
+
+  private static void copyEntries(
+      Path jar,
+      FileChannel in,
+      FileChannel out,
+      Predicate<String> shouldKeep,
+      Set<String> names,
+      List<Entry> written)
+      throws IOException {
+    ByteBuffer centralDirectory = readCentralDirectory(jar, in);
+    ByteBuffer localHeader = littleEndian(LOCAL_HEADER_SIZE);
+    while (centralDirectory.hasRemaining()) {
+      int start = centralDirectory.position();
+      if (centralDirectory.remaining() < CENTRAL_HEADER_SIZE
+          || centralDirectory.getInt(start) != CENTRAL_HEADER_SIGNATURE) {
+        throw new UnsupportedZipException(jar, "malformed central directory");
+      }
+      int flags = centralDirectory.getShort(start + 8) & 0xFFFF;
+      int method = centralDirectory.getShort(start + 10) & 0xFFFF;
+      int crc = centralDirectory.getInt(start + 16);
+      long compressedSize = centralDirectory.getInt(start + 20) & MAX_32_BIT;
+      long uncompressedSize = centralDirectory.getInt(start + 24) & MAX_32_BIT;
+      int nameLength = centralDirectory.getShort(start + 28) & 0xFFFF;
+      int extraLength = centralDirectory.getShort(start + 30) & 0xFFFF;
+      int commentLength = centralDirectory.getShort(start + 32) & 0xFFFF;
+      long localHeaderOffset = centralDirectory.getInt(start + 42) & MAX_32_BIT;
+
+      byte[] name = new byte[nameLength];
+      centralDirectory.position(start + CENTRAL_HEADER_SIZE);
+      centralDirectory.get(name);
+      centralDirectory.position(
+          start + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength);
+
+      String nameString = new String(name, UTF_8);
+      if (!shouldKeep.test(nameString)) {
+        continue;
+      }
+      if (!names.add(nameString)) {
+        // ignore duplicate entries, on the assumption that their contents are identical
+        continue;
+      }
+      if ((flags & FLAG_ENCRYPTED) != 0) {
+        throw new UnsupportedZipException(jar, "encrypted entry " + nameString);
+      }
+      if (compressedSize == MAX_32_BIT
+          || uncompressedSize == MAX_32_BIT
+          || localHeaderOffset == MAX_32_BIT) {
+        throw new UnsupportedZipException(jar, "zip64 entry " + nameString);
+      }
+
+      localHeader.clear();
+      readFully(jar, in, localHeader, localHeaderOffset);
+      if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+        throw new UnsupportedZipException(jar, "missing local header for " + nameString);
+      }
+      long dataOffset =
+          localHeaderOffset
+              + LOCAL_HEADER_SIZE
+              + (localHeader.getShort(26) & 0xFFFF)
+              + (localHeader.getShort(28) & 0xFFFF);
+
+      Entry entry =
+          new Entry(
+              name,
+              flags & FLAG_UTF8,
+              method,
+              crc,
+              compressedSize,
+              uncompressedSize,
+              out.position());
+      if (entry.localHeaderOffset > MAX_32_BIT || written.size() == MAX_16_BIT) {
+        throw new UnsupportedZipException(jar, "output would require zip64");
+      }
+      writeLocalHeader(out, entry);
+      transferFully(jar, in, dataOffset, compressedSize, out);
+      written.add(entry);
+    }
+  }
+
+  private static ByteBuffer readCentralDirectory(Path jar, FileChannel in) throws IOException {
+    long size = in.size();
+    int tailLength = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+    ByteBuffer tail = littleEndian(tailLength);
+    readFully(jar, in, tail, size - tailLength);
+
+    int eocd = -1;
+    for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+      if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        eocd = i;
+        break;
+      }
+    }
+    if (eocd < 0) {
+      throw new UnsupportedZipException(jar, "no end of central directory record");
+    }
+    int entryCount = tail.getShort(eocd + 10) & 0xFFFF;
+    long directorySize = tail.getInt(eocd + 12) & MAX_32_BIT;
+    long directoryOffset = tail.getInt(eocd + 16) & MAX_32_BIT;
+    if (entryCount == MAX_16_BIT
+        || directorySize == MAX_32_BIT
+        || directoryOffset == MAX_32_BIT) {
+      throw new UnsupportedZipException(jar, "zip64 archive");
+    }
+    if (directoryOffset + directorySize != size - tailLength + eocd) {
+      throw new UnsupportedZipException(jar, "central directory is not where it is expected");
+    }
+    ByteBuffer centralDirectory = littleEndian((int) directorySize);
+    readFully(jar, in, centralDirectory, directoryOffset);
+    centralDirectory.flip();
+    return centralDirectory;
+  }
+
+  private static void writeLocalHeader(FileChannel out, Entry entry) throws IOException {
+    ByteBuffer header = littleEndian(LOCAL_HEADER_SIZE + entry.name.length);
+    header
+        .putInt(LOCAL_HEADER_SIGNATURE)
+        .putShort((short) VERSION_NEEDED)
+        .putShort((short) entry.flags)
+        .putShort((short) entry.method)
+        .putShort((short) 0) // time
+        .putShort((short) DOS_EPOCH_DATE)
+        .putInt(entry.crc)
+        .putInt((int) entry.compressedSize)
+        .putInt((int) entry.uncompressedSize)
+        .putShort((short) entry.name.length)
+        .putShort((short) 0) // extra field length
+        .put(entry.name);
+    header.flip();
+    writeFully(out, header);
+  }
+
+  private static void writeCentralDirectory(Path output, FileChannel out, List<Entry> entries)
+      throws IOException {
+    long directoryOffset = out.position();
+    int directorySize = 0;
+    for (Entry entry : entries) {
+      directorySize += CENTRAL_HEADER_SIZE + entry.name.length;
+    }
+    if (directoryOffset + directorySize > MAX_32_BIT) {
+      throw new UnsupportedZipException(output, "output would require zip64");
+    }
+    ByteBuffer directory = littleEndian(directorySize + END_OF_CENTRAL_DIRECTORY_SIZE);
+    for (Entry entry : entries) {
+      directory
+          .putInt(CENTRAL_HEADER_SIGNATURE)
+          .putShort((short) VERSION_NEEDED) // version made by
+          .putShort((short) VERSION_NEEDED)
+          .putShort((short) entry.flags)
+          .putShort((short) entry.method)
+          .putShort((short) 0) // time
+          .putShort((short) DOS_EPOCH_DATE)
+          .putInt(entry.crc)
+          .putInt((int) entry.compressedSize)
+          .putInt((int) entry.uncompressedSize)
+          .putShort((short) entry.name.length)
+          .putShort((short) 0) // extra field length
+          .putShort((short) 0) // comment length
+          .putShort((short) 0) // disk number start
+          .putShort((short) 0) // internal file attributes
+          .putInt(0) // external file attributes
+          .putInt((int) entry.localHeaderOffset)
+          .put(entry.name);
+    }
+    directory
+        .putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+        .putShort((short) 0) // number of this disk
+        .putShort((short) 0) // disk with the central directory
+        .putShort((short) entries.size())
+        .putShort((short) entries.size())
+        .putInt(directorySize)
+        .putInt((int) directoryOffset)
+        .putShort((short) 0); // comment length
+    directory.flip();
+    writeFully(out, directory);
+  }
+
+  private static ByteBuffer littleEndian(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static void readFully(Path jar, FileChannel in, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = in.read(buffer, position);
+      if (read < 0) {
+        throw new UnsupportedZipException(jar, "unexpected end of file");
+      }
+      position += read;
+    }
+  }
+
+  private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  private static void transferFully(
+      Path jar, FileChannel in, long position, long count, FileChannel out) throws IOException {
+    long end = position + count;
+    if (end > in.size()) {
+      throw new UnsupportedZipException(jar, "entry data extends beyond the end of file");
+    }
+    while (position < end) {
+      position += in.transferTo(position, end - position, out);
+    }
+  }
+}
@@ -20,12 +20,16 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import com.google.idea.blaze.aspect.JarFilter.JarFilterOptions;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -172,4 +176,58 @@ public class JarFilterTest {
             "gen/Gen2.java",
             "gen/Gen3.java");
   }
+
+  @Test
+  public void filteredEntriesKeepTheirContentAndFirstDuplicateWins() throws Exception {
+    File fooJava = folder.newFile("Foo.java");
+    Files.write("package com.google.foo; class Foo { class Inner {} }".getBytes(UTF_8), fooJava);
+
+    File firstJar = folder.newFile("first.jar");
+    try (ZipOutputStream zo = new ZipOutputStream(new FileOutputStream(firstJar))) {
+      zo.putNextEntry(new ZipEntry("com/google/foo/Foo.class"));
+      zo.write("first".getBytes(UTF_8));
+      zo.closeEntry();
+      zo.putNextEntry(new ZipEntry("com/google/foo/Foo.txt"));
+      zo.write("dropped".getBytes(UTF_8));
+      zo.closeEntry();
+    }
+    File secondJar = folder.newFile("second.jar");
+    try (ZipOutputStream zo = new ZipOutputStream(new FileOutputStream(secondJar))) {
+      zo.putNextEntry(new ZipEntry("com/google/foo/Foo.class"));
+      zo.write("second".getBytes(UTF_8));
+      zo.closeEntry();
+      zo.putNextEntry(new ZipEntry("com/google/foo/Foo$Inner.class"));
+      zo.write("inner".getBytes(UTF_8));
+      zo.closeEntry();
+    }
+    File filteredJar = folder.newFile("filtered.jar");
+
+    JarFilter.main(
+        JarFilter.parseArgs(
+            new String[] {
+              "--keep_java_file",
+              fooJava.getPath(),
+              "--filter_jar",
+              firstJar.getPath(),
+              "--filter_jar",
+              secondJar.getPath(),
+              "--filtered_jar",
+              filteredJar.getPath()
+            }));
+
+    Map<String, String> contents = new LinkedHashMap<>();
+    try (ZipFile zipFile = new ZipFile(filteredJar)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry zipEntry = entries.nextElement();
+        try (InputStream in = zipFile.getInputStream(zipEntry)) {
+          contents.put(zipEntry.getName(), new String(ByteStreams.toByteArray(in), UTF_8));
+        }
+      }
+    }
+    assertThat(contents)
+        .containsExactly(
+            "com/google/foo/Foo.class", "first", "com/google/foo/Foo$Inner.class", "inner")
+        .inOrder();
+  }
 }
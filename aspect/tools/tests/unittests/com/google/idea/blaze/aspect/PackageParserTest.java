@@ -24,15 +24,13 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.devtools.intellij.aspect.Common.ArtifactLocation;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.MessageLite;
-import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -70,9 +68,8 @@ public class PackageParserTest {
     }
 
     @Override
-    public BufferedReader getReader(Path file) throws IOException {
-      InputStream input = sources.get(file);
-      return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    public InputStream getInputStream(Path file) throws IOException {
+      return sources.get(file);
     }
 
     @Override
@@ -203,6 +200,21 @@ public class PackageParserTest {
     assertThat(map).containsEntry(DUMMY_SCALA_DERIVED_ARTIFACT, "com.other");
   }
 
+  @Test
+  public void testUnchangedDigestIsNotReparsed() throws Exception {
+    mockIoProvider.addSource(DUMMY_SOURCE_ARTIFACT, "package com.google;\n public class Bla {}\"");
+    ImmutableMap<Path, ByteString> digests =
+        ImmutableMap.of(
+            Paths.get(DUMMY_SOURCE_ARTIFACT.getRelativePath()), ByteString.copyFromUtf8("digest"));
+    assertThat(parser.parsePackageStrings(mockIoProvider.getSourceLocations(), digests))
+        .containsExactly(DUMMY_SOURCE_ARTIFACT, "com.google");
+
+    // The mock source stream has been consumed, so a second read would find no package.
+    assertThat(parser.parsePackageStrings(mockIoProvider.getSourceLocations(), digests))
+        .containsExactly(DUMMY_SOURCE_ARTIFACT, "com.google");
+    assertThat(parsePackageStrings()).isEmpty();
+  }
+
   @Test
   public void testWriteEmptyMap() throws Exception {
     parser.writeManifest(Maps.newHashMap(), Paths.get("/java/com/google/test.manifest"));
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.filecache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * On disk index of the entries of a {@link LocalArtifactCache}.
+ *
+ * <p>The index consists of a binary snapshot, and a journal of the changes made since the snapshot
+ * was written. Individual changes are appended to the journal as they happen, so an interrupted
+ * sync doesn't lose track of the artifacts it already copied; {@link #compact} folds the journal
+ * back into the snapshot.
+ */
+final class ArtifactCacheIndex {
+  private static final int MAGIC = 0x41434958; // "ACIX"
+  private static final int VERSION = 1;
+
+  private static final byte RECORD_PUT = 1;
+  private static final byte RECORD_REMOVE = 2;
+
+  /** A cache entry, along with the bookkeeping needed for eviction. */
+  static final class Entry {
+    final CacheEntry cacheEntry;
+    final long size;
+    private volatile long lastUsed;
+
+    Entry(CacheEntry cacheEntry, long size, long lastUsed) {
+      this.cacheEntry = cacheEntry;
+      this.size = size;
+      this.lastUsed = lastUsed;
+    }
+
+    long getLastUsed() {
+      return lastUsed;
+    }
+
+    void markUsed(long timestamp) {
+      lastUsed = timestamp;
+    }
+  }
+
+  private final Path snapshotFile;
+  private final Path journalFile;
+
+  @Nullable private DataOutputStream journal;
+
+  ArtifactCacheIndex(Path snapshotFile) {
+    this.snapshotFile = snapshotFile;
+    this.journalFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".journal");
+  }
+
+  /** Returns whether an index has been written. */
+  boolean exists() {
+    return Files.exists(snapshotFile) || Files.exists(journalFile);
+  }
+
+  /** Returns the file names the index occupies in its directory. */
+  ImmutableSet<String> getFileNames() {
+    return ImmutableSet.of(
+        snapshotFile.getFileName().toString(), journalFile.getFileName().toString());
+  }
+
+  /**
+   * Reads the snapshot and replays the journal on top of it. A truncated trailing journal record,
+   * as left behind by a crash, is ignored.
+   */
+  synchronized Map<String, Entry> load() throws IOException {
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    if (Files.exists(snapshotFile)) {
+      entries.putAll(readSnapshot(snapshotFile));
+    }
+    if (Files.exists(journalFile)) {
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile)))) {
+        while (true) {
+          int record = in.read();
+          if (record == RECORD_PUT) {
+            Entry entry = readEntry(in);
+            entries.put(entry.cacheEntry.getCacheKey(), entry);
+          } else if (record == RECORD_REMOVE) {
+            entries.remove(in.readUTF());
+          } else {
+            break;
+          }
+        }
+      } catch (EOFException e) {
+        // the last record was only partially written
+      }
+    }
+    return entries;
+  }
+
+  /** Appends the addition or update of an entry to the journal. */
+  synchronized void journalPut(Entry entry) throws IOException {
+    DataOutputStream out = openJournal();
+    out.writeByte(RECORD_PUT);
+    writeEntry(out, entry);
+    out.flush();
+  }
+
+  /** Appends the removal of an entry to the journal. */
+  synchronized void journalRemove(String cacheKey) throws IOException {
+    DataOutputStream out = openJournal();
+    out.writeByte(RECORD_REMOVE);
+    out.writeUTF(cacheKey);
+    out.flush();
+  }
+
+  /** Atomically replaces the snapshot with the given entries, and discards the journal. */
+  synchronized void compact(Collection<Entry> entries) throws IOException {
+    Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(entries.size());
+      for (Entry entry : entries) {
+        writeEntry(out, entry);
+      }
+    }
+    Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+    closeJournal();
+    Files.deleteIfExists(journalFile);
+  }
+
+  /** Closes the journal. Further journal writes will reopen it. */
+  synchronized void closeJournal() throws IOException {
+    if (journal != null) {
+      journal.close();
+      journal = null;
+    }
+  }
+
+  private DataOutputStream openJournal() throws IOException {
+    if (journal == null) {
+      journal =
+          new DataOutputStream(
+              new BufferedOutputStream(
+                  new FileOutputStream(journalFile.toFile(), /* append= */ true)));
+    }
+    return journal;
+  }
+
+  @VisibleForTesting
+  static Map<String, Entry> readSnapshot(Path snapshotFile) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unrecognized artifact cache index " + snapshotFile);
+      }
+      int count = in.readInt();
+      Map<String, Entry> entries = new LinkedHashMap<>();
+      for (int i = 0; i < count; i++) {
+        Entry entry = readEntry(in);
+        entries.put(entry.cacheEntry.getCacheKey(), entry);
+      }
+      return entries;
+    }
+  }
+
+  private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+    CacheEntry cacheEntry = entry.cacheEntry;
+    out.writeUTF(cacheEntry.getCacheKey());
+    out.writeUTF(cacheEntry.getFileName());
+    out.writeLong(entry.size);
+    out.writeLong(entry.getLastUsed());
+    ImmutableSet<ArtifactMetadata> artifacts = cacheEntry.getArtifacts();
+    out.writeInt(artifacts.size());
+    for (ArtifactMetadata artifact : artifacts) {
+      out.writeUTF(artifact.getRelativePath());
+      out.writeUTF(artifact.getIdentifier());
+    }
+  }
+
+  private static Entry readEntry(DataInputStream in) throws IOException {
+    String cacheKey = in.readUTF();
+    String fileName = in.readUTF();
+    long size = in.readLong();
+    long lastUsed = in.readLong();
+    int artifactCount = in.readInt();
+    ImmutableSet.Builder<ArtifactMetadata> artifacts = ImmutableSet.builder();
+    for (int i = 0; i < artifactCount; i++) {
+      artifacts.add(new ArtifactMetadata(in.readUTF(), in.readUTF()));
+    }
+    return new Entry(new CacheEntry(cacheKey, fileName, artifacts.build()), size, lastUsed);
+  }
+}
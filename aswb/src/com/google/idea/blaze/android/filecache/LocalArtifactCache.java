@@ -15,7 +15,9 @@
  */
 package com.google.idea.blaze.android.filecache;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Arrays.stream;
+import static java.util.Comparator.comparingLong;
 import static java.util.stream.Collectors.toCollection;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -23,6 +25,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.idea.blaze.android.filecache.ArtifactCacheIndex.Entry;
 import com.google.idea.blaze.base.async.FutureUtil;
 import com.google.idea.blaze.base.command.buildresult.BlazeArtifact;
 import com.google.idea.blaze.base.command.buildresult.OutputArtifactWithoutDigest;
@@ -34,25 +37,26 @@ import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.output.IssueOutput;
 import com.google.idea.blaze.base.scope.scopes.TimingScope.EventType;
 import com.google.idea.blaze.common.PrintOutput;
+import com.google.idea.blaze.common.TimeSource;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -79,15 +83,26 @@ import javax.annotation.Nullable;
  * which captures metadata about the artifact including data like timestamp or objfs blobId that
  * allows it to determine when an artifact has been updated.
  *
- * <p>An in memory map of these CacheEntries allows for quick retrieval of the cached objects. But
- * this map is also persisted to the disk after calls to {@link #clearCache} and {@link #putAll} and
- * is expected to be re-initialized from the disk via a call to {@link #initialize}.
+ * <p>An in memory map of these CacheEntries allows for quick retrieval of the cached objects. It
+ * is safe to read concurrently, so {@link #get} never waits for a {@link #putAll} in progress.
+ * Changes to the map are journaled to an {@link ArtifactCacheIndex} as they happen, compacted
+ * after calls to {@link #clearCache} and {@link #putAll}, and re-initialized from the disk via a
+ * call to {@link #initialize}.
+ *
+ * <p>Once the total size of the cached files exceeds the cache's size budget, the least recently
+ * used entries not referenced by the latest {@link #putAll} are evicted.
  */
 public class LocalArtifactCache implements ArtifactCache {
   private static final Logger logger = Logger.getInstance(LocalArtifactCache.class);
 
   /** Name of file that contains the cache state. */
-  @VisibleForTesting static final String CACHE_DATA_FILENAME = "cache_data.json";
+  @VisibleForTesting static final String CACHE_DATA_FILENAME = "cache_index.bin";
+
+  /** Name of the file that contained the cache state before it was moved to an index. */
+  private static final String LEGACY_CACHE_DATA_FILENAME = "cache_data.json";
+
+  /** The total size of cached files above which unused entries are evicted. */
+  private static final long DEFAULT_MAX_CACHE_SIZE_BYTES = 8L * 1024 * 1024 * 1024;
 
   private final Project project;
 
@@ -97,16 +112,43 @@ public class LocalArtifactCache implements ArtifactCache {
   /** Absolute path to the directory where artifacts will be stored. */
   private final Path cacheDir;
 
+  private final long maxCacheSizeBytes;
+
+  /** The clock entries are stamped with when they're added or used. */
+  private final TimeSource timeSource;
+
+  private final ArtifactCacheIndex index;
+
   /**
    * Maps cache key to CacheEntry. A cache key is a String to uniquely identify a CacheEntry for a
    * specific set of Artifacts. The cache key is the same as what is stored in CacheEntry.
+   *
+   * <p>Only modified while holding the lock on this object.
    */
-  private final Map<String, CacheEntry> cacheState = new HashMap<>();
+  private final Map<String, Entry> cacheState = new ConcurrentHashMap<>();
 
   public LocalArtifactCache(Project project, String cacheName, Path cacheDir) {
+    this(project, cacheName, cacheDir, DEFAULT_MAX_CACHE_SIZE_BYTES);
+  }
+
+  public LocalArtifactCache(
+      Project project, String cacheName, Path cacheDir, long maxCacheSizeBytes) {
+    this(project, cacheName, cacheDir, maxCacheSizeBytes, Instant::now);
+  }
+
+  @VisibleForTesting
+  LocalArtifactCache(
+      Project project,
+      String cacheName,
+      Path cacheDir,
+      long maxCacheSizeBytes,
+      TimeSource timeSource) {
     this.project = project;
     this.cacheName = cacheName;
     this.cacheDir = cacheDir;
+    this.maxCacheSizeBytes = maxCacheSizeBytes;
+    this.timeSource = timeSource;
+    this.index = new ArtifactCacheIndex(cacheDir.resolve(CACHE_DATA_FILENAME));
   }
 
   /**
@@ -128,6 +170,7 @@ public class LocalArtifactCache implements ArtifactCache {
   @Override
   public synchronized void clearCache() {
     try {
+      index.closeJournal();
       // List and delete all files in the cache directory
       File[] filesInDir = FileOperationProvider.getInstance().listFiles(cacheDir.toFile());
       if (filesInDir == null) {
@@ -137,7 +180,7 @@ public class LocalArtifactCache implements ArtifactCache {
       ImmutableList<ListenableFuture<?>> deletionFutures =
           deleteFiles(ImmutableList.copyOf(filesInDir));
       Futures.allAsList(deletionFutures).get();
-    } catch (ExecutionException e) {
+    } catch (IOException | ExecutionException e) {
       logger.warn("Could not delete contents of " + cacheDir, e);
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
@@ -177,15 +220,18 @@ public class LocalArtifactCache implements ArtifactCache {
 
     // track which artifacts were updated
     // All artifacts not already in cache, and artifacts whose CacheEntry doesn't equal existing
-    // CacheKey are considered "updated"
+    // CacheKey are considered "updated". The index is trusted on startup without listing the cache
+    // directory, so artifacts whose cached file has gone missing are also updated.
     ImmutableList<String> updatedKeys =
         keyToCacheEntry.entrySet().stream()
             .filter(
                 kv ->
                     !cacheState.containsKey(kv.getKey())
-                        || !cacheState.get(kv.getKey()).equals(kv.getValue()))
-            .map(Entry::getKey)
-            .collect(ImmutableList.toImmutableList());
+                        || !cacheState.get(kv.getKey()).cacheEntry.equals(kv.getValue())
+                        || !FileOperationProvider.getInstance()
+                            .exists(getPathToCachedFile(kv.getValue().getFileName()).toFile()))
+            .map(Map.Entry::getKey)
+            .collect(toImmutableList());
     ImmutableMap<String, OutputArtifactWithoutDigest> updatedKeyToArtifact =
         updatedKeys.stream().collect(ImmutableMap.toImmutableMap(k -> k, keyToArtifact::get));
     ImmutableMap<String, CacheEntry> updatedKeyToCacheEntry =
@@ -197,7 +243,7 @@ public class LocalArtifactCache implements ArtifactCache {
       removedKeys =
           cacheState.keySet().stream()
               .filter(k -> !keyToCacheEntry.containsKey(k))
-              .collect(ImmutableList.toImmutableList());
+              .collect(toImmutableList());
     }
 
     try {
@@ -216,9 +262,10 @@ public class LocalArtifactCache implements ArtifactCache {
       List<ListenableFuture<String>> copyFutures =
           copyLocally(updatedKeyToArtifact, updatedKeyToCacheEntry);
       List<String> copiedKeys = Futures.allAsList(copyFutures).get();
+      long now = timeSource.now().toEpochMilli();
       copiedKeys.stream()
           .filter(k -> !k.isEmpty())
-          .forEach(k -> cacheState.put(k, updatedKeyToCacheEntry.get(k)));
+          .forEach(k -> putEntry(updatedKeyToCacheEntry.get(k), now));
 
       if (!copiedKeys.isEmpty()) {
         context.output(
@@ -229,13 +276,15 @@ public class LocalArtifactCache implements ArtifactCache {
       // removedKeys will be empty if removeMissingArtifacts is false
       List<ListenableFuture<String>> removeFutures = deleteCachedFiles(removedKeys);
       List<String> deletedKeys = Futures.allAsList(removeFutures).get();
-      deletedKeys.forEach(cacheState::remove);
+      deletedKeys.forEach(this::removeEntry);
 
       if (!deletedKeys.isEmpty()) {
         context.output(
             PrintOutput.log(
                 String.format("Removed %d files from %s", deletedKeys.size(), cacheName)));
       }
+
+      evictLeastRecentlyUsed(keyToCacheEntry.keySet(), context);
     } catch (ExecutionException e) {
       logger.warn(String.format("%s synchronization didn't complete", cacheName), e);
       IssueOutput.warn(
@@ -251,9 +300,14 @@ public class LocalArtifactCache implements ArtifactCache {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>This method doesn't block on a concurrent {@link #putAll}.
+   */
   @Override
   @Nullable
-  public synchronized Path get(OutputArtifactWithoutDigest artifact) {
+  public Path get(OutputArtifactWithoutDigest artifact) {
     CacheEntry queriedEntry;
     try {
       queriedEntry = CacheEntry.forArtifact(artifact);
@@ -261,17 +315,78 @@ public class LocalArtifactCache implements ArtifactCache {
       return null;
     }
     String cacheKey = queriedEntry.getCacheKey();
-    CacheEntry cacheEntry = cacheState.get(cacheKey);
-    if (cacheEntry == null) {
+    Entry entry = cacheState.get(cacheKey);
+    if (entry == null) {
       return null;
     }
-    return getPathToCachedFile(cacheEntry.getFileName());
+    entry.markUsed(timeSource.now().toEpochMilli());
+    return getPathToCachedFile(entry.cacheEntry.getFileName());
+  }
+
+  /** Tracks the given entry, journaling the change to the index. */
+  private void putEntry(CacheEntry cacheEntry, long timestamp) {
+    long size =
+        FileOperationProvider.getInstance()
+            .getFileSize(getPathToCachedFile(cacheEntry.getFileName()).toFile());
+    Entry entry = new Entry(cacheEntry, size, timestamp);
+    cacheState.put(cacheEntry.getCacheKey(), entry);
+    try {
+      index.journalPut(entry);
+    } catch (IOException e) {
+      logger.warn(String.format("Failed to journal %s entry", cacheName), e);
+    }
+  }
+
+  /** Stops tracking the entry for the given key, journaling the change to the index. */
+  private void removeEntry(String cacheKey) {
+    if (cacheState.remove(cacheKey) == null) {
+      return;
+    }
+    try {
+      index.journalRemove(cacheKey);
+    } catch (IOException e) {
+      logger.warn(String.format("Failed to journal %s entry", cacheName), e);
+    }
+  }
+
+  /**
+   * Evicts the least recently used entries, other than those in {@code keysToKeep}, until the total
+   * size of the cached files fits in {@link #maxCacheSizeBytes}.
+   */
+  private void evictLeastRecentlyUsed(Set<String> keysToKeep, BlazeContext context)
+      throws ExecutionException, InterruptedException {
+    long totalSize = cacheState.values().stream().mapToLong(e -> e.size).sum();
+    if (totalSize <= maxCacheSizeBytes) {
+      return;
+    }
+    ImmutableList<Entry> candidates =
+        cacheState.values().stream()
+            .filter(e -> !keysToKeep.contains(e.cacheEntry.getCacheKey()))
+            .sorted(comparingLong(Entry::getLastUsed))
+            .collect(toImmutableList());
+    List<String> evictedKeys = new ArrayList<>();
+    for (Entry entry : candidates) {
+      if (totalSize <= maxCacheSizeBytes) {
+        break;
+      }
+      evictedKeys.add(entry.cacheEntry.getCacheKey());
+      totalSize -= entry.size;
+    }
+    List<String> deletedKeys =
+        Futures.allAsList(deleteCachedFiles(ImmutableList.copyOf(evictedKeys))).get();
+    deletedKeys.forEach(this::removeEntry);
+    if (!deletedKeys.isEmpty()) {
+      context.output(
+          PrintOutput.log(
+              String.format(
+                  "Evicted %d least recently used files from %s", deletedKeys.size(), cacheName)));
+    }
   }
 
   /**
-   * Loads cache information from {@link #cacheDir} and ensures the that the serialized cache
-   * information is consistent between serialized json and files on disk. If inconsistent cache
-   * state is found, makes a best effort to fix cache state and make it consistent.
+   * Loads cache information from {@link #cacheDir}. The index is trusted if it can be read; if not,
+   * ensures the that the cache information is consistent with the files on disk, making a best
+   * effort to fix cache state and make it consistent.
    */
   private void loadCacheData() {
     File cacheDirFile = cacheDir.toFile();
@@ -284,39 +399,69 @@ public class LocalArtifactCache implements ArtifactCache {
           "Cache Directory '" + cacheDirFile + "' is not a valid directory");
     }
 
+    cacheState.clear();
+    if (index.exists()) {
+      try {
+        cacheState.putAll(index.load());
+        return;
+      } catch (IOException e) {
+        logger.warn(String.format("Could not read %s index. Rebuilding it.", cacheName), e);
+      }
+    }
+
     // List files in the cache directory to ensure that the cache is in a consistent state.
     File[] allFilesInCacheDir = FileOperationProvider.getInstance().listFiles(cacheDirFile);
     if (allFilesInCacheDir == null) {
       throw new IllegalArgumentException("Could not list files in directory: " + cacheDirFile);
     }
 
-    // All files in cache directory except the serialized cache state json
+    // All files in cache directory except the serialized cache state
+    Set<String> cacheDataFileNames = new HashSet<>(index.getFileNames());
+    cacheDataFileNames.add(LEGACY_CACHE_DATA_FILENAME);
     Set<File> cachedFiles =
         stream(allFilesInCacheDir)
-            .filter(s -> !s.getName().equals(CACHE_DATA_FILENAME))
+            .filter(s -> !cacheDataFileNames.contains(s.getName()))
             .collect(toCollection(HashSet::new));
 
-    File cacheDataFile = getCacheDataFile();
+    File legacyCacheDataFile = cacheDir.resolve(LEGACY_CACHE_DATA_FILENAME).toFile();
     // No cache data file, but there are other files present in cache directory
-    if (!FileOperationProvider.getInstance().exists(getCacheDataFile()) && !cachedFiles.isEmpty()) {
+    if (!FileOperationProvider.getInstance().exists(legacyCacheDataFile)
+        && !cachedFiles.isEmpty()) {
       logger.warn(
           String.format(
               "%s does not exist, but %s contains cached files. Clearing directory for a clean"
                   + " start.",
-              cacheDataFile, cacheDirFile));
+              getCacheDataFile(), cacheDirFile));
       clearCache();
       return;
     }
 
-    // Read cache state from disk
-    ArtifactCacheData artifactCacheData = readJsonFromDisk(cacheDataFile);
-    cacheState.clear();
-    artifactCacheData.getCacheEntries().forEach(e -> cacheState.put(e.getCacheKey(), e));
+    // Migrate the cache state from the legacy json file, if present
+    ArtifactCacheData artifactCacheData = readJsonFromDisk(legacyCacheDataFile);
+    long now = timeSource.now().toEpochMilli();
+    artifactCacheData
+        .getCacheEntries()
+        .forEach(
+            e ->
+                cacheState.put(
+                    e.getCacheKey(),
+                    new Entry(
+                        e,
+                        FileOperationProvider.getInstance()
+                            .getFileSize(getPathToCachedFile(e.getFileName()).toFile()),
+                        now)));
 
     // Remove any references to files that no longer exists in file system
     removeStaleReferences(cachedFiles);
     // Remove any file in FS that is not referenced by the cache
     removeUntrackedFiles(cachedFiles);
+
+    writeCacheData();
+    try {
+      Files.deleteIfExists(legacyCacheDataFile.toPath());
+    } catch (IOException e) {
+      logger.warn(e);
+    }
   }
 
   /**
@@ -347,7 +492,7 @@ public class LocalArtifactCache implements ArtifactCache {
                       // return empty string on failure to copy
                       return "";
                     }))
-        .collect(ImmutableList.toImmutableList());
+        .collect(toImmutableList());
   }
 
   private static void copyLocally(OutputArtifactWithoutDigest blazeArtifact, Path destinationPath)
@@ -366,7 +511,7 @@ public class LocalArtifactCache implements ArtifactCache {
     return removedKeys.stream()
         // Create a (key, file) pair. This is created so the futures do not hold a reference to the
         // current object
-        .map(k -> Pair.create(k, cacheDir.resolve(cacheState.get(k).getFileName())))
+        .map(k -> Pair.create(k, cacheDir.resolve(cacheState.get(k).cacheEntry.getFileName())))
         .map(
             pair ->
                 FetchExecutor.EXECUTOR.submit(
@@ -381,7 +526,7 @@ public class LocalArtifactCache implements ArtifactCache {
                       // return empty string on failure to delete
                       return "";
                     }))
-        .collect(ImmutableList.toImmutableList());
+        .collect(toImmutableList());
   }
 
   /**
@@ -391,6 +536,7 @@ public class LocalArtifactCache implements ArtifactCache {
   private void removeStaleReferences(Set<File> cachedFiles) {
     Map<String, String> staleFilesToKey =
         cacheState.values().stream()
+            .map(e -> e.cacheEntry)
             .collect(Collectors.toMap(CacheEntry::getFileName, CacheEntry::getCacheKey));
     cachedFiles.stream().map(File::getName).forEach(staleFilesToKey::remove);
 
@@ -403,7 +549,6 @@ public class LocalArtifactCache implements ArtifactCache {
             "%d invalid references in %s. Removing invalid references.",
             staleFilesToKey.size(), cacheName));
     staleFilesToKey.values().forEach(cacheState::remove);
-    writeCacheData();
   }
 
   /** Deletes files in {@code cachedFiles} that are not tracked in {@link #cacheState}. */
@@ -411,7 +556,7 @@ public class LocalArtifactCache implements ArtifactCache {
     // Files in cachedFiles not referenced by cacheState
     Set<File> untrackedFiles = new HashSet<>(cachedFiles);
     cacheState.values().stream()
-        .map(CacheEntry::getFileName)
+        .map(e -> e.cacheEntry.getFileName())
         .map(this::getPathToCachedFile)
         .map(Path::toFile)
         .forEach(untrackedFiles::remove);
@@ -446,40 +591,21 @@ public class LocalArtifactCache implements ArtifactCache {
                         logger.warn(e);
                       }
                     }))
-        .collect(ImmutableList.toImmutableList());
+        .collect(toImmutableList());
   }
 
-  /** Serializes {@link #cacheState} to a file on disk. */
+  /** Compacts {@link #cacheState} into the index on disk. */
   private void writeCacheData() {
-    File cacheDataFile = getCacheDataFile();
-    ArtifactCacheData artifactCacheData = new ArtifactCacheData(cacheState.values());
-
     try {
-      ListenableFuture<?> writeFuture = writeCacheData(cacheDir, cacheDataFile, artifactCacheData);
-      writeFuture.get();
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-    } catch (ExecutionException e) {
-      logger.warn(String.format("Failed to write cache state file %s", cacheDataFile));
+      index.compact(cacheState.values());
+      logCacheInfo(cacheDir.toFile());
+    } catch (IOException e) {
+      logger.warn(String.format("Failed to write cache state file %s", getCacheDataFile()), e);
     }
   }
 
-  private static ListenableFuture<?> writeCacheData(
-      Path cacheDir, File cacheDataFile, ArtifactCacheData artifactCacheData) {
-    // Logger will catch any issues with writing the cache state
-    return FetchExecutor.EXECUTOR.submit(
-        () -> {
-          try {
-            writeJsonToDisk(cacheDataFile, artifactCacheData);
-            logCacheInfo(cacheDir.toFile());
-          } catch (IOException e) {
-            logger.warn(String.format("Failed to write cache state file %s", cacheDataFile));
-          }
-        });
-  }
-
-  @VisibleForTesting
-  public static ArtifactCacheData readJsonFromDisk(File cacheDataFile) {
+  /** Reads the cache state written by earlier versions, for migration to the index. */
+  private static ArtifactCacheData readJsonFromDisk(File cacheDataFile) {
     if (!FileOperationProvider.getInstance().exists(cacheDataFile)) {
       return new ArtifactCacheData(ImmutableList.of());
     }
@@ -492,13 +618,6 @@ public class LocalArtifactCache implements ArtifactCache {
     return new ArtifactCacheData(ImmutableList.of());
   }
 
-  private static void writeJsonToDisk(File cacheDataFile, ArtifactCacheData artifactCacheData)
-      throws IOException {
-    try (OutputStream stream = new FileOutputStream(cacheDataFile)) {
-      artifactCacheData.writeJson(stream);
-    }
-  }
-
   private static void logCacheInfo(File cacheDirFile) {
     long cacheDirSize = FileOperationProvider.getInstance().getFileSize(cacheDirFile);
 
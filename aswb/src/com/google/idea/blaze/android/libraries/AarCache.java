@@ -19,7 +19,9 @@ package com.google.idea.blaze.android.libraries;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -28,6 +30,7 @@ import com.google.idea.blaze.base.prefetch.FetchExecutor;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Collection;
 import javax.annotation.Nullable;
@@ -92,11 +95,15 @@ public class AarCache {
    *     time stamp file will be updated the same as that of the aar file. So that it can be used to
    *     decide if the aar file need to be updated next time. Time stamp file will use creation time
    *     as modified time if null is provided.
+   * @param digest the digest of the aar, if known. It's stored as the content of the stamp file,
+   *     see {@link #readDigest}.
    */
-  public File createTimeStampFile(String key, @Nullable File aarFile) throws IOException {
+  public File createTimeStampFile(String key, @Nullable File aarFile, @Nullable String digest)
+      throws IOException {
     FileOperationProvider ops = FileOperationProvider.getInstance();
     File stampFile = new File(aarDirForKey(key), STAMP_FILE_NAME);
-    stampFile.createNewFile();
+    // always rewrite the stamp, so that its modified time is updated even if aarFile is null
+    Files.write(stampFile.toPath(), Strings.nullToEmpty(digest).getBytes(UTF_8));
     if (aarFile != null) {
       long sourceTime = ops.getFileModifiedTime(aarFile);
       if (!ops.setFileModifiedTime(stampFile, sourceTime)) {
@@ -106,6 +113,24 @@ public class AarCache {
     return stampFile;
   }
 
+  /**
+   * Returns the digest of the aar which was last unpacked for the given key, or null if it's
+   * unknown. An aar with the same digest doesn't need to be extracted again.
+   */
+  @Nullable
+  public String readDigest(String key) {
+    File stampFile = new File(aarDirForKey(key), STAMP_FILE_NAME);
+    if (!FileOperationProvider.getInstance().exists(stampFile)) {
+      return null;
+    }
+    try {
+      return Strings.emptyToNull(new String(Files.readAllBytes(stampFile.toPath()), UTF_8));
+    } catch (IOException e) {
+      logger.warn("Failed to read AAR cache stamp " + stampFile, e);
+      return null;
+    }
+  }
+
   /**
    * Returns a map of cache keys for the currently-cached files, along with a representative file
    * used for timestamp-based diffing.
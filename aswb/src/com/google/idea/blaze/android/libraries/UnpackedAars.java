@@ -21,6 +21,7 @@ import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultiset;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.idea.blaze.android.sync.model.AarLibrary;
@@ -195,10 +196,22 @@ public class UnpackedAars {
       }
 
       // update cache files
-      Unpacker.unpack(projectState, updatedKeys, aarCache);
+      ImmutableMultiset<Unpacker.Result> results =
+          Unpacker.unpack(projectState, updatedKeys, aarCache);
 
-      if (!updatedKeys.isEmpty()) {
-        context.output(PrintOutput.log(String.format("Copied %d AARs", updatedKeys.size())));
+      int copied = updatedKeys.size() - results.count(Unpacker.Result.FAILED);
+      if (copied > 0) {
+        context.output(PrintOutput.log(String.format("Copied %d AARs", copied)));
+      }
+      int unchanged = results.count(Unpacker.Result.REUSED);
+      if (unchanged > 0) {
+        context.output(
+            PrintOutput.log(
+                String.format("Skipped extracting %d AARs with unchanged contents", unchanged)));
+      }
+      int failed = results.count(Unpacker.Result.FAILED);
+      if (failed > 0) {
+        context.output(PrintOutput.error(String.format("Failed to unpack %d AARs", failed)));
       }
 
     } catch (InterruptedException e) {
@@ -16,19 +16,23 @@
 
 package com.google.idea.blaze.android.libraries;
 
+import static com.android.SdkConstants.ANDROID_MANIFEST_XML;
+import static com.android.SdkConstants.FD_RES;
 import static com.android.SdkConstants.FN_LINT_JAR;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.idea.blaze.base.async.executor.ExecutorLane;
 import com.google.idea.blaze.base.command.buildresult.BlazeArtifact;
 import com.google.idea.blaze.base.command.buildresult.BlazeArtifact.LocalFileArtifact;
+import com.google.idea.blaze.base.command.buildresult.OutputArtifact;
 import com.google.idea.blaze.base.io.FileOperationProvider;
-import com.google.idea.blaze.base.prefetch.FetchExecutor;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.util.io.FileUtil;
-import com.intellij.util.io.ZipUtil;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -37,9 +41,14 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import javax.annotation.Nullable;
 
 /**
  * Unzip prefetched aars to local cache directories. AARs are directories with many files. {@see
@@ -59,61 +68,98 @@ import java.util.concurrent.ExecutionException;
  *       org.jetbrains.android.uipreview.ModuleClassLoader}, for that possible assumption.
  *   <li>The IDE may want the AndroidManifest.xml as well.
  * </ul>
+ *
+ * <p>Only those entries are extracted (see {@link #shouldExtract}); native libraries, bundled jars,
+ * proguard specs etc. are skipped without being inflated. AARs are read in a single streaming pass,
+ * so remote AARs don't need to be copied to a temporary file first.
  */
 public final class Unpacker {
   private static final Logger logger = Logger.getInstance(Unpacker.class);
-  // Jars that are expected to be extracted from .aar to local
-  private static final ImmutableSet<String> EXPECTED_JARS =
-      ImmutableSet.of(FN_LINT_JAR, "inspector.jar");
 
-  /** Updated prefetched aars to aar directory. */
-  public static void unpack(
+  // Files at the root of the .aar that the IDE reads. Other jars are skipped: we copy the jar in
+  // AarLibraryContents instead, which gives us freedom in the future to use an ijar or header jar,
+  // which is more lightweight. lint.jar and inspector.jar are not collected as JarLibrary, so we
+  // are not able to copy them from AarLibraryContents, but we need them for some functions e.g.
+  // lint check, layout inspection etc.
+  private static final ImmutableSet<String> EXTRACTED_FILES =
+      ImmutableSet.of(
+          ANDROID_MANIFEST_XML,
+          "R.txt",
+          "public.txt",
+          "annotations.zip",
+          FN_LINT_JAR,
+          "inspector.jar");
+
+  // Directories of the .aar that are extracted in full.
+  private static final ImmutableSet<String> EXTRACTED_DIRECTORIES =
+      ImmutableSet.of(FD_RES, "assets");
+
+  /** The outcome of unpacking a single aar. */
+  public enum Result {
+    /** The aar was extracted to its directory. */
+    EXTRACTED,
+    /** The aar's contents were unchanged, so its existing directory was kept. */
+    REUSED,
+    /** The aar or one of its jars couldn't be copied to its directory. */
+    FAILED,
+  }
+
+  /**
+   * Updated prefetched aars to aar directory.
+   *
+   * @return the result of unpacking each updated aar
+   */
+  public static ImmutableMultiset<Result> unpack(
       ImmutableMap<String, AarLibraryContents> toCache, Set<String> updatedKeys, AarCache aarCache)
       throws ExecutionException, InterruptedException {
-    unpackAarsToDir(toCache, updatedKeys, aarCache);
+    return unpackAarsToDir(toCache, updatedKeys, aarCache);
   }
 
-  private static void unpackAarsToDir(
+  private static ImmutableMultiset<Result> unpackAarsToDir(
       ImmutableMap<String, AarLibraryContents> toCache, Set<String> updatedKeys, AarCache aarCache)
       throws ExecutionException, InterruptedException {
     FileOperationProvider ops = FileOperationProvider.getInstance();
-    List<ListenableFuture<?>> futures = new ArrayList<>();
+    List<ListenableFuture<Result>> futures = new ArrayList<>();
+    // unpacking is mostly spent inflating zip entries, so it shares the CPU-sized compute lane
+    // rather than the much wider fetch executor.
     updatedKeys.forEach(
         key ->
             futures.add(
-                FetchExecutor.EXECUTOR.submit(
-                    () -> unpackAarToDir(ops, toCache.get(key), aarCache))));
-    Futures.allAsList(futures).get();
+                ExecutorLane.COMPUTE
+                    .executor()
+                    .submit(() -> unpackAarToDir(ops, toCache.get(key), aarCache))));
+    return ImmutableMultiset.copyOf(Futures.allAsList(futures).get());
   }
 
   /**
    * Each .aar file will be unpacked as <key_from_artifact_location>.aar directories in cache
    * directory. A timestamp file will be created to decide if updated is needed when a new .aar file
-   * with same name is found next time.
+   * with same name is found next time. The timestamp file also records the digest of the .aar, so
+   * that an .aar which was rebuilt with identical contents isn't extracted again.
+   *
+   * @return whether the aar was extracted, its existing directory reused, or unpacking failed
    */
-  private static void unpackAarToDir(
+  private static Result unpackAarToDir(
       FileOperationProvider ops, AarLibraryContents aarLibraryContents, AarCache aarCache) {
-    String cacheKey = UnpackedAarUtils.getAarDirName(aarLibraryContents.aar());
+    BlazeArtifact aar = aarLibraryContents.aar();
+    String cacheKey = UnpackedAarUtils.getAarDirName(aar);
+    String digest = getDigest(aar);
+    Result result = Result.REUSED;
     try {
-      File aarDir = aarCache.recreateAarDir(ops, cacheKey);
-      // TODO(brendandouglas): decompress via ZipInputStream so we don't require a local file
-      File toCopy = getOrCreateLocalFile(aarLibraryContents.aar());
-      ZipUtil.extract(
-          toCopy,
-          aarDir,
-          // Skip jars except EXPECTED_JARS. We will copy jar in AarLibraryContents instead.
-          // That could give us freedom in the future to use an ijar or header jar instead,
-          // which is more lightweight. For EXPECTED_JARS, they are not collected JarLibrary,
-          // so that we are not able to copy them from AarLibraryContents. But we need them for
-          // some functions e.g. lint check, lay out inspection etc. So copy them directly.
-          (dir, name) -> EXPECTED_JARS.contains(name) || !name.endsWith(".jar"));
-
-      BlazeArtifact aar = aarLibraryContents.aar();
+      File aarDir;
+      if (digest != null && digest.equals(aarCache.readDigest(cacheKey))) {
+        aarDir = aarCache.aarDirForKey(cacheKey);
+      } else {
+        aarDir = aarCache.recreateAarDir(ops, cacheKey);
+        extract(aar, aarDir);
+        result = Result.EXTRACTED;
+      }
 
       try {
         aarCache.createTimeStampFile(
             cacheKey,
-            (aar instanceof LocalFileArtifact) ? ((LocalFileArtifact) aar).getFile() : null);
+            (aar instanceof LocalFileArtifact) ? ((LocalFileArtifact) aar).getFile() : null,
+            digest);
       } catch (IOException e) {
         logger.warn("Failed to set AAR cache timestamp for " + aar, e);
       }
@@ -126,6 +172,7 @@ public final class Unpacker {
           Files.copy(stream, destination, StandardCopyOption.REPLACE_EXISTING);
         } catch (Exception e) {
           logger.warn("Failed to copy class jar for " + aar, e);
+          result = Result.FAILED;
         }
       }
 
@@ -137,31 +184,78 @@ public final class Unpacker {
           Files.copy(stream, destination, StandardCopyOption.REPLACE_EXISTING);
         } catch (Exception e) {
           logger.warn("Failed to copy source jar for " + aar, e);
+          result = Result.FAILED;
         }
       }
     } catch (IOException e) {
       logger.warn(
-          String.format(
-              "Failed to extract AAR %s to %s",
-              aarLibraryContents.aar(), aarCache.aarDirForKey(cacheKey)),
+          String.format("Failed to extract AAR %s to %s", aar, aarCache.aarDirForKey(cacheKey)),
           e);
+      result = Result.FAILED;
+    }
+    return result;
+  }
+
+  @Nullable
+  private static String getDigest(BlazeArtifact aar) {
+    if (!(aar instanceof OutputArtifact)) {
+      return null;
+    }
+    return Strings.emptyToNull(((OutputArtifact) aar).getDigest());
+  }
+
+  /**
+   * Extracts the entries of the given .aar needed by the IDE. Local files are read via their
+   * central directory, so skipped entries are never inflated; other artifacts are streamed.
+   */
+  private static void extract(BlazeArtifact aar, File aarDir) throws IOException {
+    Path root = aarDir.toPath().toAbsolutePath().normalize();
+    if (aar instanceof LocalFileArtifact) {
+      try (ZipFile zip = new ZipFile(((LocalFileArtifact) aar).getFile())) {
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+          ZipEntry entry = entries.nextElement();
+          if (shouldExtract(entry.getName())) {
+            try (InputStream stream = zip.getInputStream(entry)) {
+              extractEntry(root, entry, stream);
+            }
+          }
+        }
+      }
+      return;
+    }
+    try (ZipInputStream zip = new ZipInputStream(aar.getInputStream())) {
+      ZipEntry entry;
+      while ((entry = zip.getNextEntry()) != null) {
+        if (shouldExtract(entry.getName())) {
+          extractEntry(root, entry, zip);
+        }
+      }
     }
   }
 
-  /** Returns a locally-accessible file mirroring the contents of this {@link BlazeArtifact}. */
-  private static File getOrCreateLocalFile(BlazeArtifact artifact) throws IOException {
-    if (artifact instanceof LocalFileArtifact) {
-      return ((LocalFileArtifact) artifact).getFile();
+  private static void extractEntry(Path root, ZipEntry entry, InputStream stream)
+      throws IOException {
+    Path destination = root.resolve(entry.getName()).normalize();
+    if (!destination.startsWith(root)) {
+      throw new IOException("AAR entry is outside of the target directory: " + entry.getName());
     }
-    File tmpFile =
-        FileUtil.createTempFile(
-            "local-aar-file",
-            Integer.toHexString(UnpackedAarUtils.getArtifactKey(artifact).hashCode()),
-            /* deleteOnExit= */ true);
-    try (InputStream stream = artifact.getInputStream()) {
-      Files.copy(stream, Paths.get(tmpFile.getPath()), StandardCopyOption.REPLACE_EXISTING);
-      return tmpFile;
+    if (entry.isDirectory()) {
+      Files.createDirectories(destination);
+      return;
+    }
+    Files.createDirectories(destination.getParent());
+    Files.copy(stream, destination, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /** Whether the .aar entry with the given name is needed by the IDE. */
+  @VisibleForTesting
+  static boolean shouldExtract(String entryName) {
+    int slash = entryName.indexOf('/');
+    if (slash < 0) {
+      return EXTRACTED_FILES.contains(entryName);
     }
+    return EXTRACTED_DIRECTORIES.contains(entryName.substring(0, slash));
   }
 
   private Unpacker() {}
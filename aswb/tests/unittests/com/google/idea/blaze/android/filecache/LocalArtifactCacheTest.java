@@ -35,10 +35,13 @@ import com.google.idea.blaze.base.sync.workspace.MockArtifactLocationDecoder;
 import com.google.idea.testing.IntellijRule;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 import org.junit.Before;
 import org.junit.Rule;
@@ -101,11 +104,9 @@ public class LocalArtifactCacheTest {
     File expectedCacheStateFile = new File(cacheDirectory.getRoot(), CACHE_DATA_FILENAME);
     assertThat(cacheDirectory.getRoot().listFiles()).asList().contains(expectedCacheStateFile);
 
-    ArtifactCacheData artifactCacheData =
-        LocalArtifactCache.readJsonFromDisk(expectedCacheStateFile);
     // check that all files referenced in the serialized cache data exists
-    artifactCacheData.getCacheEntries().stream()
-        .map(CacheEntry::getFileName)
+    ArtifactCacheIndex.readSnapshot(expectedCacheStateFile.toPath()).values().stream()
+        .map(e -> e.cacheEntry.getFileName())
         .map(f -> new File(cacheDirectory.getRoot(), f))
         .forEach(f -> assertThat(f.exists()).isTrue());
   }
@@ -158,6 +159,65 @@ public class LocalArtifactCacheTest {
         .containsExactlyElementsIn(expectedFiles);
   }
 
+  @Test
+  public void initialize_restoresStateFromIndex() throws IOException {
+    ImmutableList<OutputArtifactWithoutDigest> outputArtifacts =
+        ImmutableList.of(
+            newLocalOutputArtifact("relative/path_1/artifact_1.jar"),
+            newLocalOutputArtifact("relative/path_2/artifact_2.jar"));
+    for (OutputArtifactWithoutDigest a : outputArtifacts) {
+      File file = ((LocalFileOutputArtifactWithoutDigest) a).getFile();
+      assertThat(Paths.get(file.getParent()).toFile().mkdirs()).isTrue();
+      assertThat(file.createNewFile()).isTrue();
+    }
+    artifactCache.initialize();
+    artifactCache.putAll(outputArtifacts, blazeContext, false);
+
+    LocalArtifactCache reloadedCache =
+        new LocalArtifactCache(
+            intellijRule.getProject(), "TestArtifactCache", cacheDirectory.getRoot().toPath());
+    reloadedCache.initialize();
+
+    for (OutputArtifactWithoutDigest a : outputArtifacts) {
+      assertThat(reloadedCache.get(a)).isEqualTo(artifactCache.get(a));
+      assertThat(reloadedCache.get(a)).isNotNull();
+    }
+  }
+
+  @Test
+  public void putAll_overSizeBudget_evictsLeastRecentlyUsedArtifact() throws Exception {
+    ImmutableList<OutputArtifactWithoutDigest> outputArtifacts =
+        ImmutableList.of(
+            newLocalOutputArtifact("relative/path_1/artifact_1.jar"),
+            newLocalOutputArtifact("relative/path_2/artifact_2.jar"),
+            newLocalOutputArtifact("relative/path_3/artifact_3.jar"));
+    for (OutputArtifactWithoutDigest a : outputArtifacts) {
+      File file = ((LocalFileOutputArtifactWithoutDigest) a).getFile();
+      assertThat(Paths.get(file.getParent()).toFile().mkdirs()).isTrue();
+      Files.write(file.toPath(), new byte[8]);
+    }
+    AtomicLong clock = new AtomicLong(1000);
+    LocalArtifactCache boundedCache =
+        new LocalArtifactCache(
+            intellijRule.getProject(),
+            "TestArtifactCache",
+            cacheDirectory.getRoot().toPath(),
+            /* maxCacheSizeBytes= */ 16,
+            () -> Instant.ofEpochMilli(clock.get()));
+    boundedCache.initialize();
+    boundedCache.putAll(outputArtifacts, blazeContext, false);
+    // all artifacts of the latest putAll are kept, even over budget
+    outputArtifacts.forEach(a -> assertThat(boundedCache.get(a)).isNotNull());
+
+    clock.addAndGet(10);
+    boundedCache.get(outputArtifacts.get(0));
+    boundedCache.putAll(ImmutableList.of(outputArtifacts.get(2)), blazeContext, false);
+
+    assertThat(boundedCache.get(outputArtifacts.get(0))).isNotNull();
+    assertThat(boundedCache.get(outputArtifacts.get(1))).isNull();
+    assertThat(boundedCache.get(outputArtifacts.get(2))).isNotNull();
+  }
+
   @Test
   public void get_fetchesCorrectFileForArtifact() throws IOException {
     // Create blaze artifacts in FS
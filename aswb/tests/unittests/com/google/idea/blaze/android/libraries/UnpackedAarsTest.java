@@ -428,6 +428,107 @@ public class UnpackedAarsTest extends BlazeTestCase {
     assertThat(actualJarContent).isEqualTo(expectedJarContent);
   }
 
+  @Test
+  public void refresh_localArtifact_onlyNeededEntriesExtracted() {
+    testRefreshOnlyNeededEntriesExtracted(localArtifactLocationDecoder);
+  }
+
+  @Test
+  public void refresh_remoteArtifact_onlyNeededEntriesExtracted() {
+    testRefreshOnlyNeededEntriesExtracted(remoteArtifactLocationDecoder);
+  }
+
+  private void testRefreshOnlyNeededEntriesExtracted(ArtifactLocationDecoder decoder) {
+    UnpackedAars unpackedAars = UnpackedAars.getInstance(project);
+    String aar = "library.aar";
+    LibraryFileBuilder.aar(workspaceRoot, aar)
+        .addContent("res/values/strings.xml", ImmutableList.of(STRINGS_XML_CONTENT))
+        .addContent("R.txt", ImmutableList.of("int string app_name 0x7f010001"))
+        .addContent("AndroidManifest.xml", ImmutableList.of("<manifest/>"))
+        .addContent("classes.jar", new byte[] {1, 2, 3})
+        .addContent("libs/bundled.jar", new byte[] {1, 2, 3})
+        .addContent("jni/x86/libnative.so", new byte[] {1, 2, 3})
+        .addContent("proguard.txt", ImmutableList.of("-keep class *"))
+        .build();
+    AarLibrary aarLibrary = new AarLibrary(generateArtifactLocation(aar), null);
+
+    syncAars(decoder, aarLibrary);
+
+    File aarDir = unpackedAars.getAarDir(decoder, aarLibrary);
+    assertThat(aarDir.list())
+        .asList()
+        .containsExactly("aar.timestamp", "res", "R.txt", "AndroidManifest.xml");
+  }
+
+  @Test
+  public void refresh_remoteArtifact_unchangedAarNotExtractedAgain() throws IOException {
+    UnpackedAars unpackedAars = UnpackedAars.getInstance(project);
+    String aar = "library.aar";
+    LibraryFileBuilder.aar(workspaceRoot, aar)
+        .addContent("res/values/strings.xml", ImmutableList.of(STRINGS_XML_CONTENT))
+        .build();
+    AarLibrary aarLibrary = new AarLibrary(generateArtifactLocation(aar), null);
+
+    syncAars(remoteArtifactLocationDecoder, aarLibrary);
+    File aarDir = unpackedAars.getAarDir(remoteArtifactLocationDecoder, aarLibrary);
+    // a file which would be removed if the aar directory was recreated
+    File marker = new File(aarDir, "marker");
+    assertThat(marker.createNewFile()).isTrue();
+
+    // without previous outputs, the remote aar is considered updated
+    syncAars(remoteArtifactLocationDecoder, aarLibrary);
+
+    assertThat(marker.exists()).isTrue();
+    assertThat(new File(aarDir, "res/values/strings.xml").exists()).isTrue();
+    assertThat(writingOutputSink.getMessages())
+        .contains("Skipped extracting 1 AARs with unchanged contents");
+  }
+
+  @Test
+  public void refresh_localArtifact_corruptAarReportedAsFailed() throws IOException {
+    String aar = "corrupt.aar";
+    File aarFile = workspaceRoot.fileForPath(new WorkspacePath(aar));
+    Files.write(aarFile.toPath(), "not a zip".getBytes(UTF_8));
+    AarLibrary aarLibrary = new AarLibrary(generateArtifactLocation(aar), null);
+
+    syncAars(localArtifactLocationDecoder, aarLibrary);
+
+    String messages = writingOutputSink.getMessages();
+    assertThat(messages).contains("Failed to unpack 1 AARs");
+    assertThat(messages).doesNotContain("Copied 1 AARs");
+    assertThat(messages).doesNotContain("Skipped extracting");
+  }
+
+  private void syncAars(ArtifactLocationDecoder decoder, AarLibrary... aarLibraries) {
+    ImmutableMap.Builder<String, AarLibrary> libraries = ImmutableMap.builder();
+    for (AarLibrary library : aarLibraries) {
+      libraries.put(LibraryKey.libraryNameFromArtifactLocation(library.aarArtifact), library);
+    }
+    BlazeAndroidImportResult importResult =
+        new BlazeAndroidImportResult(
+            ImmutableList.of(), libraries.buildOrThrow(), ImmutableList.of(), ImmutableList.of());
+    BlazeAndroidSyncData syncData =
+        new BlazeAndroidSyncData(importResult, new AndroidSdkPlatform("stable", 15));
+    BlazeProjectData blazeProjectData =
+        MockBlazeProjectDataBuilder.builder(workspaceRoot)
+            .setWorkspaceLanguageSettings(
+                new WorkspaceLanguageSettings(WorkspaceType.ANDROID, ImmutableSet.of()))
+            .setSyncState(new SyncState.Builder().put(syncData).build())
+            .setArtifactLocationDecoder(decoder)
+            .build();
+    FileCache.EP_NAME
+        .extensions()
+        .forEach(
+            ep ->
+                ep.onSync(
+                    getProject(),
+                    context,
+                    ProjectViewSet.builder().add(ProjectView.builder().build()).build(),
+                    blazeProjectData,
+                    null,
+                    SyncMode.INCREMENTAL));
+  }
+
   @Test
   public void refresh_localArtifact_success() throws IOException {
     testRefresh(localArtifactLocationDecoder);
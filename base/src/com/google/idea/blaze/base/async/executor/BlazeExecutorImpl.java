@@ -17,16 +17,12 @@ package com.google.idea.blaze.base.async.executor;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
-import com.intellij.util.concurrency.AppExecutorUtil;
 import java.util.concurrent.Callable;
 
 /** Executes blaze tasks on the an executor. */
 public class BlazeExecutorImpl extends BlazeExecutor {
 
-  private final ListeningExecutorService executorService =
-      MoreExecutors.listeningDecorator(
-          AppExecutorUtil.createBoundedApplicationPoolExecutor("BlazeExecutor", 16));
+  private final ListeningExecutorService executorService = ExecutorLane.BLAZE.executor();
 
   @Override
   public <T> ListenableFuture<T> submit(Callable<T> callable) {
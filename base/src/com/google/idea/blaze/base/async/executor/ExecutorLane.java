@@ -0,0 +1,122 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.async.executor;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.common.experiments.IntExperiment;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.util.function.IntSupplier;
+
+/**
+ * The application-wide executors used for sync, build and fetch work.
+ *
+ * <p>All lanes run on the shared application thread pool; each lane only limits how many of its
+ * tasks run at once. Keeping unrelated work in separate lanes means a task waiting on work in
+ * another lane can't starve it of threads. CPU-bound work shares the {@link #COMPUTE} lane, which
+ * is sized to the number of processors, so that concurrent syncs don't oversubscribe the CPU.
+ *
+ * <p>The limit of each lane can be overridden with the {@code blaze.executor.<id>.threads}
+ * experiment, and the activity of each lane is reported by {@link #getStatistics}. Callers which
+ * need their own limit on top of a lane's, such as a single sync, use {@link #boundedExecutor}.
+ *
+ * <p>Lanes have no priority relative to each other: each has its own limit, so one lane's queue
+ * never delays another's tasks. Priority within the fetch lane is handled by {@link
+ * com.google.idea.blaze.base.prefetch.FetchExecutor#forPriority}. Limits are fixed rather than
+ * adapted to measured throughput.
+ */
+public enum ExecutorLane {
+  /** General sync work, see {@link BlazeExecutor}. */
+  BLAZE("BlazeExecutor", "blaze", () -> 16),
+  /** CPU-bound work such as parsing, repackaging and unpacking archives. */
+  COMPUTE("BlazeCompute", "compute", () -> Runtime.getRuntime().availableProcessors()),
+  /** Prefetching and copying of files. */
+  FETCH("FetchExecutor", "fetch", () -> 128),
+  /** Bulk copies of build artifacts for query sync. */
+  ARTIFACT_COPY("ArtifactBulkCopyExecutor", "artifact.copy", () -> 128),
+  /** Query sync operations. */
+  QUERY_SYNC("QuerySync", "querysync", () -> 128),
+  /** Saving the output of console tasks to disk. */
+  CONSOLE_OUTPUT("BlazeConsoleOutput", "console.output", () -> 4),
+  /** Concurrent remote blaze builds. */
+  REMOTE_BUILD("RemoteBuildExecutor", "remote.build", () -> 8),
+  /**
+   * The shards of remote builds. Each build further limits its own shards, see {@link
+   * #boundedExecutor}.
+   */
+  REMOTE_SHARD("RemoteBlazeExecutor", "remote.shard", () -> 128);
+
+  private final String name;
+  private final IntExperiment maxThreads;
+  private final IntSupplier defaultMaxThreads;
+
+  private volatile LaneExecutor executor;
+  private volatile ListeningExecutorService listeningExecutor;
+
+  ExecutorLane(String name, String id, IntSupplier defaultMaxThreads) {
+    this.name = name;
+    this.maxThreads = new IntExperiment("blaze.executor." + id + ".threads", 0);
+    this.defaultMaxThreads = defaultMaxThreads;
+  }
+
+  /** Returns the executor for this lane. */
+  public ListeningExecutorService executor() {
+    ListeningExecutorService result = listeningExecutor;
+    if (result == null) {
+      synchronized (this) {
+        result = listeningExecutor;
+        if (result == null) {
+          executor = new LaneExecutor(AppExecutorUtil.getAppExecutorService(), defaultLimit());
+          result = listeningExecutor = MoreExecutors.listeningDecorator(executor);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a new executor running its tasks on this lane, with at most {@code maxConcurrency} of
+   * them running at once. The limit applies only to the returned executor, not to the whole lane.
+   * It doesn't need to be shut down.
+   */
+  public ListeningExecutorService boundedExecutor(int maxConcurrency) {
+    return MoreExecutors.listeningDecorator(
+        new LaneExecutor(executor(), Math.max(1, maxConcurrency)));
+  }
+
+  /** Returns a summary of the activity of each lane used so far, keyed by statistic name. */
+  public static ImmutableMap<String, Long> getStatistics() {
+    ImmutableMap.Builder<String, Long> stats = ImmutableMap.builder();
+    for (ExecutorLane lane : values()) {
+      LaneExecutor executor = lane.executor;
+      if (executor == null) {
+        continue;
+      }
+      LaneExecutor.Stats laneStats = executor.getStats();
+      stats.put(lane.name + " tasks completed", laneStats.completed);
+      stats.put(lane.name + " tasks queued", (long) laneStats.queued);
+      stats.put(lane.name + " mean queue wait ms", laneStats.meanWaitMillis());
+      stats.put(lane.name + " mean run time ms", laneStats.meanRunMillis());
+    }
+    return stats.buildOrThrow();
+  }
+
+  private int defaultLimit() {
+    int override = maxThreads.getValue();
+    return override > 0 ? override : Math.max(1, defaultMaxThreads.getAsInt());
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.async.executor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs tasks on a shared backing executor, with at most a given number running at once, and keeps
+ * statistics about how long tasks wait and run.
+ *
+ * <p>Unlike a bounded thread pool, it owns no threads, so executors can be nested to add a limit on
+ * top of a lane's. Lanes are shared by the whole application and can't be shut down.
+ */
+final class LaneExecutor extends AbstractExecutorService {
+
+  /** A point in time view of a lane's activity. */
+  static final class Stats {
+    final int queued;
+    final int running;
+    final long completed;
+    final long totalWaitNanos;
+    final long totalRunNanos;
+
+    private Stats(
+        int queued, int running, long completed, long totalWaitNanos, long totalRunNanos) {
+      this.queued = queued;
+      this.running = running;
+      this.completed = completed;
+      this.totalWaitNanos = totalWaitNanos;
+      this.totalRunNanos = totalRunNanos;
+    }
+
+    long meanWaitMillis() {
+      return completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / completed);
+    }
+
+    long meanRunMillis() {
+      return completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRunNanos / completed);
+    }
+  }
+
+  private final Executor backingExecutor;
+  private final int maxConcurrency;
+
+  private final Queue<TimedTask> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicInteger running = new AtomicInteger();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder totalWaitNanos = new LongAdder();
+  private final LongAdder totalRunNanos = new LongAdder();
+
+  LaneExecutor(Executor backingExecutor, int maxConcurrency) {
+    checkArgument(maxConcurrency > 0, "maxConcurrency must be positive: %s", maxConcurrency);
+    this.backingExecutor = backingExecutor;
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  Stats getStats() {
+    return new Stats(
+        queued.get(),
+        running.get(),
+        completed.sum(),
+        totalWaitNanos.sum(),
+        totalRunNanos.sum());
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    queue.add(new TimedTask(command));
+    queued.incrementAndGet();
+    dispatch();
+  }
+
+  /** Starts queued tasks until the queue is empty or the concurrency limit is reached. */
+  private void dispatch() {
+    while (true) {
+      int current = running.get();
+      if (current >= maxConcurrency || queue.isEmpty()) {
+        return;
+      }
+      if (!running.compareAndSet(current, current + 1)) {
+        continue;
+      }
+      TimedTask task = queue.poll();
+      if (task == null) {
+        // another thread took it; release the slot and check again
+        running.decrementAndGet();
+        continue;
+      }
+      queued.decrementAndGet();
+      backingExecutor.execute(task);
+    }
+  }
+
+  private final class TimedTask implements Runnable {
+    private final Runnable delegate;
+    private final long enqueuedNanos = System.nanoTime();
+
+    TimedTask(Runnable delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void run() {
+      long startNanos = System.nanoTime();
+      totalWaitNanos.add(startNanos - enqueuedNanos);
+      try {
+        delegate.run();
+      } finally {
+        totalRunNanos.add(System.nanoTime() - startNanos);
+        completed.increment();
+        running.decrementAndGet();
+        dispatch();
+      }
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    throw new UnsupportedOperationException("Shared executor lanes can't be shut down");
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    throw new UnsupportedOperationException("Shared executor lanes can't be shut down");
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return false;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return false;
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) {
+    return false;
+  }
+}
@@ -32,6 +32,7 @@ import com.google.idea.blaze.base.command.BlazeInvocationContext;
 import com.google.idea.blaze.base.experiments.ExperimentScope;
 import com.google.idea.blaze.base.filecache.FileCaches;
 import com.google.idea.blaze.base.issueparser.BlazeIssueParser;
+import com.google.idea.blaze.base.logging.trace.TraceExporter;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.TargetExpression;
@@ -202,7 +203,11 @@ public class BlazeBuildService {
                         .push(new ExperimentScope())
                         .push(new ProblemsViewScope(project, problemsViewFocus))
                         .push(new IdeaLogScope())
-                        .push(new TimingScope("Make", EventType.BlazeInvocation))
+                        .push(
+                            new TimingScope("Make", EventType.BlazeInvocation)
+                                .addScopeListener(
+                                    (events, totalTime) ->
+                                        TraceExporter.exportBuild(project, taskName, events)))
                         .push(notificationScope);
 
                     List<TargetExpression> targets = targetsFunction.execute(context);
@@ -29,6 +29,7 @@ import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.TextRange;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Path;
@@ -107,7 +108,7 @@ public class BuildFileFormatter {
       return Collections.emptyList();
     } else {
       Path pathToFormat = buildFile.getVirtualFile().toNioPath();
-      WorkspaceRoot root = BazelWorkspaceRootProvider.INSTANCE.findWorkspaceRoot(pathToFormat.toFile());
+      WorkspaceRoot root = findWorkspaceRoot(buildFile);
 
       if (root == null) {
         return Collections.emptyList();
@@ -118,6 +119,19 @@ public class BuildFileFormatter {
     }
   }
 
+  /** Returns the root of the workspace containing the given file, if any. */
+  @Nullable
+  static WorkspaceRoot findWorkspaceRoot(BuildFile buildFile) {
+    Path path = buildFile.getVirtualFile().toNioPath();
+    return BazelWorkspaceRootProvider.INSTANCE.findWorkspaceRoot(path.toFile());
+  }
+
+  @Nullable
+  static File workspaceRootDirectory(BuildFile buildFile) {
+    WorkspaceRoot root = findWorkspaceRoot(buildFile);
+    return root != null ? root.directory() : null;
+  }
+
   /**
    * Passes the input text to buildifier, returning the formatted output text, or null if formatting
    * failed.
@@ -125,7 +139,14 @@ public class BuildFileFormatter {
   @Nullable
   private static String formatText(
       String buildifierBinaryPath, BuildFile buildFile, String inputText) throws IOException {
-    Process process = new ProcessBuilder(getCommandLineArgs(buildifierBinaryPath, buildFile)).start();
+    ImmutableList<String> args = getCommandLineArgs(buildifierBinaryPath, buildFile);
+    BuildifierResultCache cache = BuildifierResultCache.getInstance(buildFile.getProject());
+    File workspaceRoot = workspaceRootDirectory(buildFile);
+    String cached = cache.get(args, workspaceRoot, inputText);
+    if (cached != null) {
+      return cached;
+    }
+    Process process = new ProcessBuilder(args).start();
     process.getOutputStream().write(inputText.getBytes(UTF_8));
     process.getOutputStream().close();
 
@@ -138,6 +159,10 @@ public class BuildFileFormatter {
       process.destroy();
       Thread.currentThread().interrupt();
     }
-    return process.exitValue() != 0 ? null : formattedText;
+    if (process.exitValue() != 0) {
+      return null;
+    }
+    cache.put(args, workspaceRoot, inputText, formattedText);
+    return formattedText;
   }
 }
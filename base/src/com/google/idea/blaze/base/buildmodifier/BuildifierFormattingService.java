@@ -29,6 +29,7 @@ import com.intellij.formatting.service.AsyncDocumentFormattingService;
 import com.intellij.formatting.service.AsyncFormattingRequest;
 import com.intellij.psi.PsiFile;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Optional;
@@ -50,7 +51,13 @@ public final class BuildifierFormattingService extends AsyncDocumentFormattingSe
     return binaryPath
         .get()
         .map(binary -> BuildFileFormatter.getCommandLineArgs(binary, buildFile))
-        .map(args -> new BuildifierFormattingTask(request, args))
+        .map(
+            args ->
+                new BuildifierFormattingTask(
+                    request,
+                    args,
+                    BuildifierResultCache.getInstance(buildFile.getProject()),
+                    BuildFileFormatter.workspaceRootDirectory(buildFile)))
         .orElse(null);
   }
 
@@ -91,18 +98,32 @@ public final class BuildifierFormattingService extends AsyncDocumentFormattingSe
   private static final class BuildifierFormattingTask implements FormattingTask {
     private final AsyncFormattingRequest request;
     private final ImmutableList<String> args;
+    private final BuildifierResultCache cache;
+    @Nullable private final File workspaceRoot;
     private Process process;
 
-    public BuildifierFormattingTask(AsyncFormattingRequest request, ImmutableList<String> args) {
+    public BuildifierFormattingTask(
+        AsyncFormattingRequest request,
+        ImmutableList<String> args,
+        BuildifierResultCache cache,
+        @Nullable File workspaceRoot) {
       this.request = request;
       this.args = args;
+      this.cache = cache;
+      this.workspaceRoot = workspaceRoot;
     }
 
     @Override
     public void run() {
+      String input = request.getDocumentText();
+      String cached = cache.get(args, workspaceRoot, input);
+      if (cached != null) {
+        request.onTextReady(cached);
+        return;
+      }
       try {
         process = new ProcessBuilder(args).start();
-        process.getOutputStream().write(request.getDocumentText().getBytes(UTF_8));
+        process.getOutputStream().write(input.getBytes(UTF_8));
         process.getOutputStream().close();
         BufferedReader reader =
             new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8));
@@ -113,6 +134,7 @@ public final class BuildifierFormattingService extends AsyncDocumentFormattingSe
           process.destroyForcibly();
           request.onError("Error running buildifier", "process timed out.");
         } else if (process.exitValue() == 0) {
+          cache.put(args, workspaceRoot, input, formattedText);
           request.onTextReady(formattedText);
         } else {
           request.onError(
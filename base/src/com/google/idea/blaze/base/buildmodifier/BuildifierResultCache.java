@@ -0,0 +1,158 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.buildmodifier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.intellij.openapi.project.Project;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Remembers the output of successful buildifier runs in a project, so that formatting unchanged
+ * text doesn't start a new process.
+ *
+ * <p>Results are keyed by the command line, the buildifier binary's size and modification time,
+ * the contents of the workspace's buildifier config and the tables it refers to, and a hash of the
+ * input text. Updating buildifier or its config therefore never returns a stale result.
+ *
+ * <p>Buildifier's output is a fixed point (formatting it again changes nothing), so each output is
+ * also recorded as formatting to itself. Saving an already-formatted file never runs buildifier.
+ */
+public final class BuildifierResultCache {
+
+  /** The config file buildifier reads from the workspace root when no --config is given. */
+  @VisibleForTesting static final String CONFIG_FILE_NAME = ".buildifier.json";
+
+  private static final String CONFIG_ENV_VARIABLE = "BUILDIFIER_CONFIG";
+
+  private static final long MAX_CACHED_CHARS = 8 * 1024 * 1024;
+
+  private final Cache<HashCode, String> results =
+      CacheBuilder.newBuilder()
+          .maximumWeight(MAX_CACHED_CHARS)
+          .weigher((HashCode key, String output) -> output.length())
+          .build();
+
+  public static BuildifierResultCache getInstance(Project project) {
+    return project.getService(BuildifierResultCache.class);
+  }
+
+  /**
+   * Returns the formatted text for the given input, or null if it isn't known.
+   *
+   * @param args the buildifier command line, starting with the binary
+   * @param workspaceRoot the root of the workspace containing the formatted file, if known
+   */
+  @Nullable
+  String get(List<String> args, @Nullable File workspaceRoot, String input) {
+    return results.getIfPresent(key(environmentKey(args, workspaceRoot), input));
+  }
+
+  /** Records the result of successfully running buildifier with the given args on the input. */
+  void put(List<String> args, @Nullable File workspaceRoot, String input, String output) {
+    HashCode environment = environmentKey(args, workspaceRoot);
+    results.put(key(environment, input), output);
+    results.put(key(environment, output), output);
+  }
+
+  private static HashCode key(HashCode environment, String input) {
+    return Hashing.sha256()
+        .newHasher()
+        .putBytes(environment.asBytes())
+        .putString(input, UTF_8)
+        .hash();
+  }
+
+  /** Hashes everything other than the input text that buildifier's output depends on. */
+  private static HashCode environmentKey(List<String> args, @Nullable File workspaceRoot) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String arg : args) {
+      hasher.putString(arg, UTF_8).putByte((byte) 0);
+    }
+    if (!args.isEmpty()) {
+      putFileStamp(hasher, new File(args.get(0)));
+    }
+    String configPath = System.getenv(CONFIG_ENV_VARIABLE);
+    if (!Strings.isNullOrEmpty(configPath)) {
+      putConfig(hasher, new File(configPath));
+    }
+    if (workspaceRoot != null) {
+      putConfig(hasher, new File(workspaceRoot, CONFIG_FILE_NAME));
+    }
+    return hasher.hash();
+  }
+
+  /** Adds the config's contents and the stamps of the tables files it refers to. */
+  private static void putConfig(Hasher hasher, File configFile) {
+    hasher.putString(configFile.getPath(), UTF_8).putByte((byte) 0);
+    String contents;
+    try {
+      contents = new String(Files.readAllBytes(configFile.toPath()), UTF_8);
+    } catch (IOException e) {
+      // Missing or unreadable: buildifier falls back to its defaults.
+      hasher.putByte((byte) 0);
+      return;
+    }
+    hasher.putByte((byte) 1).putString(contents, UTF_8);
+    TablesConfig config;
+    try {
+      config = new Gson().fromJson(contents, TablesConfig.class);
+    } catch (JsonParseException e) {
+      return;
+    }
+    if (config == null) {
+      return;
+    }
+    File configDirectory = configFile.getAbsoluteFile().getParentFile();
+    putTables(hasher, configDirectory, config.tables);
+    putTables(hasher, configDirectory, config.addTables);
+  }
+
+  private static void putTables(Hasher hasher, File configDirectory, @Nullable String tables) {
+    if (Strings.isNullOrEmpty(tables)) {
+      return;
+    }
+    File file = new File(tables);
+    putFileStamp(hasher, file.isAbsolute() ? file : new File(configDirectory, tables));
+  }
+
+  private static void putFileStamp(Hasher hasher, File file) {
+    hasher
+        .putString(file.getAbsolutePath(), UTF_8)
+        .putByte((byte) 0)
+        .putLong(file.length())
+        .putLong(file.lastModified());
+  }
+
+  /** The fields of a buildifier config that name other files its output depends on. */
+  private static final class TablesConfig {
+    @Nullable String tables;
+    @Nullable String addTables;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.logging.trace;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.scope.scopes.TimingScopeListener.TimedEvent;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes {@link TimedEvent}s in the Chrome Trace Event JSON format, which can be loaded by
+ * chrome://tracing or https://ui.perfetto.dev.
+ *
+ * <p>Each event becomes a complete ("X") event on the thread it started on, so nested scopes are
+ * shown nested. Counters are recorded as counter ("C") events at the end of the trace.
+ */
+public final class ChromeTraceWriter {
+  private static final int PID = 1;
+
+  private ChromeTraceWriter() {}
+
+  /**
+   * Writes a trace of the given events. Events without a start time are omitted.
+   *
+   * @param title shown as the process name
+   * @param counters named totals, e.g. the number of targets synced
+   */
+  public static void write(
+      Writer writer, String title, List<TimedEvent> events, Map<String, Long> counters)
+      throws IOException {
+    ImmutableList<TimedEvent> timedEvents =
+        events.stream().filter(e -> e.startTime != null).collect(ImmutableList.toImmutableList());
+    Instant origin =
+        timedEvents.stream().map(e -> e.startTime).min(Instant::compareTo).orElse(Instant.EPOCH);
+    long endMicros =
+        timedEvents.stream()
+            .mapToLong(e -> micros(origin, e.startTime) + e.duration.toNanos() / 1000)
+            .max()
+            .orElse(0);
+
+    try (JsonWriter json = new JsonWriter(writer)) {
+      json.beginObject();
+      json.name("displayTimeUnit").value("ms");
+      json.name("traceEvents").beginArray();
+
+      json.beginObject();
+      json.name("name").value("process_name");
+      json.name("ph").value("M");
+      json.name("pid").value(PID);
+      json.name("args").beginObject().name("name").value(title).endObject();
+      json.endObject();
+
+      Map<Long, String> threadNames = new LinkedHashMap<>();
+      for (TimedEvent event : timedEvents) {
+        threadNames.putIfAbsent(event.threadId, event.threadName);
+      }
+      for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+        json.beginObject();
+        json.name("name").value("thread_name");
+        json.name("ph").value("M");
+        json.name("pid").value(PID);
+        json.name("tid").value(thread.getKey());
+        json.name("args").beginObject().name("name").value(thread.getValue()).endObject();
+        json.endObject();
+      }
+
+      for (TimedEvent event : timedEvents) {
+        json.beginObject();
+        json.name("name").value(event.name);
+        json.name("cat").value(event.type.name());
+        json.name("ph").value("X");
+        json.name("ts").value(micros(origin, Objects.requireNonNull(event.startTime)));
+        json.name("dur").value(event.duration.toNanos() / 1000);
+        json.name("pid").value(PID);
+        json.name("tid").value(event.threadId);
+        json.endObject();
+      }
+
+      for (Map.Entry<String, Long> counter : counters.entrySet()) {
+        json.beginObject();
+        json.name("name").value(counter.getKey());
+        json.name("ph").value("C");
+        json.name("ts").value(endMicros);
+        json.name("pid").value(PID);
+        json.name("args").beginObject().name("value").value(counter.getValue()).endObject();
+        json.endObject();
+      }
+
+      json.endArray();
+      json.endObject();
+    }
+  }
+
+  private static long micros(Instant origin, Instant time) {
+    return Duration.between(origin, time).toNanos() / 1000;
+  }
+}
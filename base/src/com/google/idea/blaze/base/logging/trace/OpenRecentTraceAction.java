@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.logging.trace;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.actions.BlazeProjectAction;
+import com.intellij.ide.actions.RevealFileAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.ui.SimpleListCellRenderer;
+import java.io.File;
+
+/**
+ * Lets the user pick one of the most recent sync and build traces, and reveals it in the file
+ * manager, ready to be loaded into a trace viewer.
+ */
+public class OpenRecentTraceAction extends BlazeProjectAction implements DumbAware {
+
+  @Override
+  protected QuerySyncStatus querySyncSupport() {
+    return QuerySyncStatus.HIDDEN;
+  }
+
+  @Override
+  protected void actionPerformedInBlazeProject(Project project, AnActionEvent e) {
+    ImmutableList<File> traces = TraceExporter.getRecentTraces(project);
+    if (traces.isEmpty()) {
+      Messages.showInfoMessage(
+          project,
+          "No traces have been recorded yet. A trace is written after each sync and build.",
+          "No Traces");
+      return;
+    }
+    JBPopupFactory.getInstance()
+        .createPopupChooserBuilder(traces)
+        .setTitle("Reveal Trace (Open in chrome://tracing or ui.perfetto.dev)")
+        .setRenderer(SimpleListCellRenderer.create("", File::getName))
+        .setItemChosenCallback(RevealFileAction::openFile)
+        .createPopup()
+        .showCenteredInCurrentWindow(project);
+  }
+}
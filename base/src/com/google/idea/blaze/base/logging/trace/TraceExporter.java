@@ -0,0 +1,154 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.logging.trace;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.idea.blaze.base.async.executor.ExecutorLane;
+import com.google.idea.blaze.base.logging.utils.BuildPhaseSyncStats;
+import com.google.idea.blaze.base.logging.utils.SyncStats;
+import com.google.idea.blaze.base.scope.scopes.TimingScopeListener.TimedEvent;
+import com.google.idea.blaze.base.settings.BlazeImportSettings;
+import com.google.idea.blaze.base.settings.BlazeImportSettingsManager;
+import com.google.idea.blaze.base.sync.data.BlazeDataStorage;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Exports the timing of each sync and build to a trace file in the project data directory, so that
+ * slow syncs can be inspected in a trace viewer or attached to bug reports. Only the most recent
+ * traces are kept.
+ */
+public final class TraceExporter {
+  private static final Logger logger = Logger.getInstance(TraceExporter.class);
+
+  private static final String TRACE_DIRECTORY_NAME = "traces";
+  private static final String TRACE_FILE_SUFFIX = ".trace.json";
+  private static final int MAX_TRACES = 10;
+
+  private static final DateTimeFormatter FILE_NAME_TIMESTAMP =
+      DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneId.systemDefault());
+
+  private TraceExporter() {}
+
+  /** Exports a trace of a completed sync. */
+  public static void exportSync(Project project, SyncStats stats) {
+    long buildTargets = 0;
+    long shards = 0;
+    long bepBytes = 0;
+    for (BuildPhaseSyncStats buildPhase : stats.buildPhaseStats()) {
+      buildTargets += buildPhase.targets().size();
+      shards += buildPhase.shardCount();
+      bepBytes += buildPhase.bepBytesConsumed();
+    }
+    ImmutableMap.Builder<String, Long> counters =
+        ImmutableMap.<String, Long>builder()
+            .put("Targets", (long) stats.targetMapSize())
+            .put("Libraries", (long) stats.libraryCount())
+            .put("Build targets", buildTargets)
+            .put("Shards", shards)
+            .put("BEP bytes consumed", bepBytes);
+    stats.networkUsage().forEach((key, bytes) -> counters.put("Network: " + key, bytes));
+    ExecutorLane.getStatistics().forEach((key, value) -> counters.put("Executor: " + key, value));
+    export(
+        project,
+        "sync",
+        String.format("%s (%s)", stats.syncTitle(), stats.syncResult()),
+        stats.startTime(),
+        stats.timedEvents(),
+        counters.buildOrThrow());
+  }
+
+  /** Exports a trace of a completed build. */
+  public static void exportBuild(Project project, String title, List<TimedEvent> events) {
+    Instant startTime =
+        events.stream()
+            .map(e -> e.startTime)
+            .filter(t -> t != null)
+            .min(Instant::compareTo)
+            .orElse(Instant.now());
+    export(project, "build", title, startTime, events, ImmutableMap.of());
+  }
+
+  /** Returns the exported traces of the given project, most recent first. */
+  public static ImmutableList<File> getRecentTraces(Project project) {
+    File directory = getTraceDirectory(project);
+    File[] traces =
+        directory == null
+            ? null
+            : directory.listFiles((dir, name) -> name.endsWith(TRACE_FILE_SUFFIX));
+    if (traces == null) {
+      return ImmutableList.of();
+    }
+    return Arrays.stream(traces)
+        .sorted(Comparator.comparingLong(File::lastModified).reversed())
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  @Nullable
+  public static File getTraceDirectory(Project project) {
+    BlazeImportSettings importSettings =
+        BlazeImportSettingsManager.getInstance(project).getImportSettings();
+    if (importSettings == null) {
+      return null;
+    }
+    return new File(BlazeDataStorage.getProjectDataDir(importSettings), TRACE_DIRECTORY_NAME);
+  }
+
+  private static void export(
+      Project project,
+      String kind,
+      String title,
+      Instant startTime,
+      List<TimedEvent> events,
+      Map<String, Long> counters) {
+    File directory = getTraceDirectory(project);
+    if (directory == null || events.isEmpty()) {
+      return;
+    }
+    File traceFile =
+        new File(directory, kind + "-" + FILE_NAME_TIMESTAMP.format(startTime) + TRACE_FILE_SUFFIX);
+    try {
+      Files.createDirectories(directory.toPath());
+      try (Writer writer = Files.newBufferedWriter(traceFile.toPath(), UTF_8)) {
+        ChromeTraceWriter.write(writer, title, events, counters);
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to write trace file " + traceFile, e);
+      return;
+    }
+    ImmutableList<File> traces = getRecentTraces(project);
+    for (File stale : traces.subList(Math.min(MAX_TRACES, traces.size()), traces.size())) {
+      if (!stale.delete()) {
+        logger.warn("Failed to delete trace file " + stale);
+      }
+    }
+  }
+}
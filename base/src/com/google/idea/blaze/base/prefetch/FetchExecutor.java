@@ -16,13 +16,19 @@
 package com.google.idea.blaze.base.prefetch;
 
 import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
-import com.intellij.util.concurrency.AppExecutorUtil;
+import com.google.idea.blaze.base.async.executor.ExecutorLane;
 
 /** Shared executors for any prefetch/copy operations. */
 public class FetchExecutor {
-  private static final int MAX_THREADS = 128;
-  public static final ListeningExecutorService EXECUTOR =
-      MoreExecutors.listeningDecorator(
-          AppExecutorUtil.createBoundedApplicationPoolExecutor("FetchExecutor", MAX_THREADS));
+  public static final ListeningExecutorService EXECUTOR = ExecutorLane.FETCH.executor();
+
+  private static final PriorityFetchScheduler scheduler = new PriorityFetchScheduler(EXECUTOR);
+
+  /**
+   * Returns an executor for fetches of the given priority. Its tasks run on {@link #EXECUTOR},
+   * ahead of any queued lower priority fetches.
+   */
+  public static ListeningExecutorService forPriority(PrefetchPriority priority) {
+    return scheduler.executor(priority);
+  }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.prefetch;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.settings.Blaze;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Prefetches the files next to a newly opened file at high priority, as they're likely to be
+ * needed to resolve and highlight it.
+ */
+class PrefetchEditorListener implements FileEditorManagerListener {
+
+  private static final BoolExperiment enabled =
+      new BoolExperiment("prefetch.on.editor.open", true);
+
+  /** Directories with more files than this are skipped, rather than prefetched in bulk. */
+  private static final int MAX_FILES_PER_DIRECTORY = 500;
+
+  @Override
+  public void fileOpened(FileEditorManager source, VirtualFile file) {
+    if (!enabled.getValue()
+        || !Blaze.isBlazeProject(source.getProject())
+        || !file.isInLocalFileSystem()) {
+      return;
+    }
+    VirtualFile directory = file.getParent();
+    if (directory == null) {
+      return;
+    }
+    // listing the directory may itself be slow, so keep it off the EDT
+    FetchExecutor.forPriority(PrefetchPriority.HIGH)
+        .execute(
+            () -> {
+              VirtualFile[] children = directory.getChildren();
+              if (children.length > MAX_FILES_PER_DIRECTORY) {
+                return;
+              }
+              // directories are prefetched recursively, so only include files
+              ImmutableList<File> siblings =
+                  Arrays.stream(children)
+                      .filter(child -> !child.isDirectory() && !child.equals(file))
+                      .map(VfsUtilCore::virtualToIoFile)
+                      .collect(toImmutableList());
+              PrefetchService.getInstance()
+                  .prefetchFiles(
+                      siblings,
+                      /* refetchCachedFiles= */ false,
+                      /* fetchFileTypes= */ false,
+                      PrefetchPriority.HIGH);
+            });
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.prefetch;
+
+/**
+ * The priority of a prefetch request. Queued fetches run in priority order, and each priority has
+ * its own limit on the number of fetches running at once, see {@link FetchExecutor#forPriority}.
+ */
+public enum PrefetchPriority {
+  /** Files likely to be needed right away, such as those related to open editors. */
+  HIGH(48),
+  /** The default, for files needed by sync or the project's own sources. */
+  NORMAL(64),
+  /**
+   * Bulk prefetching of files which may never be used, such as external libraries. These only
+   * start while no higher priority fetches are waiting.
+   */
+  BULK(16);
+
+  final int maxConcurrency;
+
+  PrefetchPriority(int maxConcurrency) {
+    this.maxConcurrency = maxConcurrency;
+  }
+}
@@ -43,6 +43,20 @@ public interface PrefetchService {
   ListenableFuture<PrefetchStats> prefetchFiles(
       Collection<File> files, boolean refetchCachedFiles, boolean fetchFileTypes);
 
+  /**
+   * Instructs all prefetchers to prefetch these files, ahead of any queued lower priority fetches.
+   *
+   * @see #prefetchFiles(Collection, boolean, boolean)
+   */
+  @CanIgnoreReturnValue
+  default ListenableFuture<PrefetchStats> prefetchFiles(
+      Collection<File> files,
+      boolean refetchCachedFiles,
+      boolean fetchFileTypes,
+      PrefetchPriority priority) {
+    return prefetchFiles(files, refetchCachedFiles, fetchFileTypes);
+  }
+
   ListenableFuture<PrefetchStats> prefetchProjectFiles(
       Project project, ProjectViewSet projectViewSet, @Nullable BlazeProjectData blazeProjectData);
 
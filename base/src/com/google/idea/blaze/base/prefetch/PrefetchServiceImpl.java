@@ -20,6 +20,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.idea.blaze.base.io.AbsolutePathPatcher.AbsolutePathPatcherUtil;
 import com.google.idea.blaze.base.io.FileOperationProvider;
@@ -67,14 +68,24 @@ public class PrefetchServiceImpl implements PrefetchService {
   @Override
   public ListenableFuture<PrefetchStats> prefetchFiles(
       Collection<File> files, boolean refetchCachedFiles, boolean fetchFileTypes) {
-    return prefetchFiles(ImmutableSet.of(), files, refetchCachedFiles, fetchFileTypes);
+    return prefetchFiles(files, refetchCachedFiles, fetchFileTypes, PrefetchPriority.NORMAL);
+  }
+
+  @Override
+  public ListenableFuture<PrefetchStats> prefetchFiles(
+      Collection<File> files,
+      boolean refetchCachedFiles,
+      boolean fetchFileTypes,
+      PrefetchPriority priority) {
+    return prefetchFiles(ImmutableSet.of(), files, refetchCachedFiles, fetchFileTypes, priority);
   }
 
   private ListenableFuture<PrefetchStats> prefetchFiles(
       Set<File> excludeDirectories,
       Collection<File> files,
       boolean refetchCachedFiles,
-      boolean fetchFileTypes) {
+      boolean fetchFileTypes,
+      PrefetchPriority priority) {
     if (files.isEmpty()) {
       return Futures.immediateFuture(PrefetchStats.NONE);
     }
@@ -88,16 +99,16 @@ public class PrefetchServiceImpl implements PrefetchService {
               .collect(Collectors.toList());
     }
     FileOperationProvider provider = FileOperationProvider.getInstance();
+    ListeningExecutorService executor = FetchExecutor.forPriority(priority);
     List<ListenableFuture<File>> canonicalFiles =
         files
             .stream()
-            .map(file -> FetchExecutor.EXECUTOR.submit(() -> toCanonicalFile(provider, file)))
+            .map(file -> executor.submit(() -> toCanonicalFile(provider, file)))
             .collect(Collectors.toList());
     List<ListenableFuture<PrefetchStats>> futures = Lists.newArrayList();
     for (Prefetcher prefetcher : Prefetcher.EP_NAME.getExtensions()) {
       futures.add(
-          prefetcher.prefetchFiles(
-              excludeDirectories, canonicalFiles, FetchExecutor.EXECUTOR, fetchFileTypes));
+          prefetcher.prefetchFiles(excludeDirectories, canonicalFiles, executor, fetchFileTypes));
     }
     return Futures.transform(
         Futures.allAsList(futures),
@@ -164,7 +175,8 @@ public class PrefetchServiceImpl implements PrefetchService {
             sourceDirectories,
             /* refetchCachedFiles= */ false,
             // PushedFilePropertiesUpdaterImpl will eventually want the file types of module roots.
-            /* fetchFileTypes= */ true);
+            /* fetchFileTypes= */ true,
+            PrefetchPriority.NORMAL);
     Set<File> externalFiles = new HashSet<>();
     if (blazeProjectData != null) {
       for (PrefetchFileSource fileSource : PrefetchFileSource.EP_NAME.getExtensions()) {
@@ -172,8 +184,9 @@ public class PrefetchServiceImpl implements PrefetchService {
             project, projectViewSet, importRoots, blazeProjectData, externalFiles);
       }
     }
+    // external files may never be opened, so don't hold up fetches which are needed sooner
     ListenableFuture<PrefetchStats> externalFilesFuture =
-        prefetchFiles(externalFiles, false, false);
+        prefetchFiles(externalFiles, false, false, PrefetchPriority.BULK);
     return Futures.transform(
         Futures.allAsList(sourceFilesFuture, externalFilesFuture),
         list ->
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.prefetch;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders fetches by {@link PrefetchPriority} before handing them to a backing executor.
+ *
+ * <p>Each priority may only have {@link PrefetchPriority#maxConcurrency} fetches running at once.
+ * A fetch only starts once no higher priority fetch is waiting, so a large bulk prefetch gives way
+ * to fetches submitted after it, as soon as its running fetches finish.
+ */
+final class PriorityFetchScheduler {
+
+  private final Executor backingExecutor;
+  private final Map<PrefetchPriority, Queue<Runnable>> queues =
+      new EnumMap<>(PrefetchPriority.class);
+  private final int[] running = new int[PrefetchPriority.values().length];
+  private final Map<PrefetchPriority, ListeningExecutorService> executors =
+      new EnumMap<>(PrefetchPriority.class);
+
+  PriorityFetchScheduler(Executor backingExecutor) {
+    this.backingExecutor = backingExecutor;
+    for (PrefetchPriority priority : PrefetchPriority.values()) {
+      queues.put(priority, new ArrayDeque<>());
+      executors.put(priority, MoreExecutors.listeningDecorator(new PriorityExecutor(priority)));
+    }
+  }
+
+  /** Returns an executor which runs its tasks at the given priority. */
+  ListeningExecutorService executor(PrefetchPriority priority) {
+    return executors.get(priority);
+  }
+
+  /** Returns the number of tasks of the given priority waiting to start. */
+  synchronized int queued(PrefetchPriority priority) {
+    return queues.get(priority).size();
+  }
+
+  private synchronized void enqueue(PrefetchPriority priority, Runnable task) {
+    queues.get(priority).add(task);
+    dispatch();
+  }
+
+  private synchronized void finished(PrefetchPriority priority) {
+    running[priority.ordinal()]--;
+    dispatch();
+  }
+
+  /** Starts queued tasks in priority order, until a priority is at its concurrency limit. */
+  private synchronized void dispatch() {
+    for (PrefetchPriority priority : PrefetchPriority.values()) {
+      Queue<Runnable> queue = queues.get(priority);
+      while (!queue.isEmpty() && running[priority.ordinal()] < priority.maxConcurrency) {
+        running[priority.ordinal()]++;
+        Runnable task = queue.remove();
+        backingExecutor.execute(
+            () -> {
+              try {
+                task.run();
+              } finally {
+                finished(priority);
+              }
+            });
+      }
+      if (!queue.isEmpty()) {
+        // don't start lower priority tasks ahead of waiting ones
+        return;
+      }
+    }
+  }
+
+  private final class PriorityExecutor extends AbstractExecutorService {
+    private final PrefetchPriority priority;
+
+    PriorityExecutor(PrefetchPriority priority) {
+      this.priority = priority;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      enqueue(priority, command);
+    }
+
+    @Override
+    public void shutdown() {
+      throw new UnsupportedOperationException("Shared fetch executors can't be shut down");
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      throw new UnsupportedOperationException("Shared fetch executors can't be shut down");
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return false;
+    }
+  }
+}
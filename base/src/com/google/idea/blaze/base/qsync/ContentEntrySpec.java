@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.qsync;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.util.Arrays.stream;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.base.util.UrlUtil;
+import com.google.idea.blaze.qsync.project.ProjectPath;
+import com.google.idea.blaze.qsync.project.ProjectProto;
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.ModifiableRootModel;
+import com.intellij.openapi.roots.SourceFolder;
+import org.jetbrains.jps.model.JpsElement;
+import org.jetbrains.jps.model.java.JavaSourceRootProperties;
+import org.jetbrains.jps.model.java.JavaSourceRootType;
+import org.jetbrains.jps.model.java.JpsJavaExtensionService;
+
+/**
+ * A module content entry, with all paths resolved to urls.
+ *
+ * <p>Instances can be created both from a {@link ProjectProto.ContentEntry} and from an existing
+ * IDE {@link ContentEntry}, so that the two can be compared without touching the project model.
+ */
+@AutoValue
+abstract class ContentEntrySpec {
+
+  abstract String url();
+
+  abstract ImmutableSet<SourceFolderSpec> sourceFolders();
+
+  abstract ImmutableSet<String> excludeUrls();
+
+  /** A source folder of a {@link ContentEntrySpec}. */
+  @AutoValue
+  abstract static class SourceFolderSpec {
+    abstract String url();
+
+    abstract boolean isTest();
+
+    abstract String packagePrefix();
+
+    abstract boolean isGenerated();
+
+    static SourceFolderSpec create(
+        String url, boolean isTest, String packagePrefix, boolean isGenerated) {
+      return new AutoValue_ContentEntrySpec_SourceFolderSpec(
+          url, isTest, packagePrefix, isGenerated);
+    }
+
+    static SourceFolderSpec of(SourceFolder sourceFolder) {
+      JpsElement properties = sourceFolder.getJpsElement().getProperties();
+      return create(
+          sourceFolder.getUrl(),
+          sourceFolder.isTestSource(),
+          sourceFolder.getPackagePrefix(),
+          properties instanceof JavaSourceRootProperties
+              && ((JavaSourceRootProperties) properties).isForGeneratedSources());
+    }
+  }
+
+  static ContentEntrySpec create(
+      String url, ImmutableSet<SourceFolderSpec> sourceFolders, ImmutableSet<String> excludeUrls) {
+    return new AutoValue_ContentEntrySpec(url, sourceFolders, excludeUrls);
+  }
+
+  /** Resolves the paths of a content entry of the project spec. */
+  static ContentEntrySpec of(
+      ProjectProto.ContentEntry ceSpec,
+      ProjectPath.Resolver projectPathResolver,
+      WorkspaceRoot workspaceRoot) {
+    ProjectPath projectPath = ProjectPath.create(ceSpec.getRoot());
+    ImmutableSet<SourceFolderSpec> sourceFolders =
+        ceSpec.getSourcesList().stream()
+            .map(
+                sfSpec -> {
+                  ProjectPath sourceFolderProjectPath = ProjectPath.create(sfSpec.getProjectPath());
+                  String url =
+                      UrlUtil.pathToUrl(
+                          projectPathResolver.resolve(sourceFolderProjectPath).toString(),
+                          sourceFolderProjectPath.innerJarPath());
+                  return SourceFolderSpec.create(
+                      url, sfSpec.getIsTest(), sfSpec.getPackagePrefix(), sfSpec.getIsGenerated());
+                })
+            .collect(toImmutableSet());
+    ImmutableSet<String> excludeUrls =
+        ceSpec.getExcludesList().stream()
+            .map(exclude -> UrlUtil.pathToIdeaDirectoryUrl(workspaceRoot.absolutePathFor(exclude)))
+            .collect(toImmutableSet());
+    return create(
+        UrlUtil.pathToUrl(projectPathResolver.resolve(projectPath).toString()),
+        sourceFolders,
+        excludeUrls);
+  }
+
+  /** Describes an existing content entry of a module. */
+  static ContentEntrySpec of(ContentEntry contentEntry) {
+    return create(
+        contentEntry.getUrl(),
+        stream(contentEntry.getSourceFolders()).map(SourceFolderSpec::of).collect(toImmutableSet()),
+        ImmutableSet.copyOf(contentEntry.getExcludeFolderUrls()));
+  }
+
+  /** Adds this content entry to the given module. */
+  void addTo(ModifiableRootModel roots) {
+    ContentEntry contentEntry = roots.addContentEntry(url());
+    for (SourceFolderSpec sourceFolder : sourceFolders()) {
+      JavaSourceRootProperties properties =
+          JpsJavaExtensionService.getInstance()
+              .createSourceRootProperties(sourceFolder.packagePrefix(), sourceFolder.isGenerated());
+      JavaSourceRootType rootType =
+          sourceFolder.isTest() ? JavaSourceRootType.TEST_SOURCE : JavaSourceRootType.SOURCE;
+      SourceFolder unused = contentEntry.addSourceFolder(sourceFolder.url(), rootType, properties);
+    }
+    for (String excludeUrl : excludeUrls()) {
+      contentEntry.addExcludeFolder(excludeUrl);
+    }
+  }
+}
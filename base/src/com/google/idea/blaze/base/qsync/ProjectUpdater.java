@@ -15,13 +15,15 @@
  */
 package com.google.idea.blaze.base.qsync;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static java.util.Arrays.stream;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
@@ -50,7 +52,6 @@ import com.intellij.openapi.roots.LibraryOrderEntry;
 import com.intellij.openapi.roots.ModifiableRootModel;
 import com.intellij.openapi.roots.OrderEntry;
 import com.intellij.openapi.roots.OrderRootType;
-import com.intellij.openapi.roots.SourceFolder;
 import com.intellij.openapi.roots.libraries.Library;
 import com.intellij.openapi.roots.libraries.Library.ModifiableModel;
 import com.intellij.openapi.vfs.VfsUtil;
@@ -58,12 +59,12 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
-import org.jetbrains.jps.model.java.JavaSourceRootProperties;
-import org.jetbrains.jps.model.java.JavaSourceRootType;
-import org.jetbrains.jps.model.java.JpsJavaExtensionService;
+import javax.annotation.Nullable;
 
 /** An object that monitors the build graph and applies the changes to the project structure. */
 public class ProjectUpdater implements BlazeProjectListener {
@@ -87,6 +88,9 @@ public class ProjectUpdater implements BlazeProjectListener {
   private final WorkspaceRoot workspaceRoot;
   private final ProjectPath.Resolver projectPathResolver;
 
+  /** The project spec last applied to the project model by this updater. */
+  @Nullable private volatile ProjectProto.Project lastAppliedSpec;
+
   public ProjectUpdater(
       Project project,
       BlazeImportSettings importSettings,
@@ -116,8 +120,33 @@ public class ProjectUpdater implements BlazeProjectListener {
     updateProjectModel(graph.project(), context);
   }
 
-  private void updateProjectModel(ProjectProto.Project spec, Context<?> context) {
+  @VisibleForTesting
+  void updateProjectModel(ProjectProto.Project spec, Context<?> context) {
+    // The settings and structure hooks depend on state outside the spec, such as the SDK and the
+    // project view, so they always run. Only the module roots and libraries are skipped.
+    boolean rootsUnchanged = spec.equals(lastAppliedSpec);
+    if (rootsUnchanged) {
+      context.output(PrintOutput.log("Project roots unchanged"));
+    }
     File imlDirectory = new File(BlazeDataStorage.getProjectDataDir(importSettings), "modules");
+    // Resolve the desired content entries before entering the write action, so that it only needs
+    // to compare them against the current ones.
+    ImmutableMap<String, ImmutableSet<ContentEntrySpec>> contentEntriesByModule =
+        rootsUnchanged
+            ? ImmutableMap.of()
+            : spec.getModulesList().stream()
+                .collect(
+                    toImmutableMap(
+                        ProjectProto.Module::getName,
+                        moduleSpec ->
+                            moduleSpec.getContentEntriesList().stream()
+                                .map(
+                                    ce ->
+                                        ContentEntrySpec.of(ce, projectPathResolver, workspaceRoot))
+                                .collect(toImmutableSet())));
+    WorkspaceLanguageSettings workspaceLanguageSettings =
+        LanguageSupport.createWorkspaceLanguageSettings(projectViewSet);
+
     Transactions.submitWriteActionTransactionAndWait(
         () -> {
           IdeModifiableModelsProvider models =
@@ -126,16 +155,19 @@ public class ProjectUpdater implements BlazeProjectListener {
           for (BlazeQuerySyncPlugin syncPlugin : BlazeQuerySyncPlugin.EP_NAME.getExtensions()) {
             syncPlugin.updateProjectSettingsForQuerySync(project, context, projectViewSet);
           }
-          int removedLibCount = removeUnusedLibraries(models, spec.getLibraryList());
-          if (removedLibCount > 0) {
-            context.output(PrintOutput.output("Removed " + removedLibCount + " libs"));
-          }
-          ImmutableMap.Builder<String, Library> libMapBuilder = ImmutableMap.builder();
-          for (ProjectProto.Library libSpec : spec.getLibraryList()) {
-            Library library = getOrCreateLibrary(models, libSpec);
-            libMapBuilder.put(libSpec.getName(), library);
+          ImmutableMap<String, Library> libMap = ImmutableMap.of();
+          if (!rootsUnchanged) {
+            int removedLibCount = removeUnusedLibraries(models, spec.getLibraryList());
+            if (removedLibCount > 0) {
+              context.output(PrintOutput.output("Removed " + removedLibCount + " libs"));
+            }
+            ImmutableMap.Builder<String, Library> libMapBuilder = ImmutableMap.builder();
+            for (ProjectProto.Library libSpec : spec.getLibraryList()) {
+              Library library = getOrCreateLibrary(models, libSpec);
+              libMapBuilder.put(libSpec.getName(), library);
+            }
+            libMap = libMapBuilder.buildOrThrow();
           }
-          ImmutableMap<String, Library> libMap = libMapBuilder.buildOrThrow();
 
           for (ProjectProto.Module moduleSpec : spec.getModulesList()) {
             Module module =
@@ -143,64 +175,15 @@ public class ProjectUpdater implements BlazeProjectListener {
                     imlDirectory.toPath().resolve(moduleSpec.getName() + ".iml").toString(),
                     mapModuleType(moduleSpec.getType()).getId());
 
-            ModifiableRootModel roots = models.getModifiableRootModel(module);
-            ImmutableList<OrderEntry> existingLibraryOrderEntries =
-                stream(roots.getOrderEntries())
-                    .filter(it -> it instanceof LibraryOrderEntry)
-                    .collect(toImmutableList());
-            for (OrderEntry entry : existingLibraryOrderEntries) {
-              roots.removeOrderEntry(entry);
-            }
-            // TODO: should this be encapsulated in ProjectProto.Module?
-            roots.inheritSdk();
-
-            // TODO instead of removing all content entries and re-adding, we should calculate the
-            //  diff.
-            for (ContentEntry entry : roots.getContentEntries()) {
-              roots.removeContentEntry(entry);
-            }
-            for (ProjectProto.ContentEntry ceSpec : moduleSpec.getContentEntriesList()) {
-              ProjectPath projectPath = ProjectPath.create(ceSpec.getRoot());
-
-              ContentEntry contentEntry =
-                  roots.addContentEntry(
-                      UrlUtil.pathToUrl(projectPathResolver.resolve(projectPath).toString()));
-              for (ProjectProto.SourceFolder sfSpec : ceSpec.getSourcesList()) {
-                ProjectPath sourceFolderProjectPath = ProjectPath.create(sfSpec.getProjectPath());
-
-                JavaSourceRootProperties properties =
-                    JpsJavaExtensionService.getInstance()
-                        .createSourceRootProperties(
-                            sfSpec.getPackagePrefix(), sfSpec.getIsGenerated());
-                JavaSourceRootType rootType =
-                    sfSpec.getIsTest() ? JavaSourceRootType.TEST_SOURCE : JavaSourceRootType.SOURCE;
-                String url =
-                    UrlUtil.pathToUrl(
-                        projectPathResolver.resolve(sourceFolderProjectPath).toString(),
-                        sourceFolderProjectPath.innerJarPath());
-                SourceFolder unused = contentEntry.addSourceFolder(url, rootType, properties);
-              }
-              for (String exclude : ceSpec.getExcludesList()) {
-                contentEntry.addExcludeFolder(
-                    UrlUtil.pathToIdeaDirectoryUrl(workspaceRoot.absolutePathFor(exclude)));
-              }
-            }
-
-            for (String lib : moduleSpec.getLibraryNameList()) {
-              Library library = libMap.get(lib);
-              if (library == null) {
-                throw new IllegalStateException(
-                    "Module refers to library " + lib + " not present in the project spec");
-              }
-              LibraryOrderEntry entry = roots.addLibraryEntry(library);
-              // TODO should this stuff be specified by the Module proto too?
-              entry.setScope(DependencyScope.COMPILE);
-              entry.setExported(false);
+            if (!rootsUnchanged) {
+              updateModuleRoots(
+                  context,
+                  models.getModifiableRootModel(module),
+                  moduleSpec,
+                  contentEntriesByModule.get(moduleSpec.getName()),
+                  libMap);
             }
 
-            WorkspaceLanguageSettings workspaceLanguageSettings =
-                LanguageSupport.createWorkspaceLanguageSettings(projectViewSet);
-
             for (BlazeQuerySyncPlugin syncPlugin : BlazeQuerySyncPlugin.EP_NAME.getExtensions()) {
               // TODO update ProjectProto.Module and updateProjectStructure() to allow a more
               // suitable
@@ -222,6 +205,118 @@ public class ProjectUpdater implements BlazeProjectListener {
             models.commit();
           }
         });
+    lastAppliedSpec = spec;
+  }
+
+  private static void updateModuleRoots(
+      Context<?> context,
+      ModifiableRootModel roots,
+      ProjectProto.Module moduleSpec,
+      ImmutableSet<ContentEntrySpec> contentEntries,
+      ImmutableMap<String, Library> libMap) {
+    // TODO: should this be encapsulated in ProjectProto.Module?
+    if (!roots.isSdkInherited()) {
+      roots.inheritSdk();
+    }
+
+    int changedContentEntries = updateContentEntries(roots, contentEntries);
+    int changedLibraryEntries =
+        updateLibraryOrderEntries(roots, moduleSpec.getLibraryNameList(), libMap);
+    if (changedContentEntries > 0 || changedLibraryEntries > 0) {
+      context.output(
+          PrintOutput.log(
+              String.format(
+                  "Module %s: %d content entries and %d libraries changed",
+                  moduleSpec.getName(), changedContentEntries, changedLibraryEntries)));
+    }
+  }
+
+  /**
+   * Removes the content entries of a module that differ from the desired ones, and adds the
+   * missing ones. Entries that are already as desired are left untouched, so that they don't cause
+   * roots to be re-indexed.
+   *
+   * @return the number of content entries removed or added
+   */
+  @VisibleForTesting
+  static int updateContentEntries(
+      ModifiableRootModel roots, ImmutableSet<ContentEntrySpec> desired) {
+    int changed = 0;
+    Set<ContentEntrySpec> present = Sets.newHashSet();
+    for (ContentEntry entry : roots.getContentEntries()) {
+      ContentEntrySpec existing = ContentEntrySpec.of(entry);
+      if (desired.contains(existing) && present.add(existing)) {
+        continue;
+      }
+      roots.removeContentEntry(entry);
+      changed++;
+    }
+    for (ContentEntrySpec entry : Sets.difference(desired, present)) {
+      entry.addTo(roots);
+      changed++;
+    }
+    return changed;
+  }
+
+  /**
+   * Updates the library order entries of a module to match {@code libraryNames}, only removing and
+   * adding the entries that differ. As before, libraries are ordered after all other entries, and
+   * a library named more than once gets a single entry.
+   *
+   * @return the number of library entries removed or added
+   */
+  @VisibleForTesting
+  static int updateLibraryOrderEntries(
+      ModifiableRootModel roots, List<String> libraryNames, ImmutableMap<String, Library> libMap) {
+    // in the order the libraries are first named
+    ImmutableSet<String> desired = ImmutableSet.copyOf(libraryNames);
+    int changed = 0;
+    Map<String, LibraryOrderEntry> present = Maps.newHashMap();
+    for (OrderEntry entry : roots.getOrderEntries()) {
+      if (!(entry instanceof LibraryOrderEntry)) {
+        continue;
+      }
+      LibraryOrderEntry libraryEntry = (LibraryOrderEntry) entry;
+      String name = libraryEntry.getLibraryName();
+      if (name != null
+          && desired.contains(name)
+          && libraryEntry.getScope() == DependencyScope.COMPILE
+          && !libraryEntry.isExported()
+          && !present.containsKey(name)) {
+        present.put(name, libraryEntry);
+        continue;
+      }
+      roots.removeOrderEntry(entry);
+      changed++;
+    }
+    for (String lib : desired) {
+      if (present.containsKey(lib)) {
+        continue;
+      }
+      Library library = libMap.get(lib);
+      if (library == null) {
+        throw new IllegalStateException(
+            "Module refers to library " + lib + " not present in the project spec");
+      }
+      LibraryOrderEntry entry = roots.addLibraryEntry(library);
+      // TODO should this stuff be specified by the Module proto too?
+      entry.setScope(DependencyScope.COMPILE);
+      entry.setExported(false);
+      present.put(lib, entry);
+      changed++;
+    }
+
+    // Restore the expected order, if entries were kept in a different one.
+    OrderEntry[] entries = roots.getOrderEntries();
+    ImmutableList<OrderEntry> expectedOrder =
+        ImmutableList.<OrderEntry>builder()
+            .addAll(stream(entries).filter(it -> !(it instanceof LibraryOrderEntry)).iterator())
+            .addAll(desired.stream().map(present::get).iterator())
+            .build();
+    if (!expectedOrder.equals(Arrays.asList(entries))) {
+      roots.rearrangeOrderEntries(expectedOrder.toArray(new OrderEntry[0]));
+    }
+    return changed;
   }
 
   private Library getOrCreateLibrary(
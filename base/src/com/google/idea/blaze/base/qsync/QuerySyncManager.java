@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.idea.blaze.base.async.executor.ExecutorLane;
 import com.google.idea.blaze.base.async.executor.ProgressiveTaskWithProgressIndicator;
 import com.google.idea.blaze.base.command.BlazeInvocationContext.ContextType;
 import com.google.idea.blaze.base.issueparser.BlazeIssueParser;
@@ -58,7 +59,6 @@ import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.serviceContainer.NonInjectable;
-import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Optional;
@@ -88,9 +88,7 @@ public class QuerySyncManager implements Disposable {
   private final Logger logger = Logger.getInstance(getClass());
 
   private final Project project;
-  protected final ListeningExecutorService executor =
-      MoreExecutors.listeningDecorator(
-          AppExecutorUtil.createBoundedApplicationPoolExecutor("QuerySync", 128));
+  protected final ListeningExecutorService executor = ExecutorLane.QUERY_SYNC.executor();
 
   private final ProjectLoader loader;
   private volatile QuerySyncProject loadedProject;
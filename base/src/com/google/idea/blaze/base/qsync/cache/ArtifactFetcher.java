@@ -18,11 +18,10 @@ package com.google.idea.blaze.base.qsync.cache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.blaze.base.async.executor.ExecutorLane;
 import com.google.idea.blaze.base.command.buildresult.OutputArtifact;
 import com.google.idea.blaze.common.Context;
 import com.intellij.openapi.extensions.ExtensionPointName;
-import com.intellij.util.concurrency.AppExecutorUtil;
 import java.nio.file.Path;
 
 /** Copy a bunch of artifacts. */
@@ -30,9 +29,7 @@ public interface ArtifactFetcher<ArtifactT extends OutputArtifact> {
   ExtensionPointName<ArtifactFetcher<?>> EP_NAME =
       ExtensionPointName.create("com.google.idea.blaze.qsync.ArtifactFetcher");
 
-  ListeningExecutorService EXECUTOR =
-      MoreExecutors.listeningDecorator(
-          AppExecutorUtil.createBoundedApplicationPoolExecutor("ArtifactBulkCopyExecutor", 128));
+  ListeningExecutorService EXECUTOR = ExecutorLane.ARTIFACT_COPY.executor();
 
   /** A structure that describes that destination location to which an artifact has to be copied. */
   final class ArtifactDestination {
@@ -15,6 +15,9 @@
  */
 package com.google.idea.blaze.base.run.testmap;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
@@ -36,15 +39,35 @@ import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
 import java.util.function.Predicate;
+import javax.annotation.Nullable;
 
-/** Filters a {@link TargetMap} according to a given filter. */
+/**
+ * Filters a {@link TargetMap} according to a given filter.
+ *
+ * <p>The results of recent queries are memoized by their source targets, so repeated queries for
+ * the same sources don't walk the reverse dependency graph again. Instances are expected to be
+ * cached per sync (e.g. in {@link com.google.idea.blaze.base.sync.SyncCache}).
+ */
 public class FilteredTargetMap {
 
+  /** The maximum number of distinct queries whose results are memoized. */
+  @VisibleForTesting static final int MAX_MEMOIZED_QUERIES = 1000;
+
   private final Project project;
   private final Multimap<File, TargetKey> rootsMap;
   private final TargetMap targetMap;
   private final Predicate<TargetIdeInfo> filter;
 
+  /** The reverse dependency map {@link #reachableTargets} was computed from. */
+  @Nullable private ImmutableMultimap<TargetKey, TargetKey> memoizedRdepsMap;
+
+  /**
+   * Maps the source targets of a query, in query order, to the filtered targets reachable from
+   * them in the reverse dependency graph.
+   */
+  private Cache<ImmutableList<TargetKey>, ImmutableSet<TargetIdeInfo>> reachableTargets =
+      newReachableTargetsCache();
+
   public FilteredTargetMap(
       Project project,
       ArtifactLocationDecoder decoder,
@@ -69,14 +92,45 @@ public class FilteredTargetMap {
     return ImmutableSet.of();
   }
 
-  private ImmutableSet<TargetIdeInfo> targetsForSourceFilesImpl(
+  @VisibleForTesting
+  ImmutableSet<TargetIdeInfo> targetsForSourceFilesImpl(
       ImmutableMultimap<TargetKey, TargetKey> rdepsMap, Collection<File> sourceFiles) {
-    ImmutableSet.Builder<TargetIdeInfo> result = ImmutableSet.builder();
-    Set<TargetKey> roots =
+    ImmutableList<TargetKey> roots =
         sourceFiles.stream()
             .flatMap(f -> rootsMap.get(f).stream())
-            .collect(ImmutableSet.toImmutableSet());
+            .distinct()
+            .collect(ImmutableList.toImmutableList());
+    if (roots.isEmpty()) {
+      return ImmutableSet.of();
+    }
+    Cache<ImmutableList<TargetKey>, ImmutableSet<TargetIdeInfo>> reachableTargets =
+        getReachableTargets(rdepsMap);
+    ImmutableSet<TargetIdeInfo> result = reachableTargets.getIfPresent(roots);
+    if (result == null) {
+      result = reachableFrom(rdepsMap, roots);
+      reachableTargets.put(roots, result);
+    }
+    return result;
+  }
+
+  private synchronized Cache<ImmutableList<TargetKey>, ImmutableSet<TargetIdeInfo>>
+      getReachableTargets(ImmutableMultimap<TargetKey, TargetKey> rdepsMap) {
+    if (rdepsMap != memoizedRdepsMap) {
+      memoizedRdepsMap = rdepsMap;
+      reachableTargets = newReachableTargetsCache();
+    }
+    return reachableTargets;
+  }
+
+  private static Cache<ImmutableList<TargetKey>, ImmutableSet<TargetIdeInfo>>
+      newReachableTargetsCache() {
+    return CacheBuilder.newBuilder().maximumSize(MAX_MEMOIZED_QUERIES).build();
+  }
 
+  /** Returns the filtered targets reachable from {@code roots}, in breadth first order. */
+  private ImmutableSet<TargetIdeInfo> reachableFrom(
+      ImmutableMultimap<TargetKey, TargetKey> rdepsMap, Collection<TargetKey> roots) {
+    ImmutableSet.Builder<TargetIdeInfo> result = ImmutableSet.builder();
     Queue<TargetKey> todo = Queues.newArrayDeque();
     todo.addAll(roots);
     Set<TargetKey> seen = Sets.newHashSet();
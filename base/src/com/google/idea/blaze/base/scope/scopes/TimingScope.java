@@ -45,6 +45,8 @@ public class TimingScope implements BlazeScope {
   private final EventType eventType;
 
   private Instant startTime;
+  private long threadId;
+  private String threadName = "";
 
   private Optional<Duration> duration = Optional.empty();
 
@@ -62,6 +64,9 @@ public class TimingScope implements BlazeScope {
   @Override
   public void onScopeBegin(BlazeContext context) {
     startTime = Instant.now();
+    Thread thread = Thread.currentThread();
+    threadId = thread.getId();
+    threadName = thread.getName();
     parentScope = context.getParentScope(this);
 
     if (parentScope != null) {
@@ -89,7 +94,14 @@ public class TimingScope implements BlazeScope {
   }
 
   private TimedEvent getTimedEvent() {
-    return new TimedEvent(name, eventType, duration.orElse(Duration.ZERO), children.isEmpty());
+    return new TimedEvent(
+        name,
+        eventType,
+        duration.orElse(Duration.ZERO),
+        children.isEmpty(),
+        startTime,
+        threadId,
+        threadName);
   }
 
   /** Adds a TimingScope listener to its list of listeners. */
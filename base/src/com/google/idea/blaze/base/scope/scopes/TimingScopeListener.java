@@ -18,6 +18,8 @@ package com.google.idea.blaze.base.scope.scopes;
 import com.google.common.collect.ImmutableList;
 import com.google.idea.blaze.base.scope.scopes.TimingScope.EventType;
 import java.time.Duration;
+import java.time.Instant;
+import javax.annotation.Nullable;
 
 /** Called once the scope ends, with the timing information of the scope and all its children. */
 public interface TimingScopeListener {
@@ -29,11 +31,33 @@ public interface TimingScopeListener {
     public final Duration duration;
     public final boolean isLeafEvent;
 
+    /** When the event started, if known. */
+    @Nullable public final Instant startTime;
+
+    /** The id of the thread the event started on, or -1 if unknown. */
+    public final long threadId;
+
+    public final String threadName;
+
     public TimedEvent(String name, EventType type, Duration duration, boolean isLeafEvent) {
+      this(name, type, duration, isLeafEvent, null, -1, "");
+    }
+
+    public TimedEvent(
+        String name,
+        EventType type,
+        Duration duration,
+        boolean isLeafEvent,
+        @Nullable Instant startTime,
+        long threadId,
+        String threadName) {
       this.name = name;
       this.type = type;
       this.duration = duration;
       this.isLeafEvent = isLeafEvent;
+      this.startTime = startTime;
+      this.threadId = threadId;
+      this.threadName = threadName;
     }
   }
 
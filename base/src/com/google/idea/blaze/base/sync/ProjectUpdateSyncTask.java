@@ -254,7 +254,7 @@ final class ProjectUpdateSyncTask {
 
     ListenableFuture<DirectoryStructure> directoryStructureFuture =
         DirectoryStructure.getRootDirectoryStructure(
-            project, workspaceRoot, projectState.getProjectViewSet());
+            project, workspaceRoot, projectState.getProjectViewSet(), projectState.getWorkingSet());
 
     refreshVirtualFileSystem(context, project, newProjectData);
 
@@ -25,6 +25,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.blaze.base.async.executor.ExecutorLane;
 import com.google.idea.blaze.base.async.executor.ProgressiveTaskWithProgressIndicator;
 import com.google.idea.blaze.base.bazel.BuildSystem;
 import com.google.idea.blaze.base.bazel.BuildSystem.SyncStrategy;
@@ -33,6 +34,7 @@ import com.google.idea.blaze.base.experiments.ExperimentScope;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.issueparser.BlazeIssueParser;
 import com.google.idea.blaze.base.logging.EventLoggingService;
+import com.google.idea.blaze.base.logging.trace.TraceExporter;
 import com.google.idea.blaze.base.logging.utils.BuildPhaseSyncStats;
 import com.google.idea.blaze.base.logging.utils.SyncStats;
 import com.google.idea.blaze.base.model.AspectSyncProjectData;
@@ -85,7 +87,6 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
-import com.intellij.util.concurrency.AppExecutorUtil;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -183,13 +184,9 @@ final class SyncPhaseCoordinator {
     }
   }
 
-  // an application-wide cap on the number of concurrent remote builds
-  private static final int MAX_BUILD_TASKS = 8;
-
   // an application-wide executor to run concurrent blaze builds remotely
   private static final ListeningExecutorService remoteBuildExecutor =
-      MoreExecutors.listeningDecorator(
-          AppExecutorUtil.createBoundedApplicationPoolExecutor("FetchExecutor", MAX_BUILD_TASKS));
+      ExecutorLane.REMOTE_BUILD.executor();
 
   // a per-project executor to run single-threaded sync phases
   private final ListeningExecutorService singleThreadedExecutor;
@@ -654,7 +651,9 @@ final class SyncPhaseCoordinator {
           .setStartTime(startTime)
           .setBlazeExecTime(totalBlazeTime(stats.getCurrentTimedEvents()))
           .setTotalClockTime(Duration.between(startTime, Instant.now()));
-      EventLoggingService.getInstance().log(stats.build());
+      SyncStats syncStats = stats.build();
+      EventLoggingService.getInstance().log(syncStats);
+      TraceExporter.exportSync(project, syncStats);
       context.output(new StatusOutput("Sync " + syncStatus));
       outputTimingSummary(context, stats.getCurrentTimedEvents());
 
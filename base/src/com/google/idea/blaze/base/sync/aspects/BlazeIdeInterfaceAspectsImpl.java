@@ -17,6 +17,7 @@ package com.google.idea.blaze.base.sync.aspects;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
@@ -356,25 +357,37 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
 
               ListeningExecutorService executor = BlazeExecutor.getInstance().getExecutor();
 
-              // Read protos from any new files
+              // Read protos from any new files, unless they were parsed as their build shard
+              // finished
+              PreparsedAspectOutputs preparsed = PreparsedAspectOutputs.getInstance(project);
               List<ListenableFuture<TargetFilePair>> futures = Lists.newArrayList();
               for (OutputArtifactWithoutDigest file : fileState.getUpdatedOutputs()) {
+                ListenableFuture<IntellijIdeInfo.TargetIdeInfo> message =
+                    preparsed.take(file, fileState.getNewState().get(file.getRelativePath()));
+                if (message == null) {
+                  message = executor.submit(() -> aspectStrategy.readAspectFile(file));
+                } else {
+                  message =
+                      Futures.catchingAsync(
+                          message,
+                          Exception.class,
+                          e -> executor.submit(() -> aspectStrategy.readAspectFile(file)),
+                          directExecutor());
+                }
                 futures.add(
-                    executor.submit(
-                        () -> {
+                    Futures.transform(
+                        message,
+                        m -> {
                           totalSizeLoaded.addAndGet(file.getLength());
-                          IntellijIdeInfo.TargetIdeInfo message =
-                              aspectStrategy.readAspectFile(file);
                           TargetIdeInfo target =
                               protoToTarget(
-                                  languageSettings,
-                                  importRoots,
-                                  message,
-                                  ignoredLanguages,
-                                  syncTime);
+                                  languageSettings, importRoots, m, ignoredLanguages, syncTime);
                           return new TargetFilePair(file, target);
-                        }));
+                        },
+                        executor));
               }
+              // anything left over is from an older build, or wasn't needed
+              preparsed.clear();
 
               Set<TargetKey> newTargets = new HashSet<>();
               Set<String> configurations = new LinkedHashSet<>();
@@ -654,6 +667,11 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
                               result.getBuildIds().stream().findFirst().orElse(null)));
                     }
                     printShardFinishedSummary(context, task.getName(), result, invoker);
+                    if (isSync) {
+                      // start reading this shard's outputs while the remaining shards build
+                      PreparsedAspectOutputs.getInstance(project)
+                          .parseShardOutputs(result, aspectStrategy);
+                    }
                     synchronized (combinedResult) {
                       combinedResult.set(
                           combinedResult.isNull()
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.aspects;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
+import com.google.idea.blaze.base.command.buildresult.BlazeArtifact;
+import com.google.idea.blaze.base.command.buildresult.OutputArtifact;
+import com.google.idea.blaze.base.command.buildresult.OutputArtifactWithoutDigest;
+import com.google.idea.blaze.base.filecache.ArtifactState;
+import com.google.idea.blaze.base.filecache.ArtifactsDiff;
+import com.google.idea.blaze.base.model.AspectSyncProjectData;
+import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.prefetch.PrefetchService;
+import com.google.idea.blaze.base.prefetch.RemoteArtifactPrefetcher;
+import com.google.idea.blaze.base.sync.aspects.strategy.AspectStrategy;
+import com.google.idea.blaze.base.sync.aspects.strategy.AspectStrategy.OutputGroup;
+import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Fetches and parses the IDE info outputs of each sync build shard as soon as that shard finishes,
+ * while the remaining shards are still building. The project update phase then picks up the parsed
+ * targets via {@link #take} rather than reading every output after the whole build is done.
+ *
+ * <p>This is purely an optimization: outputs which weren't parsed ahead of time, or which changed
+ * since, are read by the project update phase as before.
+ */
+final class PreparsedAspectOutputs {
+  private static final Logger logger = Logger.getInstance(PreparsedAspectOutputs.class);
+
+  private static final BoolExperiment enabled =
+      new BoolExperiment("blaze.sync.preparse.shard.outputs", true);
+
+  static PreparsedAspectOutputs getInstance(Project project) {
+    return project.getService(PreparsedAspectOutputs.class);
+  }
+
+  /** An output parsed ahead of the project update phase, along with the state it was read at. */
+  private static class ParsedOutput {
+    final ArtifactState state;
+    final ListenableFuture<IntellijIdeInfo.TargetIdeInfo> target;
+
+    ParsedOutput(ArtifactState state, ListenableFuture<IntellijIdeInfo.TargetIdeInfo> target) {
+      this.state = state;
+      this.target = target;
+    }
+  }
+
+  private final Project project;
+  private final Map<String, ParsedOutput> parsedOutputs = new ConcurrentHashMap<>();
+
+  /**
+   * Incremented by {@link #clear}, so outputs parsed for an earlier sync can't be recorded after
+   * its project update phase has finished with them. Guarded by {@code this}.
+   */
+  private int generation;
+
+  PreparsedAspectOutputs(Project project) {
+    this.project = project;
+  }
+
+  /**
+   * Starts fetching and parsing the new or changed IDE info outputs of a finished build shard. Does
+   * not block.
+   */
+  void parseShardOutputs(BlazeBuildOutputs shardOutputs, AspectStrategy aspectStrategy) {
+    if (!enabled.getValue()) {
+      return;
+    }
+    ImmutableList<OutputArtifact> files =
+        shardOutputs
+            .getOutputGroupArtifacts(group -> group.startsWith(OutputGroup.INFO.prefix))
+            .stream()
+            .filter(f -> AspectStrategy.ASPECT_OUTPUT_FILE_PREDICATE.test(f.getRelativePath()))
+            .distinct()
+            .collect(toImmutableList());
+    if (files.isEmpty()) {
+      return;
+    }
+    ListeningExecutorService executor = BlazeExecutor.getInstance().getExecutor();
+    int generation = currentGeneration();
+    @SuppressWarnings("unused") // failures are logged, and the outputs are parsed again later
+    ListenableFuture<?> possiblyIgnoredError =
+        Futures.catching(
+            executor.submit(
+                () -> {
+                  startParsing(generation, files, aspectStrategy, executor);
+                  return null;
+                }),
+            Exception.class,
+            e -> {
+              logger.warn("Failed to parse build shard outputs ahead of project update", e);
+              return null;
+            },
+            directExecutor());
+  }
+
+  private void startParsing(
+      int generation,
+      ImmutableList<OutputArtifact> files,
+      AspectStrategy aspectStrategy,
+      ListeningExecutorService executor)
+      throws Exception {
+    // only parse outputs which the project update phase will consider new or changed
+    ArtifactsDiff diff = ArtifactsDiff.diffArtifacts(previousState(), files);
+    ImmutableList<OutputArtifactWithoutDigest> updated = diff.getUpdatedOutputs();
+    if (updated.isEmpty()) {
+      return;
+    }
+    ListenableFuture<?> fetched =
+        Futures.allAsList(
+            RemoteArtifactPrefetcher.getInstance()
+                .downloadArtifacts(
+                    /* projectName= */ project.getName(),
+                    /* outputArtifacts= */ BlazeArtifact.getRemoteArtifacts(updated)),
+            RemoteArtifactPrefetcher.getInstance()
+                .loadFilesInJvm(/* outputArtifacts= */ BlazeArtifact.getRemoteArtifacts(updated)),
+            PrefetchService.getInstance()
+                .prefetchFiles(
+                    /* files= */ BlazeArtifact.getLocalFiles(updated),
+                    /* refetchCachedFiles= */ true,
+                    /* fetchFileTypes= */ false));
+    for (OutputArtifactWithoutDigest file : updated) {
+      ArtifactState state = diff.getNewState().get(file.getRelativePath());
+      if (state == null) {
+        continue;
+      }
+      ListenableFuture<IntellijIdeInfo.TargetIdeInfo> target =
+          Futures.transformAsync(
+              fetched,
+              ignored -> executor.submit(() -> aspectStrategy.readAspectFile(file)),
+              directExecutor());
+      if (!record(generation, file.getRelativePath(), state, target)) {
+        // the project update phase has already run; the outputs of a shard share one fetch, so
+        // the parse isn't cancelled, just left unreferenced
+        return;
+      }
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int currentGeneration() {
+    return generation;
+  }
+
+  /**
+   * Records a target being parsed ahead of time, unless {@link #clear} was called since the given
+   * generation. Returns whether it was recorded.
+   */
+  @VisibleForTesting
+  synchronized boolean record(
+      int generation,
+      String relativePath,
+      ArtifactState state,
+      ListenableFuture<IntellijIdeInfo.TargetIdeInfo> target) {
+    if (generation != this.generation) {
+      return false;
+    }
+    parsedOutputs.put(relativePath, new ParsedOutput(state, target));
+    return true;
+  }
+
+  @Nullable
+  private ImmutableMap<String, ArtifactState> previousState() {
+    BlazeProjectData projectData =
+        BlazeProjectDataManager.getInstance(project).getBlazeProjectData();
+    if (!(projectData instanceof AspectSyncProjectData)) {
+      return null;
+    }
+    BlazeIdeInterfaceState state =
+        ((AspectSyncProjectData) projectData).getTargetData().ideInterfaceState;
+    return state != null ? state.ideInfoFileState : null;
+  }
+
+  /**
+   * Removes and returns the target parsed ahead of time from the given output, or null if there is
+   * none, or it was parsed from an older version of the output.
+   */
+  @Nullable
+  ListenableFuture<IntellijIdeInfo.TargetIdeInfo> take(
+      OutputArtifactWithoutDigest file, @Nullable ArtifactState currentState) {
+    ParsedOutput parsed = parsedOutputs.remove(file.getRelativePath());
+    if (parsed == null || currentState == null || parsed.state.isMoreRecent(currentState)) {
+      return null;
+    }
+    return parsed.target;
+  }
+
+  /**
+   * Drops any outputs which were parsed ahead of time, but not used, and stops recording those
+   * which are still being parsed for the current sync.
+   */
+  synchronized void clear() {
+    generation++;
+    parsedOutputs.clear();
+  }
+}
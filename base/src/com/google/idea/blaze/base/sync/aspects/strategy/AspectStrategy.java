@@ -23,6 +23,7 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
 import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
 import com.google.idea.blaze.base.command.BlazeCommand;
 import com.google.idea.blaze.base.command.buildresult.BlazeArtifact;
@@ -32,7 +33,6 @@ import com.google.idea.common.experiments.BoolExperiment;
 import com.google.protobuf.TextFormat;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
@@ -47,6 +47,10 @@ public abstract class AspectStrategy {
   public static final Predicate<String> ASPECT_OUTPUT_FILE_PREDICATE =
       str -> str.endsWith(".intellij-info.txt");
 
+  /** Parsers are immutable, so a single one is shared by all threads reading aspect outputs. */
+  private static final TextFormat.Parser ASPECT_FILE_PARSER =
+      TextFormat.Parser.newBuilder().setAllowUnknownFields(true).build();
+
   /** A Blaze output group created by the aspect. */
   public enum OutputGroup {
     INFO("intellij-info-"),
@@ -161,12 +165,15 @@ public abstract class AspectStrategy {
   }
 
   public final IntellijIdeInfo.TargetIdeInfo readAspectFile(BlazeArtifact file) throws IOException {
+    byte[] content;
     try (InputStream inputStream = file.getInputStream()) {
-      IntellijIdeInfo.TargetIdeInfo.Builder builder = IntellijIdeInfo.TargetIdeInfo.newBuilder();
-      TextFormat.Parser parser = TextFormat.Parser.newBuilder().setAllowUnknownFields(true).build();
-      parser.merge(new InputStreamReader(inputStream, UTF_8), builder);
-      return builder.build();
+      content = ByteStreams.toByteArray(inputStream);
     }
+    // decoding the whole file at once is much cheaper than having TextFormat pull it through an
+    // InputStreamReader in small chunks
+    IntellijIdeInfo.TargetIdeInfo.Builder builder = IntellijIdeInfo.TargetIdeInfo.newBuilder();
+    ASPECT_FILE_PARSER.merge(new String(content, UTF_8), builder);
+    return builder.build();
   }
 
   @Nullable
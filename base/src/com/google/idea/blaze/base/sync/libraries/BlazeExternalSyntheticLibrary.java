@@ -15,32 +15,43 @@
  */
 package com.google.idea.blaze.base.sync.libraries;
 
-import static com.google.common.collect.ImmutableSet.toImmutableSet;
-
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.idea.blaze.base.io.VfsUtils;
 import com.intellij.navigation.ItemPresentation;
 import com.intellij.openapi.roots.SyntheticLibrary;
-import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import icons.BlazeIcons;
 import java.io.File;
 import java.util.Collection;
-import java.util.Objects;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
 import javax.annotation.Nullable;
 import javax.swing.Icon;
 
 /**
  * A {@link SyntheticLibrary} pointing to a list of external files for a language. Only supports one
  * instance per value of presentableText.
+ *
+ * <p>Files are tracked by path, so that VFS events only touch the affected files: deleting,
+ * moving or renaming a directory removes the valid files under its old path, and creating one, or
+ * moving one into place, restores the missing files under it, without scanning the whole library.
  */
 public final class BlazeExternalSyntheticLibrary extends SyntheticLibrary
     implements ItemPresentation {
   private final String presentableText;
-  private final ImmutableSet<File> files;
   private final Set<VirtualFile> validFiles;
+  // both keyed by system-independent path, sorted so that the files under a directory are a range.
+  // Valid files are keyed by their VFS path, which is what VFS events report.
+  private final NavigableMap<String, VirtualFile> validFilesByPath =
+      new ConcurrentSkipListMap<>();
+  private final NavigableMap<String, File> missingFilesByPath = new ConcurrentSkipListMap<>();
 
   /**
    * Constructs library with an initial set of valid {@link VirtualFile}s.
@@ -51,13 +62,16 @@ public final class BlazeExternalSyntheticLibrary extends SyntheticLibrary
    */
   public BlazeExternalSyntheticLibrary(String presentableText, Collection<File> files) {
     this.presentableText = presentableText;
-    this.files = ImmutableSet.copyOf(files);
-    this.validFiles =
-        Sets.newConcurrentHashSet(
-            files.stream()
-                .map(f -> VfsUtils.resolveVirtualFile(f, /* refreshIfNeeded= */ true))
-                .filter(Objects::nonNull)
-                .collect(toImmutableSet()));
+    this.validFiles = Sets.newConcurrentHashSet();
+    for (File file : ImmutableSet.copyOf(files)) {
+      VirtualFile vf = VfsUtils.resolveVirtualFile(file, /* refreshIfNeeded= */ true);
+      if (vf != null) {
+        validFiles.add(vf);
+        validFilesByPath.put(vf.getPath(), vf);
+      } else {
+        missingFilesByPath.put(pathKey(file), file);
+      }
+    }
   }
 
   @Nullable
@@ -66,27 +80,62 @@ public final class BlazeExternalSyntheticLibrary extends SyntheticLibrary
     return presentableText;
   }
 
-  void removeInvalidFiles(Collection<VirtualFile> deletedFiles) {
-    if (deletedFiles.stream().anyMatch(VirtualFile::isDirectory)) {
-      validFiles.removeIf(f -> !f.isValid());
-    } else {
-      validFiles.removeAll(deletedFiles);
+  /** Marks the files at, or under, the given deleted or moved-away paths as missing. */
+  synchronized void removeDeletedFiles(Collection<String> deletedPaths) {
+    for (String path : deletedPaths) {
+      for (Map.Entry<String, VirtualFile> entry : filesAtOrUnder(validFilesByPath, path)) {
+        validFilesByPath.remove(entry.getKey());
+        validFiles.remove(entry.getValue());
+        missingFilesByPath.put(entry.getKey(), new File(entry.getKey()));
+      }
+    }
+  }
+
+  /** Restores the missing files at, or under, the given created or moved-to paths. */
+  synchronized void restoreCreatedFiles(Collection<String> createdPaths) {
+    for (String path : createdPaths) {
+      restore(filesAtOrUnder(missingFilesByPath, path));
+    }
+  }
+
+  /**
+   * Restores any missing files which exist again. Files which went missing are already tracked by
+   * {@link #removeDeletedFiles}, so the valid files aren't checked.
+   */
+  synchronized void restoreMissingFiles() {
+    if (missingFilesByPath.isEmpty()) {
+      return;
+    }
+    restore(ImmutableList.copyOf(missingFilesByPath.entrySet()));
+  }
+
+  private void restore(List<Map.Entry<String, File>> missingFiles) {
+    for (Map.Entry<String, File> entry : missingFiles) {
+      VirtualFile vf = VfsUtils.resolveVirtualFile(entry.getValue(), /* refreshIfNeeded= */ false);
+      if (vf != null) {
+        missingFilesByPath.remove(entry.getKey());
+        validFilesByPath.put(vf.getPath(), vf);
+        validFiles.add(vf);
+      }
     }
   }
 
-  void restoreMissingFiles() {
-    if (validFiles.size() < files.size()) {
-      Sets.difference(
-              files,
-              validFiles.stream()
-                  .filter(VirtualFile::isValid)
-                  .map(VfsUtil::virtualToIoFile)
-                  .collect(toImmutableSet()))
-          .stream()
-          .map(file -> VfsUtils.resolveVirtualFile(file, /* refreshIfNeeded= */ false))
-          .filter(Objects::nonNull)
-          .forEach(validFiles::add);
+  private static <T> ImmutableList<Map.Entry<String, T>> filesAtOrUnder(
+      NavigableMap<String, T> filesByPath, String path) {
+    ImmutableList.Builder<Map.Entry<String, T>> files = ImmutableList.builder();
+    T file = filesByPath.get(path);
+    if (file != null) {
+      files.add(Maps.immutableEntry(path, file));
     }
+    String prefix = path.endsWith("/") ? path : path + '/';
+    files.addAll(
+        filesByPath.subMap(prefix, /* fromInclusive= */ true, prefix + Character.MAX_VALUE, false)
+            .entrySet());
+    return files.build();
+  }
+
+  private static String pathKey(File file) {
+    return FileUtil.toSystemIndependentName(file.getPath());
   }
 
   @Override
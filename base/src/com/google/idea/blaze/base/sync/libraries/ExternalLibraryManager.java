@@ -15,7 +15,6 @@
  */
 package com.google.idea.blaze.base.sync.libraries;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 
 import com.google.common.collect.ImmutableList;
@@ -37,8 +36,12 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.AdditionalLibraryRootsProvider;
 import com.intellij.openapi.roots.ex.ProjectRootManagerEx;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
 import com.intellij.vfs.AsyncVfsEventsPostProcessor;
 import java.io.File;
 import java.util.Map;
@@ -72,18 +75,50 @@ public class ExternalLibraryManager implements Disposable {
               if (duringBlazeSync || libraries.isEmpty()) {
                 return;
               }
-              ImmutableList<VirtualFile> deletedFiles =
-                  events.stream()
-                      .filter(VFileDeleteEvent.class::isInstance)
-                      .map(VFileEvent::getFile)
-                      .collect(toImmutableList());
-              if (!deletedFiles.isEmpty()) {
-                libraries.values().forEach(library -> library.removeInvalidFiles(deletedFiles));
+              ImmutableList.Builder<String> removedPaths = ImmutableList.builder();
+              ImmutableList.Builder<String> addedPaths = ImmutableList.builder();
+              events.forEach(event -> collectPaths(event, removedPaths, addedPaths));
+              ImmutableList<String> removed = removedPaths.build();
+              if (!removed.isEmpty()) {
+                libraries.values().forEach(library -> library.removeDeletedFiles(removed));
+              }
+              ImmutableList<String> added = addedPaths.build();
+              if (!added.isEmpty()) {
+                libraries.values().forEach(library -> library.restoreCreatedFiles(added));
               }
             },
             this);
   }
 
+  /**
+   * Collects the paths a VFS event removed files from, and the paths it added files at. A move or
+   * rename removes the old path and adds the new one.
+   */
+  private static void collectPaths(
+      VFileEvent event,
+      ImmutableList.Builder<String> removedPaths,
+      ImmutableList.Builder<String> addedPaths) {
+    if (event instanceof VFileDeleteEvent) {
+      removedPaths.add(event.getPath());
+    } else if (event instanceof VFileCreateEvent) {
+      addedPaths.add(event.getPath());
+    } else if (event instanceof VFileCopyEvent) {
+      VFileCopyEvent copy = (VFileCopyEvent) event;
+      addedPaths.add(copy.getNewParent().getPath() + '/' + copy.getNewChildName());
+    } else if (event instanceof VFileMoveEvent) {
+      VFileMoveEvent move = (VFileMoveEvent) event;
+      removedPaths.add(move.getOldParent().getPath() + '/' + move.getFile().getName());
+      addedPaths.add(move.getNewParent().getPath() + '/' + move.getFile().getName());
+    } else if (event instanceof VFilePropertyChangeEvent) {
+      VFilePropertyChangeEvent change = (VFilePropertyChangeEvent) event;
+      VirtualFile parent = change.getFile().getParent();
+      if (VirtualFile.PROP_NAME.equals(change.getPropertyName()) && parent != null) {
+        removedPaths.add(parent.getPath() + '/' + change.getOldValue());
+        addedPaths.add(parent.getPath() + '/' + change.getNewValue());
+      }
+    }
+  }
+
   @Nullable
   public BlazeExternalSyntheticLibrary getLibrary(
       Class<? extends BlazeExternalLibraryProvider> providerClass) {
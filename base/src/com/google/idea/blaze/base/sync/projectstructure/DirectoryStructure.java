@@ -15,7 +15,10 @@
  */
 package com.google.idea.blaze.base.sync.projectstructure;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.collect.Lists;
@@ -30,13 +33,16 @@ import com.google.idea.blaze.base.prefetch.FetchExecutor;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.settings.Blaze;
 import com.google.idea.blaze.base.sync.projectview.ImportRoots;
+import com.google.idea.blaze.base.sync.workspace.WorkingSet;
 import com.intellij.openapi.project.Project;
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
 
 /**
  * Directory structure representation used by {@link ContentEntryEditor}.
@@ -52,14 +58,29 @@ public class DirectoryStructure {
     this.directories = directories;
   }
 
+  /**
+   * Computes the directory structure of the project's import roots. Directories which haven't
+   * changed since the last walk aren't listed again, see {@link DirectoryStructureCache}.
+   *
+   * @param workingSet the VCS working set, if known, whose added and deleted files are used to
+   *     invalidate cached directory listings
+   */
   public static ListenableFuture<DirectoryStructure> getRootDirectoryStructure(
-      Project project, WorkspaceRoot workspaceRoot, ProjectViewSet projectViewSet) {
+      Project project,
+      WorkspaceRoot workspaceRoot,
+      ProjectViewSet projectViewSet,
+      @Nullable WorkingSet workingSet) {
+    DirectoryStructureCache cache = DirectoryStructureCache.getInstance(project);
+    if (workingSet != null) {
+      cache.invalidate(workspaceRoot, workingSet);
+    }
     AtomicBoolean cancelled = new AtomicBoolean(false);
     try {
       ListenableFuture<DirectoryStructure> future =
           FetchExecutor.EXECUTOR.submit(
               () ->
-                  computeRootDirectoryStructure(project, workspaceRoot, projectViewSet, cancelled));
+                  computeRootDirectoryStructure(
+                      project, workspaceRoot, projectViewSet, cache, cancelled));
       future.addListener(() -> cancelled.set(true), MoreExecutors.directExecutor());
       return future;
 
@@ -73,6 +94,7 @@ public class DirectoryStructure {
       Project project,
       WorkspaceRoot workspaceRoot,
       ProjectViewSet projectViewSet,
+      DirectoryStructureCache cache,
       AtomicBoolean cancelled)
       throws ExecutionException, InterruptedException {
     FileOperationProvider fileOperationProvider = FileOperationProvider.getInstance();
@@ -90,8 +112,10 @@ public class DirectoryStructure {
               workspaceRoot,
               excludeDirectories,
               fileOperationProvider,
+              cache,
               FetchExecutor.EXECUTOR,
               rootDirectory,
+              /* isKnownDirectory= */ false,
               cancelled));
     }
     ImmutableMap.Builder<WorkspacePath, DirectoryStructure> result = ImmutableMap.builder();
@@ -107,18 +131,20 @@ public class DirectoryStructure {
       WorkspaceRoot workspaceRoot,
       Set<WorkspacePath> excludeDirectories,
       FileOperationProvider fileOperationProvider,
+      DirectoryStructureCache cache,
       ListeningExecutorService executorService,
       WorkspacePath workspacePath,
+      boolean isKnownDirectory,
       AtomicBoolean cancelled) {
     if (cancelled.get() || excludeDirectories.contains(workspacePath)) {
       return Futures.immediateFuture(null);
     }
     File file = workspaceRoot.fileForPath(workspacePath);
-    if (!fileOperationProvider.isDirectory(file)) {
+    if (!isKnownDirectory && !fileOperationProvider.isDirectory(file)) {
       return Futures.immediateFuture(null);
     }
-    ListenableFuture<File[]> childrenFuture =
-        executorService.submit(() -> fileOperationProvider.listFiles(file));
+    ListenableFuture<List<File>> childrenFuture =
+        executorService.submit(() -> listSubdirectories(fileOperationProvider, cache, file));
     return Futures.transformAsync(
         childrenFuture,
         children -> {
@@ -126,7 +152,7 @@ public class DirectoryStructure {
             return Futures.immediateFuture(null);
           }
           List<ListenableFuture<PathStructurePair>> futures =
-              Lists.newArrayListWithExpectedSize(children.length);
+              Lists.newArrayListWithExpectedSize(children.size());
           for (File child : children) {
             WorkspacePath childWorkspacePath;
             try {
@@ -140,8 +166,10 @@ public class DirectoryStructure {
                     workspaceRoot,
                     excludeDirectories,
                     fileOperationProvider,
+                    cache,
                     executorService,
                     childWorkspacePath,
+                    /* isKnownDirectory= */ true,
                     cancelled));
           }
           return Futures.transform(
@@ -162,6 +190,31 @@ public class DirectoryStructure {
         executorService);
   }
 
+  /**
+   * Returns the subdirectories of the given directory, reusing the previous listing if the
+   * directory hasn't changed since. Returns null if the directory couldn't be listed.
+   */
+  @Nullable
+  private static ImmutableList<File> listSubdirectories(
+      FileOperationProvider fileOperationProvider, DirectoryStructureCache cache, File directory) {
+    // read before listing, so that concurrent changes invalidate the new listing
+    long modifiedTime = fileOperationProvider.getFileModifiedTime(directory);
+    ImmutableList<File> subdirectories = cache.getSubdirectories(directory, modifiedTime);
+    if (subdirectories != null) {
+      return subdirectories;
+    }
+    File[] children = fileOperationProvider.listFiles(directory);
+    if (children == null) {
+      return null;
+    }
+    subdirectories =
+        Arrays.stream(children)
+            .filter(fileOperationProvider::isDirectory)
+            .collect(toImmutableList());
+    cache.putSubdirectories(directory, modifiedTime, subdirectories);
+    return subdirectories;
+  }
+
   private static class PathStructurePair {
     final WorkspacePath path;
     final DirectoryStructure directoryStructure;
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.projectstructure;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.base.sync.workspace.WorkingSet;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import java.io.File;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import javax.annotation.Nullable;
+
+/**
+ * The subdirectories of each directory read by previous {@link DirectoryStructure} walks, so that
+ * later syncs only list the directories which changed.
+ *
+ * <p>A listing is reused while its directory's modification time is unchanged, and it hasn't been
+ * invalidated by a VFS event or the VCS working set. VFS events alone aren't enough, as the VFS
+ * isn't told about changes in directories it hasn't loaded.
+ */
+final class DirectoryStructureCache {
+
+  private static final BoolExperiment enabled =
+      new BoolExperiment("blaze.sync.cache.directory.structure", true);
+
+  static DirectoryStructureCache getInstance(Project project) {
+    return project.getService(DirectoryStructureCache.class);
+  }
+
+  /** The subdirectories of a directory, as of the given modification time. */
+  static final class Listing {
+    final long modifiedTime;
+    final ImmutableList<File> subdirectories;
+
+    Listing(long modifiedTime, ImmutableList<File> subdirectories) {
+      this.modifiedTime = modifiedTime;
+      this.subdirectories = subdirectories;
+    }
+  }
+
+  // keyed by system-independent path, sorted so that the directories under a path are a range
+  private final NavigableMap<String, Listing> listings = new ConcurrentSkipListMap<>();
+
+  DirectoryStructureCache(Project project) {
+    project
+        .getMessageBus()
+        .connect(project)
+        .subscribe(
+            VirtualFileManager.VFS_CHANGES,
+            new BulkFileListener() {
+              @Override
+              public void after(List<? extends VFileEvent> events) {
+                events.forEach(DirectoryStructureCache.this::onFileEvent);
+              }
+            });
+  }
+
+  @VisibleForTesting
+  DirectoryStructureCache() {}
+
+  /**
+   * Returns the cached subdirectories of the given directory, or null if they need to be listed.
+   */
+  @Nullable
+  ImmutableList<File> getSubdirectories(File directory, long modifiedTime) {
+    if (!enabled.getValue() || modifiedTime == 0) {
+      return null;
+    }
+    Listing listing = listings.get(key(directory));
+    return listing != null && listing.modifiedTime == modifiedTime ? listing.subdirectories : null;
+  }
+
+  void putSubdirectories(File directory, long modifiedTime, ImmutableList<File> subdirectories) {
+    if (enabled.getValue() && modifiedTime != 0) {
+      listings.put(key(directory), new Listing(modifiedTime, subdirectories));
+    }
+  }
+
+  /** Invalidates the directories containing the files added or deleted in the working set. */
+  void invalidate(WorkspaceRoot workspaceRoot, WorkingSet workingSet) {
+    for (WorkspacePath path :
+        ImmutableList.<WorkspacePath>builder()
+            .addAll(workingSet.addedFiles)
+            .addAll(workingSet.deletedFiles)
+            .build()) {
+      // any of the parents may be new, so their listings can't be trusted either
+      for (WorkspacePath parent = path.getParent(); parent != null; parent = parent.getParent()) {
+        listings.remove(key(workspaceRoot.fileForPath(parent)));
+      }
+    }
+  }
+
+  /**
+   * Invalidates the directory containing a created or deleted path, and any directories at or
+   * under it.
+   */
+  @VisibleForTesting
+  void invalidate(String path) {
+    listings.remove(path);
+    String prefix = path.endsWith("/") ? path : path + '/';
+    listings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).clear();
+    int lastSlash = path.lastIndexOf('/');
+    if (lastSlash > 0) {
+      listings.remove(path.substring(0, lastSlash));
+    }
+  }
+
+  private void onFileEvent(VFileEvent event) {
+    if (listings.isEmpty() || event instanceof VFileContentChangeEvent) {
+      return;
+    }
+    if (event instanceof VFileMoveEvent) {
+      VFileMoveEvent move = (VFileMoveEvent) event;
+      invalidate(move.getOldParent().getPath() + '/' + move.getFile().getName());
+      invalidate(move.getNewParent().getPath() + '/' + move.getFile().getName());
+    } else if (event instanceof VFileCopyEvent) {
+      VFileCopyEvent copy = (VFileCopyEvent) event;
+      invalidate(copy.getNewParent().getPath() + '/' + copy.getNewChildName());
+    } else if (event instanceof VFilePropertyChangeEvent) {
+      VFilePropertyChangeEvent change = (VFilePropertyChangeEvent) event;
+      VirtualFile parent = change.getFile().getParent();
+      if (!VirtualFile.PROP_NAME.equals(change.getPropertyName()) || parent == null) {
+        return;
+      }
+      invalidate(parent.getPath() + '/' + change.getOldValue());
+      invalidate(parent.getPath() + '/' + change.getNewValue());
+    } else {
+      // creation and deletion
+      invalidate(event.getPath());
+    }
+  }
+
+  private static String key(File directory) {
+    return FileUtil.toSystemIndependentName(directory.getPath());
+  }
+}
@@ -16,31 +16,31 @@
 package com.google.idea.blaze.base.sync.projectview;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
-import com.google.idea.blaze.base.projectview.section.Glob;
 import com.google.idea.blaze.base.projectview.section.sections.TestSourceSection;
+import com.google.idea.blaze.qsync.TestSourceGlobMatcher;
 import com.intellij.openapi.util.text.StringUtil;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /** Affects the way sources are imported. */
 public class SourceTestConfig {
-  private final Glob.GlobSet testSources;
+  private static final Splitter WILDCARD_SPLITTER = Splitter.onPattern("\\*+");
+
+  private final TestSourceGlobMatcher testSources;
 
   public SourceTestConfig(ProjectViewSet projectViewSet) {
     this.testSources =
-        new Glob.GlobSet(
-            projectViewSet
-                .listItems(TestSourceSection.KEY)
-                .stream()
-                .map(SourceTestConfig::modifyGlob)
+        TestSourceGlobMatcher.create(
+            projectViewSet.listItems(TestSourceSection.KEY).stream()
+                .flatMap(glob -> expandLegacyWildcards(modifyPattern(glob.toString())).stream())
                 .collect(Collectors.toList()));
   }
 
-  private static Glob modifyGlob(Glob glob) {
-    return new Glob(modifyPattern(glob.toString()));
-  }
-
   /**
    * We modify the glob patterns provided by the user, so that their behavior more closely matches
    * what is expected.
@@ -57,6 +57,33 @@ public class SourceTestConfig {
     return pattern + "*";
   }
 
+  /**
+   * Legacy sync matched each pattern against the whole path, so a {@code *} could also match
+   * across directories, whereas {@link TestSourceGlobMatcher} matches within a path segment. Each
+   * {@code *} is therefore expanded into both a wildcard within the segment, and one spanning any
+   * number of directories ({@code *}/{@code **}/{@code *}). The trailing {@code *} added by {@link
+   * #modifyPattern} already matches everything below the path, so isn't expanded.
+   */
+  @VisibleForTesting
+  static ImmutableList<String> expandLegacyWildcards(String pattern) {
+    List<String> parts = WILDCARD_SPLITTER.splitToList(pattern);
+    List<String> expanded = new ArrayList<>();
+    expanded.add(parts.get(0));
+    for (int i = 1; i < parts.size(); i++) {
+      String part = parts.get(i);
+      boolean trailing = i == parts.size() - 1 && part.isEmpty();
+      List<String> next = new ArrayList<>();
+      for (String prefix : expanded) {
+        next.add(prefix + "*" + part);
+        if (!trailing) {
+          next.add(prefix + "*/**/*" + part);
+        }
+      }
+      expanded = next;
+    }
+    return ImmutableList.copyOf(expanded);
+  }
+
   /** Returns true if this artifact is a test artifact. */
   public boolean isTestSource(String relativePath) {
     return testSources.matches(relativePath);
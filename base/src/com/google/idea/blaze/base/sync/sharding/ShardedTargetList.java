@@ -23,8 +23,8 @@ import com.google.common.collect.Streams;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 import com.google.idea.blaze.base.async.FutureUtil;
+import com.google.idea.blaze.base.async.executor.ExecutorLane;
 import com.google.idea.blaze.base.bazel.BuildSystem.BuildInvoker;
 import com.google.idea.blaze.base.logging.utils.ShardStats;
 import com.google.idea.blaze.base.logging.utils.ShardStats.ShardingApproach;
@@ -36,7 +36,6 @@ import com.google.idea.blaze.base.settings.Blaze;
 import com.google.idea.blaze.base.sync.aspects.BuildResult;
 import com.google.idea.common.experiments.IntExperiment;
 import com.intellij.openapi.project.Project;
-import com.intellij.util.concurrency.AppExecutorUtil;
 import java.util.List;
 import java.util.function.Function;
 
@@ -126,12 +125,9 @@ public class ShardedTargetList {
       BlazeContext context,
       Function<List<? extends TargetExpression>, BuildResult> invocation) {
     // new executor for each sync, so we get an up-to-date experiment value. This is fine, because
-    // it's just a view of the single application pool executor. Doesn't need to be shutdown for the
-    // same reason
+    // it's just a view of the shared lane. Doesn't need to be shutdown for the same reason
     ListeningExecutorService executor =
-        MoreExecutors.listeningDecorator(
-            AppExecutorUtil.createBoundedApplicationPoolExecutor(
-                "RemoteBlazeExecutor", remoteConcurrentSyncs.getValue()));
+        ExecutorLane.REMOTE_SHARD.boundedExecutor(remoteConcurrentSyncs.getValue());
 
     ListenableFuture<List<BuildResult>> future =
         Futures.allAsList(
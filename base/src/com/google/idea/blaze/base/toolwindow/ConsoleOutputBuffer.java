@@ -0,0 +1,277 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.toolwindow;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Utf8;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * The output of a single task, kept in temporary files rather than in memory.
+ *
+ * <p>The console document only keeps the most recent output, so this is what {@link #writeTo}
+ * reads the full output from. Appending a line only queues it; the queued lines are written on the
+ * given executor, so printing never waits for the disk. If the disk falls behind, lines beyond
+ * {@link #MAX_PENDING_CHARS} are dropped rather than queued, so memory use stays flat.
+ *
+ * <p>The saved output is a ring of segment files with a total byte budget: once it's exceeded, the
+ * oldest segments are deleted. Each segment records the number of its first line, so {@link
+ * #writeTo} can say how many earlier lines were discarded.
+ */
+final class ConsoleOutputBuffer implements Closeable {
+  private static final Logger logger = Logger.getInstance(ConsoleOutputBuffer.class);
+
+  /** The most output waiting to be written before further lines are dropped. */
+  @VisibleForTesting static final long MAX_PENDING_CHARS = 4 * 1024 * 1024;
+
+  /** The number of segments the byte budget is split into. */
+  private static final int SEGMENTS_PER_BUDGET = 8;
+
+  /** A file holding a contiguous range of saved lines. */
+  private static final class Segment {
+    final Path file;
+    final long firstLine;
+    long lines;
+    long bytes;
+
+    Segment(Path file, long firstLine) {
+      this.file = file;
+      this.firstLine = firstLine;
+    }
+  }
+
+  @Nullable private final Path spillDirectory;
+  private final Executor executor;
+  private final long maxSavedBytes;
+  private final long segmentBytes;
+
+  private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicLong pendingChars = new AtomicLong();
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+  private final AtomicLong lineCount = new AtomicLong();
+
+  // guards the segments and the counts of saved lines
+  private final Object fileLock = new Object();
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  @Nullable private Writer segmentWriter;
+  private long savedBytes;
+  // lines written to segments, including those since discarded
+  private long savedLines;
+  private long discardedLines;
+  private boolean spillFailed;
+  private boolean closed;
+
+  /**
+   * @param spillDirectory where the output is written, or null to not keep it
+   * @param executor runs the writes to the segment files, one at a time
+   * @param maxSavedBytes the most output kept on disk; older output is discarded
+   */
+  ConsoleOutputBuffer(@Nullable Path spillDirectory, Executor executor, long maxSavedBytes) {
+    this.spillDirectory = spillDirectory;
+    this.executor = executor;
+    this.maxSavedBytes = maxSavedBytes;
+    this.segmentBytes = Math.max(1, maxSavedBytes / SEGMENTS_PER_BUDGET);
+  }
+
+  void appendLine(String line) {
+    if (spillDirectory == null || pendingChars.get() > MAX_PENDING_CHARS) {
+      lineCount.incrementAndGet();
+      return;
+    }
+    pendingChars.addAndGet(line.length());
+    pending.add(line);
+    lineCount.incrementAndGet();
+    if (drainScheduled.compareAndSet(false, true)) {
+      executor.execute(this::drain);
+    }
+  }
+
+  /** The total number of lines appended since the buffer was created or cleared. */
+  long getLineCount() {
+    return lineCount.get();
+  }
+
+  /** Whether the output is being kept, so that {@link #writeTo} can return most of it. */
+  boolean isSavingOutput() {
+    return spillDirectory != null;
+  }
+
+  /**
+   * Writes the saved lines. Notes saying how many earlier lines were discarded to stay within the
+   * byte budget, and how many lines couldn't be saved at all, are written before and after them.
+   */
+  void writeTo(Writer out) throws IOException {
+    synchronized (fileLock) {
+      writePending();
+      if (discardedLines > 0) {
+        out.write(String.format("[%d earlier lines were discarded]\n", discardedLines));
+      }
+      if (segmentWriter != null) {
+        segmentWriter.flush();
+      }
+      char[] buffer = new char[8192];
+      for (Segment segment : segments) {
+        try (Reader in = Files.newBufferedReader(segment.file, UTF_8)) {
+          int read;
+          while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+          }
+        }
+      }
+      long omitted = lineCount.get() - savedLines;
+      if (omitted > 0) {
+        out.write(String.format("[%d lines couldn't be saved]\n", omitted));
+      }
+    }
+  }
+
+  void clear() {
+    synchronized (fileLock) {
+      pending.clear();
+      pendingChars.set(0);
+      lineCount.set(0);
+      savedLines = 0;
+      discardedLines = 0;
+      spillFailed = false;
+      deleteSegments();
+    }
+  }
+
+  /** Deletes the saved output. Lines appended afterwards are not saved. */
+  @Override
+  public void close() {
+    synchronized (fileLock) {
+      closed = true;
+      pending.clear();
+      pendingChars.set(0);
+      deleteSegments();
+    }
+  }
+
+  private void drain() {
+    synchronized (fileLock) {
+      writePending();
+      flush();
+    }
+    drainScheduled.set(false);
+    // lines queued after the last poll but before the flag was reset need another drain
+    if (!pending.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+      executor.execute(this::drain);
+    }
+  }
+
+  private void writePending() {
+    String line;
+    while ((line = pending.poll()) != null) {
+      pendingChars.addAndGet(-line.length());
+      if (closed || spillFailed) {
+        continue;
+      }
+      try {
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.bytes >= segmentBytes) {
+          segment = startSegment();
+        }
+        segmentWriter.write(line);
+        segmentWriter.write('\n');
+        long bytes = Utf8.encodedLength(line) + 1;
+        segment.bytes += bytes;
+        segment.lines++;
+        savedBytes += bytes;
+        savedLines++;
+      } catch (IOException e) {
+        logger.warn("Failed to save console output to disk, further output will be discarded", e);
+        spillFailed = true;
+      }
+    }
+    discardOldSegments();
+  }
+
+  private Segment startSegment() throws IOException {
+    if (segmentWriter != null) {
+      segmentWriter.close();
+      segmentWriter = null;
+    }
+    Files.createDirectories(spillDirectory);
+    Segment segment =
+        new Segment(Files.createTempFile(spillDirectory, "console", ".log"), savedLines);
+    segments.addLast(segment);
+    segmentWriter = Files.newBufferedWriter(segment.file, UTF_8);
+    return segment;
+  }
+
+  /** Deletes the oldest segments until the saved output fits the byte budget. */
+  private void discardOldSegments() {
+    while (savedBytes > maxSavedBytes && segments.size() > 1) {
+      Segment oldest = segments.removeFirst();
+      savedBytes -= oldest.bytes;
+      discardedLines = oldest.firstLine + oldest.lines;
+      try {
+        Files.deleteIfExists(oldest.file);
+      } catch (IOException e) {
+        logger.warn("Failed to delete console output segment " + oldest.file, e);
+      }
+    }
+  }
+
+  private void flush() {
+    if (segmentWriter == null) {
+      return;
+    }
+    try {
+      segmentWriter.flush();
+    } catch (IOException e) {
+      logger.warn("Failed to save console output to disk", e);
+    }
+  }
+
+  private void deleteSegments() {
+    try {
+      if (segmentWriter != null) {
+        segmentWriter.close();
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to close console output segment", e);
+    } finally {
+      segmentWriter = null;
+    }
+    for (Segment segment : segments) {
+      try {
+        Files.deleteIfExists(segment.file);
+      } catch (IOException e) {
+        logger.warn("Failed to delete console output segment " + segment.file, e);
+      }
+    }
+    segments.clear();
+    savedBytes = 0;
+  }
+}
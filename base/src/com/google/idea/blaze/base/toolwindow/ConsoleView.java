@@ -15,11 +15,16 @@
  */
 package com.google.idea.blaze.base.toolwindow;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.async.executor.ExecutorLane;
 import com.google.idea.blaze.base.console.NonProblemFilterWrapper;
 import com.google.idea.blaze.base.scope.output.StatusOutput;
 import com.google.idea.blaze.common.PrintOutput;
 import com.google.idea.blaze.common.PrintOutput.OutputType;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.google.idea.common.experiments.IntExperiment;
 import com.intellij.codeEditor.printing.PrintAction;
 import com.intellij.execution.actions.ClearConsoleAction;
 import com.intellij.execution.filters.ConsoleDependentFilterProvider;
@@ -44,17 +49,28 @@ import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.actionSystem.Presentation;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.DumbAwareAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.ui.content.Content;
 import java.awt.Component;
 import java.awt.Container;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -67,6 +83,8 @@ import javax.swing.LayoutFocusTraversalPolicy;
 /** ConsoleView handles how the output of a single task is displayed in the tool-window. */
 final class ConsoleView implements Disposable {
 
+  private static final Logger logger = Logger.getInstance(ConsoleView.class);
+
   /** The counter that is used to create IntelliJ UI components ids. */
   private static long consoleIdCounter;
 
@@ -77,8 +95,20 @@ final class ConsoleView implements Disposable {
     PrintAction.class
   };
 
+  /** The most output kept on disk per task, after which the oldest output is discarded. */
+  private static final IntExperiment maxSavedOutputBytes =
+      new IntExperiment("blazeconsole.v2.max.saved.output.bytes", 64 * 1024 * 1024);
+
+  /**
+   * Whether the complete output is kept in a temporary file, so it can be opened after the console
+   * has trimmed it.
+   */
+  private static final BoolExperiment spillOutputToDisk =
+      new BoolExperiment("blazeconsole.v2.spill.output.to.disk", true);
+
   private final Project project;
   private final ConsoleViewImpl consoleView;
+  private final ConsoleOutputBuffer outputBuffer;
   private final CompositeFilter customFilters = new CompositeFilter();
   private final AnsiEscapeDecoder ansiEscapeDecoder = new AnsiEscapeDecoder();
 
@@ -105,6 +135,13 @@ final class ConsoleView implements Disposable {
             GlobalSearchScope.allScope(project),
             /* viewer= */ false,
             /* usePredefinedFilters= */ false);
+    outputBuffer =
+        new ConsoleOutputBuffer(
+            spillOutputToDisk.getValue()
+                ? Paths.get(FileUtil.getTempDirectory(), "blaze-console")
+                : null,
+            ExecutorLane.CONSOLE_OUTPUT.boundedExecutor(1),
+            maxSavedOutputBytes.getValue());
 
     Disposer.register(parentDisposable, this);
     Disposer.register(this, consoleView);
@@ -198,6 +235,7 @@ final class ConsoleView implements Disposable {
         group.add(action);
       }
     }
+    group.add(new OpenFullOutputAction());
     group.add(new StopAction());
 
     JComponent layoutComponent = layoutUi.getComponent();
@@ -222,6 +260,7 @@ final class ConsoleView implements Disposable {
 
   public void clear() {
     consoleView.clear();
+    outputBuffer.clear();
   }
 
   void println(StatusOutput output) {
@@ -242,6 +281,7 @@ final class ConsoleView implements Disposable {
         outputType == OutputType.ERROR
             ? ConsoleViewContentType.ERROR_OUTPUT
             : ConsoleViewContentType.NORMAL_OUTPUT);
+    outputBuffer.appendLine(text);
   }
 
   public void printHyperlink(String text, HyperlinkInfo hyperlinkInfo) {
@@ -249,7 +289,53 @@ final class ConsoleView implements Disposable {
   }
 
   @Override
-  public void dispose() {}
+  public void dispose() {
+    outputBuffer.close();
+  }
+
+  /** Opens the complete output of the task in an editor, including output no longer shown. */
+  private class OpenFullOutputAction extends DumbAwareAction {
+    OpenFullOutputAction() {
+      super("Open Full Output", "Open the complete output in an editor", AllIcons.Actions.Preview);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+      ApplicationManager.getApplication()
+          .executeOnPooledThread(
+              () -> {
+                File file;
+                try {
+                  file = FileUtil.createTempFile("blaze-output", ".log", /* deleteOnExit= */ true);
+                  try (Writer writer = Files.newBufferedWriter(file.toPath(), UTF_8)) {
+                    outputBuffer.writeTo(writer);
+                  }
+                } catch (IOException ex) {
+                  logger.warn("Failed to write console output", ex);
+                  return;
+                }
+                VirtualFile virtualFile =
+                    LocalFileSystem.getInstance().refreshAndFindFileByIoFile(file);
+                if (virtualFile == null) {
+                  return;
+                }
+                ApplicationManager.getApplication()
+                    .invokeLater(
+                        () -> {
+                          if (!project.isDisposed()) {
+                            FileEditorManager.getInstance(project).openFile(virtualFile, true);
+                          }
+                        });
+              });
+    }
+
+    @Override
+    public void update(AnActionEvent event) {
+      Presentation presentation = event.getPresentation();
+      presentation.setVisible(outputBuffer.isSavingOutput());
+      presentation.setEnabled(outputBuffer.getLineCount() > 0);
+    }
+  }
 
   private class StopAction extends DumbAwareAction {
     public StopAction() {
@@ -30,10 +30,15 @@ import com.google.idea.blaze.base.vcs.BlazeVcsHandlerProvider;
 import com.google.idea.blaze.common.vcs.VcsState;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 import javax.annotation.Nullable;
 
@@ -62,22 +67,31 @@ public class GitBlazeVcsHandlerProvider implements BlazeVcsHandlerProvider {
   static class GitBlazeVcsHandler implements BlazeVcsHandler {
 
     private final WorkspaceRoot workspaceRoot;
+    private final GitStateCache stateCache;
 
     GitBlazeVcsHandler(Project project) {
       this.workspaceRoot = WorkspaceRoot.fromProject(project);
+      this.stateCache = new GitStateCache(workspaceRoot);
+      String rootPath = FileUtil.toSystemIndependentName(workspaceRoot.directory().getPath()) + "/";
+      project
+          .getMessageBus()
+          .connect(project)
+          .subscribe(
+              VirtualFileManager.VFS_CHANGES,
+              new BulkFileListener() {
+                @Override
+                public void after(List<? extends VFileEvent> events) {
+                  if (events.stream().anyMatch(e -> e.getPath().startsWith(rootPath))) {
+                    stateCache.onWorkspaceFilesChanged();
+                  }
+                }
+              });
     }
 
     @Override
     public ListenableFuture<WorkingSet> getWorkingSet(
         BlazeContext context, ListeningExecutorService executor) {
-      return executor.submit(
-          () -> {
-            String upstreamSha = getUpstreamSha(workspaceRoot, false);
-            if (upstreamSha == null) {
-              return null;
-            }
-            return GitWorkingSetProvider.calculateWorkingSet(workspaceRoot, upstreamSha, context);
-          });
+      return executor.submit(() -> stateCache.getWorkingSet(context));
     }
 
     @Nullable
@@ -94,18 +108,28 @@ public class GitBlazeVcsHandlerProvider implements BlazeVcsHandlerProvider {
     @Override
     public ListenableFuture<String> getUpstreamContent(
         BlazeContext context, WorkspacePath path, ListeningExecutorService executor) {
-      return executor.submit(() -> getGitUpstreamContent(workspaceRoot, path));
+      return executor.submit(
+          () -> {
+            try {
+              return stateCache.getUpstreamContent(
+                  path, upstreamSha -> getGitUpstreamContent(workspaceRoot, upstreamSha, path));
+            } catch (VcsException e) {
+              // e.g. the branch has no upstream: treat the file as having no upstream content
+              logger.warn(e.getMessage());
+              return "";
+            }
+          });
     }
 
     @Override
     public Optional<ListenableFuture<String>> getUpstreamVersion(
         BlazeContext context, ListeningExecutorService executor) {
-      return Optional.of(executor.submit(() -> getUpstreamSha(workspaceRoot)));
+      return Optional.of(executor.submit(stateCache::getUpstreamSha));
     }
   }
 
-  private static String getGitUpstreamContent(WorkspaceRoot workspaceRoot, WorkspacePath path) {
-    String upstreamSha = getUpstreamSha(workspaceRoot, false);
+  private static String getGitUpstreamContent(
+      WorkspaceRoot workspaceRoot, String upstreamSha, WorkspacePath path) {
     ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
     ExternalTask.builder(workspaceRoot)
         .args(
@@ -179,4 +203,21 @@ public class GitBlazeVcsHandlerProvider implements BlazeVcsHandlerProvider {
     }
     return StringUtil.trimEnd(stdout.toString(), "\n");
   }
+
+  /**
+   * Returns the full name of the currently-tracked remote branch, e.g. refs/remotes/origin/main, or
+   * null if that fails for any reason.
+   */
+  @Nullable
+  static String getUpstreamRef(WorkspaceRoot workspaceRoot) {
+    ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    int retVal =
+        ExternalTask.builder(workspaceRoot)
+            .args("git", "rev-parse", "--symbolic-full-name", "@{u}")
+            .stdout(stdout)
+            .build()
+            .run();
+    String ref = StringUtil.trimEnd(stdout.toString(), "\n");
+    return retVal == 0 && ref.startsWith("refs/") ? ref : null;
+  }
 }
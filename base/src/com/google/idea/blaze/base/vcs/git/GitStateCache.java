@@ -0,0 +1,305 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.vcs.git;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.sync.workspace.WorkingSet;
+import com.google.idea.blaze.base.vcs.BlazeVcsHandlerProvider.VcsException;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.google.idea.common.experiments.IntExperiment;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Caches the results of git commands for a workspace, so that repeated syncs don't fork git
+ * processes when nothing has changed.
+ *
+ * <ul>
+ *   <li>The upstream SHA is reused while the git files it's derived from (HEAD, config and the
+ *       upstream ref) are unchanged.
+ *   <li>The working set is additionally invalidated by any file change under the workspace root
+ *       (see {@link #onWorkspaceFilesChanged}). Files changed outside the IDE are only noticed once
+ *       the VFS refreshes them, so the working set is also recomputed once it's older than {@link
+ *       #workingSetMaxAgeSeconds}.
+ *   <li>Upstream file contents are immutable for a given SHA, so are kept in a bounded cache.
+ * </ul>
+ */
+final class GitStateCache {
+  private static final Logger logger = Logger.getInstance(GitStateCache.class);
+
+  private static final BoolExperiment enabled = new BoolExperiment("blaze.git.state.cache", true);
+
+  private static final IntExperiment workingSetMaxAgeSeconds =
+      new IntExperiment("blaze.git.working.set.cache.max.age.seconds", 300);
+
+  private static final long MAX_UPSTREAM_CONTENT_CHARS = 16 * 1024 * 1024;
+
+  private final WorkspaceRoot workspaceRoot;
+
+  /** Incremented whenever files in the workspace change. */
+  private final AtomicLong workspaceGeneration = new AtomicLong();
+
+  private final Cache<String, String> upstreamContent =
+      CacheBuilder.newBuilder()
+          .maximumWeight(MAX_UPSTREAM_CONTENT_CHARS)
+          .weigher((String key, String content) -> content.length())
+          .build();
+
+  @GuardedBy("this")
+  @Nullable
+  private GitFiles gitFiles;
+
+  // the top-level directory of the repository, as reported by git
+  @GuardedBy("this")
+  @Nullable
+  private String gitRoot;
+
+  @GuardedBy("this")
+  @Nullable
+  private String upstreamSha;
+
+  @GuardedBy("this")
+  @Nullable
+  private String upstreamShaStamp;
+
+  @GuardedBy("this")
+  @Nullable
+  private CachedWorkingSet workingSet;
+
+  GitStateCache(WorkspaceRoot workspaceRoot) {
+    this.workspaceRoot = workspaceRoot;
+  }
+
+  /** Called when any file under the workspace root changed, invalidating the working set. */
+  void onWorkspaceFilesChanged() {
+    workspaceGeneration.incrementAndGet();
+  }
+
+  /** Returns the upstream SHA, running git only if HEAD, the git config or refs changed. */
+  synchronized String getUpstreamSha() throws VcsException {
+    GitFiles files = getGitFiles();
+    if (files == null) {
+      return GitBlazeVcsHandlerProvider.getUpstreamSha(workspaceRoot);
+    }
+    if (upstreamSha != null
+        && files.upstreamRef != null
+        && files.upstreamStamp().equals(upstreamShaStamp)) {
+      return upstreamSha;
+    }
+    // the branch or its upstream may have changed, so resolve the upstream ref before stamping; the
+    // stamp then covers the ref file and the next call can reuse the result
+    upstreamSha = null;
+    files.upstreamRef = GitBlazeVcsHandlerProvider.getUpstreamRef(workspaceRoot);
+    // stamp the files before running git, so that changes made while it runs invalidate the result
+    String stamp = files.upstreamStamp();
+    upstreamSha = GitBlazeVcsHandlerProvider.getUpstreamSha(workspaceRoot);
+    upstreamShaStamp = stamp;
+    return upstreamSha;
+  }
+
+  @Nullable
+  synchronized WorkingSet getWorkingSet(BlazeContext context) {
+    String sha;
+    try {
+      sha = getUpstreamSha();
+    } catch (VcsException e) {
+      logger.warn(e.getMessage());
+      return null;
+    }
+    GitFiles files = getGitFiles();
+    if (files == null) {
+      return GitWorkingSetProvider.calculateWorkingSet(workspaceRoot, sha, context);
+    }
+    // read the generation first, so that changes made while git runs invalidate the result
+    long generation = workspaceGeneration.get();
+    String stamp = files.workingSetStamp();
+    if (workingSet != null && workingSet.isValid(sha, stamp, generation)) {
+      return workingSet.workingSet;
+    }
+    if (gitRoot == null) {
+      gitRoot = GitWorkingSetProvider.getGitRoot(workspaceRoot);
+      if (gitRoot == null) {
+        return null;
+      }
+    }
+    WorkingSet result =
+        GitWorkingSetProvider.calculateWorkingSet(workspaceRoot, gitRoot, sha, context);
+    workingSet =
+        result != null
+            ? new CachedWorkingSet(result, sha, stamp, generation, Instant.now())
+            : null;
+    return result;
+  }
+
+  /** Returns the content of the given file at the upstream SHA, running git only once per file. */
+  String getUpstreamContent(WorkspacePath path, Function<String, String> loader)
+      throws VcsException {
+    String sha = getUpstreamSha();
+    if (!enabled.getValue()) {
+      return loader.apply(sha);
+    }
+    try {
+      return upstreamContent.get(sha + ":" + path.relativePath(), () -> loader.apply(sha));
+    } catch (ExecutionException e) {
+      throw new VcsException("Could not read upstream content of " + path + ": " + e.getCause());
+    }
+  }
+
+  @GuardedBy("this")
+  @Nullable
+  private GitFiles getGitFiles() {
+    if (!enabled.getValue()) {
+      return null;
+    }
+    if (gitFiles == null) {
+      gitFiles = GitFiles.find(workspaceRoot.directory().toPath());
+    }
+    return gitFiles;
+  }
+
+  private static class CachedWorkingSet {
+    final WorkingSet workingSet;
+    final String upstreamSha;
+    @Nullable final String gitStamp;
+    final long generation;
+    final Instant computedAt;
+
+    CachedWorkingSet(
+        WorkingSet workingSet,
+        String upstreamSha,
+        @Nullable String gitStamp,
+        long generation,
+        Instant computedAt) {
+      this.workingSet = workingSet;
+      this.upstreamSha = upstreamSha;
+      this.gitStamp = gitStamp;
+      this.generation = generation;
+      this.computedAt = computedAt;
+    }
+
+    boolean isValid(String upstreamSha, @Nullable String gitStamp, long generation) {
+      return gitStamp != null
+          && gitStamp.equals(this.gitStamp)
+          && upstreamSha.equals(this.upstreamSha)
+          && generation == this.generation
+          && Duration.between(computedAt, Instant.now()).getSeconds()
+              < workingSetMaxAgeSeconds.getValue();
+    }
+  }
+
+  /** The files in a git repository that the upstream SHA and working set are derived from. */
+  @VisibleForTesting
+  static class GitFiles {
+    // per-worktree state: HEAD, index
+    final Path gitDir;
+    // state shared between worktrees: config, refs
+    final Path commonDir;
+    // the full name of the upstream ref, e.g. refs/remotes/origin/main, if known
+    @Nullable volatile String upstreamRef;
+
+    GitFiles(Path gitDir, Path commonDir) {
+      this.gitDir = gitDir;
+      this.commonDir = commonDir;
+    }
+
+    /**
+     * Finds the git directory for the repository containing the given directory, or null if there
+     * isn't one we understand.
+     */
+    @Nullable
+    static GitFiles find(Path directory) {
+      for (Path dir = directory.toAbsolutePath(); dir != null; dir = dir.getParent()) {
+        Path dotGit = dir.resolve(".git");
+        try {
+          if (Files.isDirectory(dotGit)) {
+            return new GitFiles(dotGit, commonDir(dotGit));
+          }
+          if (Files.isRegularFile(dotGit)) {
+            // linked worktrees and submodules have a file pointing to their git directory
+            String content = new String(Files.readAllBytes(dotGit), UTF_8).trim();
+            if (!content.startsWith("gitdir:")) {
+              return null;
+            }
+            Path gitDir = dir.resolve(content.substring("gitdir:".length()).trim()).normalize();
+            return new GitFiles(gitDir, commonDir(gitDir));
+          }
+        } catch (IOException e) {
+          return null;
+        }
+      }
+      return null;
+    }
+
+    private static Path commonDir(Path gitDir) throws IOException {
+      Path commonDirFile = gitDir.resolve("commondir");
+      if (!Files.isRegularFile(commonDirFile)) {
+        return gitDir;
+      }
+      String content = new String(Files.readAllBytes(commonDirFile), UTF_8).trim();
+      return gitDir.resolve(content).normalize();
+    }
+
+    /**
+     * Returns a stamp which changes whenever the current branch, its upstream, or the commit the
+     * upstream ref points to change.
+     */
+    String upstreamStamp() {
+      ImmutableList.Builder<Path> paths =
+          ImmutableList.<Path>builder()
+              .add(gitDir.resolve("HEAD"))
+              .add(commonDir.resolve("config"))
+              .add(commonDir.resolve("packed-refs"))
+              .add(commonDir.resolve("FETCH_HEAD"));
+      String ref = upstreamRef;
+      if (ref != null) {
+        paths.add(commonDir.resolve(ref));
+      }
+      return (ref != null ? ref : "") + stamp(paths.build());
+    }
+
+    /** Returns a stamp which changes along with {@link #upstreamStamp} or the git index. */
+    String workingSetStamp() {
+      return upstreamStamp() + stamp(ImmutableList.of(gitDir.resolve("index")));
+    }
+
+    private static String stamp(ImmutableList<Path> paths) {
+      StringBuilder stamp = new StringBuilder();
+      for (Path path : paths) {
+        File file = path.toFile();
+        stamp.append(file.lastModified()).append(':').append(file.length()).append(';');
+      }
+      return stamp.toString();
+    }
+  }
+}
@@ -45,11 +45,27 @@ public class GitWorkingSetProvider {
   @Nullable
   public static WorkingSet calculateWorkingSet(
       WorkspaceRoot workspaceRoot, String upstreamSha, BlazeContext context) {
-
-    String gitRoot = getConsoleOutput(workspaceRoot, "git", "rev-parse", "--show-toplevel");
+    String gitRoot = getGitRoot(workspaceRoot);
     if (gitRoot == null) {
       return null;
     }
+    return calculateWorkingSet(workspaceRoot, gitRoot, upstreamSha, context);
+  }
+
+  /** Returns the top-level directory of the git repository, or null if an error occurred. */
+  @Nullable
+  static String getGitRoot(WorkspaceRoot workspaceRoot) {
+    return getConsoleOutput(workspaceRoot, "git", "rev-parse", "--show-toplevel");
+  }
+
+  /**
+   * Finds all changes between HEAD and the git commit specified by the provided SHA, in the
+   * repository with the given top-level directory.<br>
+   * Returns null if an error occurred.
+   */
+  @Nullable
+  static WorkingSet calculateWorkingSet(
+      WorkspaceRoot workspaceRoot, String gitRoot, String upstreamSha, BlazeContext context) {
     GitStatusLineProcessor processor = new GitStatusLineProcessor(workspaceRoot, gitRoot);
     ByteArrayOutputStream stderr = new ByteArrayOutputStream();
 
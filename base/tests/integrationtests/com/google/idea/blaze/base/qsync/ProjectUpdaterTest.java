@@ -0,0 +1,330 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.qsync;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.Arrays.stream;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.BlazeIntegrationTestCase;
+import com.google.idea.blaze.base.qsync.ContentEntrySpec.SourceFolderSpec;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.base.projectview.ProjectViewSet;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.settings.BlazeImportSettingsManager;
+import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
+import com.google.idea.blaze.common.Context;
+import com.google.idea.blaze.qsync.project.ProjectPath;
+import com.google.idea.blaze.qsync.project.ProjectProto;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsProvider;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.LibraryOrderEntry;
+import com.intellij.openapi.roots.ModifiableRootModel;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.OrderEntry;
+import com.intellij.openapi.roots.libraries.Library;
+import com.intellij.openapi.roots.libraries.LibraryTable;
+import com.intellij.openapi.roots.libraries.LibraryTablesRegistrar;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Integration tests for {@link ProjectUpdater}. */
+@RunWith(JUnit4.class)
+public class ProjectUpdaterTest extends BlazeIntegrationTestCase {
+
+  /** Counts the calls to each query sync hook. */
+  private static class RecordingPlugin implements BlazeQuerySyncPlugin {
+    int settingsUpdates;
+    int structureUpdates;
+
+    @Override
+    public void updateProjectSettingsForQuerySync(
+        Project project, Context<?> context, ProjectViewSet projectViewSet) {
+      settingsUpdates++;
+    }
+
+    @Override
+    public void updateProjectStructureForQuerySync(
+        Project project,
+        Context<?> context,
+        IdeModifiableModelsProvider models,
+        WorkspaceRoot workspaceRoot,
+        Module workspaceModule,
+        Set<String> androidResourceDirectories,
+        Set<String> androidSourcePackages,
+        WorkspaceLanguageSettings workspaceLanguageSettings) {
+      structureUpdates++;
+    }
+  }
+
+  @Test
+  public void testHooksRunWhenSpecUnchanged() {
+    RecordingPlugin plugin = new RecordingPlugin();
+    registerExtension(BlazeQuerySyncPlugin.EP_NAME, plugin);
+    Path workspacePath = workspaceRoot.directory().toPath();
+    ProjectUpdater updater =
+        new ProjectUpdater(
+            getProject(),
+            BlazeImportSettingsManager.getInstance(getProject()).getImportSettings(),
+            ProjectViewSet.builder().build(),
+            workspaceRoot,
+            ProjectPath.Resolver.create(workspacePath, Path.of(projectDataDirectory.getPath())));
+    ProjectProto.Project spec =
+        ProjectProto.Project.newBuilder()
+            .addModules(
+                ProjectProto.Module.newBuilder()
+                    .setName(".workspace")
+                    .setType(ProjectProto.ModuleType.MODULE_TYPE_DEFAULT))
+            .build();
+
+    updater.updateProjectModel(spec, BlazeContext.create());
+    updater.updateProjectModel(spec, BlazeContext.create());
+
+    assertThat(plugin.settingsUpdates).isEqualTo(2);
+    assertThat(plugin.structureUpdates).isEqualTo(2);
+  }
+
+  @Test
+  public void testUpdateContentEntries_keepsUnchangedEntries() {
+    ContentEntrySpec kept = contentEntry("kept", sourceFolder("kept/java", false), "kept/out");
+    ContentEntrySpec removed = contentEntry("removed", sourceFolder("removed/java", false));
+    ContentEntrySpec added = contentEntry("added", sourceFolder("added/java", true));
+
+    withModuleRoots(
+        roots -> {
+          kept.addTo(roots);
+          removed.addTo(roots);
+          ContentEntry keptEntry = findContentEntry(roots, kept.url());
+
+          int changed = ProjectUpdater.updateContentEntries(roots, ImmutableSet.of(kept, added));
+
+          assertThat(changed).isEqualTo(2);
+          assertThat(contentEntries(roots)).containsExactly(kept, added);
+          assertThat(findContentEntry(roots, kept.url())).isSameInstanceAs(keptEntry);
+        });
+  }
+
+  @Test
+  public void testUpdateContentEntries_replacesEntriesWithChangedSourceFolders() {
+    ContentEntrySpec before = contentEntry("root", sourceFolder("root/java", false));
+    ContentEntrySpec after =
+        contentEntry("root", sourceFolder("root/java", false), sourceFolder("root/test", true));
+
+    withModuleRoots(
+        roots -> {
+          before.addTo(roots);
+
+          int changed = ProjectUpdater.updateContentEntries(roots, ImmutableSet.of(after));
+
+          assertThat(changed).isEqualTo(2);
+          assertThat(contentEntries(roots)).containsExactly(after);
+        });
+  }
+
+  @Test
+  public void testUpdateContentEntries_replacesEntriesWithChangedExcludes() {
+    ContentEntrySpec before = contentEntry("root", sourceFolder("root/java", false), "root/out");
+    ContentEntrySpec after = contentEntry("root", sourceFolder("root/java", false), "root/gen");
+
+    withModuleRoots(
+        roots -> {
+          before.addTo(roots);
+
+          int changed = ProjectUpdater.updateContentEntries(roots, ImmutableSet.of(after));
+
+          assertThat(changed).isEqualTo(2);
+          assertThat(contentEntries(roots)).containsExactly(after);
+        });
+  }
+
+  @Test
+  public void testUpdateContentEntries_unchanged_changesNothing() {
+    ContentEntrySpec entry = contentEntry("root", sourceFolder("root/java", false), "root/out");
+
+    withModuleRoots(
+        roots -> {
+          entry.addTo(roots);
+
+          assertThat(ProjectUpdater.updateContentEntries(roots, ImmutableSet.of(entry)))
+              .isEqualTo(0);
+          assertThat(contentEntries(roots)).containsExactly(entry);
+        });
+  }
+
+  @Test
+  public void testUpdateLibraryOrderEntries_keepsRemovesAndAddsEntries() {
+    ImmutableMap<String, Library> libraries = createLibraries("a", "b", "c", "unused");
+
+    withModuleRoots(
+        roots -> {
+          LibraryOrderEntry kept = roots.addLibraryEntry(libraries.get("a"));
+          roots.addLibraryEntry(libraries.get("unused"));
+          roots.addLibraryEntry(libraries.get("c"));
+
+          int changed =
+              ProjectUpdater.updateLibraryOrderEntries(
+                  roots, ImmutableList.of("a", "b", "c"), libraries);
+
+          // "unused" is removed and "b" is added
+          assertThat(changed).isEqualTo(2);
+          assertThat(libraryNames(roots)).containsExactly("a", "b", "c").inOrder();
+          assertThat(libraryEntries(roots).get(0)).isSameInstanceAs(kept);
+        });
+  }
+
+  @Test
+  public void testUpdateLibraryOrderEntries_restoresOrder() {
+    ImmutableMap<String, Library> libraries = createLibraries("a", "b");
+
+    withModuleRoots(
+        roots -> {
+          roots.addLibraryEntry(libraries.get("b"));
+          roots.addLibraryEntry(libraries.get("a"));
+
+          int changed =
+              ProjectUpdater.updateLibraryOrderEntries(
+                  roots, ImmutableList.of("a", "b"), libraries);
+
+          assertThat(changed).isEqualTo(0);
+          assertThat(libraryNames(roots)).containsExactly("a", "b").inOrder();
+          // libraries stay after the other entries, such as the module source and the sdk
+          OrderEntry[] entries = roots.getOrderEntries();
+          assertThat(entries[entries.length - 1]).isInstanceOf(LibraryOrderEntry.class);
+          assertThat(entries[0]).isNotInstanceOf(LibraryOrderEntry.class);
+        });
+  }
+
+  @Test
+  public void testUpdateLibraryOrderEntries_replacesExportedEntries() {
+    ImmutableMap<String, Library> libraries = createLibraries("a");
+
+    withModuleRoots(
+        roots -> {
+          roots.addLibraryEntry(libraries.get("a")).setExported(true);
+
+          int changed =
+              ProjectUpdater.updateLibraryOrderEntries(roots, ImmutableList.of("a"), libraries);
+
+          assertThat(changed).isEqualTo(2);
+          assertThat(libraryNames(roots)).containsExactly("a");
+          assertThat(libraryEntries(roots).get(0).isExported()).isFalse();
+        });
+  }
+
+  @Test
+  public void testUpdateLibraryOrderEntries_repeatedName_addsOneEntry() {
+    ImmutableMap<String, Library> libraries = createLibraries("a", "b");
+
+    withModuleRoots(
+        roots -> {
+          int changed =
+              ProjectUpdater.updateLibraryOrderEntries(
+                  roots, ImmutableList.of("a", "b", "a"), libraries);
+
+          assertThat(changed).isEqualTo(2);
+          assertThat(libraryNames(roots)).containsExactly("a", "b").inOrder();
+        });
+  }
+
+  /**
+   * Runs {@code test} against a modifiable model of the test module, with its content entries and
+   * library entries removed. The model is disposed afterwards rather than committed.
+   */
+  private void withModuleRoots(Consumer<ModifiableRootModel> test) {
+    ApplicationManager.getApplication()
+        .runWriteAction(
+            () -> {
+              ModifiableRootModel roots =
+                  ModuleRootManager.getInstance(testFixture.getModule()).getModifiableModel();
+              try {
+                stream(roots.getContentEntries()).forEach(roots::removeContentEntry);
+                libraryEntries(roots).forEach(roots::removeOrderEntry);
+                test.accept(roots);
+              } finally {
+                roots.dispose();
+              }
+            });
+  }
+
+  private ImmutableMap<String, Library> createLibraries(String... names) {
+    LibraryTable libraryTable = LibraryTablesRegistrar.getInstance().getLibraryTable(getProject());
+    ImmutableMap.Builder<String, Library> libraries = ImmutableMap.builder();
+    ApplicationManager.getApplication()
+        .runWriteAction(
+            () -> {
+              for (String name : names) {
+                libraries.put(name, libraryTable.createLibrary(name));
+              }
+            });
+    return libraries.buildOrThrow();
+  }
+
+  private ContentEntrySpec contentEntry(
+      String path, SourceFolderSpec sourceFolder, String... excludes) {
+    return ContentEntrySpec.create(
+        url(path),
+        ImmutableSet.of(sourceFolder),
+        stream(excludes).map(this::url).collect(toImmutableSet()));
+  }
+
+  private ContentEntrySpec contentEntry(
+      String path, SourceFolderSpec first, SourceFolderSpec second) {
+    return ContentEntrySpec.create(url(path), ImmutableSet.of(first, second), ImmutableSet.of());
+  }
+
+  private SourceFolderSpec sourceFolder(String path, boolean isTest) {
+    return SourceFolderSpec.create(url(path), isTest, "", /* isGenerated= */ false);
+  }
+
+  private String url(String path) {
+    return "file://" + workspaceRoot.directory().toPath().resolve(path);
+  }
+
+  private static ImmutableSet<ContentEntrySpec> contentEntries(ModifiableRootModel roots) {
+    return stream(roots.getContentEntries()).map(ContentEntrySpec::of).collect(toImmutableSet());
+  }
+
+  private static ContentEntry findContentEntry(ModifiableRootModel roots, String url) {
+    return stream(roots.getContentEntries())
+        .filter(entry -> entry.getUrl().equals(url))
+        .findFirst()
+        .orElseThrow();
+  }
+
+  private static ImmutableList<LibraryOrderEntry> libraryEntries(ModifiableRootModel roots) {
+    return stream(roots.getOrderEntries())
+        .filter(LibraryOrderEntry.class::isInstance)
+        .map(LibraryOrderEntry.class::cast)
+        .collect(toImmutableList());
+  }
+
+  private static ImmutableList<String> libraryNames(ModifiableRootModel roots) {
+    return libraryEntries(roots).stream()
+        .map(LibraryOrderEntry::getLibraryName)
+        .collect(toImmutableList());
+  }
+}
@@ -36,6 +36,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.AdditionalLibraryRootsProvider;
 import com.intellij.openapi.roots.SyntheticLibrary;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ThrowableRunnable;
 import com.intellij.vfs.AsyncVfsEventsPostProcessorImpl;
 import java.io.File;
 import java.io.IOException;
@@ -103,6 +104,70 @@ public final class ExternalLibraryManagerTest extends BlazeIntegrationTestCase {
     assertThat(libraryRoots).isEmpty();
   }
 
+  @Test
+  public void testDirectoryRemovedAndRecreated() throws Exception {
+    VirtualFile fooFile = workspace.createFile(new WorkspacePath("foo/Foo.java"));
+    assertThat(fooFile).isNotNull();
+    VirtualFile barFile = workspace.createFile(new WorkspacePath("bar/Bar.java"));
+    assertThat(barFile).isNotNull();
+
+    libraryProvider.setFiles(fooFile.getPath(), barFile.getPath());
+    mockSync(SyncResult.SUCCESS);
+
+    Collection<VirtualFile> libraryRoots = getExternalLibrary().getSourceRoots();
+    assertThat(libraryRoots).containsExactly(fooFile, barFile);
+
+    deleteAndWaitForVfsEvents(fooFile.getParent());
+    assertThat(libraryRoots).containsExactly(barFile);
+
+    VirtualFile recreatedFooFile = workspace.createFile(new WorkspacePath("foo/Foo.java"));
+    AsyncVfsEventsPostProcessorImpl.waitEventsProcessed();
+    assertThat(libraryRoots).containsExactly(recreatedFooFile, barFile);
+  }
+
+  @Test
+  public void testFileRenamedAndRenamedBack() throws Exception {
+    VirtualFile fooFile = workspace.createFile(new WorkspacePath("foo/Foo.java"));
+    assertThat(fooFile).isNotNull();
+    VirtualFile barFile = workspace.createFile(new WorkspacePath("bar/Bar.java"));
+    assertThat(barFile).isNotNull();
+
+    libraryProvider.setFiles(fooFile.getPath(), barFile.getPath());
+    mockSync(SyncResult.SUCCESS);
+
+    Collection<VirtualFile> libraryRoots = getExternalLibrary().getSourceRoots();
+    assertThat(libraryRoots).containsExactly(fooFile, barFile);
+
+    writeAndWaitForVfsEvents(() -> fooFile.rename(this, "Baz.java"));
+    assertThat(libraryRoots).containsExactly(barFile);
+
+    writeAndWaitForVfsEvents(() -> fooFile.rename(this, "Foo.java"));
+    assertThat(libraryRoots).containsExactly(fooFile, barFile);
+  }
+
+  @Test
+  public void testDirectoryMovedAndMovedBack() throws Exception {
+    VirtualFile fooFile = workspace.createFile(new WorkspacePath("foo/Foo.java"));
+    assertThat(fooFile).isNotNull();
+    VirtualFile barFile = workspace.createFile(new WorkspacePath("bar/Bar.java"));
+    assertThat(barFile).isNotNull();
+    VirtualFile fooDirectory = fooFile.getParent();
+    VirtualFile root = fooDirectory.getParent();
+    VirtualFile otherDirectory = workspace.createDirectory(new WorkspacePath("other"));
+
+    libraryProvider.setFiles(fooFile.getPath(), barFile.getPath());
+    mockSync(SyncResult.SUCCESS);
+
+    Collection<VirtualFile> libraryRoots = getExternalLibrary().getSourceRoots();
+    assertThat(libraryRoots).containsExactly(fooFile, barFile);
+
+    writeAndWaitForVfsEvents(() -> fooDirectory.move(this, otherDirectory));
+    assertThat(libraryRoots).containsExactly(barFile);
+
+    writeAndWaitForVfsEvents(() -> fooDirectory.move(this, root));
+    assertThat(libraryRoots).containsExactly(fooFile, barFile);
+  }
+
   @Test
   public void testSuccessfulSync() throws Exception {
     // both old and new files exist, project data is changed
@@ -195,6 +260,19 @@ public final class ExternalLibraryManagerTest extends BlazeIntegrationTestCase {
     return library;
   }
 
+  private void writeAndWaitForVfsEvents(ThrowableRunnable<IOException> action) {
+    ApplicationManager.getApplication()
+        .invokeAndWait(
+            () -> {
+              try {
+                WriteAction.run(action);
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            });
+    AsyncVfsEventsPostProcessorImpl.waitEventsProcessed();
+  }
+
   private void deleteAndWaitForVfsEvents(VirtualFile file) {
     delete(file);
     AsyncVfsEventsPostProcessorImpl.waitEventsProcessed();
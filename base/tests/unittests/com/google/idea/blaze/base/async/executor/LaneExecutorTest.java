@@ -0,0 +1,106 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.async.executor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link LaneExecutor}. */
+@RunWith(JUnit4.class)
+public class LaneExecutorTest {
+
+  /** Holds tasks handed to the backing executor until the test runs them. */
+  private static class ManualExecutor implements Executor {
+    final Queue<Runnable> started = new ArrayDeque<>();
+
+    @Override
+    public void execute(Runnable command) {
+      started.add(command);
+    }
+
+    void runNext() {
+      started.remove().run();
+    }
+  }
+
+  @Test
+  public void execute_limitsConcurrentTasks() {
+    ManualExecutor backing = new ManualExecutor();
+    LaneExecutor executor = new LaneExecutor(backing, 2);
+    AtomicInteger ran = new AtomicInteger();
+
+    for (int i = 0; i < 5; i++) {
+      executor.execute(ran::incrementAndGet);
+    }
+
+    assertThat(backing.started).hasSize(2);
+    assertThat(executor.getStats().queued).isEqualTo(3);
+
+    backing.runNext();
+
+    assertThat(ran.get()).isEqualTo(1);
+    assertThat(backing.started).hasSize(2);
+    assertThat(executor.getStats().queued).isEqualTo(2);
+  }
+
+  @Test
+  public void execute_nestedExecutorsKeepSeparateLimits() {
+    ManualExecutor backing = new ManualExecutor();
+    LaneExecutor lane = new LaneExecutor(backing, 10);
+    LaneExecutor firstSync = new LaneExecutor(lane, 1);
+    LaneExecutor secondSync = new LaneExecutor(lane, 2);
+
+    for (int i = 0; i < 3; i++) {
+      firstSync.execute(() -> {});
+      secondSync.execute(() -> {});
+    }
+
+    assertThat(backing.started).hasSize(3);
+    assertThat(firstSync.getStats().running).isEqualTo(1);
+    assertThat(secondSync.getStats().running).isEqualTo(2);
+    assertThat(lane.getMaxConcurrency()).isEqualTo(10);
+  }
+
+  @Test
+  public void getStats_countsCompletedTasks() {
+    ManualExecutor backing = new ManualExecutor();
+    LaneExecutor executor = new LaneExecutor(backing, 4);
+    executor.execute(() -> {});
+    executor.execute(
+        () -> {
+          throw new IllegalStateException("task failure");
+        });
+
+    backing.runNext();
+    try {
+      backing.runNext();
+    } catch (IllegalStateException expected) {
+      // failures are reported to the backing executor as usual
+    }
+
+    LaneExecutor.Stats stats = executor.getStats();
+    assertThat(stats.completed).isEqualTo(2);
+    assertThat(stats.running).isEqualTo(0);
+    assertThat(stats.queued).isEqualTo(0);
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.buildmodifier;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link BuildifierResultCache}. */
+@RunWith(JUnit4.class)
+public class BuildifierResultCacheTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final BuildifierResultCache cache = new BuildifierResultCache();
+  private File binary;
+  private File workspaceRoot;
+  private ImmutableList<String> args;
+
+  @Before
+  public void setUp() throws IOException {
+    binary = temporaryFolder.newFile("buildifier");
+    write(binary, "v1");
+    workspaceRoot = temporaryFolder.newFolder("workspace");
+    args = ImmutableList.of(binary.getPath(), "--type=build");
+  }
+
+  @Test
+  public void get_unchangedInput_returnsCachedOutput() {
+    cache.put(args, workspaceRoot, "input", "output");
+
+    assertThat(cache.get(args, workspaceRoot, "input")).isEqualTo("output");
+    assertThat(cache.get(args, workspaceRoot, "output")).isEqualTo("output");
+    assertThat(cache.get(args, workspaceRoot, "other")).isNull();
+  }
+
+  @Test
+  public void get_differentArgs_misses() {
+    cache.put(args, workspaceRoot, "input", "output");
+
+    assertThat(cache.get(ImmutableList.of(binary.getPath(), "--type=bzl"), workspaceRoot, "input"))
+        .isNull();
+  }
+
+  @Test
+  public void get_binaryModified_misses() {
+    cache.put(args, workspaceRoot, "input", "output");
+
+    assertThat(binary.setLastModified(binary.lastModified() - 60_000)).isTrue();
+
+    assertThat(cache.get(args, workspaceRoot, "input")).isNull();
+  }
+
+  @Test
+  public void get_configAdded_misses() throws IOException {
+    cache.put(args, workspaceRoot, "input", "output");
+
+    write(new File(workspaceRoot, BuildifierResultCache.CONFIG_FILE_NAME), "{\"type\": \"auto\"}");
+
+    assertThat(cache.get(args, workspaceRoot, "input")).isNull();
+  }
+
+  @Test
+  public void get_configChanged_misses() throws IOException {
+    File config = new File(workspaceRoot, BuildifierResultCache.CONFIG_FILE_NAME);
+    write(config, "{\"lint\": \"off\"}");
+    cache.put(args, workspaceRoot, "input", "output");
+    assertThat(cache.get(args, workspaceRoot, "input")).isEqualTo("output");
+
+    write(config, "{\"lint\": \"fix\"}");
+
+    assertThat(cache.get(args, workspaceRoot, "input")).isNull();
+  }
+
+  @Test
+  public void get_tablesChanged_misses() throws IOException {
+    File tables = new File(workspaceRoot, "tables.json");
+    write(tables, "{}");
+    write(
+        new File(workspaceRoot, BuildifierResultCache.CONFIG_FILE_NAME),
+        "{\"tables\": \"tables.json\"}");
+    cache.put(args, workspaceRoot, "input", "output");
+    assertThat(cache.get(args, workspaceRoot, "input")).isEqualTo("output");
+
+    write(tables, "{\"IsLabelArg\": {}}");
+
+    assertThat(cache.get(args, workspaceRoot, "input")).isNull();
+  }
+
+  @Test
+  public void get_otherWorkspace_misses() throws IOException {
+    write(new File(workspaceRoot, BuildifierResultCache.CONFIG_FILE_NAME), "{}");
+    cache.put(args, workspaceRoot, "input", "output");
+
+    assertThat(cache.get(args, temporaryFolder.newFolder("other"), "input")).isNull();
+  }
+
+  @Test
+  public void get_otherInstance_misses() {
+    cache.put(args, workspaceRoot, "input", "output");
+
+    assertThat(new BuildifierResultCache().get(args, workspaceRoot, "input")).isNull();
+  }
+
+  private static void write(File file, String contents) throws IOException {
+    Files.write(file.toPath(), contents.getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.logging.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.idea.blaze.base.scope.scopes.TimingScope.EventType;
+import com.google.idea.blaze.base.scope.scopes.TimingScopeListener.TimedEvent;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ChromeTraceWriter}. */
+@RunWith(JUnit4.class)
+public class ChromeTraceWriterTest {
+
+  private static final Instant START = Instant.ofEpochMilli(1_000_000);
+
+  @Test
+  public void write_eventsRelativeToEarliestStart() throws Exception {
+    ImmutableList<TimedEvent> events =
+        ImmutableList.of(
+            new TimedEvent(
+                "Sync", EventType.Other, Duration.ofSeconds(2), false, START, 1, "main"),
+            new TimedEvent(
+                "Build",
+                EventType.BlazeInvocation,
+                Duration.ofMillis(500),
+                true,
+                START.plusMillis(250),
+                7,
+                "worker"));
+
+    JsonArray traceEvents = write(events, ImmutableMap.of("Targets", 42L));
+
+    List<JsonObject> complete = eventsWithPhase(traceEvents, "X");
+    assertThat(complete).hasSize(2);
+    assertThat(complete.get(0).get("name").getAsString()).isEqualTo("Sync");
+    assertThat(complete.get(0).get("ts").getAsLong()).isEqualTo(0);
+    assertThat(complete.get(0).get("dur").getAsLong()).isEqualTo(2_000_000);
+    assertThat(complete.get(1).get("cat").getAsString()).isEqualTo("BlazeInvocation");
+    assertThat(complete.get(1).get("ts").getAsLong()).isEqualTo(250_000);
+    assertThat(complete.get(1).get("tid").getAsLong()).isEqualTo(7);
+
+    List<JsonObject> counters = eventsWithPhase(traceEvents, "C");
+    assertThat(counters).hasSize(1);
+    assertThat(counters.get(0).get("ts").getAsLong()).isEqualTo(2_000_000);
+    assertThat(counters.get(0).getAsJsonObject("args").get("value").getAsLong()).isEqualTo(42);
+  }
+
+  @Test
+  public void write_namesThreads() throws Exception {
+    ImmutableList<TimedEvent> events =
+        ImmutableList.of(
+            new TimedEvent("a", EventType.Other, Duration.ZERO, true, START, 1, "main"),
+            new TimedEvent("b", EventType.Other, Duration.ZERO, true, START, 1, "main"),
+            new TimedEvent("c", EventType.Other, Duration.ZERO, true, START, 2, "pool-1"));
+
+    List<JsonObject> metadata = eventsWithPhase(write(events, ImmutableMap.of()), "M");
+
+    assertThat(metadata).hasSize(3);
+    assertThat(metadata.get(0).get("name").getAsString()).isEqualTo("process_name");
+    assertThat(metadata.get(2).getAsJsonObject("args").get("name").getAsString())
+        .isEqualTo("pool-1");
+  }
+
+  @Test
+  public void write_skipsEventsWithoutStartTime() throws Exception {
+    ImmutableList<TimedEvent> events =
+        ImmutableList.of(new TimedEvent("legacy", EventType.Other, Duration.ofSeconds(1), true));
+
+    assertThat(eventsWithPhase(write(events, ImmutableMap.of()), "X")).isEmpty();
+  }
+
+  private static JsonArray write(List<TimedEvent> events, ImmutableMap<String, Long> counters)
+      throws Exception {
+    StringWriter writer = new StringWriter();
+    ChromeTraceWriter.write(writer, "test", events, counters);
+    return JsonParser.parseString(writer.toString())
+        .getAsJsonObject()
+        .getAsJsonArray("traceEvents");
+  }
+
+  private static List<JsonObject> eventsWithPhase(JsonArray traceEvents, String phase) {
+    List<JsonObject> result = new ArrayList<>();
+    for (JsonElement event : traceEvents) {
+      if (event.getAsJsonObject().get("ph").getAsString().equals(phase)) {
+        result.add(event.getAsJsonObject());
+      }
+    }
+    return result;
+  }
+}
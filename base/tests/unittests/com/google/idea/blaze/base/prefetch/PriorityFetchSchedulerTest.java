@@ -0,0 +1,101 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.prefetch;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PriorityFetchScheduler}. */
+@RunWith(JUnit4.class)
+public class PriorityFetchSchedulerTest {
+
+  /** Holds tasks handed to the backing executor until the test runs them. */
+  private static class ManualExecutor implements Executor {
+    final Queue<Runnable> started = new ArrayDeque<>();
+
+    @Override
+    public void execute(Runnable command) {
+      started.add(command);
+    }
+
+    void runAll() {
+      while (!started.isEmpty()) {
+        started.remove().run();
+      }
+    }
+  }
+
+  @Test
+  public void execute_limitsConcurrencyPerPriority() {
+    ManualExecutor backing = new ManualExecutor();
+    PriorityFetchScheduler scheduler = new PriorityFetchScheduler(backing);
+    int limit = PrefetchPriority.BULK.maxConcurrency;
+
+    for (int i = 0; i < limit + 3; i++) {
+      scheduler.executor(PrefetchPriority.BULK).execute(() -> {});
+    }
+
+    assertThat(backing.started).hasSize(limit);
+    assertThat(scheduler.queued(PrefetchPriority.BULK)).isEqualTo(3);
+  }
+
+  @Test
+  public void execute_higherPriorityTasksStartFirst() {
+    ManualExecutor backing = new ManualExecutor();
+    PriorityFetchScheduler scheduler = new PriorityFetchScheduler(backing);
+    List<PrefetchPriority> ran = new ArrayList<>();
+    int limit = PrefetchPriority.BULK.maxConcurrency;
+
+    for (int i = 0; i < limit * 2; i++) {
+      scheduler.executor(PrefetchPriority.BULK).execute(() -> ran.add(PrefetchPriority.BULK));
+    }
+    scheduler.executor(PrefetchPriority.HIGH).execute(() -> ran.add(PrefetchPriority.HIGH));
+    backing.runAll();
+
+    // the running bulk tasks finish first, then the high priority task jumps the queue
+    assertThat(ran).hasSize(limit * 2 + 1);
+    assertThat(ran.get(limit)).isEqualTo(PrefetchPriority.HIGH);
+  }
+
+  @Test
+  public void execute_lowerPriorityWaitsWhileHigherPriorityQueued() {
+    ManualExecutor backing = new ManualExecutor();
+    PriorityFetchScheduler scheduler = new PriorityFetchScheduler(backing);
+    int limit = PrefetchPriority.NORMAL.maxConcurrency;
+
+    for (int i = 0; i < limit + 1; i++) {
+      scheduler.executor(PrefetchPriority.NORMAL).execute(() -> {});
+    }
+    scheduler.executor(PrefetchPriority.BULK).execute(() -> {});
+
+    assertThat(backing.started).hasSize(limit);
+    assertThat(scheduler.queued(PrefetchPriority.NORMAL)).isEqualTo(1);
+    assertThat(scheduler.queued(PrefetchPriority.BULK)).isEqualTo(1);
+
+    backing.runAll();
+
+    assertThat(scheduler.queued(PrefetchPriority.NORMAL)).isEqualTo(0);
+    assertThat(scheduler.queued(PrefetchPriority.BULK)).isEqualTo(0);
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.run.testmap;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.Dependency;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
+import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.sync.workspace.MockArtifactLocationDecoder;
+import com.intellij.openapi.extensions.impl.ExtensionPointImpl;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link FilteredTargetMap}. */
+@RunWith(JUnit4.class)
+public class FilteredTargetMapTest extends BlazeTestCase {
+
+  private static final int TARGET_COUNT = 60;
+  private static final int SOURCE_COUNT = 40;
+
+  @Override
+  protected void initTest(
+      @NotNull Container applicationServices, @NotNull Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    ExtensionPointImpl<Kind.Provider> kindProvider =
+        registerExtensionPoint(Kind.Provider.EP_NAME, Kind.Provider.class);
+    kindProvider.registerExtension(new GenericBlazeRules());
+    applicationServices.register(Kind.ApplicationState.class, new Kind.ApplicationState());
+  }
+
+  @Test
+  public void targetsForSourceFiles_matchesUnmemoizedSearchInOrder() {
+    Random random = new Random(42);
+    TargetMap targetMap = randomTargetMap(random);
+    ImmutableMultimap<TargetKey, TargetKey> rdepsMap = createRdepsMap(targetMap);
+    Predicate<TargetIdeInfo> filter = target -> target.getKind().getKindString().equals("sh_test");
+    FilteredTargetMap filteredTargetMap =
+        new FilteredTargetMap(project, new MockArtifactLocationDecoder(), targetMap, filter);
+
+    for (int i = 0; i < 200; i++) {
+      List<File> sourceFiles = new ArrayList<>();
+      int fileCount = 1 + random.nextInt(4);
+      for (int j = 0; j < fileCount; j++) {
+        sourceFiles.add(sourceFile(random.nextInt(SOURCE_COUNT)));
+      }
+      ImmutableList<TargetIdeInfo> expected =
+          unmemoizedTargetsForSourceFiles(targetMap, rdepsMap, filter, sourceFiles).asList();
+
+      // the second query for the same files is served from the memo
+      assertThat(filteredTargetMap.targetsForSourceFilesImpl(rdepsMap, sourceFiles))
+          .containsExactlyElementsIn(expected)
+          .inOrder();
+      assertThat(filteredTargetMap.targetsForSourceFilesImpl(rdepsMap, sourceFiles))
+          .containsExactlyElementsIn(expected)
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void targetsForSourceFiles_changedRdepsMap_isNotServedFromMemo() {
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(target("//test:lib", "sh_library", 0))
+            .addTarget(target("//test:test", "sh_test", 1).addDependency("//test:lib"))
+            .build();
+    Predicate<TargetIdeInfo> filter = target -> target.getKind().getKindString().equals("sh_test");
+    FilteredTargetMap filteredTargetMap =
+        new FilteredTargetMap(project, new MockArtifactLocationDecoder(), targetMap, filter);
+    ImmutableList<File> sourceFiles = ImmutableList.of(sourceFile(0));
+
+    assertThat(
+            filteredTargetMap.targetsForSourceFilesImpl(createRdepsMap(targetMap), sourceFiles))
+        .containsExactly(targetMap.get(TargetKey.forPlainTarget(Label.create("//test:test"))));
+    assertThat(filteredTargetMap.targetsForSourceFilesImpl(ImmutableMultimap.of(), sourceFiles))
+        .isEmpty();
+  }
+
+  /** Builds a random DAG; each target depends only on targets with a lower index. */
+  private static TargetMap randomTargetMap(Random random) {
+    TargetMapBuilder builder = TargetMapBuilder.builder();
+    for (int i = 0; i < TARGET_COUNT; i++) {
+      TargetIdeInfo.Builder target =
+          target("//pkg:t" + i, random.nextInt(3) == 0 ? "sh_test" : "sh_library", i);
+      target.addSource(source(random.nextInt(SOURCE_COUNT)));
+      for (int j = 0; j < i && j < 3; j++) {
+        target.addDependency("//pkg:t" + random.nextInt(i));
+      }
+      builder.addTarget(target);
+    }
+    return builder.build();
+  }
+
+  private static TargetIdeInfo.Builder target(String label, String kind, int source) {
+    return TargetIdeInfo.builder()
+        .setBuildFile(
+            ArtifactLocation.builder().setRelativePath("pkg/BUILD").setIsSource(true).build())
+        .setLabel(label)
+        .setKind(kind)
+        .addSource(source(source));
+  }
+
+  private static ImmutableMultimap<TargetKey, TargetKey> createRdepsMap(TargetMap targetMap) {
+    ImmutableMultimap.Builder<TargetKey, TargetKey> builder = ImmutableMultimap.builder();
+    for (TargetIdeInfo target : targetMap.targets()) {
+      for (Dependency dep : target.getDependencies()) {
+        builder.put(dep.getTargetKey(), target.getKey());
+      }
+    }
+    return builder.build();
+  }
+
+  /** The search {@link FilteredTargetMap} ran for every query before it memoized results. */
+  private static ImmutableSet<TargetIdeInfo> unmemoizedTargetsForSourceFiles(
+      TargetMap targetMap,
+      ImmutableMultimap<TargetKey, TargetKey> rdepsMap,
+      Predicate<TargetIdeInfo> filter,
+      List<File> sourceFiles) {
+    ImmutableSet.Builder<TargetKey> roots = ImmutableSet.builder();
+    for (File file : sourceFiles) {
+      for (TargetIdeInfo target : targetMap.targets()) {
+        if (target.getSources().stream().anyMatch(s -> sourceFile(s).equals(file))) {
+          roots.add(target.getKey());
+        }
+      }
+    }
+    ImmutableSet.Builder<TargetIdeInfo> result = ImmutableSet.builder();
+    Queue<TargetKey> todo = Queues.newArrayDeque();
+    todo.addAll(roots.build());
+    Set<TargetKey> seen = Sets.newHashSet();
+    while (!todo.isEmpty()) {
+      TargetKey targetKey = todo.remove();
+      if (!seen.add(targetKey)) {
+        continue;
+      }
+      TargetIdeInfo target = targetMap.get(targetKey);
+      if (filter.test(target)) {
+        result.add(target);
+      }
+      todo.addAll(rdepsMap.get(targetKey));
+    }
+    return result.build();
+  }
+
+  private static ArtifactLocation source(int index) {
+    return ArtifactLocation.builder()
+        .setRelativePath("pkg/Source" + index + ".java")
+        .setIsSource(true)
+        .build();
+  }
+
+  private static File sourceFile(int index) {
+    return sourceFile(source(index));
+  }
+
+  private static File sourceFile(ArtifactLocation source) {
+    return new MockArtifactLocationDecoder().resolveSource(source);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.aspects;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.command.buildresult.LocalFileOutputArtifactWithoutDigest;
+import com.google.idea.blaze.base.command.buildresult.OutputArtifactWithoutDigest;
+import com.google.idea.blaze.base.filecache.ArtifactState;
+import com.google.idea.blaze.base.filecache.ArtifactState.LocalFileState;
+import java.io.File;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PreparsedAspectOutputs}. */
+@RunWith(JUnit4.class)
+public class PreparsedAspectOutputsTest extends BlazeTestCase {
+
+  private static final String RELATIVE_PATH = "k8-fastbuild/bin/foo/foo.intellij-info.txt";
+
+  private final OutputArtifactWithoutDigest file =
+      new LocalFileOutputArtifactWithoutDigest(
+          new File("/execroot/bazel-out", RELATIVE_PATH), RELATIVE_PATH, "k8-fastbuild");
+
+  private final ListenableFuture<IntellijIdeInfo.TargetIdeInfo> target =
+      Futures.immediateFuture(IntellijIdeInfo.TargetIdeInfo.getDefaultInstance());
+
+  @Test
+  public void take_unchangedOutput_reusesParsedTarget() {
+    PreparsedAspectOutputs preparsed = new PreparsedAspectOutputs(project);
+    ArtifactState state = new LocalFileState(RELATIVE_PATH, 100);
+    assertThat(preparsed.record(preparsed.currentGeneration(), RELATIVE_PATH, state, target))
+        .isTrue();
+
+    assertThat(preparsed.take(file, new LocalFileState(RELATIVE_PATH, 100))).isSameAs(target);
+    // each parsed target is only handed out once
+    assertThat(preparsed.take(file, new LocalFileState(RELATIVE_PATH, 100))).isNull();
+  }
+
+  @Test
+  public void take_outputChangedSinceParsing_returnsNull() {
+    PreparsedAspectOutputs preparsed = new PreparsedAspectOutputs(project);
+    ArtifactState state = new LocalFileState(RELATIVE_PATH, 100);
+    preparsed.record(preparsed.currentGeneration(), RELATIVE_PATH, state, target);
+
+    assertThat(preparsed.take(file, new LocalFileState(RELATIVE_PATH, 200))).isNull();
+  }
+
+  @Test
+  public void take_noCurrentState_returnsNull() {
+    PreparsedAspectOutputs preparsed = new PreparsedAspectOutputs(project);
+    ArtifactState state = new LocalFileState(RELATIVE_PATH, 100);
+    preparsed.record(preparsed.currentGeneration(), RELATIVE_PATH, state, target);
+
+    assertThat(preparsed.take(file, null)).isNull();
+  }
+
+  @Test
+  public void clear_dropsParsedTargets() {
+    PreparsedAspectOutputs preparsed = new PreparsedAspectOutputs(project);
+    ArtifactState state = new LocalFileState(RELATIVE_PATH, 100);
+    preparsed.record(preparsed.currentGeneration(), RELATIVE_PATH, state, target);
+
+    preparsed.clear();
+
+    assertThat(preparsed.take(file, state)).isNull();
+  }
+
+  @Test
+  public void record_afterClear_isDropped() {
+    PreparsedAspectOutputs preparsed = new PreparsedAspectOutputs(project);
+    int generation = preparsed.currentGeneration();
+    ArtifactState state = new LocalFileState(RELATIVE_PATH, 100);
+
+    // the project update phase finishes while the shard's outputs are still being parsed
+    preparsed.clear();
+
+    assertThat(preparsed.record(generation, RELATIVE_PATH, state, target)).isFalse();
+    assertThat(preparsed.take(file, state)).isNull();
+    assertThat(preparsed.record(preparsed.currentGeneration(), RELATIVE_PATH, state, target))
+        .isTrue();
+    assertThat(preparsed.take(file, state)).isSameAs(target);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.projectstructure;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.base.sync.workspace.WorkingSet;
+import com.google.idea.common.experiments.ExperimentService;
+import com.google.idea.common.experiments.MockExperimentService;
+import java.io.File;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link DirectoryStructureCache}. */
+@RunWith(JUnit4.class)
+public class DirectoryStructureCacheTest extends BlazeTestCase {
+  private static final WorkspaceRoot WORKSPACE_ROOT = new WorkspaceRoot(new File("/root"));
+
+  private final DirectoryStructureCache cache = new DirectoryStructureCache();
+
+  @Override
+  protected void initTest(
+      @NotNull Container applicationServices, @NotNull Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    applicationServices.register(ExperimentService.class, new MockExperimentService());
+  }
+
+  @Test
+  public void testListingReusedWhileUnmodified() {
+    cache.putSubdirectories(file("foo"), 1, ImmutableList.of(file("foo/bar")));
+
+    assertThat(cache.getSubdirectories(file("foo"), 1)).containsExactly(file("foo/bar"));
+    assertThat(cache.getSubdirectories(file("foo"), 2)).isNull();
+  }
+
+  @Test
+  public void testFileEventInvalidatesParentAndSubtree() {
+    cache.putSubdirectories(file("foo"), 1, ImmutableList.of(file("foo/bar")));
+    cache.putSubdirectories(file("foo/bar"), 1, ImmutableList.of(file("foo/bar/baz")));
+    cache.putSubdirectories(file("foo/bar/baz"), 1, ImmutableList.of());
+    cache.putSubdirectories(file("foo/bar_sibling"), 1, ImmutableList.of());
+
+    cache.invalidate(file("foo/bar").getPath());
+
+    assertThat(cache.getSubdirectories(file("foo"), 1)).isNull();
+    assertThat(cache.getSubdirectories(file("foo/bar"), 1)).isNull();
+    assertThat(cache.getSubdirectories(file("foo/bar/baz"), 1)).isNull();
+    assertThat(cache.getSubdirectories(file("foo/bar_sibling"), 1)).isEmpty();
+  }
+
+  @Test
+  public void testWorkingSetInvalidatesParentDirectories() {
+    cache.putSubdirectories(file(""), 1, ImmutableList.of(file("foo")));
+    cache.putSubdirectories(file("foo"), 1, ImmutableList.of(file("foo/bar")));
+    cache.putSubdirectories(file("foo/bar"), 1, ImmutableList.of());
+    cache.putSubdirectories(file("other"), 1, ImmutableList.of());
+
+    cache.invalidate(
+        WORKSPACE_ROOT,
+        new WorkingSet(
+            ImmutableList.of(new WorkspacePath("foo/bar/New.java")),
+            ImmutableList.of(new WorkspacePath("other/Modified.java")),
+            ImmutableList.of()));
+
+    assertThat(cache.getSubdirectories(file(""), 1)).isNull();
+    assertThat(cache.getSubdirectories(file("foo"), 1)).isNull();
+    assertThat(cache.getSubdirectories(file("foo/bar"), 1)).isNull();
+    // modified files don't change directory listings
+    assertThat(cache.getSubdirectories(file("other"), 1)).isEmpty();
+  }
+
+  private static File file(String relativePath) {
+    return WORKSPACE_ROOT.fileForPath(new WorkspacePath(relativePath));
+  }
+}
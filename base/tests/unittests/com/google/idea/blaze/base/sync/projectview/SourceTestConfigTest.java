@@ -18,6 +18,11 @@ package com.google.idea.blaze.base.sync.projectview;
 import static com.google.common.truth.Truth.assertThat;
 
 import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.projectview.ProjectView;
+import com.google.idea.blaze.base.projectview.ProjectViewSet;
+import com.google.idea.blaze.base.projectview.section.Glob;
+import com.google.idea.blaze.base.projectview.section.ListSection;
+import com.google.idea.blaze.base.projectview.section.sections.TestSourceSection;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -36,4 +41,39 @@ public class SourceTestConfigTest {
     assertThat(SourceTestConfig.modifyPattern("path/to/file")).isEqualTo("path/to/file*");
     assertThat(SourceTestConfig.modifyPattern("path/to/file*")).isEqualTo("path/to/file*");
   }
+
+  @Test
+  public void testLegacyWildcardExpansion() {
+    assertThat(SourceTestConfig.expandLegacyWildcards("*/javatests*"))
+        .containsExactly("*/javatests*", "*/**/*/javatests*");
+    assertThat(SourceTestConfig.expandLegacyWildcards("javatests*")).containsExactly("javatests*");
+  }
+
+  @Test
+  public void testWildcardMatchesNestedDirectories() {
+    SourceTestConfig config = createConfig("*/javatests/*");
+
+    assertThat(config.isTestSource("foo/javatests/Test.java")).isTrue();
+    assertThat(config.isTestSource("foo/bar/javatests/com/foo/Test.java")).isTrue();
+    assertThat(config.isTestSource("foo/bar/java/com/foo/Main.java")).isFalse();
+  }
+
+  @Test
+  public void testWildcardWithinSegmentMatchesAcrossDirectories() {
+    SourceTestConfig config = createConfig("java*tests/foo");
+
+    assertThat(config.isTestSource("javatests/foo/Test.java")).isTrue();
+    assertThat(config.isTestSource("java/bar/tests/foo/Test.java")).isTrue();
+    assertThat(config.isTestSource("java/bar/foo/Test.java")).isFalse();
+  }
+
+  private static SourceTestConfig createConfig(String testSource) {
+    return new SourceTestConfig(
+        ProjectViewSet.builder()
+            .add(
+                ProjectView.builder()
+                    .add(ListSection.builder(TestSourceSection.KEY).add(new Glob(testSource)))
+                    .build())
+            .build());
+  }
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.toolwindow;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ConsoleOutputBuffer}. */
+@RunWith(JUnit4.class)
+public class ConsoleOutputBufferTest {
+  private static final long MAX_SAVED_BYTES = 64 * 1024 * 1024;
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /** Holds tasks until the test runs them. */
+  private static class ManualExecutor implements Executor {
+    final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public void execute(Runnable command) {
+      tasks.add(command);
+    }
+  }
+
+  @Test
+  public void writeTo_includesAllLines() throws Exception {
+    ConsoleOutputBuffer buffer =
+        new ConsoleOutputBuffer(
+            tempFolder.getRoot().toPath(), MoreExecutors.directExecutor(), MAX_SAVED_BYTES);
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      buffer.appendLine("line " + i);
+      expected.append("line ").append(i).append('\n');
+    }
+
+    StringWriter out = new StringWriter();
+    buffer.writeTo(out);
+
+    assertThat(buffer.getLineCount()).isEqualTo(5000);
+    assertThat(out.toString()).isEqualTo(expected.toString());
+  }
+
+  @Test
+  public void appendLine_writesToDiskOnExecutor() throws Exception {
+    ManualExecutor executor = new ManualExecutor();
+    ConsoleOutputBuffer buffer =
+        new ConsoleOutputBuffer(tempFolder.getRoot().toPath(), executor, MAX_SAVED_BYTES);
+
+    buffer.appendLine("first");
+    buffer.appendLine("second");
+
+    // a single drain is scheduled for both lines, and nothing is written until it runs
+    assertThat(executor.tasks).hasSize(1);
+    assertThat(listFiles(tempFolder.getRoot().toPath())).isEmpty();
+
+    executor.tasks.remove().run();
+
+    assertThat(listFiles(tempFolder.getRoot().toPath())).hasLength(1);
+  }
+
+  @Test
+  public void writeTo_includesLinesNotYetWritten() throws Exception {
+    ManualExecutor executor = new ManualExecutor();
+    ConsoleOutputBuffer buffer =
+        new ConsoleOutputBuffer(tempFolder.getRoot().toPath(), executor, MAX_SAVED_BYTES);
+    buffer.appendLine("first");
+    buffer.appendLine("second");
+
+    StringWriter out = new StringWriter();
+    buffer.writeTo(out);
+
+    assertThat(out.toString()).isEqualTo("first\nsecond\n");
+  }
+
+  @Test
+  public void writeTo_withoutSpill_notesOmittedLines() throws Exception {
+    ConsoleOutputBuffer buffer =
+        new ConsoleOutputBuffer(null, MoreExecutors.directExecutor(), MAX_SAVED_BYTES);
+    buffer.appendLine("x");
+    buffer.appendLine("y");
+
+    StringWriter out = new StringWriter();
+    buffer.writeTo(out);
+
+    assertThat(buffer.isSavingOutput()).isFalse();
+    assertThat(buffer.getLineCount()).isEqualTo(2);
+    assertThat(out.toString()).isEqualTo("[2 lines couldn't be saved]\n");
+  }
+
+  @Test
+  public void clear_discardsEarlierLines() throws Exception {
+    ConsoleOutputBuffer buffer =
+        new ConsoleOutputBuffer(
+            tempFolder.getRoot().toPath(), MoreExecutors.directExecutor(), MAX_SAVED_BYTES);
+    buffer.appendLine("before");
+    buffer.clear();
+    buffer.appendLine("after");
+
+    StringWriter out = new StringWriter();
+    buffer.writeTo(out);
+
+    assertThat(buffer.getLineCount()).isEqualTo(1);
+    assertThat(out.toString()).isEqualTo("after\n");
+  }
+
+  @Test
+  public void close_deletesSpillFile() throws Exception {
+    Path spillDirectory = tempFolder.getRoot().toPath();
+    ConsoleOutputBuffer buffer =
+        new ConsoleOutputBuffer(spillDirectory, MoreExecutors.directExecutor(), MAX_SAVED_BYTES);
+    buffer.appendLine("line");
+    assertThat(listFiles(spillDirectory)).isNotEmpty();
+
+    buffer.close();
+
+    assertThat(listFiles(spillDirectory)).isEmpty();
+  }
+
+  @Test
+  public void writeTo_overBudget_discardsOldestSegments() throws Exception {
+    Path spillDirectory = tempFolder.getRoot().toPath();
+    // each line takes 7 bytes, so every segment of the 80 byte budget holds two lines
+    ConsoleOutputBuffer buffer =
+        new ConsoleOutputBuffer(spillDirectory, MoreExecutors.directExecutor(), 80);
+    StringBuilder expected = new StringBuilder("[10 earlier lines were discarded]\n");
+    for (int i = 0; i < 20; i++) {
+      buffer.appendLine(String.format("line%02d", i));
+      if (i >= 10) {
+        expected.append(String.format("line%02d", i)).append('\n');
+      }
+    }
+
+    StringWriter out = new StringWriter();
+    buffer.writeTo(out);
+
+    assertThat(buffer.getLineCount()).isEqualTo(20);
+    assertThat(out.toString()).isEqualTo(expected.toString());
+    assertThat(listFiles(spillDirectory)).hasLength(5);
+  }
+
+  @Test
+  public void appendLine_whileDiskIsBehind_dropsLinesOverPendingLimit() throws Exception {
+    ManualExecutor executor = new ManualExecutor();
+    ConsoleOutputBuffer buffer =
+        new ConsoleOutputBuffer(tempFolder.getRoot().toPath(), executor, MAX_SAVED_BYTES);
+    String longLine = Strings.repeat("x", (int) ConsoleOutputBuffer.MAX_PENDING_CHARS + 1);
+
+    buffer.appendLine(longLine);
+    buffer.appendLine("dropped");
+
+    StringWriter out = new StringWriter();
+    buffer.writeTo(out);
+
+    assertThat(buffer.getLineCount()).isEqualTo(2);
+    assertThat(out.toString()).isEqualTo(longLine + "\n[1 lines couldn't be saved]\n");
+  }
+
+  private static Object[] listFiles(Path directory) throws Exception {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.toArray();
+    }
+  }
+}
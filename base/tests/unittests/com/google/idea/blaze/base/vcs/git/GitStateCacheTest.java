@@ -0,0 +1,92 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.vcs.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.idea.blaze.base.vcs.git.GitStateCache.GitFiles;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link GitStateCache}. */
+@RunWith(JUnit4.class)
+public class GitStateCacheTest {
+  @Rule public TemporaryFolder tempDir = new TemporaryFolder();
+
+  @Test
+  public void findGitFiles_repositoryRoot() throws IOException {
+    Path repo = tempDir.newFolder("repo").toPath();
+    Path gitDir = Files.createDirectory(repo.resolve(".git"));
+    Path workspace = Files.createDirectories(repo.resolve("some/workspace"));
+
+    GitFiles files = GitFiles.find(workspace);
+
+    assertThat(files).isNotNull();
+    assertThat(files.gitDir).isEqualTo(gitDir.toAbsolutePath());
+    assertThat(files.commonDir).isEqualTo(gitDir.toAbsolutePath());
+  }
+
+  @Test
+  public void findGitFiles_linkedWorktree() throws IOException {
+    Path repo = tempDir.newFolder("repo").toPath();
+    Path worktreeGitDir = Files.createDirectories(repo.resolve(".git/worktrees/feature"));
+    Files.write(worktreeGitDir.resolve("commondir"), "../..\n".getBytes(UTF_8));
+    Path worktree = tempDir.newFolder("feature").toPath();
+    Files.write(worktree.resolve(".git"), ("gitdir: " + worktreeGitDir + "\n").getBytes(UTF_8));
+
+    GitFiles files = GitFiles.find(worktree);
+
+    assertThat(files).isNotNull();
+    assertThat(files.gitDir).isEqualTo(worktreeGitDir);
+    assertThat(files.commonDir).isEqualTo(repo.resolve(".git"));
+  }
+
+  @Test
+  public void findGitFiles_notARepository() throws IOException {
+    Path dir = tempDir.newFolder("dir").toPath();
+    Files.write(dir.resolve(".git"), "not a git file".getBytes(UTF_8));
+
+    assertThat(GitFiles.find(dir)).isNull();
+  }
+
+  @Test
+  public void upstreamStamp_changesWithHeadAndUpstreamRef() throws IOException {
+    Path repo = tempDir.newFolder("repo").toPath();
+    Path gitDir = Files.createDirectory(repo.resolve(".git"));
+    Files.write(gitDir.resolve("HEAD"), "ref: refs/heads/main\n".getBytes(UTF_8));
+    Path ref = Files.createDirectories(gitDir.resolve("refs/remotes/origin")).resolve("main");
+    Files.write(ref, "0000000000000000000000000000000000000000\n".getBytes(UTF_8));
+    GitFiles files = GitFiles.find(repo);
+    files.upstreamRef = "refs/remotes/origin/main";
+
+    String stamp = files.upstreamStamp();
+    assertThat(files.upstreamStamp()).isEqualTo(stamp);
+
+    Files.write(ref, "1111111111111111111111111111111111111111\n\n".getBytes(UTF_8));
+    String afterFetch = files.upstreamStamp();
+    assertThat(afterFetch).isNotEqualTo(stamp);
+
+    Files.write(gitDir.resolve("HEAD"), "ref: refs/heads/feature\n".getBytes(UTF_8));
+    assertThat(files.upstreamStamp()).isNotEqualTo(afterFetch);
+  }
+}
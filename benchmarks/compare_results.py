@@ -0,0 +1,110 @@
+#!/usr/bin/python3
+#
+# Copyright 2023 The Bazel Authors. All rights reserved.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+"""Compares two JMH result files, failing if any benchmark regressed."""
+
+import argparse
+import json
+import sys
+
+parser = argparse.ArgumentParser()
+
+parser.add_argument(
+    "baseline",
+    help="JMH results to compare against, written with -rf json.")
+parser.add_argument(
+    "current",
+    help="JMH results of the change under review, written with -rf json.")
+parser.add_argument(
+    "--threshold",
+    help="The relative slowdown, beyond the measurement error, which counts "
+    "as a regression.",
+    type=float,
+    default=0.10)
+
+# Modes in which a higher score is better. In all other modes (avgt, sample, ss)
+# a higher score is worse.
+_THROUGHPUT_MODES = frozenset(["thrpt"])
+
+
+def _key(result):
+  params = ",".join(
+      "{}={}".format(k, v) for k, v in sorted(result.get("params", {}).items()))
+  return "{}({})".format(result["benchmark"], params)
+
+
+def _load(path):
+  with open(path) as f:
+    return {_key(r): r for r in json.load(f)}
+
+
+def _slowdown(baseline, current):
+  """Returns how much slower current is than baseline, beyond the error bounds.
+
+  Args:
+    baseline: The baseline result of a benchmark.
+    current: The current result of the same benchmark.
+  Returns:
+    The relative slowdown, or 0 if the difference is within the measurement
+    error.
+  """
+  base = baseline["primaryMetric"]
+  cur = current["primaryMetric"]
+  base_error = base.get("scoreError") or 0
+  cur_error = cur.get("scoreError") or 0
+  if baseline["mode"] in _THROUGHPUT_MODES:
+    worst_base = base["score"] - base_error
+    best_cur = cur["score"] + cur_error
+    if best_cur >= worst_base or best_cur <= 0:
+      return 0
+    return worst_base / best_cur - 1
+  best_base = base["score"] + base_error
+  best_cur = cur["score"] - cur_error
+  if best_cur <= best_base or best_base <= 0:
+    return 0
+  return best_cur / best_base - 1
+
+
+def main():
+  args = parser.parse_args()
+  baseline = _load(args.baseline)
+  current = _load(args.current)
+
+  regressions = 0
+  for key in sorted(current):
+    cur = current[key]["primaryMetric"]
+    if key not in baseline:
+      print("NEW        {}: {:.3f} {}".format(key, cur["score"],
+                                              cur["scoreUnit"]))
+      continue
+    base = baseline[key]["primaryMetric"]
+    slowdown = _slowdown(baseline[key], current[key])
+    status = "OK"
+    if slowdown > args.threshold:
+      status = "REGRESSED"
+      regressions += 1
+    print("{:<10} {}: {:.3f} -> {:.3f} {}".format(
+        status, key, base["score"], cur["score"], cur["scoreUnit"]))
+  for key in sorted(set(baseline) - set(current)):
+    print("MISSING    {}".format(key))
+
+  if regressions:
+    print("{} benchmark(s) regressed by more than {:.0%}".format(
+        regressions, args.threshold))
+    sys.exit(1)
+
+
+if __name__ == "__main__":
+  main()
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.issueparser;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks scanning build output for issues, which happens for every line printed to the build
+ * console.
+ *
+ * <p>The parsers which resolve compiler error paths through the project are left out, as they
+ * need a running IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BlazeIssueParserBenchmark {
+
+  private static final File WORKSPACE = new File("/workspace");
+
+  @Param({"100000"})
+  public int lines;
+
+  /** How many lines in every thousand report an error. */
+  @Param({"1", "50"})
+  public int errorsPerThousand;
+
+  private ImmutableList<String> output;
+  private ImmutableList<BlazeIssueParser.Parser> parsers;
+
+  @Setup
+  public void setUp() {
+    ImmutableList.Builder<String> output = ImmutableList.builder();
+    int errors = 0;
+    for (int i = 0; i < lines; i++) {
+      if ((long) i * errorsPerThousand / 1000 > errors) {
+        errors++;
+        addError(output, errors);
+      } else {
+        output.add(
+            String.format(
+                "[%,d / %,d] Compiling Java headers java/com/example/p%d/libt%d-hjar.jar"
+                    + " (5 source files); 0s remote-cache, linux-sandbox",
+                i, lines, i % 1000, i % 7));
+      }
+    }
+    this.output = output.build();
+    this.parsers =
+        ImmutableList.of(
+            new BlazeIssueParser.TracebackParser(),
+            new BlazeIssueParser.BuildParser(),
+            new BlazeIssueParser.SkylarkErrorParser(),
+            new BlazeIssueParser.LinelessBuildParser(),
+            new BlazeIssueParser.FileNotFoundBuildParser(new WorkspaceRoot(WORKSPACE)),
+            BlazeIssueParser.GenericErrorParser.INSTANCE);
+  }
+
+  private static void addError(ImmutableList.Builder<String> output, int index) {
+    String pkg = WORKSPACE + "/java/com/example/p" + index;
+    switch (index % 4) {
+      case 0:
+        output.add(pkg + "/BUILD:12:8: in deps attribute of java_library rule: missing target");
+        output.add("ERROR: " + pkg + "/BUILD:12:8: no such target '//missing:dep'");
+        break;
+      case 1:
+        output.add("ERROR: " + pkg + "/defs.bzl:3:5: name 'undefined' is not defined");
+        break;
+      case 2:
+        output.add("ERROR: " + pkg + "/BUILD:4:1: Traceback (most recent call last):");
+        output.add("\tFile " + pkg + "/BUILD, line 4, column 1, in <toplevel>");
+        output.add("\tFile " + pkg + "/defs.bzl, line 9, column 2, in macro");
+        output.add("Error: something went wrong");
+        break;
+      default:
+        output.add("ERROR: //java/com/example/p" + index + ":t0: Exit 1.");
+        break;
+    }
+  }
+
+  @Benchmark
+  public int parseOutput() {
+    BlazeIssueParser issueParser = new BlazeIssueParser(parsers);
+    int issues = 0;
+    for (String line : output) {
+      if (issueParser.parseIssue(line) != null) {
+        issues++;
+      }
+    }
+    return issues;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.qsync;
+
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.exception.BuildException;
+import com.google.idea.blaze.qsync.project.BuildGraphData;
+import com.google.idea.blaze.qsync.project.ProjectProto;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks converting a build graph into the IDE project structure. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GraphToProjectConverterBenchmark {
+
+  private BuildGraphData graph;
+  private GraphToProjectConverter converter;
+
+  @Setup
+  public void setUp(WorkspaceSize size) {
+    SyntheticWorkspace workspace = size.workspace();
+    graph =
+        new BlazeQueryParser(
+                workspace.querySummary(), SyntheticWorkspace.noopContext(), ImmutableSet.of())
+            .parse();
+    converter =
+        new GraphToProjectConverter(
+            SyntheticWorkspace.packageReader(),
+            path -> true,
+            SyntheticWorkspace.noopContext(),
+            workspace.projectDefinition(),
+            newDirectExecutorService());
+  }
+
+  @Benchmark
+  public ProjectProto.Project createProject() throws BuildException {
+    return converter.createProject(graph);
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.qsync;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build;
+import com.google.idea.blaze.common.Context;
+import com.google.idea.blaze.common.Output;
+import com.google.idea.blaze.qsync.java.PackageReader;
+import com.google.idea.blaze.qsync.project.ProjectDefinition;
+import com.google.idea.blaze.qsync.project.QuerySyncLanguage;
+import com.google.idea.blaze.qsync.query.QuerySummary;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates the query output of a synthetic java workspace, for benchmarking.
+ *
+ * <p>The workspace has {@code packages} packages under {@link #ROOT}, each with the given number
+ * of {@code java_library} targets and source files per target. Every target depends on up to
+ * {@code depsPerTarget} targets generated before it, so the dependency graph is acyclic, and on one
+ * of a fixed set of targets outside the project. The workspace is generated
+ * from a fixed seed, so the same parameters always produce the same output.
+ */
+public final class SyntheticWorkspace {
+
+  public static final Path ROOT = Path.of("java/com/example");
+
+  private static final int EXTERNAL_TARGETS = 50;
+
+  private final int packages;
+  private final int targetsPerPackage;
+  private final int depsPerTarget;
+  private final int sourcesPerTarget;
+
+  private SyntheticWorkspace(
+      int packages, int targetsPerPackage, int depsPerTarget, int sourcesPerTarget) {
+    this.packages = packages;
+    this.targetsPerPackage = targetsPerPackage;
+    this.depsPerTarget = depsPerTarget;
+    this.sourcesPerTarget = sourcesPerTarget;
+  }
+
+  public static SyntheticWorkspace create(
+      int packages, int targetsPerPackage, int depsPerTarget, int sourcesPerTarget) {
+    return new SyntheticWorkspace(packages, targetsPerPackage, depsPerTarget, sourcesPerTarget);
+  }
+
+  /**
+   * Returns the workspace as {@code query --output=streamed_proto --relative_locations} would
+   * print it.
+   */
+  public byte[] queryOutput() {
+    Random random = new Random(42);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      for (int p = 0; p < packages; p++) {
+        Path pkg = packagePath(p);
+        sourceFile(pkg, "BUILD").writeDelimitedTo(out);
+        for (int t = 0; t < targetsPerPackage; t++) {
+          ImmutableList.Builder<String> srcs = ImmutableList.builder();
+          for (int s = 0; s < sourcesPerTarget; s++) {
+            String src = String.format("Src%d_%d.java", t, s);
+            sourceFile(pkg, src).writeDelimitedTo(out);
+            srcs.add(label(pkg, src));
+          }
+          rule(pkg, t, srcs.build(), deps(random, p * targetsPerPackage + t))
+              .writeDelimitedTo(out);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  public QuerySummary querySummary() {
+    try {
+      return QuerySummary.create(new ByteArrayInputStream(queryOutput()));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public ProjectDefinition projectDefinition() {
+    return ProjectDefinition.create(
+        ImmutableSet.of(ROOT),
+        ImmutableSet.of(),
+        ImmutableSet.of(QuerySyncLanguage.JAVA),
+        ImmutableSet.of());
+  }
+
+  /** Returns a reader which derives the java package of a source from its directory. */
+  public static PackageReader packageReader() {
+    return path -> path.getParent().toString().substring("java/".length()).replace('/', '.');
+  }
+
+  /** Returns a context which discards all output. */
+  public static Context<?> noopContext() {
+    return new NoopContext();
+  }
+
+  /**
+   * Returns the deps of the target with the given index across all packages. Targets only depend
+   * on targets with a lower index, so there are no self-dependencies or cycles.
+   */
+  private ImmutableList<String> deps(Random random, int targetIndex) {
+    Set<String> deps = new LinkedHashSet<>();
+    for (int i = 0; i < depsPerTarget && targetIndex > 0; i++) {
+      int dep = random.nextInt(targetIndex);
+      Path pkg = packagePath(dep / targetsPerPackage);
+      deps.add(label(pkg, "t" + dep % targetsPerPackage));
+    }
+    deps.add("//third_party/lib" + random.nextInt(EXTERNAL_TARGETS) + ":lib");
+    return ImmutableList.copyOf(deps);
+  }
+
+  private static Path packagePath(int index) {
+    return ROOT.resolve("p" + index);
+  }
+
+  private static String label(Path pkg, String name) {
+    return "//" + pkg + ":" + name;
+  }
+
+  private static Build.Target sourceFile(Path pkg, String name) {
+    return Build.Target.newBuilder()
+        .setType(Build.Target.Discriminator.SOURCE_FILE)
+        .setSourceFile(
+            Build.SourceFile.newBuilder()
+                .setName(label(pkg, name))
+                .setLocation(pkg.resolve(name) + ":1:1"))
+        .build();
+  }
+
+  private static Build.Target rule(
+      Path pkg, int index, ImmutableList<String> srcs, ImmutableList<String> deps) {
+    return Build.Target.newBuilder()
+        .setType(Build.Target.Discriminator.RULE)
+        .setRule(
+            Build.Rule.newBuilder()
+                .setName(label(pkg, "t" + index))
+                .setRuleClass("java_library")
+                .setLocation(pkg.resolve("BUILD") + ":" + (index * 10 + 1) + ":1")
+                .addAttribute(stringList("srcs", Build.Attribute.Discriminator.LABEL_LIST, srcs))
+                .addAttribute(stringList("deps", Build.Attribute.Discriminator.LABEL_LIST, deps))
+                .addAttribute(
+                    stringList(
+                        "tags", Build.Attribute.Discriminator.STRING_LIST, ImmutableList.of())))
+        .build();
+  }
+
+  private static Build.Attribute stringList(
+      String name, Build.Attribute.Discriminator type, ImmutableList<String> values) {
+    return Build.Attribute.newBuilder()
+        .setName(name)
+        .setType(type)
+        .addAllStringListValue(values)
+        .build();
+  }
+
+  private static class NoopContext implements Context<NoopContext> {
+    @Override
+    public NoopContext push(Scope<? super NoopContext> scope) {
+      return this;
+    }
+
+    @Override
+    public <T extends Scope<?>> T getScope(Class<T> scopeClass) {
+      return null;
+    }
+
+    @Override
+    public <T extends Output> void output(T output) {}
+
+    @Override
+    public void setHasError() {}
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.qsync;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The shape of the {@link SyntheticWorkspace} a benchmark runs against. Each parameter can be
+ * overridden on the command line, e.g. {@code -p packages=5000}.
+ */
+@State(Scope.Benchmark)
+public class WorkspaceSize {
+
+  @Param({"100", "1000"})
+  public int packages;
+
+  @Param({"5"})
+  public int targetsPerPackage;
+
+  @Param({"10"})
+  public int depsPerTarget;
+
+  @Param({"5"})
+  public int sourcesPerTarget;
+
+  public SyntheticWorkspace workspace() {
+    return SyntheticWorkspace.create(packages, targetsPerPackage, depsPerTarget, sourcesPerTarget);
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.qsync.query;
+
+import com.google.idea.blaze.qsync.WorkspaceSize;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks reading the output of a query into a {@link QuerySummary}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class QuerySummaryBenchmark {
+
+  private byte[] queryOutput;
+
+  @Setup
+  public void setUp(WorkspaceSize size) {
+    queryOutput = size.workspace().queryOutput();
+  }
+
+  @Benchmark
+  public QuerySummary create() throws IOException {
+    return QuerySummary.create(new ByteArrayInputStream(queryOutput));
+  }
+
+  /** Also builds the label indexes, which every sync reads straight after the summary. */
+  @Benchmark
+  public int createAndIndex() throws IOException {
+    QuerySummary summary = QuerySummary.create(new ByteArrayInputStream(queryOutput));
+    return summary.getRulesMap().size() + summary.getSourceFilesMap().size();
+  }
+}
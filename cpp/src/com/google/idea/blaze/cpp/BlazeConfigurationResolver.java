@@ -120,7 +120,12 @@ final class BlazeConfigurationResolver {
     builder.setCompilerSettings(compilerSettings);
     ImmutableSet<File> validHeaderRoots =
         HeaderRootTrimmer.getValidRoots(
-            context, blazeProjectData, toolchainLookupMap, targetFilter, executionRootPathResolver);
+            context,
+            blazeProjectData,
+            toolchainLookupMap,
+            targetFilter,
+            executionRootPathResolver,
+            HeaderRootCache.forProject(project));
     builder.setValidHeaderRoots(validHeaderRoots);
     builder.setTargetToVersionMap(targetToVersion);
     builder.setXcodeSettings(xcodeSettings);
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.cpp;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.google.idea.blaze.base.io.VfsUtils;
+import com.google.idea.blaze.base.settings.BlazeImportSettings;
+import com.google.idea.blaze.base.settings.BlazeImportSettingsManager;
+import com.google.idea.blaze.base.sync.data.BlazeDataStorage;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Remembers, across syncs and IDE restarts, whether each generated header root may contain
+ * headers.
+ *
+ * <p>A result is recorded along with the modification time of every directory visited to compute
+ * it. Adding or removing a file or subdirectory changes the modification time of its parent, so as
+ * long as none of those times changed, the same walk would reach the same result and the root
+ * doesn't need to be scanned again. The walk lists directories through the VFS, so the times are
+ * also read from the VFS, which updates them along with the children it lists.
+ */
+final class HeaderRootCache {
+  private static final Logger logger = Logger.getInstance(HeaderRootCache.class);
+
+  private static final String CACHE_FILE_NAME = "header_roots.json";
+
+  private static final Type ENTRIES_TYPE = new TypeToken<Map<String, Entry>>() {}.getType();
+
+  /** Data class for (de)serializing a single root's result. */
+  private static final class Entry {
+    private final boolean mayContainHeaders;
+    private final Map<String, Long> directoryTimestamps;
+
+    Entry(boolean mayContainHeaders, Map<String, Long> directoryTimestamps) {
+      this.mayContainHeaders = mayContainHeaders;
+      this.directoryTimestamps = directoryTimestamps;
+    }
+  }
+
+  @Nullable private final File cacheFile;
+  private final Map<String, Entry> previousEntries;
+  private final Map<String, Entry> usedEntries = new ConcurrentHashMap<>();
+
+  private HeaderRootCache(@Nullable File cacheFile, Map<String, Entry> previousEntries) {
+    this.cacheFile = cacheFile;
+    this.previousEntries = previousEntries;
+  }
+
+  /** Returns the cache stored in the project's data directory. */
+  static HeaderRootCache forProject(Project project) {
+    BlazeImportSettings importSettings =
+        BlazeImportSettingsManager.getInstance(project).getImportSettings();
+    if (importSettings == null) {
+      return inMemory();
+    }
+    return load(new File(BlazeDataStorage.getProjectDataDir(importSettings), CACHE_FILE_NAME));
+  }
+
+  /** Returns a cache which remembers nothing between syncs. */
+  static HeaderRootCache inMemory() {
+    return new HeaderRootCache(null, ImmutableMap.of());
+  }
+
+  /** Reads the cache stored in {@code file}, starting afresh if it is missing or unreadable. */
+  static HeaderRootCache load(File file) {
+    if (!file.exists()) {
+      return new HeaderRootCache(file, ImmutableMap.of());
+    }
+    try (JsonReader reader =
+        new JsonReader(new InputStreamReader(new FileInputStream(file), UTF_8))) {
+      @Nullable Map<String, Entry> entries = new Gson().fromJson(reader, ENTRIES_TYPE);
+      return new HeaderRootCache(file, entries != null ? entries : ImmutableMap.of());
+    } catch (IOException | JsonParseException e) {
+      logger.warn("Failed to read header root cache " + file, e);
+      return new HeaderRootCache(file, ImmutableMap.of());
+    }
+  }
+
+  /**
+   * Returns whether the given root may contain headers, or null if it isn't known or any directory
+   * visited to determine it has changed since.
+   */
+  @Nullable
+  Boolean mayContainHeaders(File root) {
+    String key = root.getPath();
+    Entry entry = previousEntries.get(key);
+    if (entry == null || entry.directoryTimestamps == null) {
+      return null;
+    }
+    for (Map.Entry<String, Long> directory : entry.directoryTimestamps.entrySet()) {
+      VirtualFile vf =
+          VfsUtils.resolveVirtualFile(new File(directory.getKey()), /* refreshIfNeeded= */ false);
+      if (vf == null || !vf.isValid() || vf.getTimeStamp() != directory.getValue()) {
+        return null;
+      }
+    }
+    usedEntries.put(key, entry);
+    return entry.mayContainHeaders;
+  }
+
+  /**
+   * Records whether the given root may contain headers, along with the directories visited to
+   * determine it.
+   */
+  void put(File root, boolean mayContainHeaders, Iterable<VirtualFile> visitedDirectories) {
+    ImmutableMap.Builder<String, Long> timestamps = ImmutableMap.builder();
+    for (VirtualFile directory : visitedDirectories) {
+      long timestamp = directory.getTimeStamp();
+      if (timestamp == 0) {
+        // not a real directory on disk, so changes to it can't be noticed
+        return;
+      }
+      timestamps.put(directory.getPath(), timestamp);
+    }
+    usedEntries.put(root.getPath(), new Entry(mayContainHeaders, timestamps.buildKeepingLast()));
+  }
+
+  /** Writes the results looked up or recorded since the cache was loaded. */
+  void save() {
+    if (cacheFile == null || !cacheFile.getParentFile().isDirectory()) {
+      return;
+    }
+    try (JsonWriter writer =
+        new JsonWriter(new OutputStreamWriter(new FileOutputStream(cacheFile), UTF_8))) {
+      new Gson().toJson(usedEntries, ENTRIES_TYPE, writer);
+    } catch (IOException e) {
+      logger.warn("Failed to write header root cache " + cacheFile, e);
+    }
+  }
+}
@@ -44,6 +44,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vfs.VirtualFile;
 import java.io.File;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Queue;
@@ -73,7 +74,8 @@ final class HeaderRootTrimmer {
       BlazeProjectData blazeProjectData,
       ImmutableMap<TargetKey, CToolchainIdeInfo> toolchainLookupMap,
       Predicate<TargetIdeInfo> targetFilter,
-      ExecutionRootPathResolver executionRootPathResolver) {
+      ExecutionRootPathResolver executionRootPathResolver,
+      HeaderRootCache headerRootCache) {
     // Type specification needed to avoid incorrect type inference during command line build.
     return Scope.push(
         parentContext,
@@ -83,8 +85,11 @@ final class HeaderRootTrimmer {
               Set<ExecutionRootPath> paths =
                   collectExecutionRootPaths(
                       blazeProjectData.getTargetMap(), targetFilter, toolchainLookupMap);
-              return doCollectHeaderRoots(
-                  context, blazeProjectData, paths, executionRootPathResolver);
+              ImmutableSet<File> validRoots =
+                  doCollectHeaderRoots(
+                      context, blazeProjectData, paths, executionRootPathResolver, headerRootCache);
+              headerRootCache.save();
+              return validRoots;
             });
   }
 
@@ -92,7 +97,8 @@ final class HeaderRootTrimmer {
       BlazeContext context,
       BlazeProjectData projectData,
       Set<ExecutionRootPath> rootPaths,
-      ExecutionRootPathResolver pathResolver) {
+      ExecutionRootPathResolver pathResolver,
+      HeaderRootCache headerRootCache) {
     Set<File> validRoots = Sets.newConcurrentHashSet();
     List<ListenableFuture<File>> futures = Lists.newArrayListWithCapacity(rootPaths.size());
     AtomicInteger genRootsWithHeaders = new AtomicInteger();
@@ -106,22 +112,40 @@ final class HeaderRootTrimmer {
                 if (possibleDirectories.isEmpty()) {
                   logger.info(String.format("Couldn't resolve include root: %s", path));
                 }
+                boolean isOutputArtifact = isOutputArtifact(projectData.getBlazeInfo(), path);
                 for (File file : possibleDirectories) {
+                  Boolean cachedResult =
+                      isOutputArtifact ? headerRootCache.mayContainHeaders(file) : null;
+                  if (cachedResult != null) {
+                    // the root is unchanged since it was last scanned
+                    if (cachedResult) {
+                      genRootsWithHeaders.incrementAndGet();
+                      validRoots.add(file);
+                    } else {
+                      genRootsWithoutHeaders.incrementAndGet();
+                    }
+                    continue;
+                  }
                   VirtualFile vf = VfsUtils.resolveVirtualFile(file, /* refreshIfNeeded= */ true);
                   if (vf != null) {
                     // Check gen directories to see if they actually contain headers and not just
                     // other random generated files (like .s, .cc, or module maps).
                     // Also checks bin directories to see if they actually contain headers vs
                     // just aspect files.
-                    if (!isOutputArtifact(projectData.getBlazeInfo(), path)) {
+                    if (!isOutputArtifact) {
                       validRoots.add(file);
-                    } else if (genRootMayContainHeaders(vf)) {
+                      continue;
+                    }
+                    List<VirtualFile> visitedDirectories = new ArrayList<>();
+                    boolean mayContainHeaders = genRootMayContainHeaders(vf, visitedDirectories);
+                    headerRootCache.put(file, mayContainHeaders, visitedDirectories);
+                    if (mayContainHeaders) {
                       genRootsWithHeaders.incrementAndGet();
                       validRoots.add(file);
                     } else {
                       genRootsWithoutHeaders.incrementAndGet();
                     }
-                  } else if (!isOutputArtifact(projectData.getBlazeInfo(), path)
+                  } else if (!isOutputArtifact
                       && FileOperationProvider.getInstance().exists(file)) {
                     // If it's not a blaze output file, we expect it to always resolve.
                     logger.info(String.format("Unresolved header root %s", file.getAbsolutePath()));
@@ -148,7 +172,12 @@ final class HeaderRootTrimmer {
     return ImmutableSet.of();
   }
 
-  private static boolean genRootMayContainHeaders(VirtualFile directory) {
+  /**
+   * Returns whether the given generated root may contain headers, adding each directory it visits
+   * to {@code visitedDirectories}.
+   */
+  private static boolean genRootMayContainHeaders(
+      VirtualFile directory, List<VirtualFile> visitedDirectories) {
     int totalDirectoriesChecked = 0;
     Queue<VirtualFile> worklist = new ArrayDeque<>();
     worklist.add(directory);
@@ -158,6 +187,7 @@ final class HeaderRootTrimmer {
         return true;
       }
       VirtualFile dir = worklist.poll();
+      visitedDirectories.add(dir);
       for (VirtualFile child : dir.getChildren()) {
         if (child.isDirectory()) {
           worklist.add(child);
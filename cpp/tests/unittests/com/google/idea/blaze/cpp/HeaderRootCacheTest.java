@@ -0,0 +1,100 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.cpp;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.io.VirtualFileSystemProvider;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link HeaderRootCache}. */
+@RunWith(JUnit4.class)
+public class HeaderRootCacheTest extends BlazeTestCase {
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static final File ROOT = new File("/execroot/bin/foo");
+
+  private LocalFileSystem mockFileSystem;
+  private File cacheFile;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    mockFileSystem = mock(LocalFileSystem.class);
+    applicationServices.register(
+        VirtualFileSystemProvider.class, mock(VirtualFileSystemProvider.class));
+    when(VirtualFileSystemProvider.getInstance().getSystem()).thenReturn(mockFileSystem);
+  }
+
+  @Test
+  public void testResultReusedWhileDirectoriesUnchanged() {
+    VirtualFile root = directory("/execroot/bin/foo", 1);
+    VirtualFile child = directory("/execroot/bin/foo/bar", 2);
+    saveResult(true, root, child);
+
+    assertThat(HeaderRootCache.load(cacheFile).mayContainHeaders(ROOT)).isTrue();
+  }
+
+  @Test
+  public void testResultInvalidatedWhenDirectoryChanges() {
+    VirtualFile root = directory("/execroot/bin/foo", 1);
+    VirtualFile child = directory("/execroot/bin/foo/bar", 2);
+    saveResult(false, root, child);
+
+    when(child.getTimeStamp()).thenReturn(3L);
+
+    assertThat(HeaderRootCache.load(cacheFile).mayContainHeaders(ROOT)).isNull();
+  }
+
+  @Test
+  public void testResultInvalidatedWhenDirectoryRemoved() {
+    VirtualFile root = directory("/execroot/bin/foo", 1);
+    VirtualFile child = directory("/execroot/bin/foo/bar", 2);
+    saveResult(false, root, child);
+
+    when(child.isValid()).thenReturn(false);
+
+    assertThat(HeaderRootCache.load(cacheFile).mayContainHeaders(ROOT)).isNull();
+  }
+
+  private void saveResult(boolean mayContainHeaders, VirtualFile... visitedDirectories) {
+    cacheFile = new File(tempFolder.getRoot(), "header_roots.json");
+    HeaderRootCache cache = HeaderRootCache.load(cacheFile);
+    cache.put(ROOT, mayContainHeaders, ImmutableList.copyOf(visitedDirectories));
+    cache.save();
+  }
+
+  private VirtualFile directory(String path, long timestamp) {
+    VirtualFile mockFile = mock(VirtualFile.class);
+    when(mockFile.getPath()).thenReturn(path);
+    when(mockFile.isValid()).thenReturn(true);
+    when(mockFile.isDirectory()).thenReturn(true);
+    when(mockFile.getTimeStamp()).thenReturn(timestamp);
+    when(mockFileSystem.findFileByIoFile(new File(path))).thenReturn(mockFile);
+    return mockFile;
+  }
+}
@@ -20,7 +20,6 @@ import com.goide.psi.impl.imports.GoImportReference;
 import com.goide.psi.impl.imports.GoImportResolver;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.ideinfo.TargetMap;
@@ -114,22 +113,8 @@ class BlazeGoImportResolver implements GoImportResolver {
     return SyncCache.getInstance(project)
         .get(
             GO_TARGET_MAP_KEY,
-            (p, projectData) -> {
-              TargetMap targetMap = projectData.getTargetMap();
-              return targetMap.targets().stream()
-                  .filter(t -> t.getGoIdeInfo() != null && t.getGoIdeInfo().getImportPath() != null)
-                  .collect(
-                      ImmutableMap.toImmutableMap(
-                          t -> t.getGoIdeInfo().getImportPath(),
-                          TargetIdeInfo::getKey,
-                          // duplicates are possible (e.g., same target with different aspects)
-                          // choose the one with the most sources (though they're probably the same)
-                          (first, second) ->
-                              targetMap.get(first).getGoIdeInfo().getSources().size()
-                                      >= targetMap.get(second).getGoIdeInfo().getSources().size()
-                                  ? first
-                                  : second));
-            });
+            (p, projectData) ->
+                GoImportPathIndex.getInstance(p, projectData).getImportPathToTargetMap());
   }
 
   @Nullable
@@ -20,6 +20,7 @@ import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import com.goide.psi.GoFile;
 import com.goide.psi.impl.GoPackage;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
@@ -27,7 +28,6 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Streams;
 import com.google.idea.blaze.base.command.buildresult.OutputArtifactResolver;
-import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.GoIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
@@ -42,6 +42,7 @@ import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.LanguageClass;
 import com.google.idea.blaze.base.model.primitives.RuleType;
 import com.google.idea.blaze.base.sync.SyncCache;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
 import com.google.idea.blaze.base.sync.workspace.WorkspaceHelper;
 import com.google.idea.blaze.base.targetmaps.ReverseDependencyMap;
 import com.google.idea.blaze.golang.GoBlazeRules.RuleTypes;
@@ -141,7 +142,9 @@ public class BlazeGoPackage extends GoPackage {
       Project project, BlazeProjectData projectData) {
     ImmutableMultimap<Label, File> map =
         SyncCache.getInstance(project)
-            .get(GO_TARGET_TO_FILE_MAP_KEY, BlazeGoPackage::getUncachedTargetToFileMap);
+            .get(
+                GO_TARGET_TO_FILE_MAP_KEY,
+                (p, pd) -> GoImportPathIndex.getInstance(p, pd).getTargetToFileMap());
     if (map == null) {
       logger.error("Unexpected null target to file map from SyncCache.");
       return getUncachedTargetToFileMap(project, projectData);
@@ -151,22 +154,49 @@ public class BlazeGoPackage extends GoPackage {
 
   public static ImmutableMultimap<Label, File> getUncachedTargetToFileMap(
       Project project, BlazeProjectData projectData) {
-    ImmutableMultimap<Label, GoIdeInfo> libraryToTestMap = buildLibraryToTestMap(projectData);
+    TargetMap targetMap = projectData.getTargetMap();
+    ImmutableMultimap<Label, GoIdeInfo> libraryToTestMap = buildLibraryToTestMap(targetMap);
     ImmutableMultimap.Builder<Label, File> builder = ImmutableMultimap.builder();
-    for (TargetIdeInfo target : projectData.getTargetMap().targets()) {
+    for (TargetIdeInfo target : targetMap.targets()) {
       if (target.getGoIdeInfo() == null) {
         continue;
       }
+      // never null, as the genfiles directory is known
       ImmutableSet<File> sourceFiles =
-          getSourceFiles(target, project, projectData, libraryToTestMap).stream()
-              .map(BlazeGoPackage::toRealFile)
-              .filter(Objects::nonNull)
-              .collect(toImmutableSet());
+          Preconditions.checkNotNull(
+              getRealSourceFiles(
+                  target,
+                  project,
+                  projectData.getArtifactLocationDecoder(),
+                  projectData.getBlazeInfo().getGenfilesDirectory(),
+                  libraryToTestMap));
       builder.putAll(target.getKey().getLabel(), sourceFiles);
     }
     return builder.build();
   }
 
+  /**
+   * Returns the source files of the given go target, with external workspace symlinks resolved.
+   * Returns null if they can't be determined without the (unknown) genfiles directory.
+   */
+  @Nullable
+  static ImmutableSet<File> getRealSourceFiles(
+      TargetIdeInfo target,
+      Project project,
+      ArtifactLocationDecoder decoder,
+      @Nullable File genfilesDirectory,
+      ImmutableMultimap<Label, GoIdeInfo> libraryToTestMap) {
+    ImmutableSet<File> sourceFiles =
+        getSourceFiles(target, project, decoder, genfilesDirectory, libraryToTestMap);
+    if (sourceFiles == null) {
+      return null;
+    }
+    return sourceFiles.stream()
+        .map(BlazeGoPackage::toRealFile)
+        .filter(Objects::nonNull)
+        .collect(toImmutableSet());
+  }
+
   /**
    * Workaround for https://github.com/bazelbuild/intellij/issues/2057. External workspace symlinks
    * can be changed externally by practically any bazel command. Such changes to symlinks will make
@@ -190,27 +220,27 @@ public class BlazeGoPackage extends GoPackage {
     return maybeExternal;
   }
 
+  @Nullable
   private static ImmutableSet<File> getSourceFiles(
       TargetIdeInfo target,
       Project project,
-      BlazeProjectData projectData,
+      ArtifactLocationDecoder decoder,
+      @Nullable File genfilesDirectory,
       ImmutableMultimap<Label, GoIdeInfo> libraryToTestMap) {
     if (target.getKind() == RuleTypes.GO_WRAP_CC.getKind()) {
-      return getWrapCcGoFiles(project, projectData, target);
+      return getWrapCcGoFiles(project, decoder, genfilesDirectory, target);
     }
     return Stream.concat(
             Stream.of(target.getGoIdeInfo()),
             libraryToTestMap.get(target.getKey().getLabel()).stream())
         .map(GoIdeInfo::getSources)
         .flatMap(Collection::stream)
-        .map(a -> resolveArtifact(project, projectData, a))
+        .map(a -> OutputArtifactResolver.resolve(project, decoder, a))
         .filter(Objects::nonNull)
         .collect(toImmutableSet());
   }
 
-  private static ImmutableMultimap<Label, GoIdeInfo> buildLibraryToTestMap(
-      BlazeProjectData projectData) {
-    TargetMap targetMap = projectData.getTargetMap();
+  static ImmutableMultimap<Label, GoIdeInfo> buildLibraryToTestMap(TargetMap targetMap) {
     ImmutableMultimap.Builder<Label, GoIdeInfo> builder = ImmutableMultimap.builder();
     for (TargetIdeInfo target : targetMap.targets()) {
       if (!target.getKind().hasLanguage(LanguageClass.GO)
@@ -227,23 +257,24 @@ public class BlazeGoPackage extends GoPackage {
   }
 
   @Nullable
-  private static File resolveArtifact(
-      Project project, BlazeProjectData data, ArtifactLocation artifact) {
-    return OutputArtifactResolver.resolve(project, data.getArtifactLocationDecoder(), artifact);
-  }
-
   private static ImmutableSet<File> getWrapCcGoFiles(
-      Project project, BlazeProjectData projectData, TargetIdeInfo target) {
+      Project project,
+      ArtifactLocationDecoder decoder,
+      @Nullable File genfilesDirectory,
+      TargetIdeInfo target) {
     if (!target.getGoIdeInfo().getSources().isEmpty()) {
       return target.getGoIdeInfo().getSources().stream()
-          .map(a -> resolveArtifact(project, projectData, a))
+          .map(a -> OutputArtifactResolver.resolve(project, decoder, a))
           .filter(Objects::nonNull)
           .collect(toImmutableSet());
     }
+    if (genfilesDirectory == null) {
+      return null;
+    }
     // older versions of blaze don't expose the .go genfile
     // in that case, look directly in blaze-out
     String blazePackage = target.getKey().getLabel().blazePackage().relativePath();
-    File directory = new File(projectData.getBlazeInfo().getGenfilesDirectory(), blazePackage);
+    File directory = new File(genfilesDirectory, blazePackage);
     String filename = blazePackage + '/' + target.getKey().getLabel().targetName() + ".go";
     filename = filename.replace("_", "__");
     filename = filename.replace('/', '_');
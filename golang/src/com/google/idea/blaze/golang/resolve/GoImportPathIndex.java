@@ -0,0 +1,483 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.golang.resolve;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableCollection;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.devtools.intellij.model.ProjectData;
+import com.google.idea.blaze.base.async.executor.ExecutorLane;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.GoIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.model.SyncData;
+import com.google.idea.blaze.base.model.SyncState;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.scope.Scope;
+import com.google.idea.blaze.base.scope.scopes.TimingScope;
+import com.google.idea.blaze.base.scope.scopes.TimingScope.EventType;
+import com.google.idea.blaze.base.sync.SyncCache;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
+import com.google.idea.blaze.golang.GoBlazeRules.RuleTypes;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+
+/**
+ * Maps the import paths of the project's go targets to those targets, and their source files to
+ * import paths.
+ *
+ * <p>The index is built during sync, in parallel over the go targets, and stored in the {@link
+ * SyncState}, so import resolution doesn't need to scan the target map after a sync or an IDE
+ * restart. Entries for targets which didn't change since the previous sync are reused.
+ */
+public final class GoImportPathIndex implements SyncData<ProjectData.GoImportPathIndex> {
+  private static final Logger logger = Logger.getInstance(GoImportPathIndex.class);
+
+  private static final BoolExperiment enabled =
+      new BoolExperiment("blaze.go.sync.import.path.index", true);
+
+  private static final int TARGETS_PER_TASK = 256;
+
+  /** The index entry for a single go target. */
+  private static final class Entry {
+    final TargetKey key;
+    @Nullable final String importPath;
+    @Nullable final String packageImportPath;
+    final int sourceCount;
+    final ImmutableList<File> files;
+    // 0 if the entry can't be reused by the next sync
+    final long fingerprint;
+
+    Entry(
+        TargetKey key,
+        @Nullable String importPath,
+        @Nullable String packageImportPath,
+        int sourceCount,
+        ImmutableList<File> files,
+        long fingerprint) {
+      this.key = key;
+      this.importPath = importPath;
+      this.packageImportPath = packageImportPath;
+      this.sourceCount = sourceCount;
+      this.files = files;
+      this.fingerprint = fingerprint;
+    }
+
+    static Entry fromProto(ProjectData.GoImportPathIndex.Target proto) {
+      return new Entry(
+          TargetKey.fromProto(proto.getKey()),
+          Strings.emptyToNull(proto.getImportPath()),
+          Strings.emptyToNull(proto.getPackageImportPath()),
+          proto.getSourceCount(),
+          proto.getFilesList().stream().map(File::new).collect(toImmutableList()),
+          proto.getFingerprint());
+    }
+
+    ProjectData.GoImportPathIndex.Target toProto() {
+      return ProjectData.GoImportPathIndex.Target.newBuilder()
+          .setKey(key.toProto())
+          .setImportPath(Strings.nullToEmpty(importPath))
+          .setPackageImportPath(Strings.nullToEmpty(packageImportPath))
+          .setSourceCount(sourceCount)
+          .addAllFiles(files.stream().map(File::getPath).collect(toImmutableList()))
+          .setFingerprint(fingerprint)
+          .build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      Entry that = (Entry) o;
+      return key.equals(that.key)
+          && Objects.equals(importPath, that.importPath)
+          && Objects.equals(packageImportPath, that.packageImportPath)
+          && sourceCount == that.sourceCount
+          && files.equals(that.files)
+          && fingerprint == that.fingerprint;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(key, importPath, packageImportPath, sourceCount, files, fingerprint);
+    }
+  }
+
+  // in target map order
+  private final ImmutableList<Entry> entries;
+  private final ImmutableMap<TargetKey, Entry> entriesByKey;
+  private final ImmutableMap<String, TargetKey> importPathToTarget;
+  private final ImmutableMultimap<Label, File> targetToFiles;
+  private final ImmutableMap<File, String> fileToImportPath;
+
+  private GoImportPathIndex(ImmutableList<Entry> entries) {
+    this.entries = entries;
+    this.entriesByKey = entries.stream().collect(toImmutableMap(e -> e.key, e -> e));
+
+    // duplicates are possible (e.g., same target with different aspects)
+    // choose the one with the most sources (though they're probably the same)
+    Map<String, Entry> byImportPath = new LinkedHashMap<>();
+    for (Entry entry : entries) {
+      if (entry.importPath != null) {
+        byImportPath.merge(
+            entry.importPath,
+            entry,
+            (first, second) -> first.sourceCount >= second.sourceCount ? first : second);
+      }
+    }
+    this.importPathToTarget =
+        byImportPath.entrySet().stream()
+            .collect(toImmutableMap(Map.Entry::getKey, e -> e.getValue().key));
+
+    ImmutableMultimap.Builder<Label, File> targetToFiles = ImmutableMultimap.builder();
+    for (Entry entry : entries) {
+      targetToFiles.putAll(entry.key.getLabel(), entry.files);
+    }
+    this.targetToFiles = targetToFiles.build();
+
+    Map<File, String> fileToImportPath = new HashMap<>();
+    for (Entry entry : entries) {
+      if (entry.packageImportPath == null) {
+        continue;
+      }
+      for (File file : this.targetToFiles.get(entry.key.getLabel())) {
+        fileToImportPath.putIfAbsent(file, entry.packageImportPath);
+      }
+    }
+    this.fileToImportPath = ImmutableMap.copyOf(fileToImportPath);
+  }
+
+  /** Maps import paths to the go target with that import path. */
+  ImmutableMap<String, TargetKey> getImportPathToTargetMap() {
+    return importPathToTarget;
+  }
+
+  /** Maps go target labels to their source files. */
+  ImmutableMultimap<Label, File> getTargetToFileMap() {
+    return targetToFiles;
+  }
+
+  /** Maps go source files to the import path of the package they belong to. */
+  ImmutableMap<File, String> getFileToImportPathMap() {
+    return fileToImportPath;
+  }
+
+  /**
+   * Returns the index stored by the last sync, or builds it from the target map if the sync didn't
+   * store one. The result is cached until the next sync.
+   */
+  static GoImportPathIndex getInstance(Project project, BlazeProjectData projectData) {
+    GoImportPathIndex index =
+        SyncCache.getInstance(project)
+            .get(GoImportPathIndex.class, GoImportPathIndex::loadOrBuild);
+    return index != null ? index : loadOrBuild(project, projectData);
+  }
+
+  private static GoImportPathIndex loadOrBuild(Project project, BlazeProjectData projectData) {
+    GoImportPathIndex index =
+        projectData.isQuerySync() ? null : projectData.getSyncState().get(GoImportPathIndex.class);
+    if (index != null) {
+      return index;
+    }
+    TargetMap targetMap = projectData.getTargetMap();
+    IndexBuilder builder =
+        new IndexBuilder(
+            project,
+            targetMap,
+            projectData.getArtifactLocationDecoder(),
+            projectData.getBlazeInfo().getGenfilesDirectory(),
+            /* previous= */ null);
+    // never null, as the genfiles directory is known
+    return new GoImportPathIndex(
+        Objects.requireNonNull(builder.computeEntries(getGoTargets(targetMap))));
+  }
+
+  /**
+   * Builds the index for the given target map during sync, reusing the entries of unchanged targets
+   * from the previous sync. Returns null if the index couldn't be built, in which case it's built
+   * lazily from the project data instead.
+   */
+  @Nullable
+  public static GoImportPathIndex compute(
+      Project project,
+      BlazeContext parentContext,
+      TargetMap targetMap,
+      ArtifactLocationDecoder decoder,
+      @Nullable SyncState previousSyncState) {
+    if (!enabled.getValue()) {
+      return null;
+    }
+    GoImportPathIndex previous =
+        previousSyncState != null ? previousSyncState.get(GoImportPathIndex.class) : null;
+    return Scope.push(
+        parentContext,
+        context -> {
+          context.push(new TimingScope("GoImportPathIndex", EventType.Other));
+          try {
+            // the genfiles directory isn't known yet; the few targets which need it make the index
+            // fall back to being built lazily
+            IndexBuilder builder =
+                new IndexBuilder(
+                    project, targetMap, decoder, /* genfilesDirectory= */ null, previous);
+            return build(builder, getGoTargets(targetMap));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+          } catch (ExecutionException e) {
+            logger.warn("Failed to build go import path index", e);
+            return null;
+          }
+        });
+  }
+
+  @Nullable
+  private static GoImportPathIndex build(IndexBuilder builder, ImmutableList<TargetIdeInfo> targets)
+      throws InterruptedException, ExecutionException {
+    List<ListenableFuture<ImmutableList<Entry>>> futures = new ArrayList<>();
+    for (List<TargetIdeInfo> batch : Lists.partition(targets, TARGETS_PER_TASK)) {
+      futures.add(ExecutorLane.COMPUTE.executor().submit(() -> builder.computeEntries(batch)));
+    }
+    ImmutableList.Builder<Entry> entries = ImmutableList.builder();
+    for (ImmutableList<Entry> batch : Futures.allAsList(futures).get()) {
+      if (batch == null) {
+        return null;
+      }
+      entries.addAll(batch);
+    }
+    return new GoImportPathIndex(entries.build());
+  }
+
+  private static ImmutableList<TargetIdeInfo> getGoTargets(TargetMap targetMap) {
+    return targetMap.targets().stream()
+        .filter(t -> t.getGoIdeInfo() != null)
+        .collect(toImmutableList());
+  }
+
+  /** Computes the index entries of go targets. */
+  private static class IndexBuilder {
+    private final Project project;
+    private final TargetMap targetMap;
+    private final ArtifactLocationDecoder decoder;
+    @Nullable private final File genfilesDirectory;
+    @Nullable private final GoImportPathIndex previous;
+    private final ImmutableMultimap<Label, GoIdeInfo> libraryToTestMap;
+    private final String decoderRoots;
+
+    IndexBuilder(
+        Project project,
+        TargetMap targetMap,
+        ArtifactLocationDecoder decoder,
+        @Nullable File genfilesDirectory,
+        @Nullable GoImportPathIndex previous) {
+      this.project = project;
+      this.targetMap = targetMap;
+      this.decoder = decoder;
+      this.genfilesDirectory = genfilesDirectory;
+      this.previous = previous;
+      this.libraryToTestMap = BlazeGoPackage.buildLibraryToTestMap(targetMap);
+      this.decoderRoots = decoderRoots(decoder);
+    }
+
+    /** Returns the entries for the given targets, or null if any of them can't be computed. */
+    @Nullable
+    ImmutableList<Entry> computeEntries(List<TargetIdeInfo> targets) {
+      ImmutableList.Builder<Entry> entries = ImmutableList.builder();
+      for (TargetIdeInfo target : targets) {
+        Entry entry = computeEntry(target);
+        if (entry == null) {
+          return null;
+        }
+        entries.add(entry);
+      }
+      return entries.build();
+    }
+
+    @Nullable
+    private Entry computeEntry(TargetIdeInfo target) {
+      GoIdeInfo goIdeInfo = target.getGoIdeInfo();
+      String packageImportPath = getPackageImportPath(target);
+      ImmutableCollection<GoIdeInfo> tests = libraryToTestMap.get(target.getKey().getLabel());
+      long fingerprint =
+          isReusable(target, tests)
+              ? fingerprint(target, packageImportPath, tests, decoderRoots)
+              : 0;
+      if (fingerprint != 0 && previous != null) {
+        Entry previousEntry = previous.entriesByKey.get(target.getKey());
+        if (previousEntry != null && previousEntry.fingerprint == fingerprint) {
+          return previousEntry;
+        }
+      }
+      ImmutableSet<File> files =
+          BlazeGoPackage.getRealSourceFiles(
+              target, project, decoder, genfilesDirectory, libraryToTestMap);
+      if (files == null) {
+        return null;
+      }
+      return new Entry(
+          target.getKey(),
+          goIdeInfo.getImportPath(),
+          packageImportPath,
+          goIdeInfo.getSources().size(),
+          files.asList(),
+          fingerprint);
+    }
+
+    /**
+     * The import path of the package the target's files belong to. For tests, that's the import
+     * path of the library under test.
+     */
+    @Nullable
+    private String getPackageImportPath(TargetIdeInfo target) {
+      return target.getGoIdeInfo().getLibraryLabels().stream()
+          .map(TargetKey::forPlainTarget)
+          .map(targetMap::get)
+          .filter(Objects::nonNull)
+          .map(TargetIdeInfo::getGoIdeInfo)
+          .filter(Objects::nonNull)
+          .map(GoIdeInfo::getImportPath)
+          .filter(Objects::nonNull)
+          .findFirst()
+          .orElse(target.getGoIdeInfo().getImportPath());
+    }
+  }
+
+  /**
+   * Whether the entry for a target only depends on what's covered by its fingerprint. Generated
+   * sources resolve differently depending on the build outputs, so their entries are recomputed.
+   */
+  private static boolean isReusable(TargetIdeInfo target, ImmutableCollection<GoIdeInfo> tests) {
+    if (target.getKind() == RuleTypes.GO_WRAP_CC.getKind()) {
+      return false;
+    }
+    return allSources(target.getGoIdeInfo())
+        && tests.stream().allMatch(GoImportPathIndex::allSources);
+  }
+
+  private static boolean allSources(GoIdeInfo goIdeInfo) {
+    return goIdeInfo.getSources().stream().allMatch(ArtifactLocation::isSource);
+  }
+
+  /**
+   * The workspace and execution roots the decoder resolves files against. Entries hold resolved
+   * files, so they can't be reused once either root moves.
+   */
+  private static String decoderRoots(ArtifactLocationDecoder decoder) {
+    File workspaceRoot =
+        decoder.decode(ArtifactLocation.builder().setRelativePath("").setIsSource(true).build());
+    File executionRoot =
+        decoder.decode(
+            ArtifactLocation.builder()
+                .setRootExecutionPathFragment("")
+                .setRelativePath("")
+                .setIsSource(false)
+                .build());
+    return workspaceRoot.getPath() + File.pathSeparator + executionRoot.getPath();
+  }
+
+  @VisibleForTesting
+  static long fingerprint(
+      TargetIdeInfo target,
+      @Nullable String packageImportPath,
+      ImmutableCollection<GoIdeInfo> tests,
+      String decoderRoots) {
+    Hasher hasher =
+        Hashing.murmur3_128()
+            .newHasher()
+            .putString(decoderRoots, UTF_8)
+            .putString(target.getKind().getKindString(), UTF_8)
+            .putString(Strings.nullToEmpty(packageImportPath), UTF_8)
+            .putBytes(target.getGoIdeInfo().toProto().toByteArray());
+    for (GoIdeInfo test : tests) {
+      hasher.putBytes(test.toProto().toByteArray());
+    }
+    long fingerprint = hasher.hash().asLong();
+    return fingerprint != 0 ? fingerprint : 1;
+  }
+
+  private static GoImportPathIndex fromProto(ProjectData.GoImportPathIndex proto) {
+    return new GoImportPathIndex(
+        proto.getTargetsList().stream().map(Entry::fromProto).collect(toImmutableList()));
+  }
+
+  @Override
+  public ProjectData.GoImportPathIndex toProto() {
+    return ProjectData.GoImportPathIndex.newBuilder()
+        .addAllTargets(entries.stream().map(Entry::toProto).collect(toImmutableList()))
+        .build();
+  }
+
+  @Override
+  public void insert(ProjectData.SyncState.Builder builder) {
+    builder.setGoImportPathIndex(toProto());
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    return entries.equals(((GoImportPathIndex) o).entries);
+  }
+
+  @Override
+  public int hashCode() {
+    return entries.hashCode();
+  }
+
+  static class Extractor implements SyncData.Extractor<GoImportPathIndex> {
+    @Nullable
+    @Override
+    public GoImportPathIndex extract(ProjectData.SyncState syncState) {
+      return syncState.hasGoImportPathIndex()
+          ? GoImportPathIndex.fromProto(syncState.getGoImportPathIndex())
+          : null;
+    }
+  }
+}
@@ -18,7 +18,10 @@ package com.google.idea.blaze.golang.sync;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.model.BlazeVersionData;
+import com.google.idea.blaze.base.model.SyncState;
 import com.google.idea.blaze.base.model.primitives.LanguageClass;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.google.idea.blaze.base.model.primitives.WorkspaceType;
@@ -27,7 +30,12 @@ import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.sync.BlazeSyncPlugin;
 import com.google.idea.blaze.base.sync.GenericSourceFolderProvider;
 import com.google.idea.blaze.base.sync.SourceFolderProvider;
+import com.google.idea.blaze.base.sync.SyncMode;
 import com.google.idea.blaze.base.sync.libraries.LibrarySource;
+import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
+import com.google.idea.blaze.base.sync.workspace.WorkingSet;
+import com.google.idea.blaze.golang.resolve.GoImportPathIndex;
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleType;
@@ -83,6 +91,31 @@ public class BlazeGoSyncPlugin implements BlazeSyncPlugin {
         : null;
   }
 
+  @Override
+  public void updateSyncState(
+      Project project,
+      BlazeContext context,
+      WorkspaceRoot workspaceRoot,
+      ProjectViewSet projectViewSet,
+      WorkspaceLanguageSettings workspaceLanguageSettings,
+      BlazeVersionData blazeVersionData,
+      @Nullable WorkingSet workingSet,
+      ArtifactLocationDecoder artifactLocationDecoder,
+      TargetMap targetMap,
+      SyncState.Builder syncStateBuilder,
+      @Nullable SyncState previousSyncState,
+      SyncMode syncMode) {
+    if (!workspaceLanguageSettings.isLanguageActive(LanguageClass.GO)) {
+      return;
+    }
+    GoImportPathIndex index =
+        GoImportPathIndex.compute(
+            project, context, targetMap, artifactLocationDecoder, previousSyncState);
+    if (index != null) {
+      syncStateBuilder.put(index);
+    }
+  }
+
   @Override
   public void updateProjectStructure(
       Project project,
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.golang.resolve;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.devtools.intellij.model.ProjectData;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.GoIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
+import com.google.idea.blaze.base.model.SyncState;
+import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
+import com.google.idea.blaze.base.sync.workspace.MockArtifactLocationDecoder;
+import com.google.idea.blaze.golang.GoBlazeRules;
+import com.google.idea.common.experiments.ExperimentService;
+import com.google.idea.common.experiments.MockExperimentService;
+import com.intellij.openapi.extensions.impl.ExtensionPointImpl;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link GoImportPathIndex}. */
+@RunWith(JUnit4.class)
+public class GoImportPathIndexTest extends BlazeTestCase {
+  private static final File WORKSPACE = new File("/root");
+
+  @Override
+  protected void initTest(
+      @NotNull Container applicationServices, @NotNull Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    applicationServices.register(ExperimentService.class, new MockExperimentService());
+    applicationServices.register(Kind.ApplicationState.class, new Kind.ApplicationState());
+    ExtensionPointImpl<Kind.Provider> kindProvider =
+        registerExtensionPoint(Kind.Provider.EP_NAME, Kind.Provider.class);
+    kindProvider.registerExtension(new GenericBlazeRules());
+    kindProvider.registerExtension(new GoBlazeRules());
+  }
+
+  @Test
+  public void testMapsImportPathsAndFiles() {
+    GoImportPathIndex index =
+        compute(targetMap("foo.go"), new MockArtifactLocationDecoder(WORKSPACE, false), null);
+
+    assertThat(index).isNotNull();
+    assertThat(index.getImportPathToTargetMap())
+        .containsExactly(
+            "github.com/user/foo", TargetKey.forPlainTarget(Label.create("//foo:foo")),
+            "github.com/user/foo_test", TargetKey.forPlainTarget(Label.create("//foo:foo_test")));
+    assertThat(index.getTargetToFileMap().get(Label.create("//foo:foo")))
+        .containsExactly(new File(WORKSPACE, "foo/foo.go"), new File(WORKSPACE, "foo/foo_test.go"));
+    // the test's sources belong to the package of the library under test
+    assertThat(index.getFileToImportPathMap())
+        .containsExactly(
+            new File(WORKSPACE, "foo/foo.go"), "github.com/user/foo",
+            new File(WORKSPACE, "foo/foo_test.go"), "github.com/user/foo");
+  }
+
+  @Test
+  public void testStoredInSyncState() {
+    GoImportPathIndex index =
+        compute(targetMap("foo.go"), new MockArtifactLocationDecoder(WORKSPACE, false), null);
+
+    ProjectData.SyncState.Builder proto = ProjectData.SyncState.newBuilder();
+    index.insert(proto);
+
+    assertThat(new GoImportPathIndex.Extractor().extract(proto.build())).isEqualTo(index);
+  }
+
+  @Test
+  public void testEntriesOfUnchangedTargetsReused() {
+    GoImportPathIndex previous =
+        compute(targetMap("foo.go"), new MockArtifactLocationDecoder(WORKSPACE, false), null);
+    SyncState previousSyncState = new SyncState.Builder().put(previous).build();
+
+    RecordingDecoder decoder = new RecordingDecoder(WORKSPACE);
+    GoImportPathIndex index = compute(targetMap("bar.go"), decoder, previousSyncState);
+
+    // the library's sources changed, so it's recomputed
+    assertThat(index.getTargetToFileMap().get(Label.create("//foo:foo")))
+        .containsExactly(new File(WORKSPACE, "foo/bar.go"), new File(WORKSPACE, "foo/foo_test.go"));
+    // the test didn't change, so it's reused: its source is only resolved for the library
+    assertThat(decoder.decodedPaths).containsExactly("foo/bar.go", "foo/foo_test.go");
+    assertThat(index.getTargetToFileMap().get(Label.create("//foo:foo_test")))
+        .containsExactly(new File(WORKSPACE, "foo/foo_test.go"));
+  }
+
+  @Test
+  public void testEntriesRecomputedWhenRootsChange() {
+    GoImportPathIndex previous =
+        compute(targetMap("foo.go"), new MockArtifactLocationDecoder(WORKSPACE, false), null);
+    SyncState previousSyncState = new SyncState.Builder().put(previous).build();
+
+    File otherWorkspace = new File("/other");
+    GoImportPathIndex index =
+        compute(
+            targetMap("foo.go"),
+            new MockArtifactLocationDecoder(otherWorkspace, false),
+            previousSyncState);
+
+    assertThat(index.getTargetToFileMap().get(Label.create("//foo:foo")))
+        .containsExactly(
+            new File(otherWorkspace, "foo/foo.go"), new File(otherWorkspace, "foo/foo_test.go"));
+    assertThat(index.getTargetToFileMap().get(Label.create("//foo:foo_test")))
+        .containsExactly(new File(otherWorkspace, "foo/foo_test.go"));
+  }
+
+  @Nullable
+  private GoImportPathIndex compute(
+      TargetMap targetMap, ArtifactLocationDecoder decoder, @Nullable SyncState previousSyncState) {
+    return GoImportPathIndex.compute(
+        project, BlazeContext.create(), targetMap, decoder, previousSyncState);
+  }
+
+  private static TargetMap targetMap(String librarySource) {
+    return TargetMapBuilder.builder()
+        .addTarget(
+            TargetIdeInfo.builder()
+                .setLabel("//foo:foo")
+                .setKind("go_library")
+                .setGoInfo(
+                    GoIdeInfo.builder()
+                        .addSource(source("foo/" + librarySource))
+                        .setImportPath("github.com/user/foo")))
+        .addTarget(
+            TargetIdeInfo.builder()
+                .setLabel("//foo:foo_test")
+                .setKind("go_test")
+                .setGoInfo(
+                    GoIdeInfo.builder()
+                        .addSource(source("foo/foo_test.go"))
+                        .setImportPath("github.com/user/foo_test")
+                        .addLibraryLabel("//foo:foo")))
+        .build();
+  }
+
+  /** Records the paths of the targets' sources it decodes. */
+  private static class RecordingDecoder extends MockArtifactLocationDecoder {
+    final List<String> decodedPaths = new ArrayList<>();
+
+    RecordingDecoder(File workspaceRoot) {
+      super(workspaceRoot, false);
+    }
+
+    @Override
+    public File decode(ArtifactLocation artifactLocation) {
+      if (!artifactLocation.getRelativePath().isEmpty()) {
+        decodedPaths.add(artifactLocation.getRelativePath());
+      }
+      return super.decode(artifactLocation);
+    }
+  }
+
+  private static ArtifactLocation source(String relativePath) {
+    return ArtifactLocation.builder().setRelativePath(relativePath).setIsSource(true).build();
+  }
+}
@@ -20,6 +20,7 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.reflect.Reflection;
@@ -41,12 +42,13 @@ import com.google.idea.blaze.java.fastbuild.FastBuildJavac.DiagnosticLine;
 import com.google.idea.blaze.java.fastbuild.FastBuildLogDataScope.FastBuildLogOutput;
 import com.intellij.ide.plugins.IdeaPluginDescriptor;
 import com.intellij.ide.plugins.PluginManager;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.serviceContainer.NonInjectable;
 import java.io.File;
-import java.lang.reflect.Constructor;
+import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
@@ -55,6 +57,7 @@ import java.net.URLClassLoader;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -63,7 +66,7 @@ import java.util.function.Supplier;
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
 
-final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
+final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory, Disposable {
 
   private static final Logger logger = Logger.getInstance(FastBuildCompilerFactoryImpl.class);
 
@@ -71,10 +74,31 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
       "com.google.idea.blaze.java.fastbuild.FastBuildJavacImpl";
   private static final Path FAST_BUILD_JAVAC_JAR = Paths.get("lib", "libfast_build_javac.jar");
 
+  /** The number of compilers kept loaded, for projects built with several toolchains. */
+  @VisibleForTesting static final int MAX_LOADED_JAVACS = 2;
+
   private final BlazeProjectDataManager projectDataManager;
   private final Supplier<EventLoggingService> eventLoggerSupplier;
   private final Supplier<File> fastBuildJavacJarSupplier;
 
+  /**
+   * The most recently used compilers, by the jars they were loaded from. Keeping them avoids
+   * reloading and rewarming javac for every compile. The least recently used compiler is retired
+   * once there are more than {@link #MAX_LOADED_JAVACS}. Guarded by {@code this}.
+   */
+  private final LinkedHashMap<ImmutableList<File>, LoadedJavac> loadedJavacs =
+      new LinkedHashMap<ImmutableList<File>, LoadedJavac>(
+          /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ImmutableList<File>, LoadedJavac> eldest) {
+          if (size() <= MAX_LOADED_JAVACS) {
+            return false;
+          }
+          eldest.getValue().retire();
+          return true;
+        }
+      };
+
   @NonInjectable
   private FastBuildCompilerFactoryImpl(
       BlazeProjectDataManager projectDataManager,
@@ -143,43 +167,152 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
   }
 
   private Javac createCompiler(List<File> javacJars) throws FastBuildException {
+    ImmutableList<File> jars =
+        ImmutableList.<File>builder()
+            .addAll(javacJars)
+            .add(fastBuildJavacJarSupplier.get())
+            .build();
+    // load the compiler now, so that a broken toolchain is reported before compiling
+    release(acquireJavac(jars));
+    return (context, javacArgs, files) -> {
+      Stopwatch timer = Stopwatch.createStarted();
+      // hold the compiler for the whole compile, so it isn't closed if it's evicted meanwhile
+      LoadedJavac loaded = acquireJavac(jars);
+      CompilerOutput output;
+      try {
+        output = CompilerOutput.decode(loaded.javac.compile(javacArgs, files));
+      } finally {
+        release(loaded);
+      }
+      processDiagnostics(context, output);
+      boolean result = output.result;
+      Command command =
+          Command.builder()
+              .setExecutable("javac")
+              .setArguments(javacArgs)
+              .setExitCode(result ? 0 : 1)
+              .setSubcommandName("javac")
+              .setDuration(timer.elapsed())
+              .build();
+      eventLoggerSupplier.get().logCommand(getClass(), command);
+      return result;
+    };
+  }
+
+  /**
+   * Returns the compiler loaded from the given jars, loading it if it hasn't been loaded yet or if
+   * any of the jars changed since. The compiler isn't closed until it's passed to {@link
+   * #release}, even if it's evicted in the meantime.
+   */
+  @VisibleForTesting
+  synchronized LoadedJavac acquireJavac(ImmutableList<File> jars) throws FastBuildException {
+    ImmutableList<String> stamps = stamp(jars);
+    LoadedJavac loaded = loadedJavacs.get(jars);
+    if (loaded == null || !loaded.jarStamps.equals(stamps)) {
+      if (loaded != null) {
+        loadedJavacs.remove(jars);
+        loaded.retire();
+      }
+      loaded = loadJavac(jars, stamps);
+      loadedJavacs.put(jars, loaded);
+    }
+    loaded.users++;
+    return loaded;
+  }
+
+  /** Gives back a compiler from {@link #acquireJavac}, closing it if it was retired. */
+  @VisibleForTesting
+  synchronized void release(LoadedJavac loaded) {
+    checkState(loaded.users > 0, "javac released more often than acquired");
+    loaded.users--;
+    if (loaded.retired && loaded.users == 0) {
+      loaded.close();
+    }
+  }
+
+  private static LoadedJavac loadJavac(ImmutableList<File> jars, ImmutableList<String> stamps)
+      throws FastBuildException {
     try {
-      Class<?> javacClass =
-          loadJavacClass(
-              FAST_BUILD_JAVAC_CLASS,
-              ImmutableList.<File>builder()
-                  .addAll(javacJars)
-                  .add(fastBuildJavacJarSupplier.get())
-                  .build());
-
-      Constructor<?> createMethod = javacClass.getConstructor();
-      Object javacInstance = createMethod.newInstance();
-
-      FastBuildJavac javaCompiler =
+      URLClassLoader classLoader = createClassLoader(jars);
+      Class<?> javacClass = classLoader.loadClass(FAST_BUILD_JAVAC_CLASS);
+      Object javacInstance = javacClass.getConstructor().newInstance();
+      FastBuildJavac javac =
           Reflection.newProxy(
               FastBuildJavac.class, new MatchingMethodInvocationHandler(javacClass, javacInstance));
-      return (context, javacArgs, files) -> {
-        Stopwatch timer = Stopwatch.createStarted();
-        Object[] rawOutput = javaCompiler.compile(javacArgs, files);
-        CompilerOutput output = CompilerOutput.decode(rawOutput);
-        processDiagnostics(context, output);
-        boolean result = output.result;
-        Command command =
-            Command.builder()
-                .setExecutable("javac")
-                .setArguments(javacArgs)
-                .setExitCode(result ? 0 : 1)
-                .setSubcommandName("javac")
-                .setDuration(timer.elapsed())
-                .build();
-        eventLoggerSupplier.get().logCommand(getClass(), command);
-        return result;
-      };
+      return new LoadedJavac(stamps, classLoader, javac);
     } catch (MalformedURLException | ReflectiveOperationException e) {
       throw new FastBuildIncrementalCompileException(e);
     }
   }
 
+  /** The number of compilers currently loaded. */
+  @VisibleForTesting
+  synchronized int loadedJavacCount() {
+    return loadedJavacs.size();
+  }
+
+  @Override
+  public synchronized void dispose() {
+    loadedJavacs.values().forEach(LoadedJavac::retire);
+    loadedJavacs.clear();
+  }
+
+  private static ImmutableList<String> stamp(List<File> jars) {
+    return jars.stream().map(f -> f.length() + ":" + f.lastModified()).collect(toImmutableList());
+  }
+
+  /**
+   * A compiler, along with the class loader it was loaded by. Guarded by the factory: it's closed
+   * once it's been retired and no compile is using it.
+   */
+  @VisibleForTesting
+  static class LoadedJavac {
+    private final ImmutableList<String> jarStamps;
+    private final URLClassLoader classLoader;
+    private final FastBuildJavac javac;
+    private int users;
+    private boolean retired;
+    private boolean closed;
+
+    private LoadedJavac(
+        ImmutableList<String> jarStamps, URLClassLoader classLoader, FastBuildJavac javac) {
+      this.jarStamps = jarStamps;
+      this.classLoader = classLoader;
+      this.javac = javac;
+    }
+
+    /** Stops handing out the compiler, closing it now if no compile is using it. */
+    private void retire() {
+      retired = true;
+      if (users == 0) {
+        close();
+      }
+    }
+
+    @VisibleForTesting
+    boolean isClosed() {
+      return closed;
+    }
+
+    /** Closes the compiler's file managers, and then its class loader. */
+    private void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        javac.close();
+      } catch (RuntimeException e) {
+        logger.warn("Failed to close javac file managers", e);
+      }
+      try {
+        classLoader.close();
+      } catch (IOException e) {
+        logger.warn("Failed to close javac class loader", e);
+      }
+    }
+  }
+
   private static File findFastBuildJavacJar() {
     IdeaPluginDescriptor blazePlugin =
         PluginManager.getPlugin(
@@ -189,14 +322,12 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
         .toFile();
   }
 
-  private Class<?> loadJavacClass(String javaCompilerClass, List<File> jars)
-      throws MalformedURLException, ClassNotFoundException {
+  private static URLClassLoader createClassLoader(List<File> jars) throws MalformedURLException {
     URL[] urls = new URL[jars.size()];
     for (int i = 0; i < jars.size(); ++i) {
       urls[i] = jars.get(i).toURI().toURL();
     }
-    URLClassLoader urlClassLoader = new URLClassLoader(urls, ClassLoader.getPlatformClassLoader());
-    return urlClassLoader.loadClass(javaCompilerClass);
+    return new URLClassLoader(urls, ClassLoader.getPlatformClassLoader());
   }
 
   private static class JavacRunner implements FastBuildCompiler {
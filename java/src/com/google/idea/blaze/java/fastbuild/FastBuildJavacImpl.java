@@ -25,14 +25,24 @@ import com.sun.tools.javac.util.JCDiagnostic;
 import com.sun.tools.javac.util.JavacMessages;
 import com.sun.tools.javac.util.Log;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticListener;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
 
 /**
  * An implementation of {@link FastBuildJavac} that uses the OpenJDK compiler.
@@ -45,30 +55,217 @@ import javax.tools.JavaFileObject;
  * <p>So this class creates a compiler and captures the {@code Diagnostic} objects, attaching the
  * formatted message from the compiler before sending them on. This is the same approach that Blaze
  * uses in BlazeJavacMain.
+ *
+ * <p>Instances are reused for every compile with the same toolchain, and keep a file manager for
+ * each of the most recently used classpaths, so that incremental compiles don't pay for indexing
+ * the classpath again.
  */
 public final class FastBuildJavacImpl implements FastBuildJavac {
 
+  /**
+   * Options which the file manager keeps once it has handled them, and so decide which compiles
+   * can share a file manager. Besides the paths, this includes the encoding the file manager
+   * decodes sources with.
+   */
+  private static final Set<String> FILE_MANAGER_OPTIONS =
+      new HashSet<>(
+          Arrays.asList(
+              "-cp",
+              "-classpath",
+              "--class-path",
+              "-bootclasspath",
+              "--boot-class-path",
+              "-processorpath",
+              "--processor-path",
+              "-sourcepath",
+              "--source-path",
+              "-encoding",
+              "-extdirs",
+              "-endorseddirs",
+              "--system",
+              "-p",
+              "--module-path",
+              "--module-source-path",
+              "--upgrade-module-path",
+              "--processor-module-path",
+              "--patch-module",
+              "--release"));
+
+  /** Output locations, which may differ between compiles that share a file manager. */
+  private static final StandardLocation[] LOCATIONS_SET_PER_COMPILE = {
+    StandardLocation.CLASS_OUTPUT, StandardLocation.SOURCE_OUTPUT,
+    StandardLocation.NATIVE_HEADER_OUTPUT,
+  };
+
+  /** The number of classpaths whose file managers are kept between compiles. */
+  private static final int MAX_FILE_MANAGERS = 4;
+
+  private final JavacTool javacTool = JavacTool.create();
+
+  /**
+   * Passes the diagnostics reported by the file managers on to the collector of the running
+   * compile. Guarded by {@code this}.
+   */
+  private final ForwardingDiagnosticListener fileManagerDiagnostics =
+      new ForwardingDiagnosticListener();
+
+  /**
+   * File managers reused across compiles, keyed by the file manager options given to the compile,
+   * so that the jars on a classpath are only opened and indexed once. The least recently used are
+   * closed once there are more than {@link #MAX_FILE_MANAGERS}. Guarded by {@code this}.
+   */
+  private final LinkedHashMap<String, CachedFileManager> fileManagers =
+      new LinkedHashMap<String, CachedFileManager>(
+          /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedFileManager> eldest) {
+          if (size() <= MAX_FILE_MANAGERS) {
+            return false;
+          }
+          closeQuietly(eldest.getValue().fileManager);
+          return true;
+        }
+      };
+
   @Override
-  public Object[] compile(List<String> args, Collection<File> sources) {
+  public synchronized Object[] compile(List<String> args, Collection<File> sources) {
     Context context = new Context();
     DiagnosticsCollector collector = new DiagnosticsCollector(context);
-    JavacTool javacTool = JavacTool.create();
-    JavacFileManager fileManager =
-        javacTool.getStandardFileManager(collector, Locale.ENGLISH, StandardCharsets.UTF_8);
-    Iterable<? extends JavaFileObject> filesToCompile =
-        fileManager.getJavaFileObjects(sources.toArray(new File[] {}));
-    JavacTask task =
-        javacTool.getTask(
-            /* writer (ignored if a diagnosticListener is set) */ null,
-            fileManager,
-            collector,
-            args,
-            /* classes= */ null,
-            filesToCompile,
-            context);
-    boolean result = task.call();
-    CompilerOutput results = new CompilerOutput(result, collector.diagnostics);
-    return results.encode();
+    fileManagerDiagnostics.delegate = collector;
+    try {
+      JavacFileManager fileManager = getFileManager(args);
+      Iterable<? extends JavaFileObject> filesToCompile =
+          fileManager.getJavaFileObjects(sources.toArray(new File[] {}));
+      JavacTask task =
+          javacTool.getTask(
+              /* writer (ignored if a diagnosticListener is set) */ null,
+              fileManager,
+              collector,
+              args,
+              /* classes= */ null,
+              filesToCompile,
+              context);
+      boolean result = task.call();
+      CompilerOutput results = new CompilerOutput(result, collector.diagnostics);
+      return results.encode();
+    } finally {
+      fileManagerDiagnostics.delegate = null;
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    fileManagers.values().forEach(cached -> closeQuietly(cached.fileManager));
+    fileManagers.clear();
+  }
+
+  /**
+   * Returns the file manager for the file manager options in the given arguments, with its output
+   * locations reset. If any jar named by those options changed since it was last seen, the file
+   * manager is replaced, dropping its indexes of the old jar contents.
+   */
+  private JavacFileManager getFileManager(List<String> args) {
+    List<String> options = getFileManagerOptions(args);
+    String key = String.join("\n", options);
+    Map<String, String> stamps = new HashMap<>();
+    for (String option : options) {
+      for (String entry : option.split("[ =" + File.pathSeparator + "]")) {
+        if (entry.endsWith(".jar")) {
+          stamps.put(entry, stamp(entry));
+        }
+      }
+    }
+    CachedFileManager cached = fileManagers.get(key);
+    if (cached != null && !cached.jarStamps.equals(stamps)) {
+      closeQuietly(cached.fileManager);
+      cached = null;
+    }
+    if (cached == null) {
+      cached =
+          new CachedFileManager(
+              javacTool.getStandardFileManager(
+                  fileManagerDiagnostics, Locale.ENGLISH, getEncoding(args)),
+              stamps);
+      fileManagers.put(key, cached);
+    }
+    // a previous compile may have written to other output directories
+    for (StandardLocation location : LOCATIONS_SET_PER_COMPILE) {
+      try {
+        cached.fileManager.setLocation(location, null);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return cached.fileManager;
+  }
+
+  private static List<String> getFileManagerOptions(List<String> args) {
+    List<String> options = new ArrayList<>();
+    for (int i = 0; i < args.size(); i++) {
+      String arg = args.get(i);
+      if (FILE_MANAGER_OPTIONS.contains(arg) && i + 1 < args.size()) {
+        options.add(arg + " " + args.get(++i));
+      } else if (arg.startsWith("-Xbootclasspath")
+          || (arg.startsWith("--") && FILE_MANAGER_OPTIONS.contains(arg.split("=", 2)[0]))) {
+        options.add(arg);
+      }
+    }
+    return options;
+  }
+
+  /**
+   * The encoding given by {@code -encoding}, or UTF-8 if there is none. Returns null for an
+   * unsupported encoding, leaving it for javac to report.
+   */
+  private static Charset getEncoding(List<String> args) {
+    int index = args.lastIndexOf("-encoding");
+    if (index < 0 || index + 1 >= args.size()) {
+      return StandardCharsets.UTF_8;
+    }
+    try {
+      return Charset.forName(args.get(index + 1));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static void closeQuietly(JavacFileManager fileManager) {
+    try {
+      fileManager.close();
+    } catch (IOException e) {
+      // the file manager is discarded either way
+    }
+  }
+
+  /** A file manager, along with the stamps of the jars it may have indexed. */
+  private static final class CachedFileManager {
+    private final JavacFileManager fileManager;
+    private final Map<String, String> jarStamps;
+
+    private CachedFileManager(JavacFileManager fileManager, Map<String, String> jarStamps) {
+      this.fileManager = fileManager;
+      this.jarStamps = jarStamps;
+    }
+  }
+
+  private static String stamp(String jar) {
+    File file = new File(jar);
+    return file.length() + ":" + file.lastModified();
+  }
+
+  @Trusted
+  private static final class ForwardingDiagnosticListener
+      implements DiagnosticListener<JavaFileObject> {
+
+    private volatile DiagnosticListener<JavaFileObject> delegate;
+
+    @Override
+    public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+      DiagnosticListener<JavaFileObject> listener = delegate;
+      if (listener != null) {
+        listener.report(diagnostic);
+      }
+    }
   }
 
   @Trusted
@@ -22,12 +22,13 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 import com.google.idea.blaze.base.async.FutureUtil;
+import com.google.idea.blaze.base.async.executor.ExecutorLane;
 import com.google.idea.blaze.base.command.buildresult.BlazeArtifact;
 import com.google.idea.blaze.base.command.buildresult.BlazeArtifact.LocalFileArtifact;
 import com.google.idea.blaze.base.command.buildresult.OutputArtifactWithoutDigest;
@@ -62,7 +63,6 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.PathUtil;
-import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -76,8 +76,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -90,9 +90,7 @@ public class JarCache {
 
   private static final Logger logger = Logger.getInstance(JarCache.class);
   private static final ListeningExecutorService REPACKAGE_EXECUTOR =
-      MoreExecutors.listeningDecorator(
-          AppExecutorUtil.createBoundedApplicationPoolExecutor(
-              "JarRepackagerExecutor", /*maxThreads*/ 4));
+      ExecutorLane.COMPUTE.executor();
 
   private boolean isAvailable = !ApplicationManager.getApplication().isUnitTestMode();
 
@@ -102,6 +100,12 @@ public class JarCache {
   /** The state of the cache as of the last call to {@link #readFileState}. */
   private volatile ImmutableMap<String, File> cacheState = ImmutableMap.of();
 
+  /**
+   * Maps the name of each cached lint jar to the digest of its contents when it was last
+   * repackaged, so that lint jars are only repackaged when their contents change.
+   */
+  private final Map<String, String> repackagedDigests = new ConcurrentHashMap<>();
+
   private volatile ListenableFuture<List<Object>> repackagingTasks =
       Futures.immediateCancelledFuture();
 
@@ -149,6 +153,48 @@ public class JarCache {
     return cacheState;
   }
 
+  /**
+   * Restores {@link #cacheState} from the persisted manifest, falling back to {@link
+   * #readFileState} if the cache directory has changed since the manifest was written.
+   */
+  private void loadFileState() {
+    File cacheFolder = jarCacheFolderProvider.getJarCacheFolder();
+    Optional<JarCacheManifest> manifest =
+        JarCacheManifest.read(jarCacheFolderProvider.getJarCacheManifestFile());
+    if (!manifest.isPresent()) {
+      readFileState();
+      return;
+    }
+    // digests are always checked against the cached jar, so they're valid even if the directory
+    // has since changed
+    repackagedDigests.putAll(manifest.get().getRepackagedDigests());
+    long folderTimestamp = FileOperationProvider.getInstance().getFileModifiedTime(cacheFolder);
+    if (manifest.get().getFolderTimestamp() != folderTimestamp) {
+      readFileState();
+      return;
+    }
+    cacheState =
+        manifest.get().getFileNames().stream()
+            .collect(toImmutableMap(name -> name, name -> new File(cacheFolder, name)));
+  }
+
+  /** Persists the current {@link #cacheState}, so it needn't be re-read on the next startup. */
+  private synchronized void writeManifest() {
+    ImmutableMap<String, File> cacheState = this.cacheState;
+    repackagedDigests.keySet().retainAll(cacheState.keySet());
+    File cacheFolder = jarCacheFolderProvider.getJarCacheFolder();
+    JarCacheManifest manifest =
+        new JarCacheManifest(
+            FileOperationProvider.getInstance().getFileModifiedTime(cacheFolder),
+            cacheState.keySet(),
+            repackagedDigests);
+    try {
+      manifest.write(jarCacheFolderProvider.getJarCacheManifestFile());
+    } catch (IOException e) {
+      logger.warn("Failed to write jar cache manifest", e);
+    }
+  }
+
   private void onSync(
       BlazeContext context,
       ProjectViewSet projectViewSet,
@@ -245,7 +291,7 @@ public class JarCache {
       }
 
       // repackage cached jars after cache has been updated
-      repackageJarsInBackground(projectData, updated.values());
+      repackageJarsInBackground(projectData);
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       context.setCancelled();
@@ -255,6 +301,7 @@ public class JarCache {
     } finally {
       // update the in-memory record of which files are cached
       ImmutableMap<String, File> state = readFileState();
+      writeManifest();
       logCacheSize(context, state);
     }
   }
@@ -343,8 +390,7 @@ public class JarCache {
    * Submit repackage tasks without blocking current thread. Log elapsed time when all tasks get
    * completed.
    */
-  private void repackageJarsInBackground(
-      BlazeProjectData projectData, Collection<BlazeArtifact> updatedJars) {
+  private void repackageJarsInBackground(BlazeProjectData projectData) {
     JarRepackager jarRepackager = JarRepackager.getInstance();
     if (!jarRepackager.isEnabled()) {
       return;
@@ -356,8 +402,7 @@ public class JarCache {
       logger.warn("Cancel unfinished repackaging tasks.");
       repackagingTasks.cancel(false);
     }
-    ImmutableList<ListenableFuture<?>> tasks =
-        repackageJars(projectData, updatedJars, jarRepackager);
+    ImmutableList<ListenableFuture<?>> tasks = repackageJars(projectData, jarRepackager);
     if (tasks.isEmpty()) {
       return;
     }
@@ -367,6 +412,8 @@ public class JarCache {
         new FutureCallback<Object>() {
           @Override
           public void onSuccess(Object result) {
+            readFileState();
+            writeManifest();
             logger.info(
                 "Repackaged "
                     + tasks.size()
@@ -390,31 +437,14 @@ public class JarCache {
 
   /** Repackage jars when necessary to avoid package name conflict. */
   private ImmutableList<ListenableFuture<?>> repackageJars(
-      BlazeProjectData projectData,
-      Collection<BlazeArtifact> updatedJars,
-      JarRepackager jarRepackager) {
-    FileOperationProvider ops = FileOperationProvider.getInstance();
-
+      BlazeProjectData projectData, JarRepackager jarRepackager) {
     return LintJarHelper.collectLintJarsArtifacts(projectData).stream()
         .map(
             blazeArtifact ->
                 REPACKAGE_EXECUTOR.submit(
                     () -> {
                       try {
-                        repackageJar(
-                            jarRepackager,
-                            blazeArtifact,
-                            file -> {
-                              // repackage a jar when it's just updated or never repackaged.
-                              if (updatedJars.contains(blazeArtifact)) {
-                                return true;
-                              }
-                              File repackagedJar =
-                                  new File(
-                                      jarCacheFolderProvider.getJarCacheFolder(),
-                                      jarRepackager.getRepackagePrefix() + file.getName());
-                              return ops.exists(file) && !ops.exists(repackagedJar);
-                            });
+                        repackageJar(jarRepackager, blazeArtifact);
                       } catch (IOException | InterruptedException e) {
                         logger.warn(
                             String.format(
@@ -427,13 +457,26 @@ public class JarCache {
         .collect(toImmutableList());
   }
 
-  private void repackageJar(
-      JarRepackager jarRepackager, BlazeArtifact blazeArtifact, Predicate<File> shouldRepackage)
+  /**
+   * Repackages a cached lint jar, unless it has already been repackaged from identical contents.
+   */
+  private void repackageJar(JarRepackager jarRepackager, BlazeArtifact blazeArtifact)
       throws IOException, InterruptedException {
+    FileOperationProvider ops = FileOperationProvider.getInstance();
     File jar = jarCacheFolderProvider.getCacheFileByKey(cacheKeyForJar(blazeArtifact));
-    if (shouldRepackage.test(jar)) {
-      jarRepackager.processJar(jar);
+    if (!ops.exists(jar)) {
+      return;
     }
+    String digest = com.google.common.io.Files.asByteSource(jar).hash(Hashing.sha256()).toString();
+    File repackagedJar =
+        new File(
+            jarCacheFolderProvider.getJarCacheFolder(),
+            jarRepackager.getRepackagePrefix() + jar.getName());
+    if (digest.equals(repackagedDigests.get(jar.getName())) && ops.exists(repackagedJar)) {
+      return;
+    }
+    jarRepackager.processJar(jar);
+    repackagedDigests.put(jar.getName(), digest);
   }
 
   private Collection<ListenableFuture<?>> deleteCacheFiles(Collection<File> files) {
@@ -453,6 +496,12 @@ public class JarCache {
 
   private void clearCache(BlazeContext context, boolean blockOnCompletion) {
     cacheState = ImmutableMap.of();
+    repackagedDigests.clear();
+    try {
+      Files.deleteIfExists(jarCacheFolderProvider.getJarCacheManifestFile().toPath());
+    } catch (IOException e) {
+      logger.warn(e);
+    }
     File[] cacheFiles = jarCacheFolderProvider.getJarCacheFolder().listFiles();
     if (cacheFiles == null) {
       return;
@@ -631,7 +680,7 @@ public class JarCache {
     public void initialize(Project project) {
       JarCache cache = getInstance(project);
       cache.updateEnabled();
-      cache.readFileState();
+      cache.loadFileState();
     }
   }
 }
@@ -32,6 +32,7 @@ public class JarCacheFolderProvider {
   }
 
   private static final String JAR_CACHE_FOLDER_NAME = "libraries";
+  private static final String JAR_CACHE_MANIFEST_NAME = "libraries_manifest.json";
 
   private final Project project;
 
@@ -46,6 +47,16 @@ public class JarCacheFolderProvider {
     return new File(BlazeDataStorage.getProjectDataDir(importSettings), JAR_CACHE_FOLDER_NAME);
   }
 
+  /**
+   * Gets the file recording the state of the JAR cache. It lives beside the cache folder, so that
+   * writing it doesn't modify the folder.
+   */
+  public File getJarCacheManifestFile() {
+    BlazeImportSettings importSettings =
+        BlazeImportSettingsManager.getInstance(project).getImportSettings();
+    return new File(BlazeDataStorage.getProjectDataDir(importSettings), JAR_CACHE_MANIFEST_NAME);
+  }
+
   /** Returns the {@link File} instance that represents a JAR file by the {@code key} value. */
   public File getCacheFileByKey(String key) {
     return new File(getJarCacheFolder(), key);
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.libraries;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.Nullable;
+
+/**
+ * Data class for (de)serializing the state of the {@link JarCache} directory.
+ *
+ * <p>The manifest is only trusted while the modification time of the cache directory matches the
+ * one it was written with, i.e. while no file has been added to or removed from the directory.
+ */
+final class JarCacheManifest {
+  private final long folderTimestamp;
+  private final List<String> fileNames;
+
+  /**
+   * Maps the name of each repackaged lint jar to the digest of the cached jar it was repackaged
+   * from.
+   */
+  private final Map<String, String> repackagedDigests;
+
+  JarCacheManifest(
+      long folderTimestamp, Collection<String> fileNames, Map<String, String> repackagedDigests) {
+    this.folderTimestamp = folderTimestamp;
+    this.fileNames = ImmutableList.copyOf(fileNames);
+    this.repackagedDigests = ImmutableMap.copyOf(repackagedDigests);
+  }
+
+  long getFolderTimestamp() {
+    return folderTimestamp;
+  }
+
+  ImmutableList<String> getFileNames() {
+    return fileNames == null ? ImmutableList.of() : ImmutableList.copyOf(fileNames);
+  }
+
+  ImmutableMap<String, String> getRepackagedDigests() {
+    return repackagedDigests == null ? ImmutableMap.of() : ImmutableMap.copyOf(repackagedDigests);
+  }
+
+  void write(File file) throws IOException {
+    try (JsonWriter jsonWriter =
+        new JsonWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8))) {
+      new Gson().toJson(this, JarCacheManifest.class, jsonWriter);
+    }
+  }
+
+  /** Returns the manifest stored in {@code file}, or empty if it is missing or unreadable. */
+  static Optional<JarCacheManifest> read(File file) {
+    if (!file.exists()) {
+      return Optional.empty();
+    }
+    try (JsonReader jsonReader =
+        new JsonReader(new InputStreamReader(new FileInputStream(file), UTF_8))) {
+      @Nullable JarCacheManifest manifest = new Gson().fromJson(jsonReader, JarCacheManifest.class);
+      return Optional.ofNullable(manifest);
+    } catch (IOException | JsonParseException e) {
+      return Optional.empty();
+    }
+  }
+}
@@ -15,23 +15,18 @@
  */
 package com.google.idea.blaze.java.sync.source;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import com.google.idea.blaze.base.io.InputStreamProvider;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.output.IssueOutput;
 import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
 import com.google.idea.blaze.common.PrintOutput;
+import com.google.idea.blaze.common.java.JavaPackageStatementReader;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 /** Parse package string directly from java source */
@@ -42,9 +37,6 @@ public class JavaSourcePackageReader extends JavaPackageReader {
     return ServiceManager.getService(JavaSourcePackageReader.class);
   }
 
-  // Package declaration of java-like languages.
-  private static final Pattern PACKAGE_PATTERN = Pattern.compile("^\\s*package\\s+([\\w\\.]+)");
-
   @Override
   @Nullable
   public String getDeclaredPackageOfJavaFile(
@@ -60,14 +52,9 @@ public class JavaSourcePackageReader extends JavaPackageReader {
       return null;
     }
     try (InputStream javaInputStream = inputStreamProvider.forFile(sourceFile)) {
-      BufferedReader javaReader = new BufferedReader(new InputStreamReader(javaInputStream, UTF_8));
-      String javaLine;
-
-      while ((javaLine = javaReader.readLine()) != null) {
-        Matcher packageMatch = PACKAGE_PATTERN.matcher(javaLine);
-        if (packageMatch.find()) {
-          return packageMatch.group(1);
-        }
+      String packageString = JavaPackageStatementReader.readPackage(javaInputStream);
+      if (packageString != null) {
+        return packageString;
       }
       IssueOutput.warn("No package name string found in java source file: " + sourceFile)
           .inFile(sourceFile)
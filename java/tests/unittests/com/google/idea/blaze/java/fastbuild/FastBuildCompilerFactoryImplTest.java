@@ -21,6 +21,7 @@ import static org.junit.Assert.fail;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.model.MockBlazeProjectDataBuilder;
 import com.google.idea.blaze.base.model.MockBlazeProjectDataManager;
@@ -71,7 +72,7 @@ public final class FastBuildCompilerFactoryImplTest {
           /* targetVersion= */ "8");
   private static final JavaInfo JAVA_LIBRARY_WITHOUT_SOURCES = JavaInfo.builder().build();
 
-  private FastBuildCompilerFactory compilerFactory;
+  private FastBuildCompilerFactoryImpl compilerFactory;
 
   @BeforeClass
   public static void verifyJars() {
@@ -266,6 +267,119 @@ public final class FastBuildCompilerFactoryImplTest {
     }
   }
 
+  @Test
+  public void reusedCompiler_doesNotKeepPreviousClasspath() throws IOException, FastBuildException {
+    String java =
+        ""
+            + "package com.google.idea.blaze.java.fastbuild;\n"
+            + "\n"
+            + "import com.google.common.collect.ImmutableSet;\n"
+            + "\n"
+            + "final class Main {\n"
+            + "  private static void main(String[] args) {\n"
+            + "    System.out.println(\"success\");\n"
+            + "  }\n"
+            + "}\n";
+    StringWriter firstOutput = new StringWriter();
+    try {
+      compile(java, firstOutput, GUAVA_JAR);
+    } catch (FastBuildIncrementalCompileException e) {
+      throw new AssertionError("Compilation failed:\n" + firstOutput, e);
+    }
+
+    StringWriter secondOutput = new StringWriter();
+    try {
+      compile(java, secondOutput);
+      fail("Should have thrown FastBuildIncrementalCompileException");
+    } catch (FastBuildIncrementalCompileException e) {
+      assertThat(secondOutput.toString()).contains("ImmutableSet");
+    }
+  }
+
+  @Test
+  public void reusedCompiler_compilesWithMoreClasspathsThanFileManagers()
+      throws IOException, FastBuildException {
+    String java =
+        ""
+            + "package com.google.idea.blaze.java.fastbuild;\n"
+            + "\n"
+            + "import com.google.common.collect.ImmutableSet;\n"
+            + "\n"
+            + "final class Main {\n"
+            + "  private static void main(String[] args) {\n"
+            + "    System.out.println(\"success\");\n"
+            + "  }\n"
+            + "}\n";
+    ImmutableList<File[]> classpaths =
+        ImmutableList.of(
+            new File[] {GUAVA_JAR},
+            new File[] {GUAVA_JAR, TRUTH_JAR},
+            new File[] {GUAVA_JAR, AUTO_VALUE_JAR},
+            new File[] {GUAVA_JAR, AUTO_VALUE_PLUGIN_JAR},
+            new File[] {GUAVA_JAR, TRUTH_JAR, AUTO_VALUE_JAR},
+            // evicted by now, so its file manager is recreated
+            new File[] {GUAVA_JAR});
+    for (File[] classpath : classpaths) {
+      StringWriter javacOutput = new StringWriter();
+      try {
+        compile(java, javacOutput, classpath);
+      } catch (FastBuildIncrementalCompileException e) {
+        throw new AssertionError("Compilation failed:\n" + javacOutput, e);
+      }
+    }
+  }
+
+  @Test
+  public void loadedCompilers_areBounded() throws FastBuildException {
+    for (File javacJar : ImmutableList.of(GUAVA_JAR, TRUTH_JAR, AUTO_VALUE_JAR)) {
+      getCompiler(toolchainWithJavacJar(javacJar));
+    }
+
+    assertThat(compilerFactory.loadedJavacCount())
+        .isEqualTo(FastBuildCompilerFactoryImpl.MAX_LOADED_JAVACS);
+  }
+
+  @Test
+  public void evictedCompiler_isClosedOnlyOnceIdle() throws FastBuildException {
+    FastBuildCompilerFactoryImpl.LoadedJavac inUse =
+        compilerFactory.acquireJavac(ImmutableList.of(GUAVA_JAR, FAST_BUILD_JAVAC_JAR));
+    for (File javacJar : ImmutableList.of(TRUTH_JAR, AUTO_VALUE_JAR)) {
+      compilerFactory.release(
+          compilerFactory.acquireJavac(ImmutableList.of(javacJar, FAST_BUILD_JAVAC_JAR)));
+    }
+
+    // evicted, but still held by a compile
+    assertThat(compilerFactory.loadedJavacCount())
+        .isEqualTo(FastBuildCompilerFactoryImpl.MAX_LOADED_JAVACS);
+    assertThat(inUse.isClosed()).isFalse();
+
+    compilerFactory.release(inUse);
+
+    assertThat(inUse.isClosed()).isTrue();
+  }
+
+  @Test
+  public void dispose_closesLoadedCompilers() throws IOException, FastBuildException {
+    String java =
+        ""
+            + "package com.google.idea.blaze.java.fastbuild;\n"
+            + "\n"
+            + "final class Main {}\n";
+    compile(java, new StringWriter());
+    assertThat(compilerFactory.loadedJavacCount()).isEqualTo(1);
+
+    compilerFactory.dispose();
+
+    assertThat(compilerFactory.loadedJavacCount()).isEqualTo(0);
+    // the compiler is loaded again when needed
+    StringWriter javacOutput = new StringWriter();
+    try {
+      compile(java, javacOutput);
+    } catch (FastBuildIncrementalCompileException e) {
+      throw new AssertionError("Compilation failed:\n" + javacOutput, e);
+    }
+  }
+
   @Test
   public void errorOnTooNewSource() throws IOException, FastBuildException {
     String java =
@@ -381,6 +495,15 @@ public final class FastBuildCompilerFactoryImplTest {
     return compilerFactory.getCompilerFor(targetLabel, blazeData);
   }
 
+  private static JavaToolchainInfo toolchainWithJavacJar(File javacJar) {
+    return JavaToolchainInfo.create(
+        /* javacJars= */ ImmutableList.of(
+            ArtifactLocation.builder().setRelativePath(javacJar.getPath()).build()),
+        /* bootJars= */ ImmutableList.of(),
+        /* sourceVersion= */ "8",
+        /* targetVersion= */ "8");
+  }
+
   private static BlazeContext createBlazeContext(Writer javacOutput) {
     return BlazeContext.create()
         .addOutputSink(PrintOutput.class, new WritingOutputSink(javacOutput));
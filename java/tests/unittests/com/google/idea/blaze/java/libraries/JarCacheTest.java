@@ -261,6 +261,34 @@ public class JarCacheTest extends BlazeTestCase {
     }
   }
 
+  @Test
+  public void refresh_unchangedLintJarNotRepackagedAgain()
+      throws IOException, ExecutionException, InterruptedException {
+    ArtifactLocationDecoder artifactLocationDecoder =
+        new MockArtifactLocationDecoder(workspaceRoot.directory(), /* isRemote= */ false);
+    fakeJarRepackager.setEnable(true);
+    File jar = workspaceRoot.fileForPath(new WorkspacePath(PLUGIN_PROCESSOR_JAR));
+    BlazeProjectData blazeProjectData = setupProjectWithLintRuleJar(jar, artifactLocationDecoder);
+    ProjectViewSet projectViewSet =
+        ProjectViewSet.builder().add(ProjectView.builder().build()).build();
+
+    // act: sync twice without changing the lint jar
+    for (SyncMode syncMode : ImmutableList.of(SyncMode.FULL, SyncMode.INCREMENTAL)) {
+      FileCache.EP_NAME
+          .extensions()
+          .forEach(
+              ep ->
+                  ep.onSync(
+                      getProject(), context, projectViewSet, blazeProjectData, null, syncMode));
+      JarCache.getInstance(project).getRepackagingTasks().get();
+    }
+
+    // assert: the jar was only repackaged by the first sync, and the manifest was written
+    assertThat(fakeJarRepackager.processedJars).isEqualTo(1);
+    assertThat(JarCacheFolderProvider.getInstance(project).getJarCacheManifestFile().exists())
+        .isTrue();
+  }
+
   /**
    * This test sets up blaze project data with a single java import result. It verifies that when
    * the file caches are refreshed, the jar cache correctly caches the lint jars.
@@ -311,6 +339,7 @@ public class JarCacheTest extends BlazeTestCase {
 
   private static class FakeJarRepackager implements JarRepackager {
     private boolean enabled = false;
+    private int processedJars = 0;
     public static final String PREFIX = "repackaged_";
 
     public void setEnable(boolean enabled) {
@@ -329,6 +358,7 @@ public class JarCacheTest extends BlazeTestCase {
 
     @Override
     public void processJar(File jar) throws IOException {
+      processedJars++;
       Path source = jar.toPath();
       Path destination = source.resolveSibling(PREFIX + jar.getName());
       Files.copy(
@@ -15,12 +15,19 @@
  */
 package com.google.idea.blaze.python.resolve.provider;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.idea.blaze.base.async.executor.ExecutorLane;
 import com.google.idea.blaze.base.command.buildresult.OutputArtifactResolver;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.model.primitives.LanguageClass;
 import com.google.idea.blaze.base.settings.Blaze;
@@ -28,7 +35,9 @@ import com.google.idea.blaze.base.settings.BlazeImportSettings.ProjectType;
 import com.google.idea.blaze.base.sync.SyncCache;
 import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
 import com.google.idea.blaze.python.resolve.BlazePyResolverUtils;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
@@ -41,9 +50,13 @@ import com.jetbrains.python.codeInsight.imports.AutoImportQuickFix;
 import com.jetbrains.python.psi.PyUtil;
 import com.jetbrains.python.psi.resolve.PyQualifiedNameResolveContext;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import javax.annotation.Nullable;
 
 /**
@@ -52,6 +65,9 @@ import javax.annotation.Nullable;
  */
 public abstract class AbstractPyImportResolverStrategy implements PyImportResolverStrategy {
 
+  /** The number of changed targets whose index entries are built by a single task. */
+  private static final int TARGETS_PER_TASK = 256;
+
   @Nullable
   @Override
   public final PsiElement resolveFromSyncData(
@@ -89,34 +105,142 @@ public abstract class AbstractPyImportResolverStrategy implements PyImportResolv
     }
   }
 
+  /**
+   * The most recently built index, kept across syncs so that entries of targets a sync didn't
+   * change can be reused. It is the same instance {@link SyncCache} holds until the next sync.
+   */
+  private final Key<PySourcesIndex> lastIndexKey =
+      Key.create(getClass().getName() + ".lastSourcesIndex");
+
   @Nullable
-  private PySourcesIndex getSourcesIndex(Project project) {
+  final PySourcesIndex getSourcesIndex(Project project) {
     if (Blaze.getProjectType(project) == ProjectType.QUERY_SYNC) {
       return null;
     }
-    return SyncCache.getInstance(project).get(getClass(), this::buildSourcesIndex);
+    return SyncCache.getInstance(project)
+        .get(
+            getClass(),
+            (p, projectData) -> {
+              PySourcesIndex index =
+                  buildSourcesIndex(p, projectData, p.getUserData(lastIndexKey));
+              p.putUserData(lastIndexKey, index);
+              return index;
+            });
   }
 
-  @SuppressWarnings("unused")
-  private PySourcesIndex buildSourcesIndex(Project project, BlazeProjectData projectData) {
-    ImmutableSetMultimap.Builder<String, QualifiedName> shortNames = ImmutableSetMultimap.builder();
-    Map<QualifiedName, PsiElementProvider> map = new HashMap<>();
+  /**
+   * Builds the index, reusing the entries of each target whose sources are unchanged since {@code
+   * previous} was built with the same {@link ArtifactLocationDecoder}. The entries of the other
+   * targets are built in batches on the {@link ExecutorLane#COMPUTE} lane.
+   */
+  @VisibleForTesting
+  PySourcesIndex buildSourcesIndex(
+      Project project, BlazeProjectData projectData, @Nullable PySourcesIndex previous) {
     ArtifactLocationDecoder decoder = projectData.getArtifactLocationDecoder();
+    ImmutableMap<TargetKey, PySourcesIndex.TargetEntries> reusable =
+        previous != null && decoder.equals(previous.decoder)
+            ? previous.targetEntries
+            : ImmutableMap.of();
+
+    // in target map order, with the entries of changed targets filled in once they're built
+    Map<TargetKey, PySourcesIndex.TargetEntries> entriesByTarget = new LinkedHashMap<>();
+    List<TargetKey> changedTargets = new ArrayList<>();
+    List<ImmutableList<ArtifactLocation>> changedSources = new ArrayList<>();
     for (TargetIdeInfo target : projectData.getTargetMap().targets()) {
-      for (ArtifactLocation source : getPySources(target)) {
-        QualifiedName name = toImportString(source);
-        if (name == null || name.getLastComponent() == null) {
-          continue;
-        }
+      ImmutableList<ArtifactLocation> sources = ImmutableList.copyOf(getPySources(target));
+      if (sources.isEmpty()) {
+        continue;
+      }
+      PySourcesIndex.TargetEntries entries = reusable.get(target.getKey());
+      if (entries == null || !entries.sources.equals(sources)) {
+        changedTargets.add(target.getKey());
+        changedSources.add(sources);
+      }
+      entriesByTarget.put(target.getKey(), entries);
+    }
+    ImmutableList<PySourcesIndex.TargetEntries> built =
+        buildTargetEntries(project, decoder, changedSources);
+    for (int i = 0; i < changedTargets.size(); i++) {
+      entriesByTarget.put(changedTargets.get(i), built.get(i));
+    }
+
+    ImmutableSetMultimap.Builder<String, QualifiedName> shortNames = ImmutableSetMultimap.builder();
+    Map<QualifiedName, PsiElementProvider> map = new HashMap<>();
+    for (PySourcesIndex.TargetEntries entries : entriesByTarget.values()) {
+      for (QualifiedName name : entries.names) {
         shortNames.put(name.getLastComponent(), name);
-        PsiElementProvider psiProvider = psiProviderFromArtifact(project, decoder, source);
-        map.put(name, psiProvider);
-        if (includeParentDirectory(source)) {
-          map.put(name.removeTail(1), PsiElementProvider.getParent(psiProvider));
-        }
+      }
+      map.putAll(entries.sourceMap);
+    }
+    return new PySourcesIndex(
+        shortNames.build(),
+        ImmutableMap.copyOf(map),
+        ImmutableMap.copyOf(entriesByTarget),
+        decoder);
+  }
+
+  /**
+   * Builds the entries of the given targets, in the same order. Large numbers of targets are split
+   * into batches which are built in parallel.
+   */
+  private ImmutableList<PySourcesIndex.TargetEntries> buildTargetEntries(
+      Project project,
+      ArtifactLocationDecoder decoder,
+      List<ImmutableList<ArtifactLocation>> targetSources) {
+    if (targetSources.size() <= TARGETS_PER_TASK) {
+      return buildBatch(project, decoder, targetSources);
+    }
+    List<ListenableFuture<ImmutableList<PySourcesIndex.TargetEntries>>> futures =
+        new ArrayList<>();
+    for (List<ImmutableList<ArtifactLocation>> batch :
+        Lists.partition(targetSources, TARGETS_PER_TASK)) {
+      futures.add(
+          ExecutorLane.COMPUTE.executor().submit(() -> buildBatch(project, decoder, batch)));
+    }
+    try {
+      ImmutableList.Builder<PySourcesIndex.TargetEntries> entries = ImmutableList.builder();
+      for (ImmutableList<PySourcesIndex.TargetEntries> batch : Futures.allAsList(futures).get()) {
+        entries.addAll(batch);
+      }
+      return entries.build();
+    } catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  private ImmutableList<PySourcesIndex.TargetEntries> buildBatch(
+      Project project,
+      ArtifactLocationDecoder decoder,
+      List<ImmutableList<ArtifactLocation>> targetSources) {
+    ImmutableList.Builder<PySourcesIndex.TargetEntries> entries = ImmutableList.builder();
+    for (ImmutableList<ArtifactLocation> sources : targetSources) {
+      entries.add(buildTargetEntries(project, decoder, sources));
+    }
+    return entries.build();
+  }
+
+  private PySourcesIndex.TargetEntries buildTargetEntries(
+      Project project, ArtifactLocationDecoder decoder, ImmutableList<ArtifactLocation> sources) {
+    ImmutableList.Builder<QualifiedName> names = ImmutableList.builder();
+    Map<QualifiedName, PsiElementProvider> map = new LinkedHashMap<>();
+    for (ArtifactLocation source : sources) {
+      QualifiedName name = toImportString(source);
+      if (name == null || name.getLastComponent() == null) {
+        continue;
+      }
+      names.add(name);
+      PsiElementProvider psiProvider = psiProviderFromArtifact(project, decoder, source);
+      map.put(name, psiProvider);
+      if (includeParentDirectory(source)) {
+        map.put(name.removeTail(1), PsiElementProvider.getParent(psiProvider));
       }
     }
-    return new PySourcesIndex(shortNames.build(), ImmutableMap.copyOf(map));
+    return new PySourcesIndex.TargetEntries(sources, names.build(), ImmutableMap.copyOf(map));
   }
 
   private static PsiElementProvider psiProviderFromArtifact(
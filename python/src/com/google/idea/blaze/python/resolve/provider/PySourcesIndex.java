@@ -15,8 +15,12 @@
  */
 package com.google.idea.blaze.python.resolve.provider;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSetMultimap;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
 import com.intellij.psi.util.QualifiedName;
 
 /** An index of python sources and their associated import strings. */
@@ -24,10 +28,36 @@ class PySourcesIndex {
   final ImmutableSetMultimap<String, QualifiedName> shortNames;
   final ImmutableMap<QualifiedName, PsiElementProvider> sourceMap;
 
+  /** The entries contributed by each target, reused for unchanged targets when rebuilding. */
+  final ImmutableMap<TargetKey, TargetEntries> targetEntries;
+
+  /** The decoder the {@link PsiElementProvider}s in this index resolve artifacts with. */
+  final ArtifactLocationDecoder decoder;
+
   PySourcesIndex(
       ImmutableSetMultimap<String, QualifiedName> shortNames,
-      ImmutableMap<QualifiedName, PsiElementProvider> sourceMap) {
+      ImmutableMap<QualifiedName, PsiElementProvider> sourceMap,
+      ImmutableMap<TargetKey, TargetEntries> targetEntries,
+      ArtifactLocationDecoder decoder) {
     this.shortNames = shortNames;
     this.sourceMap = sourceMap;
+    this.targetEntries = targetEntries;
+    this.decoder = decoder;
+  }
+
+  /** The import strings and {@link PsiElementProvider}s built from a single target's sources. */
+  static final class TargetEntries {
+    final ImmutableList<ArtifactLocation> sources;
+    final ImmutableList<QualifiedName> names;
+    final ImmutableMap<QualifiedName, PsiElementProvider> sourceMap;
+
+    TargetEntries(
+        ImmutableList<ArtifactLocation> sources,
+        ImmutableList<QualifiedName> names,
+        ImmutableMap<QualifiedName, PsiElementProvider> sourceMap) {
+      this.sources = sources;
+      this.names = names;
+      this.sourceMap = sourceMap;
+    }
   }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.python.resolve.provider;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.async.executor.ExecutorLane;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.settings.Blaze;
+import com.google.idea.blaze.base.sync.SyncListener;
+import com.google.idea.blaze.base.sync.SyncMode;
+import com.google.idea.blaze.base.sync.SyncResult;
+import com.intellij.openapi.project.Project;
+
+/**
+ * Builds the python sources index in the background once a sync completes, so that the first
+ * import resolution afterwards doesn't have to wait for it.
+ */
+class PySourcesIndexWarmer implements SyncListener {
+
+  @Override
+  public void afterSync(
+      Project project,
+      BlazeContext context,
+      SyncMode syncMode,
+      SyncResult syncResult,
+      ImmutableSet<Integer> buildIds) {
+    if (!syncResult.successful()) {
+      return;
+    }
+    // not on the compute lane, where the index is built in batches, so that waiting for those
+    // doesn't hold up one of its threads
+    ExecutorLane.BLAZE
+        .executor()
+        .execute(
+            () -> {
+              for (PyImportResolverStrategy strategy :
+                  PyImportResolverStrategy.EP_NAME.getExtensions()) {
+                if (project.isDisposed()) {
+                  return;
+                }
+                if (strategy instanceof AbstractPyImportResolverStrategy
+                    && strategy.appliesToBuildSystem(Blaze.getBuildSystemName(project))) {
+                  ((AbstractPyImportResolverStrategy) strategy).getSourcesIndex(project);
+                }
+              }
+            });
+  }
+}
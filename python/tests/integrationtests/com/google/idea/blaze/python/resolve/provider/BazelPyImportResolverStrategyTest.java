@@ -20,14 +20,18 @@ import static com.google.common.truth.Truth.assertThat;
 import com.google.common.base.Joiner;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
 import com.google.idea.blaze.base.lang.buildfile.psi.util.PsiUtils;
+import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.model.MockBlazeProjectDataBuilder;
 import com.google.idea.blaze.base.model.MockBlazeProjectDataManager;
+import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.WorkspacePath;
 import com.google.idea.blaze.base.settings.BuildSystemName;
 import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.QualifiedName;
 import com.jetbrains.python.codeInsight.imports.AutoImportQuickFix;
 import com.jetbrains.python.psi.PyFile;
 import com.jetbrains.python.psi.PyFromImportStatement;
@@ -100,6 +104,71 @@ public class BazelPyImportResolverStrategyTest extends PyImportResolverStrategyT
         .isEqualTo(Joiner.on('\n').join("from foo.lib import bar", "", "bar"));
   }
 
+  @Test
+  public void testRebuildingIndexReusesUnchangedTargets() {
+    BazelPyImportResolverStrategy strategy = new BazelPyImportResolverStrategy();
+    BlazeProjectData projectData =
+        MockBlazeProjectDataBuilder.builder(workspaceRoot)
+            .setTargetMap(
+                TargetMapBuilder.builder()
+                    .addTarget(pyLibrary("//foo:foo", "foo/foo.py"))
+                    .addTarget(pyLibrary("//bar:bar", "bar/bar.py"))
+                    .build())
+            .build();
+    PySourcesIndex index = strategy.buildSourcesIndex(getProject(), projectData, null);
+
+    BlazeProjectData changedProjectData =
+        MockBlazeProjectDataBuilder.builder(workspaceRoot)
+            .setArtifactLocationDecoder(projectData.getArtifactLocationDecoder())
+            .setTargetMap(
+                TargetMapBuilder.builder()
+                    .addTarget(pyLibrary("//foo:foo", "foo/foo.py"))
+                    .addTarget(pyLibrary("//bar:bar", "bar/baz.py"))
+                    .build())
+            .build();
+    PySourcesIndex rebuilt = strategy.buildSourcesIndex(getProject(), changedProjectData, index);
+
+    TargetKey foo = TargetKey.forPlainTarget(Label.create("//foo:foo"));
+    TargetKey bar = TargetKey.forPlainTarget(Label.create("//bar:bar"));
+    assertThat(rebuilt.targetEntries.get(foo)).isSameAs(index.targetEntries.get(foo));
+    assertThat(rebuilt.targetEntries.get(bar)).isNotSameAs(index.targetEntries.get(bar));
+    QualifiedName fooName = QualifiedName.fromDottedString("foo.foo");
+    assertThat(rebuilt.sourceMap.get(fooName)).isSameAs(index.sourceMap.get(fooName));
+    assertThat(rebuilt.sourceMap).doesNotContainKey(QualifiedName.fromDottedString("bar.bar"));
+    assertThat(rebuilt.shortNames.get("baz"))
+        .containsExactly(QualifiedName.fromDottedString("bar.baz"));
+  }
+
+  @Test
+  public void testBuildingIndexOfManyTargetsInBatches() {
+    BazelPyImportResolverStrategy strategy = new BazelPyImportResolverStrategy();
+    // enough targets to be split into several batches
+    int targetCount = 1000;
+    TargetMapBuilder targetMap = TargetMapBuilder.builder();
+    for (int i = 0; i < targetCount; i++) {
+      targetMap.addTarget(pyLibrary("//pkg" + i + ":lib", "pkg" + i + "/mod" + i + ".py"));
+    }
+    BlazeProjectData projectData =
+        MockBlazeProjectDataBuilder.builder(workspaceRoot).setTargetMap(targetMap.build()).build();
+
+    PySourcesIndex index = strategy.buildSourcesIndex(getProject(), projectData, null);
+
+    assertThat(index.targetEntries).hasSize(targetCount);
+    for (int i = 0; i < targetCount; i++) {
+      assertThat(index.sourceMap).containsKey(QualifiedName.fromComponents("pkg" + i, "mod" + i));
+      assertThat(index.shortNames.get("mod" + i))
+          .containsExactly(QualifiedName.fromComponents("pkg" + i, "mod" + i));
+    }
+  }
+
+  private static TargetIdeInfo.Builder pyLibrary(String label, String source) {
+    return TargetIdeInfo.builder()
+        .setLabel(label)
+        .setBuildFile(source(label.substring(2, label.indexOf(':')) + "/BUILD"))
+        .setKind("py_library")
+        .addSource(source(source));
+  }
+
   private static ArtifactLocation source(String relativePath) {
     return ArtifactLocation.builder().setRelativePath(relativePath).setIsSource(true).build();
   }
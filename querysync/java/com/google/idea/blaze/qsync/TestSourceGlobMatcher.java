@@ -15,35 +15,81 @@
  */
 package com.google.idea.blaze.qsync;
 
-import static com.google.common.collect.ImmutableSet.toImmutableSet;
-
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableSet;
+import com.google.common.base.Splitter;
 import com.google.idea.blaze.qsync.project.ProjectDefinition;
 import java.io.File;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
 /**
  * Utility for matching test source glob expressions from a blazeproject file against project
- * folders
+ * folders. Used by both query sync and legacy sync.
+ *
+ * <p>A glob matches a path if it matches a prefix of it. Within a path segment, {@code *} matches
+ * any sequence of characters and {@code ?} any single character; a {@code **} segment matches any
+ * number of segments. The last segment of a glob may match just the start of a path segment, so
+ * {@code javatests} matches {@code javatests_ext/Foo.java}.
+ *
+ * <p>The globs are compiled into a trie of path segments, so matching a path is linear in its depth
+ * rather than in the number of globs.
  */
 public class TestSourceGlobMatcher {
 
-  private final ImmutableSet<String> testSourceGlobs;
+  private static final Splitter PATH_SPLITTER = Splitter.on('/');
+
+  private final Node root = new Node();
 
   public static TestSourceGlobMatcher create(ProjectDefinition projectDefinition) {
     return new TestSourceGlobMatcher(projectDefinition.testSources());
   }
 
+  public static TestSourceGlobMatcher create(Collection<String> testSources) {
+    return new TestSourceGlobMatcher(testSources);
+  }
+
   @VisibleForTesting
-  public TestSourceGlobMatcher(ImmutableSet<String> testSources) {
-    this.testSourceGlobs =
-        testSources.stream().map(TestSourceGlobMatcher::modifyPattern).collect(toImmutableSet());
+  public TestSourceGlobMatcher(Collection<String> testSources) {
+    for (String testSource : testSources) {
+      add(modifyPattern(testSource));
+    }
+    root.compile();
   }
 
   /** Returns true if any test source glob matches {@code path} */
   public boolean matches(Path path) {
-    return testSourceGlobs.stream().anyMatch(glob -> path.toString().startsWith(glob));
+    List<String> segments = new ArrayList<>(path.getNameCount());
+    for (Path segment : path) {
+      segments.add(segment.toString());
+    }
+    return root.matches(segments, 0);
+  }
+
+  /** Returns true if any test source glob matches the given '/'-separated relative path. */
+  public boolean matches(String relativePath) {
+    return root.matches(PATH_SPLITTER.splitToList(relativePath), 0);
+  }
+
+  private void add(String pattern) {
+    if (pattern.isEmpty()) {
+      root.matchesAll = true;
+      return;
+    }
+    List<String> segments = PATH_SPLITTER.splitToList(pattern);
+    Node node = root;
+    for (String segment : segments.subList(0, segments.size() - 1)) {
+      node = node.child(segment);
+    }
+    node.addLastSegment(segments.get(segments.size() - 1));
   }
 
   /**
@@ -64,4 +110,124 @@ public class TestSourceGlobMatcher {
     }
     return pattern;
   }
+
+  private static boolean isGlob(String segment) {
+    return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0;
+  }
+
+  private static Pattern segmentRegex(String glob) {
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for (char c : glob.toCharArray()) {
+      if (c == '*' || c == '?') {
+        if (literal.length() > 0) {
+          regex.append(Pattern.quote(literal.toString()));
+          literal.setLength(0);
+        }
+        regex.append(c == '*' ? ".*" : ".");
+      } else {
+        literal.append(c);
+      }
+    }
+    if (literal.length() > 0) {
+      regex.append(Pattern.quote(literal.toString()));
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  /** A node of the trie, reached by matching the path segments leading to it. */
+  private static class Node {
+    // a glob ends here, so all paths below match
+    boolean matchesAll;
+
+    final Map<String, Node> literalChildren = new HashMap<>();
+    final Map<String, Node> globChildren = new LinkedHashMap<>();
+    final List<Pattern> globChildPatterns = new ArrayList<>();
+    // matches any number of segments
+    @Nullable Node anyDepthChild;
+
+    // last segments of globs, which match paths with a segment starting with them
+    final Set<String> lastSegmentPrefixes = new HashSet<>();
+    int[] lastSegmentPrefixLengths = new int[0];
+    final List<Pattern> lastSegmentGlobs = new ArrayList<>();
+
+    Node child(String segment) {
+      if (segment.equals("**")) {
+        if (anyDepthChild == null) {
+          anyDepthChild = new Node();
+        }
+        return anyDepthChild;
+      }
+      return (isGlob(segment) ? globChildren : literalChildren)
+          .computeIfAbsent(segment, s -> new Node());
+    }
+
+    void addLastSegment(String segment) {
+      if (isGlob(segment)) {
+        lastSegmentGlobs.add(segmentRegex(segment));
+      } else {
+        lastSegmentPrefixes.add(segment);
+      }
+    }
+
+    void compile() {
+      lastSegmentPrefixLengths =
+          lastSegmentPrefixes.stream().mapToInt(String::length).distinct().sorted().toArray();
+      globChildren.keySet().forEach(glob -> globChildPatterns.add(segmentRegex(glob)));
+      literalChildren.values().forEach(Node::compile);
+      globChildren.values().forEach(Node::compile);
+      if (anyDepthChild != null) {
+        anyDepthChild.compile();
+      }
+    }
+
+    boolean matches(List<String> segments, int index) {
+      if (matchesAll) {
+        return true;
+      }
+      if (anyDepthChild != null) {
+        for (int i = index; i <= segments.size(); i++) {
+          if (anyDepthChild.matches(segments, i)) {
+            return true;
+          }
+        }
+      }
+      if (index == segments.size()) {
+        return false;
+      }
+      String segment = segments.get(index);
+      if (matchesLastSegment(segment)) {
+        return true;
+      }
+      Node literalChild = literalChildren.get(segment);
+      if (literalChild != null && literalChild.matches(segments, index + 1)) {
+        return true;
+      }
+      int i = 0;
+      for (Node globChild : globChildren.values()) {
+        if (globChildPatterns.get(i++).matcher(segment).matches()
+            && globChild.matches(segments, index + 1)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean matchesLastSegment(String segment) {
+      for (int length : lastSegmentPrefixLengths) {
+        if (length > segment.length()) {
+          break;
+        }
+        if (lastSegmentPrefixes.contains(segment.substring(0, length))) {
+          return true;
+        }
+      }
+      for (Pattern glob : lastSegmentGlobs) {
+        if (glob.matcher(segment).lookingAt()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
 }
@@ -22,18 +22,36 @@ import com.google.common.util.concurrent.Uninterruptibles;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-/** A {@link PackageReader} that parallelizes package reads of another {@link PackageReader}. */
+/**
+ * A {@link PackageReader} that parallelizes package reads of another {@link PackageReader}.
+ *
+ * <p>Rather than submitting one task per file, a bounded number of workers is started and each of
+ * them repeatedly claims the next batch of not yet read files. Workers that finish their batches
+ * early pick up the remaining ones, so a few slow files do not hold up the whole read, and the
+ * per-task overhead is paid per batch rather than per file.
+ */
 public class ParallelPackageReader implements PackageReader {
 
+  private static final int BATCH_SIZE = 64;
+
   private final PackageReader reader;
   private final ListeningExecutorService executor;
+  private final int parallelism;
 
   public ParallelPackageReader(ListeningExecutorService executor, PackageReader reader) {
+    this(executor, reader, Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  public ParallelPackageReader(
+      ListeningExecutorService executor, PackageReader reader, int parallelism) {
     this.executor = executor;
     this.reader = reader;
+    this.parallelism = Math.max(1, parallelism);
   }
 
   @Override
@@ -43,14 +61,30 @@ public class ParallelPackageReader implements PackageReader {
 
   @Override
   public List<String> readPackages(List<Path> paths) throws IOException {
-    ArrayList<ListenableFuture<String>> futures = new ArrayList<>();
-    for (Path path : paths) {
-      futures.add(executor.submit(() -> readPackage(path)));
+    String[] packages = new String[paths.size()];
+    AtomicInteger nextBatch = new AtomicInteger();
+    int batches = (paths.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+    int workers = Math.min(parallelism, batches);
+    ArrayList<ListenableFuture<Void>> futures = new ArrayList<>(workers);
+    for (int i = 0; i < workers; i++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                int batch;
+                while ((batch = nextBatch.getAndIncrement()) < batches) {
+                  int end = Math.min(paths.size(), (batch + 1) * BATCH_SIZE);
+                  for (int j = batch * BATCH_SIZE; j < end; j++) {
+                    packages[j] = readPackage(paths.get(j));
+                  }
+                }
+                return null;
+              }));
     }
     try {
-      return Uninterruptibles.getUninterruptibly(Futures.allAsList(futures));
+      Uninterruptibles.getUninterruptibly(Futures.allAsList(futures));
     } catch (ExecutionException e) {
       throw new IOException(e);
     }
+    return Arrays.asList(packages);
   }
 }
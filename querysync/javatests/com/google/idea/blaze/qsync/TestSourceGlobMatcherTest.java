@@ -58,4 +58,41 @@ public class TestSourceGlobMatcherTest {
 
     assertThat(globMatcher.matches(Path.of("javatersts/MyTerstTest.java"))).isFalse();
   }
+
+  @Test
+  public void testWildcardWithinSegment() {
+    TestSourceGlobMatcher globMatcher =
+        new TestSourceGlobMatcher(ImmutableSet.of("java/*/tests", "src/te?t"));
+
+    assertThat(globMatcher.matches(Path.of("java/foo/tests/MyTest.java"))).isTrue();
+    assertThat(globMatcher.matches(Path.of("src/text/MyTest.java"))).isTrue();
+
+    assertThat(globMatcher.matches(Path.of("java/foo/bar/tests/MyTest.java"))).isFalse();
+    assertThat(globMatcher.matches(Path.of("java/foo/MyTest.java"))).isFalse();
+  }
+
+  @Test
+  public void testDoubleAsteriskMatchesAnyDepth() {
+    TestSourceGlobMatcher globMatcher = new TestSourceGlobMatcher(ImmutableSet.of("java/**/tests"));
+
+    assertThat(globMatcher.matches(Path.of("java/tests/MyTest.java"))).isTrue();
+    assertThat(globMatcher.matches(Path.of("java/foo/bar/tests/MyTest.java"))).isTrue();
+
+    assertThat(globMatcher.matches(Path.of("java/foo/bar/MyTest.java"))).isFalse();
+  }
+
+  @Test
+  public void testMultipleGlobs() {
+    TestSourceGlobMatcher globMatcher =
+        new TestSourceGlobMatcher(ImmutableSet.of("javatests/*", "java/com/foo/test", "tests"));
+
+    assertThat(globMatcher.matches(Path.of("javatests/MyTest.java"))).isTrue();
+    assertThat(globMatcher.matches(Path.of("java/com/foo/testing/MyTest.java"))).isTrue();
+    assertThat(globMatcher.matches(Path.of("tests/MyTest.java"))).isTrue();
+    assertThat(globMatcher.matches("java/com/foo/test/MyTest.java")).isTrue();
+
+    assertThat(globMatcher.matches(Path.of("java/com/foo"))).isFalse();
+    assertThat(globMatcher.matches(Path.of("java/com/bar/test/MyTest.java"))).isFalse();
+    assertThat(globMatcher.matches("java/com/bar/test/MyTest.java")).isFalse();
+  }
 }
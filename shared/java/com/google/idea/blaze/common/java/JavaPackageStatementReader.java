@@ -0,0 +1,372 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.common.java;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * Reads the package statement from the header of a java-like (java, kotlin, scala) source file.
+ *
+ * <p>Only a bounded prefix of the file is read. It is scanned at the byte level rather than line by
+ * line: a leading BOM, a shebang line, comments and annotations (including kotlin file
+ * annotations) are skipped, and the first other token decides whether the file has a package
+ * statement. The only string allocated is the package name itself.
+ *
+ * <p>This class has no dependencies outside of the JDK, and must stay compatible with Java 8, since
+ * it is also used by the aspect tools.
+ */
+public final class JavaPackageStatementReader {
+
+  /** The package statement must start within this many bytes of the start of the file. */
+  public static final int MAX_HEADER_BYTES = 64 * 1024;
+
+  private static final int INITIAL_BUFFER_BYTES = 4 * 1024;
+
+  private static final byte[] PACKAGE_KEYWORD = "package".getBytes(UTF_8);
+
+  private JavaPackageStatementReader() {}
+
+  /** Returns the package declared by the given file, or null if it does not declare one. */
+  @Nullable
+  public static String readPackage(Path path) throws IOException {
+    try (InputStream in = Files.newInputStream(path)) {
+      return readPackage(in);
+    }
+  }
+
+  /**
+   * Returns the package declared by the source read from the given stream, or null if it does not
+   * declare one. The stream is not closed, and is not read further than needed.
+   */
+  @Nullable
+  public static String readPackage(InputStream in) throws IOException {
+    byte[] buffer = new byte[INITIAL_BUFFER_BYTES];
+    int length = 0;
+    while (true) {
+      int read = in.read(buffer, length, buffer.length - length);
+      boolean eof = read < 0;
+      if (!eof) {
+        length += read;
+      }
+      if (eof || length == buffer.length) {
+        Lexer lexer = new Lexer(buffer, length, eof || length >= MAX_HEADER_BYTES);
+        String pkg = lexer.readPackage();
+        if (!lexer.needsMoreInput) {
+          return pkg;
+        }
+        buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, MAX_HEADER_BYTES));
+      }
+    }
+  }
+
+  /**
+   * Returns the package declared by the source held in {@code bytes[0..length)}, or null if it does
+   * not declare one.
+   */
+  @Nullable
+  public static String parsePackage(byte[] bytes, int length) {
+    return new Lexer(bytes, length, true).readPackage();
+  }
+
+  /**
+   * A single pass over a source header. Every scanning method returns false when it cannot
+   * continue; if that was caused by running out of a partial input, {@link #needsMoreInput} is set.
+   */
+  private static final class Lexer {
+    private final byte[] buf;
+    private final int end;
+    private final boolean complete;
+    private int pos;
+    private boolean needsMoreInput;
+
+    Lexer(byte[] buf, int end, boolean complete) {
+      this.buf = buf;
+      this.end = end;
+      this.complete = complete;
+    }
+
+    @Nullable
+    String readPackage() {
+      skipBom();
+      if (lookingAt('#', '!')) {
+        if (!skipLineComment()) {
+          return null;
+        }
+      }
+      while (true) {
+        if (!skipWhitespaceAndComments()) {
+          return null;
+        }
+        if (pos >= end) {
+          truncated();
+          return null;
+        }
+        if (buf[pos] == '@') {
+          if (!skipAnnotation()) {
+            return null;
+          }
+          continue;
+        }
+        int start = pos;
+        if (!skipIdentifier()) {
+          return null;
+        }
+        if (!regionEquals(start, pos, PACKAGE_KEYWORD)) {
+          return null;
+        }
+        return readQualifiedName();
+      }
+    }
+
+    /** Called when the end of the buffer is reached before the scan could finish. */
+    private boolean truncated() {
+      needsMoreInput = !complete;
+      return false;
+    }
+
+    private void skipBom() {
+      if (end >= 3 && buf[0] == (byte) 0xEF && buf[1] == (byte) 0xBB && buf[2] == (byte) 0xBF) {
+        pos = 3;
+      }
+    }
+
+    private boolean lookingAt(char first, char second) {
+      return pos + 1 < end && buf[pos] == first && buf[pos + 1] == second;
+    }
+
+    private boolean skipWhitespaceAndComments() {
+      while (pos < end) {
+        byte b = buf[pos];
+        if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f') {
+          pos++;
+        } else if (lookingAt('/', '/')) {
+          if (!skipLineComment()) {
+            return false;
+          }
+        } else if (lookingAt('/', '*')) {
+          if (!skipBlockComment()) {
+            return false;
+          }
+        } else if (b == '/' && pos + 1 == end && !complete) {
+          // Could be the start of a comment that continues in the unread input.
+          return truncated();
+        } else {
+          return true;
+        }
+      }
+      return true;
+    }
+
+    private boolean skipLineComment() {
+      while (pos < end) {
+        if (buf[pos++] == '\n') {
+          return true;
+        }
+      }
+      return complete || truncated();
+    }
+
+    private boolean skipBlockComment() {
+      pos += 2;
+      while (pos + 1 < end) {
+        if (buf[pos] == '*' && buf[pos + 1] == '/') {
+          pos += 2;
+          return true;
+        }
+        pos++;
+      }
+      pos = end;
+      return truncated();
+    }
+
+    /** Skips a (possibly qualified) annotation, including any arguments. */
+    private boolean skipAnnotation() {
+      pos++;
+      if (!skipWhitespaceAndComments() || !skipIdentifier()) {
+        return false;
+      }
+      if (pos < end && buf[pos] == ':') {
+        // A kotlin use-site target, e.g. @file:JvmName("Foo") or @file:[A B].
+        pos++;
+        if (!skipWhitespaceAndComments()) {
+          return false;
+        }
+        if (pos < end && buf[pos] == '[') {
+          return skipBalanced('[', ']');
+        }
+        if (!skipIdentifier()) {
+          return false;
+        }
+      }
+      while (true) {
+        if (!skipWhitespaceAndComments()) {
+          return false;
+        }
+        if (pos >= end) {
+          return complete || truncated();
+        }
+        if (buf[pos] == '.') {
+          pos++;
+          if (!skipWhitespaceAndComments() || !skipIdentifier()) {
+            return false;
+          }
+        } else if (buf[pos] == '(') {
+          return skipBalanced('(', ')');
+        } else {
+          return true;
+        }
+      }
+    }
+
+    /** Skips from an opening bracket to its matching close, ignoring brackets in literals. */
+    private boolean skipBalanced(char open, char close) {
+      int depth = 0;
+      while (pos < end) {
+        byte b = buf[pos];
+        if (b == '"' || b == '\'') {
+          if (!skipLiteral(b)) {
+            return false;
+          }
+          continue;
+        }
+        if (lookingAt('/', '/') || lookingAt('/', '*')) {
+          if (!skipWhitespaceAndComments()) {
+            return false;
+          }
+          continue;
+        }
+        pos++;
+        if (b == open) {
+          depth++;
+        } else if (b == close && --depth == 0) {
+          return true;
+        }
+      }
+      return truncated();
+    }
+
+    private boolean skipLiteral(byte quote) {
+      pos++;
+      while (pos < end) {
+        byte b = buf[pos++];
+        if (b == '\\') {
+          pos++;
+        } else if (b == quote) {
+          return true;
+        }
+      }
+      pos = end;
+      return truncated();
+    }
+
+    /** Skips a single identifier, failing if there is none at the current position. */
+    private boolean skipIdentifier() {
+      if (pos >= end) {
+        return truncated();
+      }
+      if (!isIdentifierStart(buf[pos])) {
+        return false;
+      }
+      pos++;
+      while (pos < end && isIdentifierPart(buf[pos])) {
+        pos++;
+      }
+      // The identifier may continue in the unread input.
+      return pos < end || complete || truncated();
+    }
+
+    @Nullable
+    private String readQualifiedName() {
+      if (!skipWhitespaceAndComments()) {
+        return null;
+      }
+      int start = pos;
+      if (!skipIdentifier()) {
+        return null;
+      }
+      int nameEnd = pos;
+      // The name is almost always one contiguous run of bytes, which is decoded in place. It is
+      // only copied out if there is whitespace or a comment between its segments.
+      byte[] scratch = null;
+      int scratchLength = 0;
+      while (true) {
+        if (!skipWhitespaceAndComments()) {
+          return null;
+        }
+        if (pos >= end) {
+          if (!complete) {
+            truncated();
+            return null;
+          }
+          break;
+        }
+        if (buf[pos] != '.') {
+          break;
+        }
+        int dot = pos++;
+        if (!skipWhitespaceAndComments()) {
+          return null;
+        }
+        int segmentStart = pos;
+        if (!skipIdentifier()) {
+          return null;
+        }
+        if (scratch == null && (dot != nameEnd || segmentStart != dot + 1)) {
+          scratch = new byte[end - start];
+          scratchLength = nameEnd - start;
+          System.arraycopy(buf, start, scratch, 0, scratchLength);
+        }
+        if (scratch != null) {
+          scratch[scratchLength++] = '.';
+          System.arraycopy(buf, segmentStart, scratch, scratchLength, pos - segmentStart);
+          scratchLength += pos - segmentStart;
+        }
+        nameEnd = pos;
+      }
+      return scratch == null
+          ? new String(buf, start, nameEnd - start, UTF_8)
+          : new String(scratch, 0, scratchLength, UTF_8);
+    }
+
+    private boolean regionEquals(int from, int to, byte[] expected) {
+      if (to - from != expected.length) {
+        return false;
+      }
+      for (int i = 0; i < expected.length; i++) {
+        if (buf[from + i] != expected[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean isIdentifierStart(byte b) {
+      // Any byte of a multi-byte UTF-8 sequence is treated as part of an identifier.
+      return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_' || b == '$' || b < 0;
+    }
+
+    private static boolean isIdentifierPart(byte b) {
+      return isIdentifierStart(b) || (b >= '0' && b <= '9');
+    }
+  }
+}
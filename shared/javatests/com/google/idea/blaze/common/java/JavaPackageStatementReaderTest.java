@@ -0,0 +1,121 @@
+/*
+ * Copyright 2023 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.common.java;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JavaPackageStatementReaderTest {
+
+  private static String read(String source) throws IOException {
+    return JavaPackageStatementReader.readPackage(new ByteArrayInputStream(source.getBytes(UTF_8)));
+  }
+
+  /** Reads the source one byte at a time, to exercise resuming a truncated scan. */
+  private static String readSlowly(String source) throws IOException {
+    InputStream in =
+        new FilterInputStream(new ByteArrayInputStream(source.getBytes(UTF_8))) {
+          @Override
+          public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+          }
+        };
+    return JavaPackageStatementReader.readPackage(in);
+  }
+
+  @Test
+  public void basicPackageStatement() throws IOException {
+    assertThat(read("package com.myorg.somepackage;\n\npublic class MyClass {}"))
+        .isEqualTo("com.myorg.somepackage");
+  }
+
+  @Test
+  public void commentsBeforePackageStatement() throws IOException {
+    String source =
+        "/*\n * Copyright statement! package not.this.one;\n */\n// package nor.this\n"
+            + "package com.myorg.otherpackage;\n";
+    assertThat(read(source)).isEqualTo("com.myorg.otherpackage");
+    assertThat(readSlowly(source)).isEqualTo("com.myorg.otherpackage");
+  }
+
+  @Test
+  public void singleLineGeneratedFile() throws IOException {
+    assertThat(read("/* generated */package com.myorg.package.generated;public final class A {}"))
+        .isEqualTo("com.myorg.package.generated");
+  }
+
+  @Test
+  public void annotatedPackage() throws IOException {
+    String source =
+        "@ParametersAreNonnullByDefault\n"
+            + "@com.example.Note(value = {\"a)\", ')'}) // trailing\n"
+            + "package com.myorg.annotated;\n";
+    assertThat(read(source)).isEqualTo("com.myorg.annotated");
+    assertThat(readSlowly(source)).isEqualTo("com.myorg.annotated");
+  }
+
+  @Test
+  public void whitespaceAndCommentsInsideName() throws IOException {
+    assertThat(read("package com . /* x */ myorg\n.spaced;")).isEqualTo("com.myorg.spaced");
+  }
+
+  @Test
+  public void kotlinFileAnnotationAndShebang() throws IOException {
+    assertThat(read("#!/bin/interpreter\n@file:JvmName(\"MyFile\")\npackage com.myorg.kt\n"))
+        .isEqualTo("com.myorg.kt");
+    assertThat(read("@file:[Suppress(\"x\") JvmName(\"y\")]\npackage com.myorg.kt"))
+        .isEqualTo("com.myorg.kt");
+  }
+
+  @Test
+  public void byteOrderMarkAndNonAsciiName() throws IOException {
+    assertThat(read("\uFEFFpackage com.myorg.\u00fcber;")).isEqualTo("com.myorg.\u00fcber");
+  }
+
+  @Test
+  public void noPackageStatement() throws IOException {
+    assertThat(read("")).isNull();
+    assertThat(read("import com.myorg.Foo;\n\nclass Bar {}")).isNull();
+    assertThat(read("#package com.test;")).isNull();
+    assertThat(read("package %com.test;")).isNull();
+    assertThat(read("/* unterminated package com.test;")).isNull();
+  }
+
+  @Test
+  public void packageStatementBeyondHeaderLimit() throws IOException {
+    StringBuilder comment = new StringBuilder("/*");
+    while (comment.length() < JavaPackageStatementReader.MAX_HEADER_BYTES) {
+      comment.append("0123456789");
+    }
+    assertThat(read(comment + "*/ package com.myorg.late;")).isNull();
+  }
+
+  @Test
+  public void parsePackage_usesGivenLength() {
+    byte[] bytes = "package com.myorg.trimmed.rest;".getBytes(UTF_8);
+    assertThat(JavaPackageStatementReader.parsePackage(bytes, "package com.myorg.trimmed".length()))
+        .isEqualTo("com.myorg.trimmed");
+  }
+}
@@ -15,24 +15,35 @@
  */
 package com.google.idea.blaze.skylark.debugger.impl;
 
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.devtools.build.lib.starlarkdebugging.StarlarkDebuggingProtos.DebugEvent;
 import com.google.devtools.build.lib.starlarkdebugging.StarlarkDebuggingProtos.DebugRequest;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 import org.jetbrains.ide.PooledThreadExecutor;
 
+/**
+ * Connection to the Starlark debug server. Requests are written as soon as they're sent, without
+ * waiting for earlier responses; a single reader task completes the pending future for each
+ * response as it arrives.
+ */
 class DebugClientTransport implements Closeable {
 
   private static final Logger logger = Logger.getInstance(DebugClientTransport.class);
@@ -45,7 +56,6 @@ class DebugClientTransport implements Closeable {
 
   private static final int RETRY_DELAY_MILLIS = 200;
   private static final int RESPONSE_TIMEOUT_MILLIS = 30000;
-  private static final int RESPONSE_RECHECK_TIME_MILLIS = 1000;
 
   private static final String LOCAL_HOST = "localhost";
 
@@ -53,7 +63,8 @@ class DebugClientTransport implements Closeable {
   private final SkylarkDebugProcess debugProcess;
 
   private final AtomicLong sequence = new AtomicLong(1);
-  private final Map<Long, DebugEvent> responseQueue = new HashMap<>();
+  private final ConcurrentMap<Long, SettableFuture<DebugEvent>> pendingResponses =
+      new ConcurrentHashMap<>();
 
   @Nullable private Socket clientSocket;
   @Nullable private OutputStream requestStream;
@@ -80,6 +91,7 @@ class DebugClientTransport implements Closeable {
     if (readTask != null) {
       readTask.cancel(true);
     }
+    failPendingResponses();
     if (clientSocket == null) {
       return;
     }
@@ -132,42 +144,87 @@ class DebugClientTransport implements Closeable {
    */
   @Nullable
   DebugEvent sendRequest(DebugRequest.Builder builder) {
+    try {
+      return sendRequestAsync(builder).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Sends a {@link DebugRequest} to the server without waiting for the response. The sequence
+   * number will be populated prior to sending the request.
+   *
+   * @return a future for the {@link DebugEvent} response from the server, which completes with
+   *     null if no response was received within the timeout, or the connection was lost
+   */
+  ListenableFuture<DebugEvent> sendRequestAsync(DebugRequest.Builder builder) {
+    if (requestStream == null || readTask == null || readTask.isDone()) {
+      return Futures.immediateFuture(null);
+    }
     long seq = sequence.getAndIncrement();
     DebugRequest request = builder.setSequenceNumber(seq).build();
+    SettableFuture<DebugEvent> response = SettableFuture.create();
+    // registered before sending, so the reader task can't miss the response
+    pendingResponses.put(seq, response);
+    response.addListener(() -> pendingResponses.remove(seq), MoreExecutors.directExecutor());
+    if (readTask.isDone()) {
+      // the reader task stopped after the check above, and won't complete this future
+      response.set(null);
+      return response;
+    }
     try {
       synchronized (requestStream) {
         request.writeDelimitedTo(requestStream);
         requestStream.flush();
       }
-      return waitForResponse(seq);
-
     } catch (IOException e) {
       if (!ignoreErrors()) {
         logger.error("Error sending request to Skylark debugger", e);
       }
-      return null;
+      response.set(null);
     }
+    return Futures.catching(
+        Futures.withTimeout(
+            response,
+            RESPONSE_TIMEOUT_MILLIS,
+            TimeUnit.MILLISECONDS,
+            AppExecutorUtil.getAppScheduledExecutorService()),
+        TimeoutException.class,
+        e -> null,
+        MoreExecutors.directExecutor());
   }
 
   private ListenableFuture<?> processEvents(InputStream eventStream) {
     ListeningExecutorService executor =
         MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-    return executor.submit(
-        () -> {
-          try {
-            listenForEvents(eventStream);
-          } catch (IOException e) {
-            if (!ignoreErrors()) {
-              logger.error("Malformed event proto", e);
-            }
-            close();
-          }
-        });
+    ListenableFuture<?> task =
+        executor.submit(
+            () -> {
+              try {
+                listenForEvents(eventStream);
+              } catch (IOException e) {
+                if (!ignoreErrors()) {
+                  logger.error("Malformed event proto", e);
+                }
+                close();
+              }
+            });
+    // no more responses will arrive once the reader task stops
+    task.addListener(this::failPendingResponses, MoreExecutors.directExecutor());
+    return task;
   }
 
   private void listenForEvents(InputStream eventStream) throws IOException {
     while (true) {
       DebugEvent event = DebugEvent.parseDelimitedFrom(eventStream);
+      if (event == null) {
+        // end of stream: the server has disconnected
+        return;
+      }
       if (event.getSequenceNumber() == 0) {
         // sequence number is 0 iff it's not a response to a DebugRequest: handle it immediately
         debugProcess.handleEvent(event);
@@ -178,37 +235,18 @@ class DebugClientTransport implements Closeable {
   }
 
   private void placeResponse(long sequence, DebugEvent response) {
-    synchronized (responseQueue) {
-      responseQueue.put(sequence, response);
-      responseQueue.notifyAll();
+    SettableFuture<DebugEvent> future = pendingResponses.remove(sequence);
+    if (future != null) {
+      future.set(response);
     }
   }
 
-  /**
-   * Wait for a response from the debug server. Returns null if no response was received, or this
-   * thread was interrupted.
-   */
-  @Nullable
-  private DebugEvent waitForResponse(long sequence) {
-    DebugEvent response = null;
-    long startTime = System.currentTimeMillis();
-    synchronized (responseQueue) {
-      while (response == null && shouldWaitForResponse(startTime)) {
-        try {
-          responseQueue.wait(RESPONSE_RECHECK_TIME_MILLIS);
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
-          return null;
-        }
-        response = responseQueue.remove(sequence);
+  private void failPendingResponses() {
+    for (Long seq : pendingResponses.keySet()) {
+      SettableFuture<DebugEvent> future = pendingResponses.remove(seq);
+      if (future != null) {
+        future.set(null);
       }
     }
-    return response;
-  }
-
-  private boolean shouldWaitForResponse(long startTime) {
-    return clientSocket.isConnected()
-        && !readTask.isDone()
-        && System.currentTimeMillis() - startTime < RESPONSE_TIMEOUT_MILLIS;
   }
 }
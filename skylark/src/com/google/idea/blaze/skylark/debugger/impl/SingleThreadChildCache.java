@@ -16,24 +16,31 @@
 package com.google.idea.blaze.skylark.debugger.impl;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.devtools.build.lib.starlarkdebugging.StarlarkDebuggingProtos;
-import com.google.devtools.build.lib.starlarkdebugging.StarlarkDebuggingProtos.DebugEvent;
 import com.google.devtools.build.lib.starlarkdebugging.StarlarkDebuggingProtos.DebugRequest;
 import com.google.devtools.build.lib.starlarkdebugging.StarlarkDebuggingProtos.GetChildrenRequest;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import javax.annotation.Nullable;
 
 /**
  * A cache of 'getChildren' results for a currently-paused thread. This state is retained only while
  * the thread is paused.
+ *
+ * <p>Requests are cached while in flight, so concurrent queries for the same value share a single
+ * request to the server.
  */
 class SingleThreadChildCache {
 
   private final long threadId;
-  private final ConcurrentMap<Long, List<StarlarkDebuggingProtos.Value>> identifierToChildrenMap =
-      new ConcurrentHashMap<>();
+  private final ConcurrentMap<Long, ListenableFuture<List<StarlarkDebuggingProtos.Value>>>
+      identifierToChildrenMap = new ConcurrentHashMap<>();
 
   SingleThreadChildCache(long threadId) {
     this.threadId = threadId;
@@ -42,20 +49,55 @@ class SingleThreadChildCache {
   @Nullable
   List<StarlarkDebuggingProtos.Value> getChildren(
       DebugClientTransport transport, StarlarkDebuggingProtos.Value value) {
+    try {
+      return getChildrenAsync(transport, value).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the children of the given value, querying the server if they're not already cached.
+   * The future completes with null if the server didn't respond.
+   */
+  ListenableFuture<List<StarlarkDebuggingProtos.Value>> getChildrenAsync(
+      DebugClientTransport transport, StarlarkDebuggingProtos.Value value) {
     // protocol specifies a non-zero ID for values with children
     if (!value.getHasChildren() || value.getId() == 0) {
-      return ImmutableList.of();
+      return Futures.immediateFuture(ImmutableList.of());
+    }
+    ListenableFuture<List<StarlarkDebuggingProtos.Value>> cached =
+        identifierToChildrenMap.get(value.getId());
+    if (cached != null) {
+      return cached;
     }
-    return identifierToChildrenMap.computeIfAbsent(
-        value.getId(), id -> queryChildren(transport, value));
+    SettableFuture<List<StarlarkDebuggingProtos.Value>> children = SettableFuture.create();
+    cached = identifierToChildrenMap.putIfAbsent(value.getId(), children);
+    if (cached != null) {
+      return cached;
+    }
+    children.setFuture(queryChildren(transport, value));
+    children.addListener(
+        () -> {
+          if (Futures.getUnchecked(children) == null) {
+            // don't cache failures, so that the children can be queried again
+            identifierToChildrenMap.remove(value.getId(), children);
+          }
+        },
+        MoreExecutors.directExecutor());
+    return children;
   }
 
-  @Nullable
-  private List<StarlarkDebuggingProtos.Value> queryChildren(
+  private ListenableFuture<List<StarlarkDebuggingProtos.Value>> queryChildren(
       DebugClientTransport transport, StarlarkDebuggingProtos.Value value) {
     GetChildrenRequest request =
         GetChildrenRequest.newBuilder().setThreadId(threadId).setValueId(value.getId()).build();
-    DebugEvent response = transport.sendRequest(DebugRequest.newBuilder().setGetChildren(request));
-    return response == null ? null : response.getGetChildren().getChildrenList();
+    return Futures.transform(
+        transport.sendRequestAsync(DebugRequest.newBuilder().setGetChildren(request)),
+        response -> response == null ? null : response.getGetChildren().getChildrenList(),
+        MoreExecutors.directExecutor());
   }
 }
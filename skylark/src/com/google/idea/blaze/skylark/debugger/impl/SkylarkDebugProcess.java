@@ -19,6 +19,8 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.devtools.build.lib.starlarkdebugging.StarlarkDebuggingProtos;
 import com.google.devtools.build.lib.starlarkdebugging.StarlarkDebuggingProtos.ContinueExecutionRequest;
 import com.google.devtools.build.lib.starlarkdebugging.StarlarkDebuggingProtos.DebugEvent;
@@ -427,6 +429,19 @@ public class SkylarkDebugProcess extends XDebugProcess {
     return threadState.childCache.getChildren(transport, value);
   }
 
+  /**
+   * Queries the children of the given value without blocking. The future completes with null if
+   * the thread is no longer paused, or the server didn't respond.
+   */
+  ListenableFuture<List<StarlarkDebuggingProtos.Value>> getChildrenAsync(
+      long threadId, StarlarkDebuggingProtos.Value value) {
+    PausedThreadState threadState = pausedThreads.get(threadId);
+    if (threadState == null) {
+      return Futures.immediateFuture(null);
+    }
+    return threadState.childCache.getChildrenAsync(transport, value);
+  }
+
   void listFrames(long threadId, XExecutionStack.XStackFrameContainer container) {
     DebugEvent response =
         transport.sendRequest(
@@ -16,9 +16,11 @@
 package com.google.idea.blaze.skylark.debugger.impl;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.devtools.build.lib.starlarkdebugging.StarlarkDebuggingProtos;
 import com.intellij.icons.AllIcons;
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.xdebugger.frame.XCompositeNode;
 import com.intellij.xdebugger.frame.XFullValueEvaluator;
 import com.intellij.xdebugger.frame.XNamedValue;
@@ -133,18 +135,22 @@ class SkylarkDebugValue extends XNamedValue {
       node.addChildren(XValueChildrenList.EMPTY, true);
       return;
     }
-    ApplicationManager.getApplication()
-        .executeOnPooledThread(
-            () -> {
-              List<StarlarkDebuggingProtos.Value> response =
-                  frameContext.debugProcess.getChildren(frameContext.threadId, value);
-              if (response == null) {
-                node.setErrorMessage("Error querying children.");
-                return;
-              }
-              XValueChildrenList children = new XValueChildrenList(response.size());
-              response.forEach(v -> children.add(SkylarkDebugValue.fromProto(frameContext, v)));
-              node.addChildren(children, true);
-            });
+    ListenableFuture<List<StarlarkDebuggingProtos.Value>> future =
+        frameContext.debugProcess.getChildrenAsync(frameContext.threadId, value);
+    future.addListener(
+        () -> {
+          List<StarlarkDebuggingProtos.Value> response = Futures.getUnchecked(future);
+          if (node.isObsolete()) {
+            return;
+          }
+          if (response == null) {
+            node.setErrorMessage("Error querying children.");
+            return;
+          }
+          XValueChildrenList children = new XValueChildrenList(response.size());
+          response.forEach(v -> children.add(SkylarkDebugValue.fromProto(frameContext, v)));
+          node.addChildren(children, true);
+        },
+        MoreExecutors.directExecutor());
   }
 }